@@ -14,14 +14,22 @@ package org.juliazo.diff;
   run mvn spring-boot:run
   app will be available on http://localhost:8080
 
+  Two local files are compared without starting the app with:
+  java -jar target/base64-diff-1.0.jar diff [--summary] <left file> <right file>
+
   @author Julia Zottis
  */
+import org.juliazo.diff.cli.DiffCommand;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.util.Arrays;
 
 @SpringBootApplication
+@EnableScheduling
 public class Base64DiffApp {
 
     /**
@@ -30,6 +38,10 @@ public class Base64DiffApp {
     private static final Logger logger = LoggerFactory.getLogger(Base64DiffApp.class);
 
     public static void main(String[] args) {
+        if (args.length > 0 && DiffCommand.NAME.equals(args[0])) {
+            DiffCommand.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         logger.info("Starting Base64 Diff Application");
         SpringApplication.run(Base64DiffApp.class, args);
     }
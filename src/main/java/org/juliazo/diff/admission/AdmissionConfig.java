@@ -0,0 +1,64 @@
+package org.juliazo.diff.admission;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Admission control configuration. Enabled when diff.admission.enabled is true, off by default.
+ */
+@Configuration
+@ConditionalOnProperty(name = "diff.admission.enabled", havingValue = "true")
+public class AdmissionConfig {
+
+    /**
+     * The constant logger.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(AdmissionConfig.class);
+
+    /**
+     * Creates the admission budgets.
+     *
+     * @param maxInFlightBytes      maximum bytes of request payloads in flight
+     * @param reservedBytes         bytes of the budget only available to small requests
+     * @param smallRequestBytes     size up to which a request is small
+     * @param maxConcurrentDiffs    maximum diff operations computed at once
+     * @param queueTimeoutMs        how long a request waits for capacity, in milliseconds
+     * @return the admission control
+     */
+    @Bean
+    public AdmissionControl admissionControl(
+            @Value("${diff.admission.max-in-flight-bytes:67108864}") long maxInFlightBytes,
+            @Value("${diff.admission.reserved-bytes:8388608}") long reservedBytes,
+            @Value("${diff.admission.small-request-bytes:65536}") long smallRequestBytes,
+            @Value("${diff.admission.max-concurrent-diffs:16}") int maxConcurrentDiffs,
+            @Value("${diff.admission.queue-timeout-ms:200}") long queueTimeoutMs) {
+        logger.info("Admission control enabled: " + maxInFlightBytes + " bytes in flight, "
+                + maxConcurrentDiffs + " concurrent diffs");
+        return new AdmissionControl(maxInFlightBytes, reservedBytes, smallRequestBytes, maxConcurrentDiffs,
+                queueTimeoutMs);
+    }
+
+    /**
+     * Registers the admission filter in front of the diff endpoints.
+     *
+     * @param admissionControl      the admission budgets
+     * @param objectMapper          writes the error payloads
+     * @param retryAfterSeconds     seconds suggested to the client before retrying a rejected request
+     * @return the filter registration
+     */
+    @Bean
+    public FilterRegistrationBean<AdmissionFilter> admissionFilter(AdmissionControl admissionControl,
+            ObjectMapper objectMapper,
+            @Value("${diff.admission.retry-after-seconds:1}") int retryAfterSeconds) {
+        FilterRegistrationBean<AdmissionFilter> registration = new FilterRegistrationBean<>(
+                new AdmissionFilter(admissionControl, objectMapper, retryAfterSeconds));
+        registration.addUrlPatterns("/v1/diff/*");
+        return registration;
+    }
+}
@@ -0,0 +1,182 @@
+package org.juliazo.diff.admission;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Budgets of the work admitted at once: the bytes of the request payloads being received
+ * and decoded, and the diff operations being computed.
+ *
+ * Part of the byte budget is reserved for small requests: a large request is only admitted
+ * while the bytes in flight leave the reserve free, so small requests are never stuck behind
+ * a burst of large ones. Requests that do not fit wait up to the queue timeout for capacity.
+ */
+public class AdmissionControl {
+
+    /**
+     * Maximum bytes of request payloads in flight.
+     */
+    private final long maxInFlightBytes;
+
+    /**
+     * Bytes of the budget only available to small requests.
+     */
+    private final long reservedBytes;
+
+    /**
+     * Size up to which a request is small.
+     */
+    private final long smallRequestBytes;
+
+    /**
+     * How long a request waits for capacity before being rejected, in milliseconds.
+     */
+    private final long queueTimeoutMs;
+
+    /**
+     * Permits of the diff operations computed at once.
+     */
+    private final Semaphore diffPermits;
+
+    /**
+     * Bytes of request payloads in flight. Guarded by this.
+     */
+    private long inFlightBytes;
+
+    /**
+     * How many requests were rejected.
+     */
+    private final AtomicLong rejectedRequests = new AtomicLong();
+
+    /**
+     * Instantiates a new Admission control.
+     *
+     * @param maxInFlightBytes      maximum bytes of request payloads in flight
+     * @param reservedBytes         bytes of the budget only available to small requests
+     * @param smallRequestBytes     size up to which a request is small
+     * @param maxConcurrentDiffs    maximum diff operations computed at once
+     * @param queueTimeoutMs        how long a request waits for capacity, in milliseconds, 0 to not wait
+     */
+    public AdmissionControl(long maxInFlightBytes, long reservedBytes, long smallRequestBytes,
+                            int maxConcurrentDiffs, long queueTimeoutMs) {
+        if (reservedBytes < 0 || reservedBytes >= maxInFlightBytes || smallRequestBytes > reservedBytes
+                || maxConcurrentDiffs < 1 || queueTimeoutMs < 0) {
+            throw new IllegalArgumentException("Invalid admission budgets");
+        }
+        this.maxInFlightBytes = maxInFlightBytes;
+        this.reservedBytes = reservedBytes;
+        this.smallRequestBytes = smallRequestBytes;
+        this.queueTimeoutMs = queueTimeoutMs;
+        this.diffPermits = new Semaphore(maxConcurrentDiffs, true);
+    }
+
+    /**
+     * Checks whether a request of the given size can ever be admitted.
+     *
+     * @param bytes the request size
+     * @return false if the request is larger than the budget available to it
+     */
+    public boolean fits(long bytes) {
+        return bytes <= budgetFor(bytes);
+    }
+
+    /**
+     * Admits a request of the given size, waiting up to the queue timeout for capacity.
+     * An admitted request must be released with {@link #releaseBytes(long)}.
+     *
+     * @param bytes the request size
+     * @return whether the request was admitted
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean acquireBytes(long bytes) throws InterruptedException {
+        return acquireMoreBytes(0, bytes);
+    }
+
+    /**
+     * Admits more bytes of a request already holding some, as the payload of a request without
+     * Content-Length is read, waiting up to the queue timeout for capacity. The budget is the one
+     * available to a request of the whole size held; the bytes admitted must be released with
+     * {@link #releaseBytes(long)} along with the ones held.
+     *
+     * @param heldBytes the bytes already admitted for the request
+     * @param bytes     the bytes to admit
+     * @return whether the bytes were admitted
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public synchronized boolean acquireMoreBytes(long heldBytes, long bytes) throws InterruptedException {
+        long budget = budgetFor(heldBytes + bytes);
+        long deadline = System.currentTimeMillis() + queueTimeoutMs;
+        while (inFlightBytes + bytes > budget) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0 || heldBytes + bytes > budget) {
+                rejectedRequests.incrementAndGet();
+                return false;
+            }
+            wait(remaining);
+        }
+        inFlightBytes += bytes;
+        return true;
+    }
+
+    /**
+     * Releases the bytes of an admitted request.
+     *
+     * @param bytes the request size
+     */
+    public synchronized void releaseBytes(long bytes) {
+        inFlightBytes -= bytes;
+        notifyAll();
+    }
+
+    /**
+     * Admits a diff operation, waiting up to the queue timeout for one to finish.
+     * An admitted operation must be released with {@link #releaseDiff()}.
+     *
+     * @return whether the operation was admitted
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean acquireDiff() throws InterruptedException {
+        if (diffPermits.tryAcquire(queueTimeoutMs, TimeUnit.MILLISECONDS)) {
+            return true;
+        }
+        rejectedRequests.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Releases an admitted diff operation.
+     */
+    public void releaseDiff() {
+        diffPermits.release();
+    }
+
+    /**
+     * Gets the bytes of request payloads in flight.
+     *
+     * @return the in flight bytes
+     */
+    public synchronized long getInFlightBytes() {
+        return inFlightBytes;
+    }
+
+    /**
+     * Gets how many requests were rejected.
+     *
+     * @return the rejected requests
+     */
+    public long getRejectedRequests() {
+        return rejectedRequests.get();
+    }
+
+    /**
+     * Gets the budget available to a request: small requests can use the whole budget,
+     * large ones all but the reserve.
+     *
+     * @param bytes the request size
+     * @return the budget
+     */
+    private long budgetFor(long bytes) {
+        return bytes <= smallRequestBytes ? maxInFlightBytes : maxInFlightBytes - reservedBytes;
+    }
+}
@@ -0,0 +1,412 @@
+package org.juliazo.diff.admission;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.juliazo.diff.model.ErrorPayload;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+/**
+ * Admission control in front of the diff endpoints. Requests with a payload are admitted
+ * according to their Content-Length, or as their payload is read when it has none, and diff
+ * operations according to how many are running, see {@link AdmissionControl}. Rejected requests
+ * get an {@link ErrorPayload} and a Retry-After header: 429 when the byte budget is exhausted,
+ * 503 when too many diffs are running and 413 when a request is larger than the whole budget
+ * available to it.
+ */
+public class AdmissionFilter extends OncePerRequestFilter {
+
+    /**
+     * Paths of the diff operations: the diff of an id, its streamed differences
+     * and the diff between two versions of a side.
+     */
+    private static final Pattern DIFF_PATH =
+            Pattern.compile("/v1/diff/[^/]+(/runs|/(left|right)/versions/[^/]+/diff/[^/]+)?");
+
+    /**
+     * The constant logger.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(AdmissionFilter.class);
+
+    /**
+     * The budgets.
+     */
+    private final AdmissionControl admissionControl;
+
+    /**
+     * Writes the error payloads.
+     */
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Seconds suggested to the client before retrying a rejected request.
+     */
+    private final int retryAfterSeconds;
+
+    /**
+     * Instantiates a new Admission filter.
+     *
+     * @param admissionControl      the budgets
+     * @param objectMapper          writes the error payloads
+     * @param retryAfterSeconds     seconds suggested to the client before retrying
+     */
+    public AdmissionFilter(AdmissionControl admissionControl, ObjectMapper objectMapper, int retryAfterSeconds) {
+        this.admissionControl = admissionControl;
+        this.objectMapper = objectMapper;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String method = request.getMethod();
+        try {
+            if (("POST".equals(method) || "PUT".equals(method)) && request.getContentLengthLong() < 0) {
+                CountingRequest countingRequest = new CountingRequest(request);
+                try {
+                    filterChain.doFilter(countingRequest, countingRequest.new CountingResponse(response));
+                } catch (IOException | ServletException e) {
+                    //failures to read a rejected payload end up here, unless the handler reported them
+                    if (countingRequest.rejection == null) {
+                        throw e;
+                    }
+                } finally {
+                    admissionControl.releaseBytes(countingRequest.admittedBytes);
+                }
+                if (countingRequest.rejection != null && !response.isCommitted()) {
+                    response.reset();
+                    reject(response, countingRequest.rejection, countingRequest.rejectionMessage);
+                }
+            } else if ("POST".equals(method) || "PUT".equals(method)) {
+                long bytes = request.getContentLengthLong();
+                if (!admissionControl.fits(bytes)) {
+                    reject(response, HttpStatus.PAYLOAD_TOO_LARGE, "Request exceeds the in-flight byte budget");
+                    return;
+                }
+                if (!admissionControl.acquireBytes(bytes)) {
+                    reject(response, HttpStatus.TOO_MANY_REQUESTS, "Too many bytes in flight");
+                    return;
+                }
+                try {
+                    filterChain.doFilter(request, response);
+                } finally {
+                    admissionControl.releaseBytes(bytes);
+                }
+            } else if ("GET".equals(method) && DIFF_PATH.matcher(request.getRequestURI()).matches()) {
+                if (!admissionControl.acquireDiff()) {
+                    reject(response, HttpStatus.SERVICE_UNAVAILABLE, "Too many diffs in progress");
+                    return;
+                }
+                try {
+                    filterChain.doFilter(request, response);
+                } finally {
+                    if (request.isAsyncStarted()) {
+                        //the differences are streamed after the chain returns, the diff ends with the response
+                        request.getAsyncContext().addListener(new DiffReleasingListener());
+                    } else {
+                        admissionControl.releaseDiff();
+                    }
+                }
+            } else {
+                filterChain.doFilter(request, response);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            reject(response, HttpStatus.SERVICE_UNAVAILABLE, "Interrupted while waiting for capacity");
+        }
+    }
+
+    /**
+     * Writes the response of a rejected request.
+     *
+     * @param response  the response
+     * @param status    the status
+     * @param message   the message
+     * @throws IOException if the response cannot be written
+     */
+    private void reject(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        logger.info("Request rejected: " + message);
+        ErrorPayload errorPayload = new ErrorPayload();
+        errorPayload.setErrorCode(status.toString());
+        errorPayload.setMessage(message);
+        response.setStatus(status.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), errorPayload);
+    }
+
+    /**
+     * A request without Content-Length, such as a chunked transfer, whose payload is admitted as it is read:
+     * each block read is charged to the byte budget before it is handed to the reader, and once the budget
+     * is exhausted the payload fails to read and the request is rejected. The error the handler reports
+     * for the payload it could not read is discarded by the {@link CountingResponse}, so the rejection
+     * is written instead.
+     */
+    private class CountingRequest extends HttpServletRequestWrapper {
+
+        /**
+         * Bytes admitted so far, released once the request is handled.
+         */
+        private long admittedBytes;
+
+        /**
+         * Status of the rejection once the budget was exhausted, null while the payload is admitted.
+         */
+        private HttpStatus rejection;
+
+        /**
+         * Message of the rejection.
+         */
+        private String rejectionMessage;
+
+        /**
+         * The counting stream, created on first use.
+         */
+        private ServletInputStream inputStream;
+
+        /**
+         * Instantiates a new Counting request.
+         *
+         * @param request the request
+         */
+        private CountingRequest(HttpServletRequest request) {
+            super(request);
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if (inputStream == null) {
+                inputStream = new CountingInputStream(super.getInputStream());
+            }
+            return inputStream;
+        }
+
+        /**
+         * Admits the bytes just read.
+         *
+         * @param bytes the bytes read
+         * @throws IOException if the budget is exhausted
+         */
+        private void admit(int bytes) throws IOException {
+            if (rejection == null) {
+                try {
+                    if (!admissionControl.fits(admittedBytes + bytes)) {
+                        rejection = HttpStatus.PAYLOAD_TOO_LARGE;
+                        rejectionMessage = "Request exceeds the in-flight byte budget";
+                    } else if (!admissionControl.acquireMoreBytes(admittedBytes, bytes)) {
+                        rejection = HttpStatus.TOO_MANY_REQUESTS;
+                        rejectionMessage = "Too many bytes in flight";
+                    } else {
+                        admittedBytes += bytes;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    rejection = HttpStatus.SERVICE_UNAVAILABLE;
+                    rejectionMessage = "Interrupted while waiting for capacity";
+                }
+            }
+            if (rejection != null) {
+                throw new IOException("Payload rejected by admission control");
+            }
+        }
+
+        /**
+         * Stream of the payload, admitting each block read.
+         */
+        private class CountingInputStream extends ServletInputStream {
+
+            /**
+             * The payload.
+             */
+            private final ServletInputStream in;
+
+            /**
+             * Instantiates a new Counting input stream.
+             *
+             * @param in the payload
+             */
+            private CountingInputStream(ServletInputStream in) {
+                this.in = in;
+            }
+
+            @Override
+            public int read() throws IOException {
+                int b = in.read();
+                if (b >= 0) {
+                    admit(1);
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) throws IOException {
+                int read = in.read(bytes, offset, length);
+                if (read > 0) {
+                    admit(read);
+                }
+                return read;
+            }
+
+            @Override
+            public boolean isFinished() {
+                return in.isFinished();
+            }
+
+            @Override
+            public boolean isReady() {
+                return in.isReady();
+            }
+
+            @Override
+            public void setReadListener(ReadListener readListener) {
+                in.setReadListener(readListener);
+            }
+        }
+
+        /**
+         * Response of the request, discarding the status and the content written once the payload was rejected.
+         */
+        private class CountingResponse extends HttpServletResponseWrapper {
+
+            /**
+             * Instantiates a new Counting response.
+             *
+             * @param response the response
+             */
+            private CountingResponse(HttpServletResponse response) {
+                super(response);
+            }
+
+            @Override
+            public void setStatus(int status) {
+                if (rejection == null) {
+                    super.setStatus(status);
+                }
+            }
+
+            @Override
+            public void sendError(int status) throws IOException {
+                if (rejection == null) {
+                    super.sendError(status);
+                }
+            }
+
+            @Override
+            public void sendError(int status, String message) throws IOException {
+                if (rejection == null) {
+                    super.sendError(status, message);
+                }
+            }
+
+            @Override
+            public ServletOutputStream getOutputStream() throws IOException {
+                return rejection == null ? super.getOutputStream() : DiscardingOutputStream.INSTANCE;
+            }
+
+            @Override
+            public PrintWriter getWriter() throws IOException {
+                return rejection == null ? super.getWriter() : new PrintWriter(DiscardingOutputStream.INSTANCE);
+            }
+
+            @Override
+            public void flushBuffer() throws IOException {
+                if (rejection == null) {
+                    super.flushBuffer();
+                }
+            }
+        }
+    }
+
+    /**
+     * Stream discarding whatever is written to it.
+     */
+    private static class DiscardingOutputStream extends ServletOutputStream {
+
+        /**
+         * The only instance, it holds no state.
+         */
+        private static final DiscardingOutputStream INSTANCE = new DiscardingOutputStream();
+
+        @Override
+        public void write(int b) {
+            //discarded
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            //discarded
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            //always ready, there is nothing to notify
+        }
+    }
+
+    /**
+     * Releases the diff of a request handled asynchronously once its response ends, whether
+     * completed, failed or timed out.
+     */
+    private class DiffReleasingListener implements AsyncListener {
+
+        /**
+         * Whether the diff was released, so a failure followed by the completion releases it once.
+         */
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            //listeners are dropped when the request is made asynchronous again
+            event.getAsyncContext().addListener(this);
+        }
+
+        /**
+         * Releases the diff, once.
+         */
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                admissionControl.releaseDiff();
+            }
+        }
+    }
+}
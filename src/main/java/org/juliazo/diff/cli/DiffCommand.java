@@ -0,0 +1,237 @@
+package org.juliazo.diff.cli;
+
+import ch.qos.logback.classic.Level;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.juliazo.diff.engine.DiffEngine;
+import org.juliazo.diff.model.DiffQuery;
+import org.juliazo.diff.model.DiffResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Command line diff of two local files, without starting the application:
+ * {@code java -jar base64-diff-1.0.jar diff [--summary] [--max-gap=<n>] [--top=<k>]
+ * [--record-size=<n> [--ignore=<from>-<to>,...]] <left file> <right file>}
+ *
+ * Files are memory mapped and compared by the same {@link DiffEngine} as the stored data sets, and the
+ * {@link DiffResult} is printed as JSON. The exit code is 0 when the files are equal, 1 when they are
+ * different and 2 on errors, as on the diff tools.
+ */
+public class DiffCommand {
+
+    /**
+     * First argument of the application running this command.
+     */
+    public static final String NAME = "diff";
+
+    /**
+     * Option printing only the summary of the differences, see {@link DiffQuery#MODE_SUMMARY}.
+     */
+    static final String SUMMARY_OPTION = "--summary";
+
+    /**
+     * Option merging differences separated by at most the given number of equal bytes,
+     * see {@link DiffQuery#getMaxGap()}.
+     */
+    static final String MAX_GAP_OPTION = "--max-gap=";
+
+    /**
+     * Option printing only the given number of largest differences, see {@link DiffQuery#getTop()}.
+     */
+    static final String TOP_OPTION = "--top=";
+
+    /**
+     * Option comparing records of the given size instead of bytes, see {@link DiffQuery#getRecordSize()}.
+     */
+    static final String RECORD_SIZE_OPTION = "--record-size=";
+
+    /**
+     * Option skipping ranges of bytes of each record, see {@link DiffQuery#getIgnore()}.
+     */
+    static final String IGNORE_OPTION = "--ignore=";
+
+    /**
+     * Exit code of equal files.
+     */
+    static final int EQUAL = 0;
+
+    /**
+     * Exit code of different files.
+     */
+    static final int DIFFERENT = 1;
+
+    /**
+     * Exit code of errors.
+     */
+    static final int ERROR = 2;
+
+    /**
+     * How to run the command.
+     */
+    private static final String USAGE = "Usage: java -jar base64-diff-1.0.jar " + NAME
+            + " [" + SUMMARY_OPTION + "] [" + MAX_GAP_OPTION + "<n>] [" + TOP_OPTION + "<k>] [" + RECORD_SIZE_OPTION
+            + "<n> [" + IGNORE_OPTION + "<from>-<to>,...]] <left file> <right file>";
+
+    /**
+     * Where the result is printed.
+     */
+    private final PrintStream out;
+
+    /**
+     * Where the errors are printed.
+     */
+    private final PrintStream err;
+
+    /**
+     * Size of the segments the files are mapped in.
+     */
+    private final int segmentSize;
+
+    /**
+     * The engine comparing the files.
+     */
+    private final DiffEngine diffEngine = new DiffEngine();
+
+    /**
+     * Prints the result.
+     */
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * Instantiates a new Diff command mapping the largest segments.
+     *
+     * @param out   where the result is printed
+     * @param err   where the errors are printed
+     */
+    public DiffCommand(PrintStream out, PrintStream err) {
+        this(out, err, MappedFile.MAX_SEGMENT_SIZE);
+    }
+
+    /**
+     * Instantiates a new Diff command.
+     *
+     * @param out           where the result is printed
+     * @param err           where the errors are printed
+     * @param segmentSize   size of the segments the files are mapped in
+     */
+    DiffCommand(PrintStream out, PrintStream err, int segmentSize) {
+        this.out = out;
+        this.err = err;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Runs the command from the command line and exits with its code.
+     * Only warnings are logged, so the debug logs of the comparison do not mix with the result.
+     *
+     * @param args the options and files, without the name of the command
+     */
+    public static void main(String[] args) {
+        Logger root = LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
+        if (root instanceof ch.qos.logback.classic.Logger) {
+            ((ch.qos.logback.classic.Logger) root).setLevel(Level.WARN);
+        }
+        System.exit(new DiffCommand(System.out, System.err).run(args));
+    }
+
+    /**
+     * Compares the files and prints the result.
+     *
+     * @param args the options and files, without the name of the command
+     * @return the exit code
+     */
+    public int run(String[] args) {
+        DiffQuery diffQuery = new DiffQuery();
+        int first = 0;
+        for (; first < args.length && args[first].startsWith("--"); first++) {
+            String option = args[first];
+            int maxGap = option.startsWith(MAX_GAP_OPTION) ? parseCount(option.substring(MAX_GAP_OPTION.length())) : -1;
+            int top = option.startsWith(TOP_OPTION) ? parseCount(option.substring(TOP_OPTION.length())) : -1;
+            int recordSize = option.startsWith(RECORD_SIZE_OPTION)
+                    ? parseCount(option.substring(RECORD_SIZE_OPTION.length())) : -1;
+            if (SUMMARY_OPTION.equals(option)) {
+                diffQuery.setMode(DiffQuery.MODE_SUMMARY);
+            } else if (maxGap >= 0) {
+                diffQuery.setMaxGap(maxGap);
+            } else if (top > 0) {
+                diffQuery.setTop(top);
+            } else if (recordSize > 0 && recordSize <= DiffQuery.MAX_RECORD_SIZE) {
+                diffQuery.setRecordSize(recordSize);
+            } else if (option.startsWith(IGNORE_OPTION)) {
+                diffQuery.setIgnore(option.substring(IGNORE_OPTION.length()));
+            } else {
+                err.println(USAGE);
+                return ERROR;
+            }
+        }
+        if (args.length - first != 2 || diffQuery.getIgnore() != null && (diffQuery.getRecordSize() == null
+                || DiffEngine.comparedRanges(diffQuery.getRecordSize(), diffQuery.getIgnore()) == null)) {
+            err.println(USAGE);
+            return ERROR;
+        }
+        Path leftFile = Paths.get(args[first]);
+        Path rightFile = Paths.get(args[first + 1]);
+        for (Path file : new Path[] {leftFile, rightFile}) {
+            if (!Files.isRegularFile(file)) {
+                err.println("File not Found: " + file);
+                return ERROR;
+            }
+        }
+
+        DiffResult diffResult;
+        try {
+            diffResult = compare(rightFile, leftFile, diffQuery);
+            out.println(objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(diffResult));
+        } catch (IOException e) {
+            err.println("Could not compare the files: " + e.getMessage());
+            return ERROR;
+        }
+        return Boolean.TRUE.equals(diffResult.isEquals()) ? EQUAL : DIFFERENT;
+    }
+
+    /**
+     * Reads the value of a numeric option.
+     *
+     * @param value the value
+     * @return the number, or -1 if the value is not a number
+     */
+    private static int parseCount(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Compares two files. As on the stored data sets, files of different sizes are not compared.
+     *
+     * @param rightFile the right side
+     * @param leftFile  the left side
+     * @param diffQuery the optional parameters of the diff
+     * @return the result
+     * @throws IOException if a file cannot be read
+     */
+    private DiffResult compare(Path rightFile, Path leftFile, DiffQuery diffQuery) throws IOException {
+        try (MappedFile right = new MappedFile(rightFile, segmentSize);
+             MappedFile left = new MappedFile(leftFile, segmentSize)) {
+            DiffResult diffResult = new DiffResult();
+            diffResult.setEqualSize(right.getSize() == left.getSize());
+            if (!diffResult.isEqualSize()) {
+                return diffResult;
+            }
+            try (InputStream rightStream = right.openStream();
+                 InputStream leftStream = left.openStream()) {
+                diffEngine.compare(rightStream, leftStream, 0, diffQuery, diffResult);
+            }
+            return diffResult;
+        }
+    }
+}
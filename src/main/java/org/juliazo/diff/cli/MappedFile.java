@@ -0,0 +1,123 @@
+package org.juliazo.diff.cli;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A local file read through memory mapping. A single mapping holds at most 2 GB, so larger files are
+ * mapped segment by segment while being read, and the pages of a segment already read can be reclaimed
+ * by the operating system.
+ */
+public class MappedFile implements Closeable {
+
+    /**
+     * Largest segment a single mapping holds.
+     */
+    public static final int MAX_SEGMENT_SIZE = Integer.MAX_VALUE;
+
+    /**
+     * The channel of the file.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The size of the file, in bytes.
+     */
+    private final long size;
+
+    /**
+     * Size of the segments mapped.
+     */
+    private final int segmentSize;
+
+    /**
+     * Opens a file with the largest segments.
+     *
+     * @param file  the file
+     * @throws IOException if the file cannot be opened
+     */
+    public MappedFile(Path file) throws IOException {
+        this(file, MAX_SEGMENT_SIZE);
+    }
+
+    /**
+     * Opens a file.
+     *
+     * @param file          the file
+     * @param segmentSize   size of the segments mapped
+     * @throws IOException if the file cannot be opened
+     */
+    public MappedFile(Path file, int segmentSize) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.size = channel.size();
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Gets the size of the file.
+     *
+     * @return the size in bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Opens a stream of the whole file, reading directly from the mapped segments.
+     *
+     * @return the stream
+     */
+    public InputStream openStream() {
+        return new SegmentInputStream();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Stream over the segments of the file, each mapped when the previous one is fully read.
+     */
+    private class SegmentInputStream extends InputStream {
+
+        /**
+         * Position of the next segment in the file.
+         */
+        private long position;
+
+        /**
+         * The segment being read, null before the first read.
+         */
+        private MappedByteBuffer segment;
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (segment == null || !segment.hasRemaining()) {
+                if (position >= size) {
+                    return -1;
+                }
+                long length = Math.min(segmentSize, size - position);
+                segment = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                position += length;
+            }
+            int read = Math.min(len, segment.remaining());
+            segment.get(b, off, read);
+            return read;
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package org.juliazo.diff.cluster;
+
+import org.juliazo.diff.model.Base64Data;
+import org.juliazo.diff.model.Base64DataPayload;
+import org.juliazo.diff.model.ErrorPayload;
+import org.juliazo.diff.service.DiffService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.DefaultResponseErrorHandler;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriUtils;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Cluster mode. Instances form a {@link ConsistentHashRing} over the ids and every request
+ * for an id that is owned by another instance is forwarded to its owner.
+ *
+ * Cluster mode is enabled by listing the members on property diff.cluster.members
+ * (comma separated host:port list) and identifying this instance on diff.cluster.self.
+ * When no members are configured, every id is handled locally.
+ */
+@Service
+public class ClusterService {
+
+    /**
+     * Header added to forwarded requests. A request carrying it is always handled locally,
+     * so instances that disagree on the membership during a change cannot forward in loops.
+     */
+    public static final String FORWARDED_HEADER = "X-Diff-Forwarded";
+
+    /**
+     * How many times a data set updated while it is being moved to its new owner is sent again
+     * before it is kept locally.
+     */
+    private static final int MAX_HAND_OFF_ATTEMPTS = 3;
+
+    /**
+     * Headers of the owner response that are not relayed: the hop-by-hop headers, which only apply
+     * to the connection with the owner, and the length, set again when the body is written.
+     */
+    private static final List<String> UNRELAYED_HEADERS = Arrays.asList(HttpHeaders.CONNECTION, "Keep-Alive",
+            HttpHeaders.PROXY_AUTHENTICATE, HttpHeaders.PROXY_AUTHORIZATION, HttpHeaders.TE, HttpHeaders.TRAILER,
+            HttpHeaders.TRANSFER_ENCODING, HttpHeaders.UPGRADE, HttpHeaders.CONTENT_LENGTH);
+
+    /**
+     * The constant logger.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(ClusterService.class);
+
+    /**
+     * The Diff Service, holds the local storage.
+     */
+    private final DiffService diffService;
+
+    /**
+     * Client used to forward requests to the other members.
+     */
+    private final RestTemplate restTemplate;
+
+    /**
+     * This instance, as host:port. Must be one of the members.
+     */
+    private final String self;
+
+    /**
+     * How many positions each member takes on the ring.
+     */
+    private final int virtualNodes;
+
+    /**
+     * The current ring. Replaced as a whole on membership changes.
+     */
+    private volatile ConsistentHashRing ring;
+
+    /**
+     * Instantiates a new Cluster service.
+     *
+     * @param diffService           the diff service
+     * @param restTemplateBuilder   the rest template builder
+     * @param self                  this instance, as host:port
+     * @param members               comma separated list of members, empty to disable cluster mode
+     * @param virtualNodes          how many positions each member takes on the ring
+     */
+    @Autowired
+    public ClusterService(DiffService diffService, RestTemplateBuilder restTemplateBuilder,
+                          @Value("${diff.cluster.self:}") String self,
+                          @Value("${diff.cluster.members:}") String members,
+                          @Value("${diff.cluster.virtual-nodes:128}") int virtualNodes) {
+        this.diffService = diffService;
+        this.restTemplate = restTemplateBuilder.errorHandler(new DefaultResponseErrorHandler() {
+            @Override
+            public boolean hasError(ClientHttpResponse response) {
+                //error responses of the owner are relayed to the client as they are
+                return false;
+            }
+        }).build();
+        this.self = self;
+        this.virtualNodes = virtualNodes;
+        this.ring = new ConsistentHashRing(parseMembers(members), virtualNodes);
+        if (!ring.isEmpty()) {
+            logger.info("Cluster mode enabled on " + self + " with members: " + ring.getMembers());
+        }
+    }
+
+    /**
+     * Finds the member that owns the given id when it is not this instance.
+     *
+     * @param id    the unique identifier of a data set
+     * @return the owner member as host:port, or null if the id must be handled locally
+     */
+    public String findRemoteOwner(String id) {
+        String owner = ring.ownerOf(id);
+        return owner == null || owner.equals(self) ? null : owner;
+    }
+
+    /**
+     * Finds the member that must handle a request for the given id. Requests already forwarded
+     * by another member are always handled locally.
+     *
+     * @param id            the unique identifier of a data set
+     * @param forwardedBy   the member that forwarded the request, null if it came from a client
+     * @return the owner member as host:port, or null if the request must be handled locally
+     */
+    public String findRemoteOwner(String id, String forwardedBy) {
+        if (forwardedBy != null) {
+            logger.debug("Request for id " + id + " forwarded by " + forwardedBy);
+            return null;
+        }
+        return findRemoteOwner(id);
+    }
+
+    /**
+     * Mounts the path of the data set of an id, with the id encoded as a path segment,
+     * so ids holding characters such as '?', '#' or '{' reach the owner unchanged.
+     *
+     * @param id    the unique identifier of a data set
+     * @return the path, starting with /
+     */
+    public static String diffPath(String id) {
+        return "/v1/diff/" + UriUtils.encodePathSegment(id, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Forwards a request to the member that owns the id and relays its response.
+     *
+     * @param owner     the owner member, as host:port
+     * @param method    the HTTP method
+     * @param path      the request path, starting with /, already encoded, see {@link #diffPath(String)}
+     * @param payload   the request payload, sent as JSON, null for requests without a body
+     * @return the response entity of the owner or an error message if the owner is unavailable
+     */
+    public ResponseEntity forward(String owner, HttpMethod method, String path, Object payload) {
+        return forward(owner, method, path, payload, new HttpHeaders());
+    }
+
+    /**
+     * Forwards a request with the given headers to the member that owns the id and relays its response,
+     * with the headers of the owner such as its entity tag, content type or Retry-After.
+     *
+     * @param owner     the owner member, as host:port
+     * @param method    the HTTP method
+     * @param path      the request path, starting with /, already encoded, see {@link #diffPath(String)}
+     * @param payload   the request payload, sent as JSON, null for requests without a body
+     * @param headers   the headers of the original request that must reach the owner
+     * @return the response entity of the owner or an error message if the owner is unavailable
+     */
+    public ResponseEntity forward(String owner, HttpMethod method, String path, Object payload, HttpHeaders headers) {
+        logger.debug("Forwarding " + method + " " + path + " to " + owner);
+        headers.set(FORWARDED_HEADER, self);
+        if (payload != null) {
+            headers.setContentType(MediaType.APPLICATION_JSON);
+        }
+        try {
+            //the path is sent as it is, not expanded or encoded again as a URI template
+            ResponseEntity<String> ownerResponse = restTemplate.exchange(URI.create("http://" + owner + path), method,
+                    new HttpEntity<>(payload, headers), String.class);
+            HttpHeaders responseHeaders = new HttpHeaders();
+            ownerResponse.getHeaders().forEach((name, values) -> {
+                if (UNRELAYED_HEADERS.stream().noneMatch(name::equalsIgnoreCase)) {
+                    responseHeaders.put(name, values);
+                }
+            });
+            return new ResponseEntity(ownerResponse.getBody(), responseHeaders, ownerResponse.getStatusCode());
+        } catch (RestClientException e) {
+            logger.error("Owner " + owner + " unavailable: " + e.getMessage());
+            ErrorPayload errorPayload = new ErrorPayload();
+            errorPayload.setErrorCode(HttpStatus.SERVICE_UNAVAILABLE.toString());
+            errorPayload.setMessage("Owner instance unavailable");
+            return new ResponseEntity(errorPayload, HttpStatus.SERVICE_UNAVAILABLE);
+        }
+    }
+
+    /**
+     * Gets the current members of the cluster.
+     *
+     * @return the members
+     */
+    public List<String> getMembers() {
+        return ring.getMembers();
+    }
+
+    /**
+     * Replaces the membership of the cluster and rebalances the local storage:
+     * every id that is now owned by another member is sent to it and removed from this instance.
+     *
+     * @param members   the new members, as host:port
+     * @return how many ids were moved to other members
+     */
+    public synchronized int updateMembers(List<String> members) {
+        ring = new ConsistentHashRing(members, virtualNodes);
+        logger.info("Cluster membership changed to: " + members);
+
+        int moved = 0;
+        for (String id : diffService.getStoredIds()) {
+            String owner = findRemoteOwner(id);
+            if (owner != null && handOff(owner, id)) {
+                moved++;
+            }
+        }
+        logger.info("Rebalancing moved " + moved + " ids");
+        return moved;
+    }
+
+    /**
+     * Sends both sides of a data set to its new owner, removing it from this instance
+     * once the owner has accepted them. A data set updated while it was being sent, by a request
+     * admitted before the membership changed, is not removed but sent again.
+     *
+     * @param owner the new owner, as host:port
+     * @param id    the unique identifier of a data set
+     * @return whether the data set was moved
+     */
+    private boolean handOff(String owner, String id) {
+        for (int attempt = 0; attempt < MAX_HAND_OFF_ATTEMPTS; attempt++) {
+            //the version is read first, so the data sent is never older than the version removed
+            String dataVersion = diffService.findDataVersion(id);
+            Base64Data base64Data = diffService.findData(id);
+            if (dataVersion == null || base64Data == null) {
+                return false;
+            }
+            if (!sendSide(owner, id, "left", base64Data.getLeftData())
+                    || !sendSide(owner, id, "right", base64Data.getRightData())) {
+                logger.error("Could not move id " + id + " to " + owner + ", keeping it locally");
+                return false;
+            }
+            if (diffService.removeData(id, dataVersion)) {
+                return true;
+            }
+            logger.info("Id " + id + " was updated while moving to " + owner + ", sending it again");
+        }
+        logger.error("Id " + id + " kept changing while moving to " + owner + ", keeping it locally");
+        return false;
+    }
+
+    /**
+     * Sends one side of a data set to another member. Empty sides are skipped.
+     *
+     * @param owner the owner member, as host:port
+     * @param id    the unique identifier of a data set
+     * @param side  left or right
+     * @param data  encoded base 64 data of this side
+     * @return whether the side was accepted by the owner
+     */
+    private boolean sendSide(String owner, String id, String side, String data) {
+        if (data == null || data.isEmpty()) {
+            return true;
+        }
+        Base64DataPayload payload = new Base64DataPayload();
+        payload.setData(data);
+        ResponseEntity response = forward(owner, HttpMethod.POST, diffPath(id) + "/" + side, payload);
+        return response.getStatusCode().is2xxSuccessful();
+    }
+
+    /**
+     * Parses the comma separated list of members.
+     *
+     * @param members   comma separated list of members
+     * @return the members, empty if none is configured
+     */
+    private static List<String> parseMembers(String members) {
+        List<String> parsed = new ArrayList<>();
+        for (String member : Arrays.asList(members.split(","))) {
+            if (!member.trim().isEmpty()) {
+                parsed.add(member.trim());
+            }
+        }
+        return parsed;
+    }
+}
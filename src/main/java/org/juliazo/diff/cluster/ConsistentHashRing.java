@@ -0,0 +1,116 @@
+package org.juliazo.diff.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Consistent hash ring mapping ids to the cluster member that owns them.
+ *
+ * Each member is placed on the ring several times (virtual nodes) so ids are spread
+ * evenly across members and only about 1/N of the ids move when a member joins or leaves.
+ * Instances of this class are immutable, a membership change builds a new ring.
+ */
+public class ConsistentHashRing {
+
+    /**
+     * Ring positions, ordered by hash, pointing to the member that owns them.
+     */
+    private final TreeMap<Long, String> ring = new TreeMap<>();
+
+    /**
+     * Members of the ring, in the order they were provided.
+     */
+    private final List<String> members;
+
+    /**
+     * Instantiates a new Consistent hash ring.
+     *
+     * @param members       the members of the ring, as host:port
+     * @param virtualNodes  how many positions each member takes on the ring
+     */
+    public ConsistentHashRing(Collection<String> members, int virtualNodes) {
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("Virtual nodes must be at least 1");
+        }
+        this.members = Collections.unmodifiableList(new ArrayList<>(members));
+        for (String member : this.members) {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.put(hash(member + "#" + i), member);
+            }
+        }
+    }
+
+    /**
+     * Finds the member that owns the given id: the first ring position
+     * clockwise from the hash of the id.
+     *
+     * @param id    the unique identifier of a data set
+     * @return the owner member or null if the ring is empty
+     */
+    public String ownerOf(String id) {
+        if (ring.isEmpty()) {
+            return null;
+        }
+        SortedMap<Long, String> tail = ring.tailMap(hash(id));
+        return tail.isEmpty() ? ring.firstEntry().getValue() : tail.get(tail.firstKey());
+    }
+
+    /**
+     * Gets members.
+     *
+     * @return the members
+     */
+    public List<String> getMembers() {
+        return members;
+    }
+
+    /**
+     * Whether the ring has no members.
+     *
+     * @return the boolean
+     */
+    public boolean isEmpty() {
+        return ring.isEmpty();
+    }
+
+    /**
+     * Counts how many ring positions each member holds. Used to check the balance of the ring.
+     *
+     * @return the number of positions per member
+     */
+    Map<String, Integer> positionsPerMember() {
+        Map<String, Integer> positions = new TreeMap<>();
+        for (String member : ring.values()) {
+            positions.merge(member, 1, Integer::sum);
+        }
+        return positions;
+    }
+
+    /**
+     * Hashes a key to a position on the ring using the first 8 bytes of its MD5 digest.
+     * MD5 is used for its distribution, not for security.
+     *
+     * @param key   the key
+     * @return the position on the ring
+     */
+    static long hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+            long hash = 0;
+            for (int i = 0; i < 8; i++) {
+                hash = (hash << 8) | (digest[i] & 0xFF);
+            }
+            return hash;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 not available", e);
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package org.juliazo.diff.commons.buffer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock-free pool of reusable byte arrays, in size classes of powers of two, shared by the requests
+ * that decode data and by the comparisons that read sides in chunks, so they do not allocate new arrays
+ * each time. An array is acquired from the smallest class holding the size requested and released to
+ * the same class; arrays larger than the largest class are allocated and discarded as before, and
+ * arrays released while the pool holds its limit of bytes are discarded as well.
+ *
+ * Each class is a fixed number of slots of an atomic array: an array is taken by clearing its slot
+ * and released by filling an empty one, so neither locks nor allocates.
+ */
+public class ByteArrayPool {
+
+    /**
+     * Size of the smallest class, in bytes.
+     */
+    public static final int MIN_CLASS_SIZE = 1 << 12;
+
+    /**
+     * Arrays available for reuse, {@link #arraysPerClass} slots per class, from the smallest class.
+     */
+    private final AtomicReferenceArray<byte[]> slots;
+
+    /**
+     * How many arrays are kept for reuse on each class.
+     */
+    private final int arraysPerClass;
+
+    /**
+     * Size of the largest class, in bytes.
+     */
+    private final int maxClassSize;
+
+    /**
+     * Most bytes held by the arrays available for reuse.
+     */
+    private final long maxPooledBytes;
+
+    /**
+     * Bytes held by the arrays available for reuse.
+     */
+    private final AtomicLong pooledBytes = new AtomicLong();
+
+    /**
+     * Arrays acquired and not released yet.
+     */
+    private final AtomicInteger outstanding = new AtomicInteger();
+
+    /**
+     * Instantiates a new Byte array pool.
+     *
+     * @param arraysPerClass    how many arrays are kept for reuse on each class
+     * @param maxArrayBytes     largest array kept for reuse, in bytes, rounded up to a power of two
+     * @param maxPooledBytes    most bytes held by the arrays kept for reuse
+     */
+    public ByteArrayPool(int arraysPerClass, int maxArrayBytes, long maxPooledBytes) {
+        if (arraysPerClass < 1 || maxArrayBytes < 1 || maxArrayBytes > 1 << 30 || maxPooledBytes < 0) {
+            throw new IllegalArgumentException("Invalid byte array pool limits");
+        }
+        this.arraysPerClass = arraysPerClass;
+        this.maxClassSize = classSize(maxArrayBytes);
+        this.maxPooledBytes = maxPooledBytes;
+        this.slots = new AtomicReferenceArray<>(arraysPerClass * (sizeClass(maxClassSize) + 1));
+    }
+
+    /**
+     * Takes an array from the pool, or a new one if its class is empty. Its content is not cleared.
+     *
+     * @param minSize   how many bytes are needed
+     * @return the array, at least minSize long, must be released once it is no longer used
+     */
+    public byte[] acquire(int minSize) {
+        outstanding.incrementAndGet();
+        if (minSize > maxClassSize) {
+            return new byte[minSize];
+        }
+        int size = classSize(minSize);
+        int first = sizeClass(size) * arraysPerClass;
+        for (int slot = first; slot < first + arraysPerClass; slot++) {
+            byte[] array = slots.get(slot);
+            if (array != null && slots.compareAndSet(slot, array, null)) {
+                pooledBytes.addAndGet(-size);
+                return array;
+            }
+        }
+        return new byte[size];
+    }
+
+    /**
+     * Returns an array to the pool. The array must not be used afterwards.
+     *
+     * @param array the array, acquired from this pool
+     */
+    public void release(byte[] array) {
+        outstanding.decrementAndGet();
+        int size = array.length;
+        //arrays beyond the largest class were allocated with the exact size requested
+        if (!pooled(size)) {
+            return;
+        }
+        if (pooledBytes.addAndGet(size) > maxPooledBytes) {
+            pooledBytes.addAndGet(-size);
+            return;
+        }
+        int first = sizeClass(size) * arraysPerClass;
+        for (int slot = first; slot < first + arraysPerClass; slot++) {
+            if (slots.get(slot) == null && slots.compareAndSet(slot, null, array)) {
+                return;
+            }
+        }
+        pooledBytes.addAndGet(-size);
+    }
+
+    /**
+     * Takes a growable buffer, whose arrays come from the pool.
+     *
+     * @param expectedSize  how many bytes are expected to be written, 0 if unknown
+     * @return the buffer, must be released once it is no longer used
+     */
+    public PooledBuffer buffer(int expectedSize) {
+        return new PooledBuffer(acquire(Math.max(expectedSize, 1)));
+    }
+
+    /**
+     * Gets how many arrays are available for reuse.
+     *
+     * @return the available arrays
+     */
+    public int getAvailable() {
+        int available = 0;
+        for (int slot = 0; slot < slots.length(); slot++) {
+            if (slots.get(slot) != null) {
+                available++;
+            }
+        }
+        return available;
+    }
+
+    /**
+     * Gets how many bytes the arrays available for reuse hold.
+     *
+     * @return the pooled bytes
+     */
+    public long getPooledBytes() {
+        return pooledBytes.get();
+    }
+
+    /**
+     * Gets how many arrays were acquired and not released yet. Not 0 once every user of the pool
+     * is done means an array leaked.
+     *
+     * @return the outstanding arrays
+     */
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+
+    /**
+     * Checks whether arrays of a size are kept for reuse.
+     *
+     * @param size  the size of the array, in bytes
+     * @return whether the size is the size of a class
+     */
+    private boolean pooled(int size) {
+        return size <= maxClassSize && size == classSize(size);
+    }
+
+    /**
+     * Rounds a size up to the size of its class.
+     *
+     * @param size  the size, in bytes
+     * @return the size of the smallest class holding it
+     */
+    private static int classSize(int size) {
+        return size <= MIN_CLASS_SIZE ? MIN_CLASS_SIZE : Integer.highestOneBit(size - 1) << 1;
+    }
+
+    /**
+     * Gets the index of a class, 0 for the smallest one.
+     *
+     * @param classSize the size of the class
+     * @return the index
+     */
+    private static int sizeClass(int classSize) {
+        return Integer.numberOfTrailingZeros(classSize) - Integer.numberOfTrailingZeros(MIN_CLASS_SIZE);
+    }
+
+    /**
+     * A growable buffer whose arrays are taken from the pool and returned to it, growing into a larger
+     * array of the pool when full.
+     */
+    public class PooledBuffer extends OutputStream {
+
+        /**
+         * The backing array, null once released.
+         */
+        private byte[] array;
+
+        /**
+         * How many bytes were written.
+         */
+        private int count;
+
+        /**
+         * Instantiates a new Pooled buffer.
+         *
+         * @param array the initial array, acquired from the pool
+         */
+        private PooledBuffer(byte[] array) {
+            this.array = array;
+        }
+
+        @Override
+        public void write(int b) {
+            ensureCapacity(count + 1);
+            array[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            ensureCapacity(count + length);
+            System.arraycopy(bytes, offset, array, count, length);
+            count += length;
+        }
+
+        /**
+         * Appends every byte of a stream, read straight into the backing array, which grows as needed.
+         *
+         * @param in    the stream, read until its end
+         * @throws IOException if the stream cannot be read
+         */
+        public void readFrom(InputStream in) throws IOException {
+            int read;
+            do {
+                if (count == array.length) {
+                    ensureCapacity(count + 1);
+                }
+                read = in.read(array, count, array.length - count);
+                if (read > 0) {
+                    count += read;
+                }
+            } while (read >= 0);
+        }
+
+        /**
+         * Discards the bytes written, keeping the backing array.
+         */
+        public void reset() {
+            count = 0;
+        }
+
+        /**
+         * Gets how many bytes were written.
+         *
+         * @return the size
+         */
+        public int size() {
+            return count;
+        }
+
+        /**
+         * Gets the backing array, holding the bytes written up to {@link #size()}. It is only valid
+         * until the buffer grows or is released.
+         *
+         * @return the backing array
+         */
+        public byte[] array() {
+            return array;
+        }
+
+        /**
+         * Hands the bytes written over to the caller, who keeps them once the buffer is released.
+         * The backing array itself is handed over, without copying, when the pool would not keep it,
+         * i.e. when it is larger than the largest class, and at most an eighth of it is left unused;
+         * the bytes are then found up to {@link #size()}. Otherwise the bytes are copied into an array
+         * of their size and the backing array goes back to the pool on release.
+         *
+         * @return the array holding the bytes written, up to {@link #size()}
+         */
+        public byte[] detach() {
+            if (pooled(array.length) || array.length - count > array.length >>> 3) {
+                byte[] bytes = new byte[count];
+                System.arraycopy(array, 0, bytes, 0, count);
+                return bytes;
+            }
+            byte[] bytes = array;
+            //the array now belongs to the caller and is not returned to the pool
+            array = null;
+            outstanding.decrementAndGet();
+            return bytes;
+        }
+
+        /**
+         * Returns the backing array to the pool. The buffer must not be used afterwards.
+         */
+        public void release() {
+            if (array != null) {
+                ByteArrayPool.this.release(array);
+                array = null;
+            }
+        }
+
+        /**
+         * Grows the backing array, at least doubling it, into a larger array of the pool.
+         *
+         * @param capacity  how many bytes the array must hold
+         */
+        private void ensureCapacity(int capacity) {
+            if (capacity <= array.length) {
+                return;
+            }
+            if (capacity < 0) {
+                throw new OutOfMemoryError("Buffer larger than 2 GB");
+            }
+            byte[] larger = acquire((int) Math.min(Integer.MAX_VALUE - 8, Math.max(capacity, 2L * array.length)));
+            System.arraycopy(array, 0, larger, 0, count);
+            ByteArrayPool.this.release(array);
+            array = larger;
+        }
+    }
+}
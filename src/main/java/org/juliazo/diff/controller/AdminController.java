@@ -0,0 +1,98 @@
+package org.juliazo.diff.controller;
+
+import org.juliazo.diff.model.CompletionState;
+import org.juliazo.diff.model.ErrorPayload;
+import org.juliazo.diff.service.DiffService;
+import org.juliazo.diff.storage.StorageCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Admin Controller. Operational endpoints, not meant to be exposed to the clients of the diff API.
+ */
+@RestController
+@RequestMapping("/v1/admin")
+public class AdminController {
+
+    /**
+     * The Diff Service.
+     */
+    private final DiffService diffService;
+
+    /**
+     * The constant logger.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(AdminController.class);
+
+    /**
+     * Instantiates a new Admin controller.
+     *
+     * @param diffService the diff service
+     */
+    @Autowired
+    public AdminController(DiffService diffService) {
+        this.diffService = diffService;
+    }
+
+    /**
+     * Endpoint GET: returns the metrics of the storage codec, such as the compression ratio
+     * and the time spent encoding and decoding.
+     *
+     * @return the response entity containing the {@link org.juliazo.diff.storage.CodecMetrics}
+     *          or an error message when no codec is configured
+     */
+    @RequestMapping(method = RequestMethod.GET, value = "/codec", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity getCodecMetrics() {
+        StorageCodec storageCodec = diffService.getStorageCodec();
+        if (storageCodec == null) {
+            logger.debug("Codec metrics requested but no codec is configured");
+            ErrorPayload errorPayload = new ErrorPayload();
+            errorPayload.setErrorCode(HttpStatus.NOT_FOUND.toString());
+            errorPayload.setMessage("No storage codec configured");
+            return new ResponseEntity(errorPayload, HttpStatus.NOT_FOUND);
+        }
+        return new ResponseEntity(storageCodec.getMetrics(), HttpStatus.OK);
+    }
+
+    /**
+     * Endpoint GET: returns the memory used by the storage, the bytes held by the data sets
+     * and by the diffs computed in background, against their budgets, and the data sets holding the most bytes.
+     *
+     * @param largest   how many of the largest data sets are listed
+     * @return the response entity containing the {@link org.juliazo.diff.model.StorageUsage}
+     */
+    @RequestMapping(method = RequestMethod.GET, value = "/storage", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity getStorageUsage(@RequestParam(value = "largest", defaultValue = "10") int largest) {
+        logger.debug("Storage usage requested with the " + largest + " largest ids");
+        return new ResponseEntity(diffService.getStorageUsage(largest), HttpStatus.OK);
+    }
+
+    /**
+     * Endpoint GET: lists the ids stored on this instance on a completion state, e.g. the ones only
+     * missing the right side, least recently updated first. Paginated: each page returns the cursor of the next one.
+     *
+     * @param state     LEFT, RIGHT or BOTH: which sides were received
+     * @param minAgeMs  only ids not updated for at least this time, in milliseconds
+     * @param maxAgeMs  only ids updated within this time, in milliseconds
+     * @param after     the cursor returned with the previous page
+     * @param limit     maximum number of ids on the page
+     * @return the response entity containing the {@link org.juliazo.diff.model.IdPage} or an error message
+     */
+    @RequestMapping(method = RequestMethod.GET, value = "/ids", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity listIds(@RequestParam("state") CompletionState state,
+            @RequestParam(value = "minAgeMs", required = false) Long minAgeMs,
+            @RequestParam(value = "maxAgeMs", required = false) Long maxAgeMs,
+            @RequestParam(value = "after", required = false) String after,
+            @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        logger.debug("Listing ids on state " + state);
+        return diffService.listIds(state, minAgeMs, maxAgeMs, after, limit);
+    }
+}
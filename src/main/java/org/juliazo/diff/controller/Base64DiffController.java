@@ -1,15 +1,20 @@
 package org.juliazo.diff.controller;
 
+import org.juliazo.diff.cluster.ClusterService;
 import org.juliazo.diff.model.Base64DataPayload;
+import org.juliazo.diff.model.DiffQuery;
 import org.juliazo.diff.service.DiffService;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
@@ -27,6 +32,11 @@ public class Base64DiffController {
      */
     private final DiffService diffService;
 
+    /**
+     * The Cluster Service. Finds the instance that owns each id when running in cluster mode.
+     */
+    private final ClusterService clusterService;
+
     /**
      * The constant logger.
      */
@@ -35,11 +45,13 @@ public class Base64DiffController {
     /**
      * Instantiates a new Base 64 diff controller.
      *
-     * @param diffService the diff service
+     * @param diffService     the diff service
+     * @param clusterService  the cluster service
      */
     @Autowired
-    public Base64DiffController(DiffService diffService) {
+    public Base64DiffController(DiffService diffService, ClusterService clusterService) {
         this.diffService = diffService;
+        this.clusterService = clusterService;
     }
 
     /**
@@ -47,12 +59,22 @@ public class Base64DiffController {
      *
      * @param id                unique identifier, will be used to find the diff afterwards
      * @param base64DataPayload the request payload containing the encoded data for the Left side of the diff
-     * @return the response entity containing the request payload in case of success or an error message
+     * @param ifMatch           the entity tags of the Left side known by the client, if the update is conditional
+     * @param forwardedBy       the member that forwarded this request, if any
+     * @return the response entity containing the request payload in case of success,
+     *              precondition failed if the client's entity tag is not current, or an error message
      */
     @RequestMapping(method = RequestMethod.POST, value = "/left", consumes = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity inputLeft(@PathVariable String id, @RequestBody Base64DataPayload base64DataPayload) {
+    public ResponseEntity inputLeft(@PathVariable String id, @RequestBody Base64DataPayload base64DataPayload,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestHeader(value = ClusterService.FORWARDED_HEADER, required = false) String forwardedBy) {
+        String owner = clusterService.findRemoteOwner(id, forwardedBy);
+        if (owner != null) {
+            return clusterService.forward(owner, HttpMethod.POST, ClusterService.diffPath(id) + "/left",
+                    base64DataPayload, ifMatchHeaders(ifMatch));
+        }
         logger.info("Receiving Left Data for id: " + id);
-        return diffService.inputLeft(id, base64DataPayload.getData());
+        return diffService.inputLeft(id, base64DataPayload.getData(), ifMatch);
     }
 
     /**
@@ -60,31 +82,67 @@ public class Base64DiffController {
      *
      * @param id                unique identifier, will be used to find the diff afterwards
      * @param base64DataPayload the request payload containing the encoded data for the Right side of the diff
-     * @return the response entity containing the request payload in case of success or an error message
+     * @param ifMatch           the entity tags of the Right side known by the client, if the update is conditional
+     * @param forwardedBy       the member that forwarded this request, if any
+     * @return the response entity containing the request payload in case of success,
+     *              precondition failed if the client's entity tag is not current, or an error message
      */
     @RequestMapping(method = RequestMethod.POST, value = "/right", consumes = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity inputRight(@PathVariable String id, @RequestBody Base64DataPayload base64DataPayload) {
+    public ResponseEntity inputRight(@PathVariable String id, @RequestBody Base64DataPayload base64DataPayload,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestHeader(value = ClusterService.FORWARDED_HEADER, required = false) String forwardedBy) {
+        String owner = clusterService.findRemoteOwner(id, forwardedBy);
+        if (owner != null) {
+            return clusterService.forward(owner, HttpMethod.POST, ClusterService.diffPath(id) + "/right",
+                    base64DataPayload, ifMatchHeaders(ifMatch));
+        }
         logger.info("Receiving Right Data for id: " + id);
-        return diffService.inputRight(id, base64DataPayload.getData());
+        return diffService.inputRight(id, base64DataPayload.getData(), ifMatch);
 
     }
 
     /**
      * Endpoint GET: returns the resulting diff of the Left and Right data provided on the POST endpoints.
      *
-     * @param id    unique identifier, must be the same for each side of the diff data
+     * @param id            unique identifier, must be the same for each side of the diff data
+     * @param diffQuery     the optional query parameters: byte range (from, to), mode (full, summary)
+     *                      largest gap merged between differences (maxGap) and how many of the
+     *                      largest differences are returned (top) in which order (length, offset)
+     * @param ifNoneMatch   the entity tags of the diff results known by the client, if any
+     * @param forwardedBy   the member that forwarded this request, if any
      * @return      the response entity containing a set of information
      *              on the diff operation {@link org.juliazo.diff.model.DiffResult}
-     *              in case of success or containing an error message.
+     *              in case of success, not modified if the client's entity tag is current,
+     *              or containing an error message.
      */
     @RequestMapping(method = RequestMethod.GET, produces  = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity getDiff(@PathVariable String id) {
+    public ResponseEntity getDiff(@PathVariable String id, DiffQuery diffQuery,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = ClusterService.FORWARDED_HEADER, required = false) String forwardedBy) {
+        String owner = clusterService.findRemoteOwner(id, forwardedBy);
+        if (owner != null) {
+            HttpHeaders headers = new HttpHeaders();
+            if (ifNoneMatch != null) {
+                headers.setIfNoneMatch(ifNoneMatch);
+            }
+            return clusterService.forward(owner, HttpMethod.GET,
+                    ClusterService.diffPath(id) + diffQuery.toQueryString(), null, headers);
+        }
         logger.info("Performing Diff operation on id: " + id);
-        return diffService.getDiffResult(id);
-
-
+        return diffService.getDiffResult(id, diffQuery, ifNoneMatch);
     }
 
-
-
+    /**
+     * Mounts the headers of a conditional update forwarded to the owner.
+     *
+     * @param ifMatch   the entity tags known by the client, if any
+     * @return the headers
+     */
+    static HttpHeaders ifMatchHeaders(String ifMatch) {
+        HttpHeaders headers = new HttpHeaders();
+        if (ifMatch != null) {
+            headers.set(HttpHeaders.IF_MATCH, ifMatch);
+        }
+        return headers;
+    }
 }
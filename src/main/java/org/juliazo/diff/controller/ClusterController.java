@@ -0,0 +1,75 @@
+package org.juliazo.diff.controller;
+
+import org.juliazo.diff.cluster.ClusterService;
+import org.juliazo.diff.model.ErrorPayload;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * Cluster Controller. Handles the membership of the cluster, see {@link ClusterService}.
+ */
+@RestController
+@RequestMapping("/v1/cluster/members")
+public class ClusterController {
+
+    /**
+     * The Cluster Service.
+     */
+    private final ClusterService clusterService;
+
+    /**
+     * The constant logger.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(ClusterController.class);
+
+    /**
+     * Instantiates a new Cluster controller.
+     *
+     * @param clusterService the cluster service
+     */
+    @Autowired
+    public ClusterController(ClusterService clusterService) {
+        this.clusterService = clusterService;
+    }
+
+    /**
+     * Endpoint GET: returns the current members of the cluster.
+     *
+     * @return the response entity containing the list of members
+     */
+    @RequestMapping(method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity getMembers() {
+        return new ResponseEntity(clusterService.getMembers(), HttpStatus.OK);
+    }
+
+    /**
+     * Endpoint PUT: replaces the members of the cluster and rebalances the ids stored on this instance.
+     * Must be sent to every member of the cluster.
+     *
+     * @param members   the new members, as host:port
+     * @return the response entity containing the new list of members or an error message
+     */
+    @RequestMapping(method = RequestMethod.PUT, consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity updateMembers(@RequestBody List<String> members) {
+        logger.info("Updating cluster members: " + members);
+        if (members == null || members.isEmpty()) {
+            ErrorPayload errorPayload = new ErrorPayload();
+            errorPayload.setErrorCode(HttpStatus.BAD_REQUEST.toString());
+            errorPayload.setMessage("At least one member is required");
+            return new ResponseEntity(errorPayload, HttpStatus.BAD_REQUEST);
+        }
+        clusterService.updateMembers(members);
+        return new ResponseEntity(clusterService.getMembers(), HttpStatus.OK);
+    }
+}
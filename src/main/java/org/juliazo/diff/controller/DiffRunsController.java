@@ -0,0 +1,92 @@
+package org.juliazo.diff.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.juliazo.diff.cluster.ClusterService;
+import org.juliazo.diff.service.DiffService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.net.URI;
+
+/**
+ * Diff Runs Controller. Responsible for handling HTTP requests streaming the differences of a data set
+ * in binary, see {@link DiffService#streamDifferences(String)}.
+ */
+@RestController
+@RequestMapping("/v1/diff/{id}/runs")
+public class DiffRunsController {
+
+    /**
+     * The Diff Service. Implementation of each endpoint mapped here.
+     */
+    private final DiffService diffService;
+
+    /**
+     * The Cluster Service. Finds the instance that owns each id when running in cluster mode.
+     */
+    private final ClusterService clusterService;
+
+    /**
+     * Writes the error messages.
+     */
+    private final ObjectMapper objectMapper;
+
+    /**
+     * The constant logger.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(DiffRunsController.class);
+
+    /**
+     * Instantiates a new Diff runs controller.
+     *
+     * @param diffService     the diff service
+     * @param clusterService  the cluster service
+     * @param objectMapper    the object mapper
+     */
+    @Autowired
+    public DiffRunsController(DiffService diffService, ClusterService clusterService, ObjectMapper objectMapper) {
+        this.diffService = diffService;
+        this.clusterService = clusterService;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Endpoint GET: streams the differences of the Left and Right data provided on the POST endpoints.
+     * Requests for ids owned by other members are redirected to the owner, so the stream is not
+     * relayed through this instance.
+     *
+     * @param id            unique identifier, must be the same for each side of the diff data
+     * @param forwardedBy   the member that forwarded this request, if any
+     * @return the response entity whose body streams the differences, or containing an error message as JSON
+     */
+    @RequestMapping(method = RequestMethod.GET)
+    public ResponseEntity<StreamingResponseBody> streamDifferences(@PathVariable String id,
+            @RequestHeader(value = ClusterService.FORWARDED_HEADER, required = false) String forwardedBy) {
+        String owner = clusterService.findRemoteOwner(id, forwardedBy);
+        if (owner != null) {
+            logger.debug("Redirecting differences of id " + id + " to " + owner);
+            return ResponseEntity.status(HttpStatus.TEMPORARY_REDIRECT)
+                    .location(URI.create("http://" + owner + ClusterService.diffPath(id) + "/runs")).build();
+        }
+        logger.info("Streaming differences of id: " + id);
+        ResponseEntity response = diffService.streamDifferences(id);
+        if (response.getBody() instanceof StreamingResponseBody) {
+            return response;
+        }
+        //the body must be streamed as well, so the error message is written by hand
+        Object errorPayload = response.getBody();
+        return ResponseEntity.status(response.getStatusCode())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(out -> objectMapper.writeValue(out, errorPayload));
+    }
+}
@@ -0,0 +1,66 @@
+package org.juliazo.diff.controller;
+
+import org.juliazo.diff.model.ExportRequest;
+import org.juliazo.diff.service.ExportService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Export Controller. Responsible for handling the bulk exports of the data sets and their diffs
+ * to files on the export directory of this instance.
+ */
+@RestController
+@RequestMapping("/v1/admin/export")
+public class ExportController {
+
+    /**
+     * The Export Service. Implementation of each endpoint mapped here.
+     */
+    private final ExportService exportService;
+
+    /**
+     * The constant logger.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(ExportController.class);
+
+    /**
+     * Instantiates a new Export controller.
+     *
+     * @param exportService the export service
+     */
+    @Autowired
+    public ExportController(ExportService exportService) {
+        this.exportService = exportService;
+    }
+
+    /**
+     * Endpoint POST for starting an export to an NDJSON file, written in background,
+     * or resuming an interrupted one from its checkpoint.
+     *
+     * @param exportRequest the request payload containing the file, relative to the export directory
+     * @return the response entity containing the {@link org.juliazo.diff.model.ExportStatus} or an error message
+     */
+    @RequestMapping(method = RequestMethod.POST, consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity start(@RequestBody ExportRequest exportRequest) {
+        logger.info((exportRequest.isResume() ? "Resuming" : "Starting") + " export to file: " + exportRequest.getFile());
+        return exportService.start(exportRequest.getFile(), exportRequest.isResume());
+    }
+
+    /**
+     * Endpoint GET: returns the progress of the latest export.
+     *
+     * @return the response entity containing the {@link org.juliazo.diff.model.ExportStatus} or an error message
+     */
+    @RequestMapping(method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity getStatus() {
+        return exportService.getStatus();
+    }
+}
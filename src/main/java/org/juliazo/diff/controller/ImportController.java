@@ -0,0 +1,65 @@
+package org.juliazo.diff.controller;
+
+import org.juliazo.diff.model.ImportRequest;
+import org.juliazo.diff.service.ImportService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Import Controller. Responsible for handling the bulk imports of data sets from files
+ * on the import directory of this instance.
+ */
+@RestController
+@RequestMapping("/v1/admin/import")
+public class ImportController {
+
+    /**
+     * The Import Service. Implementation of each endpoint mapped here.
+     */
+    private final ImportService importService;
+
+    /**
+     * The constant logger.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(ImportController.class);
+
+    /**
+     * Instantiates a new Import controller.
+     *
+     * @param importService the import service
+     */
+    @Autowired
+    public ImportController(ImportService importService) {
+        this.importService = importService;
+    }
+
+    /**
+     * Endpoint POST for starting the import of an NDJSON file, read in background.
+     *
+     * @param importRequest the request payload containing the file, relative to the import directory
+     * @return the response entity containing the {@link org.juliazo.diff.model.ImportStatus} or an error message
+     */
+    @RequestMapping(method = RequestMethod.POST, consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity start(@RequestBody ImportRequest importRequest) {
+        logger.info("Starting import of file: " + importRequest.getFile());
+        return importService.start(importRequest.getFile());
+    }
+
+    /**
+     * Endpoint GET: returns the progress of the latest import, including the records rejected.
+     *
+     * @return the response entity containing the {@link org.juliazo.diff.model.ImportStatus} or an error message
+     */
+    @RequestMapping(method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity getStatus() {
+        return importService.getStatus();
+    }
+}
@@ -0,0 +1,134 @@
+package org.juliazo.diff.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.tomcat.util.codec.binary.Base64;
+import org.juliazo.diff.cluster.ClusterService;
+import org.juliazo.diff.model.Base64DataPayload;
+import org.juliazo.diff.service.IngestService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+
+/**
+ * Ingest Controller. Responsible for handling HTTP requests of the streaming ingest path,
+ * which accepts the same payload of a POST to a side and decodes it while it is read,
+ * or the raw bytes of the side as application/octet-stream.
+ */
+@RestController
+@RequestMapping("/v1/diff/{id}/{side:left|right}/ingest")
+public class IngestController {
+
+    /**
+     * The Ingest Service. Implementation of each endpoint mapped here.
+     */
+    private final IngestService ingestService;
+
+    /**
+     * The Cluster Service. Finds the instance that owns each id when running in cluster mode.
+     */
+    private final ClusterService clusterService;
+
+    /**
+     * Reads the payload of the requests forwarded to other members.
+     */
+    private final ObjectMapper objectMapper;
+
+    /**
+     * The constant logger.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(IngestController.class);
+
+    /**
+     * Instantiates a new Ingest controller.
+     *
+     * @param ingestService   the ingest service
+     * @param clusterService  the cluster service
+     * @param objectMapper    the object mapper
+     */
+    @Autowired
+    public IngestController(IngestService ingestService, ClusterService clusterService, ObjectMapper objectMapper) {
+        this.ingestService = ingestService;
+        this.clusterService = clusterService;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Endpoint POST for inputting data on a side of the diff, decoded while the request is read.
+     *
+     * @param id            unique identifier, will be used to find the diff afterwards
+     * @param side          left or right
+     * @param request       the request, whose body contains the encoded data for the side of the diff
+     * @param ifMatch       the entity tags of the side known by the client, if the update is conditional
+     * @param forwardedBy   the member that forwarded this request, if any
+     * @return the response entity containing the request payload in case of success or an error message
+     * @throws IOException if the request body cannot be read
+     */
+    @RequestMapping(method = RequestMethod.POST, consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity ingest(@PathVariable String id, @PathVariable String side, HttpServletRequest request,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestHeader(value = ClusterService.FORWARDED_HEADER, required = false) String forwardedBy)
+            throws IOException {
+        String owner = clusterService.findRemoteOwner(id, forwardedBy);
+        if (owner != null) {
+            Base64DataPayload base64DataPayload = objectMapper.readValue(request.getInputStream(),
+                    Base64DataPayload.class);
+            return clusterService.forward(owner, HttpMethod.POST, ClusterService.diffPath(id) + "/" + side + "/ingest",
+                    base64DataPayload, Base64DiffController.ifMatchHeaders(ifMatch));
+        }
+        logger.info("Ingesting " + side + " data for id: " + id);
+        return ingestService.ingest(id, side, request.getInputStream(), request.getContentLengthLong(),
+                ifMatch);
+    }
+
+    /**
+     * Endpoint POST for inputting the raw bytes of a side of the diff, without Base64 nor JSON.
+     * Requests for ids owned by other members are forwarded encoded, on the JSON payload.
+     *
+     * @param id            unique identifier, will be used to find the diff afterwards
+     * @param side          left or right
+     * @param request       the request, whose body contains the bytes of the side of the diff
+     * @param ifMatch       the entity tags of the side known by the client, if the update is conditional
+     * @param forwardedBy   the member that forwarded this request, if any
+     * @return the response entity with the status of the update in case of success or an error message
+     * @throws IOException if the request body cannot be read
+     */
+    @RequestMapping(method = RequestMethod.POST, consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity ingestRaw(@PathVariable String id, @PathVariable String side, HttpServletRequest request,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestHeader(value = ClusterService.FORWARDED_HEADER, required = false) String forwardedBy)
+            throws IOException {
+        String owner = clusterService.findRemoteOwner(id, forwardedBy);
+        if (owner != null) {
+            Base64DataPayload base64DataPayload = new Base64DataPayload();
+            base64DataPayload.setData(Base64.encodeBase64String(StreamUtils.copyToByteArray(request.getInputStream())));
+            ResponseEntity response = clusterService.forward(owner, HttpMethod.POST,
+                    ClusterService.diffPath(id) + "/" + side + "/ingest", base64DataPayload,
+                    Base64DiffController.ifMatchHeaders(ifMatch));
+            if (!response.getStatusCode().is2xxSuccessful()) {
+                return response;
+            }
+            //as when handled locally, the sides are not sent back
+            HttpHeaders headers = new HttpHeaders();
+            if (response.getHeaders().getETag() != null) {
+                headers.setETag(response.getHeaders().getETag());
+            }
+            return new ResponseEntity(headers, response.getStatusCode());
+        }
+        logger.info("Ingesting raw " + side + " data for id: " + id);
+        return ingestService.ingestRaw(id, side, request.getInputStream(), request.getContentLengthLong(),
+                ifMatch);
+    }
+}
@@ -0,0 +1,89 @@
+package org.juliazo.diff.controller;
+
+import org.juliazo.diff.cluster.ClusterService;
+import org.juliazo.diff.service.SubscriptionService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.net.URI;
+
+/**
+ * Subscription Controller. Responsible for handling the subscriptions to the diff of an id,
+ * pushed as server-sent events.
+ */
+@RestController
+@RequestMapping("/v1/diff/{id}/events")
+public class SubscriptionController {
+
+    /**
+     * Header sent by clients reconnecting to a stream of events, with the id of the last event received.
+     */
+    public static final String LAST_EVENT_ID_HEADER = "Last-Event-ID";
+
+    /**
+     * The Subscription Service. Implementation of each endpoint mapped here.
+     */
+    private final SubscriptionService subscriptionService;
+
+    /**
+     * The Cluster Service. Finds the instance that owns each id when running in cluster mode.
+     */
+    private final ClusterService clusterService;
+
+    /**
+     * The constant logger.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(SubscriptionController.class);
+
+    /**
+     * Instantiates a new Subscription controller.
+     *
+     * @param subscriptionService   the subscription service
+     * @param clusterService        the cluster service
+     */
+    @Autowired
+    public SubscriptionController(SubscriptionService subscriptionService, ClusterService clusterService) {
+        this.subscriptionService = subscriptionService;
+        this.clusterService = clusterService;
+    }
+
+    /**
+     * Endpoint GET: subscribes to the diff of an id. An event named diff carrying the
+     * {@link org.juliazo.diff.model.DiffResult} is sent once both sides are present and again after each update.
+     *
+     * Subscriptions to an id owned by another member of the cluster are redirected to it,
+     * as events cannot be relayed by a forwarded request.
+     *
+     * @param id            unique identifier of the data set
+     * @param lastEventId   the id of the last event received, when reconnecting
+     * @return the response entity containing the stream of events, the redirection to the owner
+     *          or the unavailable status, without a body, when there are too many subscribers
+     */
+    @RequestMapping(method = RequestMethod.GET, produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> subscribe(@PathVariable String id,
+            @RequestHeader(value = LAST_EVENT_ID_HEADER, required = false) String lastEventId) {
+        String owner = clusterService.findRemoteOwner(id);
+        if (owner != null) {
+            logger.debug("Redirecting subscription on id " + id + " to " + owner);
+            return ResponseEntity.status(HttpStatus.TEMPORARY_REDIRECT)
+                    .location(URI.create("http://" + owner + ClusterService.diffPath(id) + "/events")).build();
+        }
+        logger.info("Subscribing to the diff of id: " + id);
+        SseEmitter emitter = subscriptionService.subscribe(id, lastEventId);
+        if (emitter == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+        }
+        return ResponseEntity.ok(emitter);
+    }
+}
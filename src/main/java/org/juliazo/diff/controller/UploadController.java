@@ -0,0 +1,175 @@
+package org.juliazo.diff.controller;
+
+import org.juliazo.diff.cluster.ClusterService;
+import org.juliazo.diff.model.Base64DataPayload;
+import org.juliazo.diff.model.UploadRequest;
+import org.juliazo.diff.service.UploadService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Upload Controller. Responsible for handling HTTP requests of chunked uploads,
+ * used for sides too large to be sent in a single request.
+ */
+@RestController
+@RequestMapping("/v1/diff/{id}/{side:left|right}/uploads")
+public class UploadController {
+
+    /**
+     * The Upload Service. Implementation of each endpoint mapped here.
+     */
+    private final UploadService uploadService;
+
+    /**
+     * The Cluster Service. Finds the instance that owns each id when running in cluster mode.
+     */
+    private final ClusterService clusterService;
+
+    /**
+     * The constant logger.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(UploadController.class);
+
+    /**
+     * Instantiates a new Upload controller.
+     *
+     * @param uploadService   the upload service
+     * @param clusterService  the cluster service
+     */
+    @Autowired
+    public UploadController(UploadService uploadService, ClusterService clusterService) {
+        this.uploadService = uploadService;
+        this.clusterService = clusterService;
+    }
+
+    /**
+     * Endpoint POST for starting an upload to a side of the diff
+     *
+     * @param id            unique identifier of the data set
+     * @param side          left or right
+     * @param uploadRequest the request payload containing how many chunks will be sent
+     * @param forwardedBy   the member that forwarded this request, if any
+     * @return the response entity containing the {@link org.juliazo.diff.model.UploadStatus} or an error message
+     */
+    @RequestMapping(method = RequestMethod.POST, consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity begin(@PathVariable String id, @PathVariable String side,
+            @RequestBody UploadRequest uploadRequest,
+            @RequestHeader(value = ClusterService.FORWARDED_HEADER, required = false) String forwardedBy) {
+        String owner = clusterService.findRemoteOwner(id, forwardedBy);
+        if (owner != null) {
+            return clusterService.forward(owner, HttpMethod.POST, path(id, side, ""), uploadRequest);
+        }
+        logger.info("Starting " + side + " upload for id: " + id);
+        return uploadService.begin(id, side, uploadRequest.getChunks());
+    }
+
+    /**
+     * Endpoint PUT for sending one chunk of an upload. Sending the same chunk again replaces it.
+     *
+     * @param id                unique identifier of the data set
+     * @param side              left or right
+     * @param uploadId          the upload id
+     * @param index             the chunk index, starting at 0
+     * @param base64DataPayload the request payload containing the encoded data of the chunk
+     * @param forwardedBy       the member that forwarded this request, if any
+     * @return the response entity containing the {@link org.juliazo.diff.model.UploadStatus} or an error message
+     */
+    @RequestMapping(method = RequestMethod.PUT, value = "/{uploadId}/chunks/{index}",
+            consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity putChunk(@PathVariable String id, @PathVariable String side,
+            @PathVariable String uploadId, @PathVariable int index,
+            @RequestBody Base64DataPayload base64DataPayload,
+            @RequestHeader(value = ClusterService.FORWARDED_HEADER, required = false) String forwardedBy) {
+        String owner = clusterService.findRemoteOwner(id, forwardedBy);
+        if (owner != null) {
+            return clusterService.forward(owner, HttpMethod.PUT, path(id, side, "/" + uploadId + "/chunks/" + index),
+                    base64DataPayload);
+        }
+        logger.debug("Receiving chunk " + index + " of upload " + uploadId + " for id: " + id);
+        return uploadService.putChunk(id, side, uploadId, index, base64DataPayload.getData());
+    }
+
+    /**
+     * Endpoint GET: returns the progress of an upload, including which chunks are missing.
+     *
+     * @param id            unique identifier of the data set
+     * @param side          left or right
+     * @param uploadId      the upload id
+     * @param forwardedBy   the member that forwarded this request, if any
+     * @return the response entity containing the {@link org.juliazo.diff.model.UploadStatus} or an error message
+     */
+    @RequestMapping(method = RequestMethod.GET, value = "/{uploadId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity getStatus(@PathVariable String id, @PathVariable String side,
+            @PathVariable String uploadId,
+            @RequestHeader(value = ClusterService.FORWARDED_HEADER, required = false) String forwardedBy) {
+        String owner = clusterService.findRemoteOwner(id, forwardedBy);
+        if (owner != null) {
+            return clusterService.forward(owner, HttpMethod.GET, path(id, side, "/" + uploadId), null);
+        }
+        return uploadService.getStatus(id, side, uploadId);
+    }
+
+    /**
+     * Endpoint POST for committing an upload to its side, once every chunk was sent.
+     *
+     * @param id            unique identifier of the data set
+     * @param side          left or right
+     * @param uploadId      the upload id
+     * @param forwardedBy   the member that forwarded this request, if any
+     * @return the response entity containing the same payload as a POST to the side or an error message
+     */
+    @RequestMapping(method = RequestMethod.POST, value = "/{uploadId}/commit")
+    public ResponseEntity commit(@PathVariable String id, @PathVariable String side,
+            @PathVariable String uploadId,
+            @RequestHeader(value = ClusterService.FORWARDED_HEADER, required = false) String forwardedBy) {
+        String owner = clusterService.findRemoteOwner(id, forwardedBy);
+        if (owner != null) {
+            return clusterService.forward(owner, HttpMethod.POST, path(id, side, "/" + uploadId + "/commit"), null);
+        }
+        logger.info("Committing " + side + " upload for id: " + id);
+        return uploadService.commit(id, side, uploadId);
+    }
+
+    /**
+     * Endpoint DELETE for aborting an upload, discarding the chunks sent.
+     *
+     * @param id            unique identifier of the data set
+     * @param side          left or right
+     * @param uploadId      the upload id
+     * @param forwardedBy   the member that forwarded this request, if any
+     * @return the response entity with no content or an error message
+     */
+    @RequestMapping(method = RequestMethod.DELETE, value = "/{uploadId}")
+    public ResponseEntity abort(@PathVariable String id, @PathVariable String side,
+            @PathVariable String uploadId,
+            @RequestHeader(value = ClusterService.FORWARDED_HEADER, required = false) String forwardedBy) {
+        String owner = clusterService.findRemoteOwner(id, forwardedBy);
+        if (owner != null) {
+            return clusterService.forward(owner, HttpMethod.DELETE, path(id, side, "/" + uploadId), null);
+        }
+        logger.info("Aborting " + side + " upload for id: " + id);
+        return uploadService.abort(id, side, uploadId);
+    }
+
+    /**
+     * Mounts the path of an upload request, used to forward it.
+     *
+     * @param id        unique identifier of the data set
+     * @param side      left or right
+     * @param suffix    the path after the uploads resource
+     * @return the path
+     */
+    private static String path(String id, String side, String suffix) {
+        return ClusterService.diffPath(id) + "/" + side + "/uploads" + suffix;
+    }
+}
@@ -0,0 +1,97 @@
+package org.juliazo.diff.controller;
+
+import org.juliazo.diff.cluster.ClusterService;
+import org.juliazo.diff.model.DiffQuery;
+import org.juliazo.diff.service.DiffService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Version Controller. Responsible for handling HTTP requests on the versions kept of each side.
+ */
+@RestController
+@RequestMapping("/v1/diff/{id}/{side:left|right}/versions")
+public class VersionController {
+
+    /**
+     * The Diff Service. Implementation of each endpoint mapped here.
+     */
+    private final DiffService diffService;
+
+    /**
+     * The Cluster Service. Finds the instance that owns each id when running in cluster mode.
+     */
+    private final ClusterService clusterService;
+
+    /**
+     * The constant logger.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(VersionController.class);
+
+    /**
+     * Instantiates a new Version controller.
+     *
+     * @param diffService     the diff service
+     * @param clusterService  the cluster service
+     */
+    @Autowired
+    public VersionController(DiffService diffService, ClusterService clusterService) {
+        this.diffService = diffService;
+        this.clusterService = clusterService;
+    }
+
+    /**
+     * Endpoint GET: lists the versions kept of a side.
+     *
+     * @param id            unique identifier of the data set
+     * @param side          left or right
+     * @param forwardedBy   the member that forwarded this request, if any
+     * @return the response entity containing the list of {@link org.juliazo.diff.model.SideVersion}
+     *          or an error message
+     */
+    @RequestMapping(method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity getVersions(@PathVariable String id, @PathVariable String side,
+            @RequestHeader(value = ClusterService.FORWARDED_HEADER, required = false) String forwardedBy) {
+        String owner = clusterService.findRemoteOwner(id, forwardedBy);
+        if (owner != null) {
+            return clusterService.forward(owner, HttpMethod.GET, ClusterService.diffPath(id) + "/" + side + "/versions",
+                    null);
+        }
+        logger.info("Listing " + side + " versions for id: " + id);
+        return diffService.getVersions(id, side);
+    }
+
+    /**
+     * Endpoint GET: returns the diff between two versions of a side.
+     *
+     * @param id            unique identifier of the data set
+     * @param side          left or right
+     * @param base          the version compared from
+     * @param target        the version compared to
+     * @param diffQuery     the optional query parameters: byte range (from, to) and mode (full, summary)
+     * @param forwardedBy   the member that forwarded this request, if any
+     * @return the response entity containing the {@link org.juliazo.diff.model.DiffResult} or an error message
+     */
+    @RequestMapping(method = RequestMethod.GET, value = "/{base}/diff/{target}",
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity getVersionDiff(@PathVariable String id, @PathVariable String side,
+            @PathVariable long base, @PathVariable long target, DiffQuery diffQuery,
+            @RequestHeader(value = ClusterService.FORWARDED_HEADER, required = false) String forwardedBy) {
+        String owner = clusterService.findRemoteOwner(id, forwardedBy);
+        if (owner != null) {
+            return clusterService.forward(owner, HttpMethod.GET, ClusterService.diffPath(id) + "/" + side + "/versions/"
+                    + base + "/diff/" + target + diffQuery.toQueryString(), null);
+        }
+        logger.info("Performing Diff operation of " + side + " versions for id: " + id);
+        return diffService.getVersionDiffResult(id, side, base, target, diffQuery);
+    }
+}
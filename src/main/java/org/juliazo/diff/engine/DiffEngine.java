@@ -0,0 +1,710 @@
+package org.juliazo.diff.engine;
+
+import org.juliazo.diff.commons.buffer.ByteArrayPool;
+import org.juliazo.diff.model.DiffBytes;
+import org.juliazo.diff.model.DiffEstimate;
+import org.juliazo.diff.model.DiffQuery;
+import org.juliazo.diff.model.DiffRecords;
+import org.juliazo.diff.model.DiffResult;
+import org.juliazo.diff.model.DiffSummary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Comparison of the two sides of a diff. Sides are read chunk by chunk, so a side
+ * that is stored encoded (e.g. compressed) is never fully decoded in memory.
+ * The chunks are taken from a pool and returned once each comparison ends,
+ * so repeated comparisons do not allocate them again.
+ */
+public class DiffEngine {
+
+    /**
+     * Default size of the chunks read from each side.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 16;
+
+    /**
+     * How many chunks of each size are kept for reuse by a default pool.
+     */
+    public static final int DEFAULT_POOLED_CHUNKS = 16;
+
+    /**
+     * The constant logger.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(DiffEngine.class);
+
+    /**
+     * Size of the chunks read from each side.
+     */
+    private final int chunkSize;
+
+    /**
+     * Pool the chunks are taken from.
+     */
+    private final ByteArrayPool chunkPool;
+
+    /**
+     * Instantiates a new Diff engine with the default chunk size.
+     */
+    public DiffEngine() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Instantiates a new Diff engine.
+     *
+     * @param chunkSize size of the chunks read from each side
+     */
+    public DiffEngine(int chunkSize) {
+        this(chunkSize, new ByteArrayPool(DEFAULT_POOLED_CHUNKS, chunkSize,
+                DEFAULT_POOLED_CHUNKS * (long) Math.max(chunkSize, ByteArrayPool.MIN_CLASS_SIZE)));
+    }
+
+    /**
+     * Instantiates a new Diff engine sharing a pool of chunks.
+     *
+     * @param chunkSize size of the chunks read from each side
+     * @param chunkPool pool the chunks are taken from
+     */
+    public DiffEngine(int chunkSize, ByteArrayPool chunkPool) {
+        this.chunkSize = chunkSize;
+        this.chunkPool = chunkPool;
+    }
+
+    /**
+     * Compares both sides, which must have the same length, and fills the result with the differences,
+     * merged when separated by at most {@link DiffQuery#getMaxGap()} equal bytes and limited to the
+     * {@link DiffQuery#getTop()} largest ones, or only with their summary on {@link DiffQuery#MODE_SUMMARY}.
+     * When a {@link DiffQuery#getRecordSize()} is set, the result holds the different records instead,
+     * and the mode, the gap and the largest differences do not apply.
+     * Shared by the stored data sets and the files compared from the command line.
+     *
+     * @param right         the right side, starting at the beginning of the range
+     * @param left          the left side, starting at the beginning of the range
+     * @param start         the offset of the beginning of the range
+     * @param diffQuery     the optional parameters of the diff
+     * @param diffResult    the result to fill
+     * @throws IOException if a side cannot be read
+     */
+    public void compare(InputStream right, InputStream left, long start, DiffQuery diffQuery, DiffResult diffResult)
+            throws IOException {
+        if (diffQuery.getRecordSize() != null) {
+            int recordSize = diffQuery.getRecordSize();
+            List<DiffRecords> records = new ArrayList<>();
+            compareRecords(right, left, start, recordSize, comparedRanges(recordSize, diffQuery.getIgnore()),
+                    (index, count) -> records.add(diffRecords(index, count)));
+            diffResult.setEquals(records.isEmpty());
+            if (!records.isEmpty()) {
+                diffResult.setRecords(records);
+            }
+            return;
+        }
+        if (DiffQuery.MODE_SUMMARY.equals(diffQuery.getMode())) {
+            diffResult.setSummary(summarize(right, left));
+            diffResult.setEquals(diffResult.getSummary().getRuns() == 0);
+            return;
+        }
+
+        int maxGap = diffQuery.getMaxGap() == null ? 0 : diffQuery.getMaxGap();
+        List<DiffBytes> differences;
+        if (diffQuery.getTop() != null) {
+            //only the largest differences are kept while comparing
+            TopRuns topRuns = new TopRuns(diffQuery.getTop());
+            findDifferences(right, left, start, maxGap, topRuns);
+            differences = topRuns.toDifferences(DiffQuery.ORDER_OFFSET.equals(diffQuery.getOrder()));
+            diffResult.setRuns(topRuns.getRuns());
+        } else {
+            List<DiffBytes> allDifferences = new ArrayList<>();
+            findDifferences(right, left, start, maxGap,
+                    (offset, length) -> allDifferences.add(diffBytes(offset, length)));
+            differences = allDifferences;
+        }
+        diffResult.setEquals(differences.isEmpty());
+        if (diffResult.isEquals()) {
+            logger.debug("Input data is equal for id: " + diffResult.getId());
+            return;
+        }
+        diffResult.setDifferences(differences);
+    }
+
+    /**
+     * Evaluates how many and where are located the bytes that are not equal on both sides,
+     * which must have the same length.
+     *
+     * The diff consists of the offset of the byte that is different on both sides of the diff
+     * and the length of the difference, meaning how many bytes are different starting on the
+     * one marked by the offset.
+     *
+     * @param right the right side
+     * @param left  the left side
+     * @return the differences, empty if both sides are equal
+     * @throws IOException if a side cannot be read
+     */
+    public List<DiffBytes> findDifferences(InputStream right, InputStream left) throws IOException {
+        return findDifferences(right, left, 0);
+    }
+
+    /**
+     * Evaluates the differences of a range of both sides, reported with offsets relative
+     * to the start of the sides.
+     *
+     * @param right the right side, starting at the beginning of the range
+     * @param left  the left side, starting at the beginning of the range
+     * @param start the offset of the beginning of the range
+     * @return the differences, empty if both ranges are equal
+     * @throws IOException if a side cannot be read
+     */
+    public List<DiffBytes> findDifferences(InputStream right, InputStream left, long start) throws IOException {
+        List<DiffBytes> differences = new ArrayList<>();
+        findDifferences(right, left, start, (offset, length) -> differences.add(diffBytes(offset, length)));
+        return differences;
+    }
+
+    /**
+     * Locates the differences of a range of both sides, handing each sequence of different bytes over
+     * as soon as it ends, so the differences can be sent while the sides are still being compared.
+     *
+     * @param right     the right side, starting at the beginning of the range
+     * @param left      the left side, starting at the beginning of the range
+     * @param start     the offset of the beginning of the range
+     * @param handler   receives each sequence of different bytes, in order
+     * @throws IOException if a side cannot be read or the handler fails
+     */
+    public void findDifferences(InputStream right, InputStream left, long start, RunHandler handler)
+            throws IOException {
+        findDifferences(right, left, start, 0, handler);
+    }
+
+    /**
+     * Locates the differences of a range of both sides, merging sequences of different bytes separated
+     * by at most maxGap equal bytes into a single one, which then also covers the equal bytes in between.
+     * Sequences are merged while the sides are compared, so noisy sides do not produce a huge number of
+     * tiny differences to be merged afterwards.
+     *
+     * @param right     the right side, starting at the beginning of the range
+     * @param left      the left side, starting at the beginning of the range
+     * @param start     the offset of the beginning of the range
+     * @param maxGap    largest number of equal bytes merged into a sequence, 0 to merge none
+     * @param handler   receives each sequence of different bytes, in order
+     * @throws IOException if a side cannot be read or the handler fails
+     */
+    public void findDifferences(InputStream right, InputStream left, long start, int maxGap, RunHandler handler)
+            throws IOException {
+        byte[] rightChunk = chunkPool.acquire(chunkSize);
+        byte[] leftChunk = chunkPool.acquire(chunkSize);
+        try {
+            findDifferences(right, left, start, maxGap, handler, rightChunk, leftChunk);
+        } finally {
+            chunkPool.release(rightChunk);
+            chunkPool.release(leftChunk);
+        }
+    }
+
+    /**
+     * Locates the differences of a range of both sides, through the given chunks,
+     * see {@link #findDifferences(InputStream, InputStream, long, int, RunHandler)}.
+     *
+     * @param right         the right side, starting at the beginning of the range
+     * @param left          the left side, starting at the beginning of the range
+     * @param start         the offset of the beginning of the range
+     * @param maxGap        largest number of equal bytes merged into a sequence, 0 to merge none
+     * @param handler       receives each sequence of different bytes, in order
+     * @param rightChunk    the chunk the right side is read into
+     * @param leftChunk     the chunk the left side is read into
+     * @throws IOException if a side cannot be read or the handler fails
+     */
+    private void findDifferences(InputStream right, InputStream left, long start, int maxGap, RunHandler handler,
+            byte[] rightChunk, byte[] leftChunk) throws IOException {
+        long offset = -1;
+        long length = 0;
+        //equal bytes found since the last different byte of the active sequence
+        long gap = 0;
+        long position = start;
+        int read;
+        while ((read = readChunk(right, rightChunk, chunkSize)) > 0) {
+            if (readChunk(left, leftChunk, chunkSize) != read) {
+                throw new IOException("Sides have different lengths");
+            }
+            for (int i = 0; i < read; i++) {
+
+                if (rightChunk[i] != leftChunk[i]) {
+                    //when the bytes are different
+                    if (offset < 0) {
+                        //starts a new sequence of different bytes
+                        logger.debug("Found difference on index: " + (position + i));
+                        offset = position + i;
+                    } else {
+                        //the equal bytes since the last different one are merged into the sequence
+                        length += gap;
+                    }
+                    //increase the number of different bytes on this sequence
+                    length++;
+                    gap = 0;
+                } else if (offset >= 0 && ++gap > maxGap) {
+                    //if the bytes are equal but there is an active sequence of different bytes
+                    //that is too far to be merged, end this sequence and hand it over.
+                    handler.run(offset, length);
+
+                    //reset values to allow the start of a new sequence
+                    offset = -1;
+                    length = 0;
+                    gap = 0;
+                }
+            }
+            position += read;
+        }
+        //end the sequence when the last different byte is not followed by enough equal ones.
+        if (offset >= 0) {
+            handler.run(offset, length);
+        }
+    }
+
+    /**
+     * Locates the different records of a range of both sides, which are made of records of the same size,
+     * handing each sequence of consecutive different records over as soon as it ends, as the index of its
+     * first record and how many records it holds.
+     *
+     * Records are compared 8 bytes at a time, as the summary, on each range of bytes that is compared,
+     * and byte by byte on the last bytes of each range.
+     *
+     * @param right         the right side, starting at the beginning of the range
+     * @param left          the left side, starting at the beginning of the range
+     * @param start         the offset of the beginning of the range, a multiple of the record size
+     * @param recordSize    the size of the records, in bytes
+     * @param compared      the ranges of bytes of a record that are compared, see {@link #comparedRanges(int, String)}
+     * @param handler       receives each sequence of different records, in order
+     * @throws IOException if a side cannot be read, is not made of whole records or the handler fails
+     */
+    public void compareRecords(InputStream right, InputStream left, long start, int recordSize, int[] compared,
+            RunHandler handler) throws IOException {
+        //chunks hold whole records, so records never cross chunks
+        int recordsSize = Math.max(1, chunkSize / recordSize) * recordSize;
+        byte[] rightChunk = chunkPool.acquire(recordsSize);
+        byte[] leftChunk = chunkPool.acquire(recordsSize);
+        try {
+            compareRecords(right, left, start, recordSize, compared, handler, rightChunk, leftChunk, recordsSize);
+        } finally {
+            chunkPool.release(rightChunk);
+            chunkPool.release(leftChunk);
+        }
+    }
+
+    /**
+     * Locates the different records of a range of both sides, through the given chunks,
+     * see {@link #compareRecords(InputStream, InputStream, long, int, int[], RunHandler)}.
+     *
+     * @param right         the right side, starting at the beginning of the range
+     * @param left          the left side, starting at the beginning of the range
+     * @param start         the offset of the beginning of the range, a multiple of the record size
+     * @param recordSize    the size of the records, in bytes
+     * @param compared      the ranges of bytes of a record that are compared
+     * @param handler       receives each sequence of different records, in order
+     * @param rightChunk    the chunk the right side is read into
+     * @param leftChunk     the chunk the left side is read into
+     * @param recordsSize   how many bytes of whole records are read into each chunk at once
+     * @throws IOException if a side cannot be read, is not made of whole records or the handler fails
+     */
+    private void compareRecords(InputStream right, InputStream left, long start, int recordSize, int[] compared,
+            RunHandler handler, byte[] rightChunk, byte[] leftChunk, int recordsSize) throws IOException {
+        ByteBuffer rightWords = ByteBuffer.wrap(rightChunk);
+        ByteBuffer leftWords = ByteBuffer.wrap(leftChunk);
+
+        long index = start / recordSize;
+        long first = -1;
+        long count = 0;
+        int read;
+        while ((read = readChunk(right, rightChunk, recordsSize)) > 0) {
+            if (readChunk(left, leftChunk, recordsSize) != read) {
+                throw new IOException("Sides have different lengths");
+            }
+            if (read % recordSize != 0) {
+                throw new IOException("Sides are not made of whole records");
+            }
+            for (int record = 0; record < read; record += recordSize, index++) {
+                if (differentRecord(rightWords, leftWords, record, compared)) {
+                    if (first < 0) {
+                        first = index;
+                    }
+                    count++;
+                } else if (first >= 0) {
+                    handler.run(first, count);
+                    first = -1;
+                    count = 0;
+                }
+            }
+        }
+        if (first >= 0) {
+            handler.run(first, count);
+        }
+    }
+
+    /**
+     * Compares a record of both sides, skipping the bytes that are not compared.
+     *
+     * @param right     the chunk of the right side
+     * @param left      the chunk of the left side
+     * @param record    the position of the record on the chunks
+     * @param compared  the ranges of bytes of the record that are compared
+     * @return whether a compared byte is different
+     */
+    private static boolean differentRecord(ByteBuffer right, ByteBuffer left, int record, int[] compared) {
+        for (int r = 0; r < compared.length; r += 2) {
+            int position = record + compared[r];
+            int end = record + compared[r + 1];
+            for (; position + 8 <= end; position += 8) {
+                if (right.getLong(position) != left.getLong(position)) {
+                    return true;
+                }
+            }
+            for (; position < end; position++) {
+                if (right.get(position) != left.get(position)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds the ranges of bytes of a record that are compared: every byte but the ignored ones.
+     * Only the bounds of the ranges are kept, so the ranges do not grow with the size of the record.
+     *
+     * @param recordSize    the size of the records, in bytes
+     * @param ignore        the ranges of bytes that are not compared as from-to (from inclusive, to exclusive)
+     *                      separated by commas, or null to compare every byte
+     * @return the bounds of the ranges compared, sorted, as pairs of from (inclusive) and to (exclusive),
+     *          or null if an ignored range is not valid or not within the record
+     */
+    public static int[] comparedRanges(int recordSize, String ignore) {
+        if (ignore == null) {
+            return new int[] {0, recordSize};
+        }
+        String[] ranges = ignore.split(",");
+        long[] ignored = new long[ranges.length];
+        for (int i = 0; i < ranges.length; i++) {
+            String[] bounds = ranges[i].trim().split("-");
+            int from;
+            int to;
+            try {
+                from = Integer.parseInt(bounds[0]);
+                to = bounds.length == 2 ? Integer.parseInt(bounds[1]) : -1;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (from < 0 || from >= to || to > recordSize) {
+                return null;
+            }
+            //sorted by from once packed
+            ignored[i] = (long) from << 32 | to;
+        }
+        Arrays.sort(ignored);
+
+        int[] compared = new int[2 * ranges.length + 2];
+        int count = 0;
+        int position = 0;
+        for (long range : ignored) {
+            int from = (int) (range >>> 32);
+            if (from > position) {
+                compared[count++] = position;
+                compared[count++] = from;
+            }
+            position = Math.max(position, (int) range);
+        }
+        if (position < recordSize) {
+            compared[count++] = position;
+            compared[count++] = recordSize;
+        }
+        return Arrays.copyOf(compared, count);
+    }
+
+    /**
+     * Evaluates how different both sides are, which must have the same length, without locating
+     * the differences: counts the sequences of different bytes, the different bytes and the
+     * different bits (Hamming distance).
+     *
+     * Both sides are compared 8 bytes at a time: the XOR of two 64 bit words has its bits set
+     * where the words differ, and a mask with the high bit of each non zero byte of the XOR
+     * tells which bytes differ and where sequences of different bytes start.
+     *
+     * @param right the right side
+     * @param left  the left side
+     * @return the summary of the differences
+     * @throws IOException if a side cannot be read
+     */
+    public DiffSummary summarize(InputStream right, InputStream left) throws IOException {
+        byte[] rightChunk = chunkPool.acquire(chunkSize);
+        byte[] leftChunk = chunkPool.acquire(chunkSize);
+        try {
+            return summarize(right, left, rightChunk, leftChunk);
+        } finally {
+            chunkPool.release(rightChunk);
+            chunkPool.release(leftChunk);
+        }
+    }
+
+    /**
+     * Summarizes the differences of both sides through the given chunks,
+     * see {@link #summarize(InputStream, InputStream)}.
+     *
+     * @param right         the right side
+     * @param left          the left side
+     * @param rightChunk    the chunk the right side is read into
+     * @param leftChunk     the chunk the left side is read into
+     * @return the summary of the differences
+     * @throws IOException if a side cannot be read
+     */
+    private DiffSummary summarize(InputStream right, InputStream left, byte[] rightChunk, byte[] leftChunk)
+            throws IOException {
+        ByteBuffer rightWords = ByteBuffer.wrap(rightChunk);
+        ByteBuffer leftWords = ByteBuffer.wrap(leftChunk);
+
+        long length = 0;
+        long runs = 0;
+        long differentBytes = 0;
+        long hammingDistance = 0;
+        //whether the last byte compared was different, so a sequence may continue on the next word
+        boolean inRun = false;
+        int read;
+        while ((read = readChunk(right, rightChunk, chunkSize)) > 0) {
+            if (readChunk(left, leftChunk, chunkSize) != read) {
+                throw new IOException("Sides have different lengths");
+            }
+            int words = read & ~7;
+            for (int i = 0; i < words; i += 8) {
+                long xor = rightWords.getLong(i) ^ leftWords.getLong(i);
+                if (xor == 0) {
+                    inRun = false;
+                    continue;
+                }
+                hammingDistance += Long.bitCount(xor);
+                long differentMask = highBitOfNonZeroBytes(xor);
+                differentBytes += Long.bitCount(differentMask);
+                //a sequence starts on a different byte that follows an equal one
+                long previousMask = (differentMask >>> 8) | (inRun ? Long.MIN_VALUE : 0);
+                runs += Long.bitCount(differentMask & ~previousMask);
+                inRun = (differentMask & 0x80) != 0;
+            }
+            for (int i = words; i < read; i++) {
+                int xor = (rightChunk[i] ^ leftChunk[i]) & 0xFF;
+                if (xor != 0) {
+                    hammingDistance += Integer.bitCount(xor);
+                    differentBytes++;
+                    if (!inRun) {
+                        runs++;
+                    }
+                }
+                inRun = xor != 0;
+            }
+            length += read;
+        }
+
+        DiffSummary summary = new DiffSummary();
+        summary.setRuns(runs);
+        summary.setDifferentBytes(differentBytes);
+        summary.setHammingDistance(hammingDistance);
+        summary.setSimilarity(length == 0 ? 1 : (double) (length - differentBytes) / length);
+        return summary;
+    }
+
+    /**
+     * Picks positions of a range to be compared, by stratified sampling: the range is split in as many
+     * strata of the same size as positions, and a random position is picked on each one, so the positions
+     * spread over the whole range. Every position of a range that is not larger than the samples is picked.
+     *
+     * @param from      first byte of the range, inclusive
+     * @param to        last byte of the range, exclusive
+     * @param samples   how many positions to pick
+     * @param random    the source of the random positions
+     * @return the positions, in increasing order
+     */
+    public static int[] samplePositions(int from, int to, int samples, Random random) {
+        int length = to - from;
+        int[] positions = new int[Math.min(samples, length)];
+        for (int i = 0; i < positions.length; i++) {
+            int stratumStart = (int) ((long) i * length / positions.length);
+            int stratumEnd = (int) ((long) (i + 1) * length / positions.length);
+            positions[i] = from + stratumStart + random.nextInt(stratumEnd - stratumStart);
+        }
+        return positions;
+    }
+
+    /**
+     * Estimates the ratio of equal bytes of both sides from the bytes at the same sampled positions.
+     *
+     * @param right     the bytes of the right side at the sampled positions
+     * @param left      the bytes of the left side at the same positions
+     * @param complete  whether every position of the sides was sampled, so the ratio is exact
+     * @return the estimate
+     */
+    public static DiffEstimate estimateSampled(byte[] right, byte[] left, boolean complete) {
+        long equal = 0;
+        for (int i = 0; i < right.length; i++) {
+            if (right[i] == left[i]) {
+                equal++;
+            }
+        }
+        return estimate(DiffEstimate.METHOD_SAMPLING, equal, right.length, complete);
+    }
+
+    /**
+     * Estimates the share of sequences of bytes found on both sides, which may have different sizes,
+     * by MinHash. Sides are read chunk by chunk and only their sketches are kept.
+     *
+     * @param right     the right side
+     * @param left      the left side
+     * @param samples   how many hashes are kept of each side and compared
+     * @return the estimate
+     * @throws IOException if a side cannot be read
+     */
+    public DiffEstimate estimateMinHash(InputStream right, InputStream left, int samples) throws IOException {
+        long[] rightHashes = sketch(right, samples).getHashes();
+        long[] leftHashes = sketch(left, samples).getHashes();
+        long[] compared = MinHashSketch.compare(rightHashes, leftHashes, samples);
+        //the sketches hold every hash when the sides have fewer shingles than samples
+        boolean complete = rightHashes.length < samples && leftHashes.length < samples;
+        return estimate(DiffEstimate.METHOD_MINHASH, compared[0], compared[1], complete);
+    }
+
+    /**
+     * Reads a side into its MinHash sketch.
+     *
+     * @param side      the side
+     * @param samples   how many hashes are kept
+     * @return the sketch
+     * @throws IOException if the side cannot be read
+     */
+    private MinHashSketch sketch(InputStream side, int samples) throws IOException {
+        MinHashSketch sketch = new MinHashSketch(samples);
+        byte[] chunk = chunkPool.acquire(chunkSize);
+        try {
+            int read;
+            while ((read = readChunk(side, chunk, chunkSize)) > 0) {
+                sketch.add(chunk, 0, read);
+            }
+        } finally {
+            chunkPool.release(chunk);
+        }
+        return sketch;
+    }
+
+    /**
+     * Mounts an estimate from how many of the samples matched, bounded by the Wilson score interval
+     * with 95% confidence.
+     *
+     * @param method    how the similarity was estimated
+     * @param matched   how many samples matched
+     * @param samples   how many samples were compared, 0 if the sides are empty
+     * @param complete  whether the samples are the whole population, so there is no uncertainty
+     * @return the estimate
+     */
+    private static DiffEstimate estimate(String method, long matched, long samples, boolean complete) {
+        final double z = 1.96;
+        //empty sides are equal
+        double similarity = samples == 0 ? 1 : (double) matched / samples;
+        DiffEstimate estimate = new DiffEstimate();
+        estimate.setMethod(method);
+        estimate.setSamples((int) samples);
+        estimate.setSimilarity(similarity);
+        if (complete || samples == 0) {
+            estimate.setLowerBound(similarity);
+            estimate.setUpperBound(similarity);
+            return estimate;
+        }
+        double center = (similarity + z * z / (2 * samples)) / (1 + z * z / samples);
+        double margin = z / (1 + z * z / samples)
+                * Math.sqrt(similarity * (1 - similarity) / samples + z * z / (4.0 * samples * samples));
+        estimate.setLowerBound(Math.max(0, center - margin));
+        estimate.setUpperBound(Math.min(1, center + margin));
+        return estimate;
+    }
+
+    /**
+     * Sets the high bit of each byte of the word that is not zero, and clears every other bit.
+     *
+     * @param word  the word
+     * @return the mask of non zero bytes
+     */
+    private static long highBitOfNonZeroBytes(long word) {
+        final long lowBits = 0x7F7F7F7F7F7F7F7FL;
+        //adding 0x7F to the low 7 bits of a byte carries into its high bit unless they are all zero
+        return (((word & lowBits) + lowBits) | word) & ~lowBits;
+    }
+
+    /**
+     * Mounts a {@link DiffBytes} object.
+     *
+     * @param offset    the offset
+     * @param length    the length
+     * @return the diff bytes
+     */
+    private static DiffBytes diffBytes(long offset, long length) {
+        logger.debug("Mounting DiffBytes object for offset: " + offset);
+        DiffBytes diffBytes = new DiffBytes();
+        diffBytes.setOffset(offset);
+        diffBytes.setLength(length);
+        return diffBytes;
+    }
+
+    /**
+     * Mounts a {@link DiffRecords} object.
+     *
+     * @param index the index of the first record
+     * @param count how many records
+     * @return the diff records
+     */
+    private static DiffRecords diffRecords(long index, long count) {
+        DiffRecords diffRecords = new DiffRecords();
+        diffRecords.setIndex(index);
+        diffRecords.setCount(count);
+        return diffRecords;
+    }
+
+    /**
+     * Fills the chunk from the stream, up to the given size, stopping only at the end of the stream.
+     * A comparison running on an interrupted thread, e.g. cancelled, stops at the next chunk.
+     *
+     * @param in    the stream
+     * @param chunk the chunk, pooled arrays may be larger than the size read
+     * @param size  how many bytes are read into the chunk
+     * @return how many bytes were read, 0 at the end of the stream
+     * @throws IOException if the stream cannot be read or the thread was interrupted
+     */
+    private static int readChunk(InputStream in, byte[] chunk, int size) throws IOException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Comparison interrupted");
+        }
+        int filled = 0;
+        while (filled < size) {
+            int read = in.read(chunk, filled, size - filled);
+            if (read < 0) {
+                break;
+            }
+            filled += read;
+        }
+        return filled;
+    }
+
+    /**
+     * Receives the sequences of different bytes, or of different records, located by a comparison.
+     */
+    public interface RunHandler {
+
+        /**
+         * Handles a sequence of different bytes.
+         *
+         * @param offset    the offset of the first different byte
+         * @param length    how many bytes are different starting on the offset
+         * @throws IOException if the sequence cannot be handled, which stops the comparison
+         */
+        void run(long offset, long length) throws IOException;
+    }
+}
@@ -0,0 +1,168 @@
+package org.juliazo.diff.engine;
+
+import java.util.Arrays;
+
+/**
+ * MinHash sketch of a side: the smallest distinct hashes of its shingles, the sequences of
+ * {@link #SHINGLE_SIZE} consecutive bytes starting on each byte. The share of the smallest hashes of
+ * both sides that is found on both estimates the share of shingles found on both (Jaccard index),
+ * whatever their sizes, keeping a bounded number of hashes per side.
+ *
+ * Hashes are kept in an array of primitives: candidates are appended until it is full, then sorted,
+ * deduplicated and cut to the sketch size, and the largest hash kept becomes the threshold that
+ * discards most of the following candidates at once.
+ */
+public class MinHashSketch {
+
+    /**
+     * Size of the shingles, in bytes.
+     */
+    public static final int SHINGLE_SIZE = 8;
+
+    /**
+     * How many hashes are kept.
+     */
+    private final int size;
+
+    /**
+     * The hashes kept, followed by the candidates.
+     */
+    private final long[] hashes;
+
+    /**
+     * How many hashes and candidates the array holds.
+     */
+    private int count;
+
+    /**
+     * Candidates not smaller than the threshold are discarded, once the sketch is full.
+     */
+    private long threshold = Long.MAX_VALUE;
+
+    /**
+     * The last bytes added, as the shingle ending on the latest one.
+     */
+    private long shingle;
+
+    /**
+     * How many bytes were added.
+     */
+    private long length;
+
+    /**
+     * Instantiates a new MinHash sketch.
+     *
+     * @param size how many hashes are kept, at least 1
+     */
+    public MinHashSketch(int size) {
+        this.size = size;
+        this.hashes = new long[4 * size];
+    }
+
+    /**
+     * Adds bytes of the side, following the bytes already added.
+     *
+     * @param bytes     the bytes
+     * @param offset    the first byte to add
+     * @param length    how many bytes to add
+     */
+    public void add(byte[] bytes, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            shingle = shingle << 8 | (bytes[i] & 0xFF);
+            if (++this.length >= SHINGLE_SIZE) {
+                offer(mix(shingle));
+            }
+        }
+    }
+
+    /**
+     * Gets the smallest distinct hashes of the shingles, sorted. A side shorter than a shingle
+     * is a single shorter shingle.
+     *
+     * @return the hashes
+     */
+    public long[] getHashes() {
+        if (length > 0 && length < SHINGLE_SIZE && count == 0) {
+            offer(mix(shingle ^ length << 56));
+        }
+        compact();
+        return Arrays.copyOf(hashes, count);
+    }
+
+    /**
+     * Estimates the share of shingles found on both sides: among the smallest distinct hashes of both sides
+     * together, the share of hashes found on both.
+     *
+     * @param right the hashes of the right side, see {@link #getHashes()}
+     * @param left  the hashes of the left side
+     * @param size  how many hashes are compared
+     * @return how many of the compared hashes are found on both sides, and how many were compared
+     */
+    public static long[] compare(long[] right, long[] left, int size) {
+        int r = 0;
+        int l = 0;
+        long common = 0;
+        long compared = 0;
+        while (compared < size && (r < right.length || l < left.length)) {
+            if (l == left.length || r < right.length && right[r] < left[l]) {
+                r++;
+            } else if (r == right.length || left[l] < right[r]) {
+                l++;
+            } else {
+                common++;
+                r++;
+                l++;
+            }
+            compared++;
+        }
+        return new long[] {common, compared};
+    }
+
+    /**
+     * Offers the hash of a shingle.
+     *
+     * @param hash  the hash
+     */
+    private void offer(long hash) {
+        if (hash >= threshold) {
+            return;
+        }
+        hashes[count++] = hash;
+        if (count == hashes.length) {
+            compact();
+        }
+    }
+
+    /**
+     * Sorts and deduplicates the hashes and the candidates, keeping the smallest ones.
+     */
+    private void compact() {
+        Arrays.sort(hashes, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count && distinct < size; i++) {
+            if (distinct == 0 || hashes[i] != hashes[distinct - 1]) {
+                hashes[distinct++] = hashes[i];
+            }
+        }
+        count = distinct;
+        if (count == size) {
+            threshold = hashes[size - 1];
+        }
+    }
+
+    /**
+     * Mixes the bits of a shingle into a hash (finalizer of MurmurHash3).
+     *
+     * @param shingle   the shingle
+     * @return the hash
+     */
+    private static long mix(long shingle) {
+        long hash = shingle;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
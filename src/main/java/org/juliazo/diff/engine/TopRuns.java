@@ -0,0 +1,177 @@
+package org.juliazo.diff.engine;
+
+import org.juliazo.diff.model.DiffBytes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps the largest sequences of different bytes handed over by a comparison, without keeping the others.
+ *
+ * The sequences kept are a binary min-heap on two arrays of primitives, ordered by length, so the smallest
+ * one kept is at the root: a new sequence either replaces the root or is discarded. Memory is bounded by
+ * the number of sequences kept, whatever the number of differences, and each sequence costs log(k).
+ * On equal lengths the earliest sequences are kept.
+ */
+public class TopRuns implements DiffEngine.RunHandler {
+
+    /**
+     * Initial capacity of the heap, grown up to the number of sequences kept.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * How many sequences are kept.
+     */
+    private final int limit;
+
+    /**
+     * Offsets of the sequences kept, in heap order.
+     */
+    private long[] offsets;
+
+    /**
+     * Lengths of the sequences kept, in heap order.
+     */
+    private long[] lengths;
+
+    /**
+     * How many sequences are kept so far.
+     */
+    private int size;
+
+    /**
+     * How many sequences were handed over.
+     */
+    private long runs;
+
+    /**
+     * Instantiates a new Top runs.
+     *
+     * @param limit how many sequences are kept, at least 1
+     */
+    public TopRuns(int limit) {
+        this.limit = limit;
+        int capacity = Math.min(limit, INITIAL_CAPACITY);
+        this.offsets = new long[capacity];
+        this.lengths = new long[capacity];
+    }
+
+    @Override
+    public void run(long offset, long length) {
+        runs++;
+        if (size < limit) {
+            if (size == offsets.length) {
+                int capacity = (int) Math.min(limit, 2L * size);
+                offsets = Arrays.copyOf(offsets, capacity);
+                lengths = Arrays.copyOf(lengths, capacity);
+            }
+            offsets[size] = offset;
+            lengths[size] = length;
+            siftUp(size++);
+        } else if (length > lengths[0]) {
+            //sequences arrive in order of offset, so an equal length never replaces an earlier sequence
+            offsets[0] = offset;
+            lengths[0] = length;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Gets how many sequences were handed over, kept or not.
+     *
+     * @return the runs
+     */
+    public long getRuns() {
+        return runs;
+    }
+
+    /**
+     * Lists the sequences kept.
+     *
+     * @param byOffset  whether the sequences are sorted by offset, otherwise by length, the largest first
+     * @return the sequences kept
+     */
+    public List<DiffBytes> toDifferences(boolean byOffset) {
+        List<DiffBytes> differences = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            DiffBytes diffBytes = new DiffBytes();
+            diffBytes.setOffset(offsets[i]);
+            diffBytes.setLength(lengths[i]);
+            differences.add(diffBytes);
+        }
+        if (byOffset) {
+            differences.sort((a, b) -> Long.compare(a.getOffset(), b.getOffset()));
+        } else {
+            differences.sort((a, b) -> a.getLength() != b.getLength() ? Long.compare(b.getLength(), a.getLength())
+                    : Long.compare(a.getOffset(), b.getOffset()));
+        }
+        return differences;
+    }
+
+    /**
+     * Checks whether a sequence of the heap must be closer to the root than another one:
+     * it is shorter, or as long but located after it.
+     *
+     * @param i the index of a sequence
+     * @param j the index of the other sequence
+     * @return whether the sequence i is smaller
+     */
+    private boolean smaller(int i, int j) {
+        return lengths[i] < lengths[j] || lengths[i] == lengths[j] && offsets[i] > offsets[j];
+    }
+
+    /**
+     * Moves a sequence towards the root until its parent is smaller.
+     *
+     * @param i the index of the sequence
+     */
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!smaller(i, parent)) {
+                return;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    /**
+     * Moves a sequence away from the root until its children are not smaller.
+     *
+     * @param i the index of the sequence
+     */
+    private void siftDown(int i) {
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                return;
+            }
+            if (child + 1 < size && smaller(child + 1, child)) {
+                child++;
+            }
+            if (!smaller(child, i)) {
+                return;
+            }
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    /**
+     * Swaps two sequences of the heap.
+     *
+     * @param i the index of a sequence
+     * @param j the index of the other sequence
+     */
+    private void swap(int i, int j) {
+        long offset = offsets[i];
+        offsets[i] = offsets[j];
+        offsets[j] = offset;
+        long length = lengths[i];
+        lengths[i] = lengths[j];
+        lengths[j] = length;
+    }
+}
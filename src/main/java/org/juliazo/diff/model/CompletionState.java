@@ -0,0 +1,22 @@
+package org.juliazo.diff.model;
+
+/**
+ * Which sides of a data set were received.
+ */
+public enum CompletionState {
+
+    /**
+     * Only the left side was received.
+     */
+    LEFT,
+
+    /**
+     * Only the right side was received.
+     */
+    RIGHT,
+
+    /**
+     * Both sides were received, the diff can be computed.
+     */
+    BOTH
+}
@@ -8,19 +8,19 @@ public class DiffBytes {
     /**
      * Location of the different byte
      */
-    private int offset;
+    private long offset;
 
     /**
      * How many bytes are different starting from offset
      */
-    private int length;
+    private long length;
 
     /**
      * Gets offset.
      *
      * @return the offset
      */
-    public int getOffset() {
+    public long getOffset() {
         return offset;
     }
 
@@ -29,7 +29,7 @@ public class DiffBytes {
      *
      * @param offset the offset
      */
-    public void setOffset(int offset) {
+    public void setOffset(long offset) {
         this.offset = offset;
     }
 
@@ -38,7 +38,7 @@ public class DiffBytes {
      *
      * @return the length
      */
-    public int getLength() {
+    public long getLength() {
         return length;
     }
 
@@ -47,7 +47,7 @@ public class DiffBytes {
      *
      * @param length the length
      */
-    public void setLength(int length) {
+    public void setLength(long length) {
         this.length = length;
     }
 }
@@ -0,0 +1,134 @@
+package org.juliazo.diff.model;
+
+/**
+ * POJO class for the estimated similarity of both sides, returned instead of the differences
+ * on the approximate mode of the diff operation.
+ */
+public class DiffEstimate {
+
+    /**
+     * Estimation of sides of the same size: bytes at sampled positions are compared.
+     */
+    public static final String METHOD_SAMPLING = "sampling";
+
+    /**
+     * Estimation of sides of different sizes: MinHash of the sequences of bytes of both sides.
+     */
+    public static final String METHOD_MINHASH = "minhash";
+
+    /**
+     * How the similarity was estimated, {@link #METHOD_SAMPLING} or {@link #METHOD_MINHASH}
+     */
+    private String method;
+
+    /**
+     * How many positions were sampled, or how many hashes of sequences of bytes were compared
+     */
+    private int samples;
+
+    /**
+     * Estimated similarity, from 0 to 1: the ratio of equal bytes when sampling,
+     * or the ratio of sequences of bytes found on both sides (Jaccard index) with MinHash
+     */
+    private double similarity;
+
+    /**
+     * Lower bound of the similarity, with 95% confidence
+     */
+    private double lowerBound;
+
+    /**
+     * Upper bound of the similarity, with 95% confidence
+     */
+    private double upperBound;
+
+    /**
+     * Gets method.
+     *
+     * @return the method
+     */
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * Sets method.
+     *
+     * @param method the method
+     */
+    public void setMethod(String method) {
+        this.method = method;
+    }
+
+    /**
+     * Gets samples.
+     *
+     * @return the samples
+     */
+    public int getSamples() {
+        return samples;
+    }
+
+    /**
+     * Sets samples.
+     *
+     * @param samples the samples
+     */
+    public void setSamples(int samples) {
+        this.samples = samples;
+    }
+
+    /**
+     * Gets similarity.
+     *
+     * @return the similarity
+     */
+    public double getSimilarity() {
+        return similarity;
+    }
+
+    /**
+     * Sets similarity.
+     *
+     * @param similarity the similarity
+     */
+    public void setSimilarity(double similarity) {
+        this.similarity = similarity;
+    }
+
+    /**
+     * Gets lower bound.
+     *
+     * @return the lower bound
+     */
+    public double getLowerBound() {
+        return lowerBound;
+    }
+
+    /**
+     * Sets lower bound.
+     *
+     * @param lowerBound the lower bound
+     */
+    public void setLowerBound(double lowerBound) {
+        this.lowerBound = lowerBound;
+    }
+
+    /**
+     * Gets upper bound.
+     *
+     * @return the upper bound
+     */
+    public double getUpperBound() {
+        return upperBound;
+    }
+
+    /**
+     * Sets upper bound.
+     *
+     * @param upperBound the upper bound
+     */
+    public void setUpperBound(double upperBound) {
+        this.upperBound = upperBound;
+    }
+}
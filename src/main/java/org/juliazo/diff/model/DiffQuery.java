@@ -0,0 +1,355 @@
+package org.juliazo.diff.model;
+
+import org.springframework.web.util.UriUtils;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * POJO Class for the optional query parameters of the diff operation
+ */
+public class DiffQuery {
+
+    /**
+     * Mode returning every difference. Default mode.
+     */
+    public static final String MODE_FULL = "full";
+
+    /**
+     * Mode returning only statistics of the differences, see {@link DiffSummary}.
+     */
+    public static final String MODE_SUMMARY = "summary";
+
+    /**
+     * Mode returning only an estimate of the similarity, see {@link DiffEstimate}.
+     */
+    public static final String MODE_APPROXIMATE = "approximate";
+
+    /**
+     * Positions sampled, or hashes compared, on the approximate mode when not requested.
+     */
+    public static final int DEFAULT_SAMPLES = 1024;
+
+    /**
+     * Most positions sampled, or hashes compared, on the approximate mode.
+     */
+    public static final int MAX_SAMPLES = 1 << 20;
+
+    /**
+     * Largest size of the records compared, in bytes, so records always fit in the chunks read.
+     */
+    public static final int MAX_RECORD_SIZE = 1 << 16;
+
+    /**
+     * Order of the largest differences by length, the largest first. Default order.
+     */
+    public static final String ORDER_LENGTH = "length";
+
+    /**
+     * Order of the largest differences by offset.
+     */
+    public static final String ORDER_OFFSET = "offset";
+
+    /**
+     * First byte of the range to compare, inclusive. Null to start at the first byte.
+     */
+    private Integer from;
+
+    /**
+     * Last byte of the range to compare, exclusive. Null to end at the last byte.
+     */
+    private Integer to;
+
+    /**
+     * The mode of the diff operation. Null for {@link #MODE_FULL}.
+     */
+    private String mode;
+
+    /**
+     * Largest number of equal bytes between two sequences of different bytes that are merged
+     * into a single difference. Null or 0 to report each sequence on its own.
+     */
+    private Integer maxGap;
+
+    /**
+     * How many differences are returned, the largest ones. Null to return every difference.
+     */
+    private Integer top;
+
+    /**
+     * Order of the largest differences, {@link #ORDER_LENGTH} or {@link #ORDER_OFFSET}.
+     * Null for {@link #ORDER_LENGTH}.
+     */
+    private String order;
+
+    /**
+     * How many positions are sampled, or hashes compared, on {@link #MODE_APPROXIMATE}.
+     * Null for {@link #DEFAULT_SAMPLES}.
+     */
+    private Integer samples;
+
+    /**
+     * Size of the records both sides are made of, in bytes. Null to compare bytes instead of records.
+     */
+    private Integer recordSize;
+
+    /**
+     * Ranges of bytes of each record that are not compared, e.g. timestamps, as from-to (from inclusive,
+     * to exclusive, relative to the start of the record) separated by commas. Null to compare whole records.
+     */
+    private String ignore;
+
+    /**
+     * Version of the left side to compare. Null for the latest version.
+     */
+    private Long leftVersion;
+
+    /**
+     * Version of the right side to compare. Null for the latest version.
+     */
+    private Long rightVersion;
+
+    /**
+     * Gets from.
+     *
+     * @return the from
+     */
+    public Integer getFrom() {
+        return from;
+    }
+
+    /**
+     * Sets from.
+     *
+     * @param from the from
+     */
+    public void setFrom(Integer from) {
+        this.from = from;
+    }
+
+    /**
+     * Gets to.
+     *
+     * @return the to
+     */
+    public Integer getTo() {
+        return to;
+    }
+
+    /**
+     * Sets to.
+     *
+     * @param to the to
+     */
+    public void setTo(Integer to) {
+        this.to = to;
+    }
+
+    /**
+     * Gets mode.
+     *
+     * @return the mode
+     */
+    public String getMode() {
+        return mode;
+    }
+
+    /**
+     * Sets mode.
+     *
+     * @param mode the mode
+     */
+    public void setMode(String mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * Gets max gap.
+     *
+     * @return the max gap
+     */
+    public Integer getMaxGap() {
+        return maxGap;
+    }
+
+    /**
+     * Sets max gap.
+     *
+     * @param maxGap the max gap
+     */
+    public void setMaxGap(Integer maxGap) {
+        this.maxGap = maxGap;
+    }
+
+    /**
+     * Gets top.
+     *
+     * @return the top
+     */
+    public Integer getTop() {
+        return top;
+    }
+
+    /**
+     * Sets top.
+     *
+     * @param top the top
+     */
+    public void setTop(Integer top) {
+        this.top = top;
+    }
+
+    /**
+     * Gets order.
+     *
+     * @return the order
+     */
+    public String getOrder() {
+        return order;
+    }
+
+    /**
+     * Sets order.
+     *
+     * @param order the order
+     */
+    public void setOrder(String order) {
+        this.order = order;
+    }
+
+    /**
+     * Gets samples.
+     *
+     * @return the samples
+     */
+    public Integer getSamples() {
+        return samples;
+    }
+
+    /**
+     * Sets samples.
+     *
+     * @param samples the samples
+     */
+    public void setSamples(Integer samples) {
+        this.samples = samples;
+    }
+
+    /**
+     * Gets record size.
+     *
+     * @return the record size
+     */
+    public Integer getRecordSize() {
+        return recordSize;
+    }
+
+    /**
+     * Sets record size.
+     *
+     * @param recordSize the record size
+     */
+    public void setRecordSize(Integer recordSize) {
+        this.recordSize = recordSize;
+    }
+
+    /**
+     * Gets ignore.
+     *
+     * @return the ignore
+     */
+    public String getIgnore() {
+        return ignore;
+    }
+
+    /**
+     * Sets ignore.
+     *
+     * @param ignore the ignore
+     */
+    public void setIgnore(String ignore) {
+        this.ignore = ignore;
+    }
+
+    /**
+     * Gets left version.
+     *
+     * @return the left version
+     */
+    public Long getLeftVersion() {
+        return leftVersion;
+    }
+
+    /**
+     * Sets left version.
+     *
+     * @param leftVersion the left version
+     */
+    public void setLeftVersion(Long leftVersion) {
+        this.leftVersion = leftVersion;
+    }
+
+    /**
+     * Gets right version.
+     *
+     * @return the right version
+     */
+    public Long getRightVersion() {
+        return rightVersion;
+    }
+
+    /**
+     * Sets right version.
+     *
+     * @param rightVersion the right version
+     */
+    public void setRightVersion(Long rightVersion) {
+        this.rightVersion = rightVersion;
+    }
+
+    /**
+     * Checks whether the query is the default one: the latest versions of both sides
+     * fully compared byte by byte, with all their differences exactly located.
+     *
+     * @return whether no optional parameter changes the result
+     */
+    public boolean isDefault() {
+        return from == null && to == null && (mode == null || MODE_FULL.equals(mode))
+                && (maxGap == null || maxGap == 0) && top == null && recordSize == null
+                && leftVersion == null && rightVersion == null;
+    }
+
+    /**
+     * Mounts the query string holding the parameters that are set, used to forward the query.
+     *
+     * @return the query string, starting with ?, or empty if no parameter is set
+     */
+    public String toQueryString() {
+        StringBuilder query = new StringBuilder();
+        appendParameter(query, "from", from);
+        appendParameter(query, "to", to);
+        appendParameter(query, "mode", mode);
+        appendParameter(query, "maxGap", maxGap);
+        appendParameter(query, "top", top);
+        appendParameter(query, "order", order);
+        appendParameter(query, "samples", samples);
+        appendParameter(query, "recordSize", recordSize);
+        appendParameter(query, "ignore", ignore);
+        appendParameter(query, "leftVersion", leftVersion);
+        appendParameter(query, "rightVersion", rightVersion);
+        return query.toString();
+    }
+
+    /**
+     * Appends a parameter to a query string when it is set.
+     *
+     * @param query the query string
+     * @param name  the parameter name
+     * @param value the parameter value, null if not set
+     */
+    private static void appendParameter(StringBuilder query, String name, Object value) {
+        if (value != null) {
+            query.append(query.length() == 0 ? '?' : '&').append(name).append('=')
+                    .append(UriUtils.encodeQueryParam(String.valueOf(value), StandardCharsets.UTF_8));
+        }
+    }
+}
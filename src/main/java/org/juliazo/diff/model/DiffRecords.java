@@ -0,0 +1,53 @@
+package org.juliazo.diff.model;
+
+/**
+ * POJO class for a sequence of consecutive records that are different, on the record mode of the diff
+ */
+public class DiffRecords {
+
+    /**
+     * Index of the first different record, starting at 0 on the first byte of the sides
+     */
+    private long index;
+
+    /**
+     * How many consecutive records are different starting from index
+     */
+    private long count;
+
+    /**
+     * Gets index.
+     *
+     * @return the index
+     */
+    public long getIndex() {
+        return index;
+    }
+
+    /**
+     * Sets index.
+     *
+     * @param index the index
+     */
+    public void setIndex(long index) {
+        this.index = index;
+    }
+
+    /**
+     * Gets count.
+     *
+     * @return the count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Sets count.
+     *
+     * @param count the count
+     */
+    public void setCount(long count) {
+        this.count = count;
+    }
+}
@@ -35,6 +35,39 @@ public class DiffResult {
      */
     private List<DiffBytes> differences;
 
+    /**
+     * List of the different records between right and left input data, on the record mode.
+     * Shown instead of the differences when there are different records.
+     */
+    private List<DiffRecords> records;
+
+    /**
+     * Statistics of the differences found between right and left input data.
+     * Shown instead of the differences on the summary mode.
+     */
+    private DiffSummary summary;
+
+    /**
+     * Estimated similarity of right and left input data.
+     * Shown instead of the differences on the approximate mode, also for sides of different sizes.
+     */
+    private DiffEstimate estimate;
+
+    /**
+     * How many differences were found. Only shown when the differences are limited to the largest ones.
+     */
+    private Long runs;
+
+    /**
+     * First byte of the compared range, inclusive. Only shown when a range was requested.
+     */
+    private Integer from;
+
+    /**
+     * Last byte of the compared range, exclusive. Only shown when a range was requested.
+     */
+    private Integer to;
+
     /**
      * Instantiates a new Diff result.
      */
@@ -113,4 +146,112 @@ public class DiffResult {
     public void setDifferences(List<DiffBytes> differences) {
         this.differences = differences;
     }
+
+    /**
+     * Gets summary.
+     *
+     * @return the summary
+     */
+    public DiffSummary getSummary() {
+        return summary;
+    }
+
+    /**
+     * Sets summary.
+     *
+     * @param summary the summary
+     */
+    public void setSummary(DiffSummary summary) {
+        this.summary = summary;
+    }
+
+    /**
+     * Gets from.
+     *
+     * @return the from
+     */
+    public Integer getFrom() {
+        return from;
+    }
+
+    /**
+     * Sets from.
+     *
+     * @param from the from
+     */
+    public void setFrom(Integer from) {
+        this.from = from;
+    }
+
+    /**
+     * Gets to.
+     *
+     * @return the to
+     */
+    public Integer getTo() {
+        return to;
+    }
+
+    /**
+     * Sets to.
+     *
+     * @param to the to
+     */
+    public void setTo(Integer to) {
+        this.to = to;
+    }
+
+    /**
+     * Gets runs.
+     *
+     * @return the runs
+     */
+    public Long getRuns() {
+        return runs;
+    }
+
+    /**
+     * Sets runs.
+     *
+     * @param runs the runs
+     */
+    public void setRuns(Long runs) {
+        this.runs = runs;
+    }
+
+    /**
+     * Gets records.
+     *
+     * @return the records
+     */
+    public List<DiffRecords> getRecords() {
+        return records;
+    }
+
+    /**
+     * Sets records.
+     *
+     * @param records the records
+     */
+    public void setRecords(List<DiffRecords> records) {
+        this.records = records;
+    }
+
+    /**
+     * Gets estimate.
+     *
+     * @return the estimate
+     */
+    public DiffEstimate getEstimate() {
+        return estimate;
+    }
+
+    /**
+     * Sets estimate.
+     *
+     * @param estimate the estimate
+     */
+    public void setEstimate(DiffEstimate estimate) {
+        this.estimate = estimate;
+    }
 }
@@ -0,0 +1,100 @@
+package org.juliazo.diff.model;
+
+/**
+ * POJO class for the statistics of the differences, returned instead of the differences
+ * on the summary mode of the diff operation.
+ */
+public class DiffSummary {
+
+    /**
+     * How many sequences of different bytes were found
+     */
+    private long runs;
+
+    /**
+     * How many bytes are different
+     */
+    private long differentBytes;
+
+    /**
+     * How many bits are different (Hamming distance)
+     */
+    private long hammingDistance;
+
+    /**
+     * Ratio of equal bytes, from 0 (every byte differs) to 1 (equal data)
+     */
+    private double similarity;
+
+    /**
+     * Gets runs.
+     *
+     * @return the runs
+     */
+    public long getRuns() {
+        return runs;
+    }
+
+    /**
+     * Sets runs.
+     *
+     * @param runs the runs
+     */
+    public void setRuns(long runs) {
+        this.runs = runs;
+    }
+
+    /**
+     * Gets different bytes.
+     *
+     * @return the different bytes
+     */
+    public long getDifferentBytes() {
+        return differentBytes;
+    }
+
+    /**
+     * Sets different bytes.
+     *
+     * @param differentBytes the different bytes
+     */
+    public void setDifferentBytes(long differentBytes) {
+        this.differentBytes = differentBytes;
+    }
+
+    /**
+     * Gets hamming distance.
+     *
+     * @return the hamming distance
+     */
+    public long getHammingDistance() {
+        return hammingDistance;
+    }
+
+    /**
+     * Sets hamming distance.
+     *
+     * @param hammingDistance the hamming distance
+     */
+    public void setHammingDistance(long hammingDistance) {
+        this.hammingDistance = hammingDistance;
+    }
+
+    /**
+     * Gets similarity.
+     *
+     * @return the similarity
+     */
+    public double getSimilarity() {
+        return similarity;
+    }
+
+    /**
+     * Sets similarity.
+     *
+     * @param similarity the similarity
+     */
+    public void setSimilarity(double similarity) {
+        this.similarity = similarity;
+    }
+}
@@ -0,0 +1,102 @@
+package org.juliazo.diff.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * POJO Class for one record of a bulk export file: both sides of a data set and their diff
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ExportRecord {
+
+    /**
+     * The Id of the data set.
+     */
+    private String id;
+
+    /**
+     * Encoded base 64 data of the Left side, null if missing.
+     */
+    private String left;
+
+    /**
+     * Encoded base 64 data of the Right side, null if missing.
+     */
+    private String right;
+
+    /**
+     * The diff of both sides, null if a side is missing.
+     */
+    private DiffResult diff;
+
+    /**
+     * Gets id.
+     *
+     * @return the id
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Sets id.
+     *
+     * @param id the id
+     */
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    /**
+     * Gets left.
+     *
+     * @return the left
+     */
+    public String getLeft() {
+        return left;
+    }
+
+    /**
+     * Sets left.
+     *
+     * @param left the left
+     */
+    public void setLeft(String left) {
+        this.left = left;
+    }
+
+    /**
+     * Gets right.
+     *
+     * @return the right
+     */
+    public String getRight() {
+        return right;
+    }
+
+    /**
+     * Sets right.
+     *
+     * @param right the right
+     */
+    public void setRight(String right) {
+        this.right = right;
+    }
+
+    /**
+     * Gets diff.
+     *
+     * @return the diff
+     */
+    public DiffResult getDiff() {
+        return diff;
+    }
+
+    /**
+     * Sets diff.
+     *
+     * @param diff the diff
+     */
+    public void setDiff(DiffResult diff) {
+        this.diff = diff;
+    }
+}
@@ -0,0 +1,53 @@
+package org.juliazo.diff.model;
+
+/**
+ * POJO Class for JSON input data starting a bulk export
+ */
+public class ExportRequest {
+
+    /**
+     * The NDJSON file to write, relative to the export directory.
+     */
+    private String file;
+
+    /**
+     * Whether to resume an interrupted export of the same file from its checkpoint.
+     */
+    private boolean resume;
+
+    /**
+     * Gets file.
+     *
+     * @return the file
+     */
+    public String getFile() {
+        return file;
+    }
+
+    /**
+     * Sets file.
+     *
+     * @param file the file
+     */
+    public void setFile(String file) {
+        this.file = file;
+    }
+
+    /**
+     * Gets resume.
+     *
+     * @return the resume
+     */
+    public boolean isResume() {
+        return resume;
+    }
+
+    /**
+     * Sets resume.
+     *
+     * @param resume the resume
+     */
+    public void setResume(boolean resume) {
+        this.resume = resume;
+    }
+}
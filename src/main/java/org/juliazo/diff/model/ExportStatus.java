@@ -0,0 +1,160 @@
+package org.juliazo.diff.model;
+
+/**
+ * POJO Class for JSON output data describing the progress of a bulk export
+ */
+public class ExportStatus {
+
+    /**
+     * State of an export in progress.
+     */
+    public static final String RUNNING = "running";
+
+    /**
+     * State of an export that wrote every data set.
+     */
+    public static final String COMPLETED = "completed";
+
+    /**
+     * State of an export stopped by an error, which can be resumed from its checkpoint.
+     */
+    public static final String FAILED = "failed";
+
+    /**
+     * The file being written.
+     */
+    private String file;
+
+    /**
+     * The state of the export: running, completed or failed.
+     */
+    private String state;
+
+    /**
+     * How many data sets are exported, including the ones exported before resuming.
+     */
+    private long ids;
+
+    /**
+     * Data sets written so far, including the ones written before resuming.
+     */
+    private long exported;
+
+    /**
+     * Size of the file written so far, in bytes.
+     */
+    private long bytesWritten;
+
+    /**
+     * Why the export failed, null unless it failed.
+     */
+    private String message;
+
+    /**
+     * Gets file.
+     *
+     * @return the file
+     */
+    public String getFile() {
+        return file;
+    }
+
+    /**
+     * Sets file.
+     *
+     * @param file the file
+     */
+    public void setFile(String file) {
+        this.file = file;
+    }
+
+    /**
+     * Gets state.
+     *
+     * @return the state
+     */
+    public String getState() {
+        return state;
+    }
+
+    /**
+     * Sets state.
+     *
+     * @param state the state
+     */
+    public void setState(String state) {
+        this.state = state;
+    }
+
+    /**
+     * Gets ids.
+     *
+     * @return the ids
+     */
+    public long getIds() {
+        return ids;
+    }
+
+    /**
+     * Sets ids.
+     *
+     * @param ids the ids
+     */
+    public void setIds(long ids) {
+        this.ids = ids;
+    }
+
+    /**
+     * Gets exported.
+     *
+     * @return the exported
+     */
+    public long getExported() {
+        return exported;
+    }
+
+    /**
+     * Sets exported.
+     *
+     * @param exported the exported
+     */
+    public void setExported(long exported) {
+        this.exported = exported;
+    }
+
+    /**
+     * Gets bytes written.
+     *
+     * @return the bytes written
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Sets bytes written.
+     *
+     * @param bytesWritten the bytes written
+     */
+    public void setBytesWritten(long bytesWritten) {
+        this.bytesWritten = bytesWritten;
+    }
+
+    /**
+     * Gets message.
+     *
+     * @return the message
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Sets message.
+     *
+     * @param message the message
+     */
+    public void setMessage(String message) {
+        this.message = message;
+    }
+}
@@ -0,0 +1,55 @@
+package org.juliazo.diff.model;
+
+import java.util.List;
+
+/**
+ * POJO class for a page of the listing of the stored data sets
+ */
+public class IdPage {
+
+    /**
+     * The data sets of this page, least recently updated first.
+     */
+    private List<IdState> ids;
+
+    /**
+     * Cursor of the next page, null on the last page.
+     */
+    private String next;
+
+    /**
+     * Gets ids.
+     *
+     * @return the ids
+     */
+    public List<IdState> getIds() {
+        return ids;
+    }
+
+    /**
+     * Sets ids.
+     *
+     * @param ids the ids
+     */
+    public void setIds(List<IdState> ids) {
+        this.ids = ids;
+    }
+
+    /**
+     * Gets next.
+     *
+     * @return the next
+     */
+    public String getNext() {
+        return next;
+    }
+
+    /**
+     * Sets next.
+     *
+     * @param next the next
+     */
+    public void setNext(String next) {
+        this.next = next;
+    }
+}
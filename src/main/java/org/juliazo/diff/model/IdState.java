@@ -0,0 +1,76 @@
+package org.juliazo.diff.model;
+
+/**
+ * POJO class for a stored data set as listed by completion state
+ */
+public class IdState {
+
+    /**
+     * The Id of the data set.
+     */
+    private String id;
+
+    /**
+     * Which sides of the data set were received.
+     */
+    private CompletionState state;
+
+    /**
+     * When a side of the data set was last updated, in milliseconds since the epoch.
+     */
+    private long updatedAt;
+
+    /**
+     * Gets id.
+     *
+     * @return the id
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Sets id.
+     *
+     * @param id the id
+     */
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    /**
+     * Gets state.
+     *
+     * @return the state
+     */
+    public CompletionState getState() {
+        return state;
+    }
+
+    /**
+     * Sets state.
+     *
+     * @param state the state
+     */
+    public void setState(CompletionState state) {
+        this.state = state;
+    }
+
+    /**
+     * Gets updated at.
+     *
+     * @return the updated at
+     */
+    public long getUpdatedAt() {
+        return updatedAt;
+    }
+
+    /**
+     * Sets updated at.
+     *
+     * @param updatedAt the updated at
+     */
+    public void setUpdatedAt(long updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
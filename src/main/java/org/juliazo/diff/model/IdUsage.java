@@ -0,0 +1,76 @@
+package org.juliazo.diff.model;
+
+/**
+ * POJO class for the memory used by one data set
+ */
+public class IdUsage {
+
+    /**
+     * The Id of the data set.
+     */
+    private String id;
+
+    /**
+     * Bytes held by the versions of both sides.
+     */
+    private long dataBytes;
+
+    /**
+     * Bytes held by the diff result computed in background, 0 if none.
+     */
+    private long resultBytes;
+
+    /**
+     * Gets id.
+     *
+     * @return the id
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Sets id.
+     *
+     * @param id the id
+     */
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    /**
+     * Gets data bytes.
+     *
+     * @return the data bytes
+     */
+    public long getDataBytes() {
+        return dataBytes;
+    }
+
+    /**
+     * Sets data bytes.
+     *
+     * @param dataBytes the data bytes
+     */
+    public void setDataBytes(long dataBytes) {
+        this.dataBytes = dataBytes;
+    }
+
+    /**
+     * Gets result bytes.
+     *
+     * @return the result bytes
+     */
+    public long getResultBytes() {
+        return resultBytes;
+    }
+
+    /**
+     * Sets result bytes.
+     *
+     * @param resultBytes the result bytes
+     */
+    public void setResultBytes(long resultBytes) {
+        this.resultBytes = resultBytes;
+    }
+}
@@ -0,0 +1,76 @@
+package org.juliazo.diff.model;
+
+/**
+ * POJO Class for one record of a bulk import file: both sides of a data set
+ */
+public class ImportRecord {
+
+    /**
+     * The Id of the data set.
+     */
+    private String id;
+
+    /**
+     * Encoded base 64 data of the Left side.
+     */
+    private String left;
+
+    /**
+     * Encoded base 64 data of the Right side.
+     */
+    private String right;
+
+    /**
+     * Gets id.
+     *
+     * @return the id
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Sets id.
+     *
+     * @param id the id
+     */
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    /**
+     * Gets left.
+     *
+     * @return the left
+     */
+    public String getLeft() {
+        return left;
+    }
+
+    /**
+     * Sets left.
+     *
+     * @param left the left
+     */
+    public void setLeft(String left) {
+        this.left = left;
+    }
+
+    /**
+     * Gets right.
+     *
+     * @return the right
+     */
+    public String getRight() {
+        return right;
+    }
+
+    /**
+     * Sets right.
+     *
+     * @param right the right
+     */
+    public void setRight(String right) {
+        this.right = right;
+    }
+}
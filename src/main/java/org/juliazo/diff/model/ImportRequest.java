@@ -0,0 +1,30 @@
+package org.juliazo.diff.model;
+
+/**
+ * POJO Class for JSON input data starting a bulk import
+ */
+public class ImportRequest {
+
+    /**
+     * The NDJSON file to import, relative to the import directory.
+     */
+    private String file;
+
+    /**
+     * Gets file.
+     *
+     * @return the file
+     */
+    public String getFile() {
+        return file;
+    }
+
+    /**
+     * Sets file.
+     *
+     * @param file the file
+     */
+    public void setFile(String file) {
+        this.file = file;
+    }
+}
@@ -0,0 +1,231 @@
+package org.juliazo.diff.model;
+
+import java.util.List;
+
+/**
+ * POJO Class for JSON output data describing the progress of a bulk import
+ */
+public class ImportStatus {
+
+    /**
+     * State of an import in progress.
+     */
+    public static final String RUNNING = "running";
+
+    /**
+     * State of an import that read the whole file.
+     */
+    public static final String COMPLETED = "completed";
+
+    /**
+     * State of an import stopped by an error reading the file.
+     */
+    public static final String FAILED = "failed";
+
+    /**
+     * The file being imported.
+     */
+    private String file;
+
+    /**
+     * The state of the import: running, completed or failed.
+     */
+    private String state;
+
+    /**
+     * Size of the file, in bytes.
+     */
+    private long totalBytes;
+
+    /**
+     * Bytes of the file read so far.
+     */
+    private long bytesRead;
+
+    /**
+     * Records read so far, blank lines excluded.
+     */
+    private long records;
+
+    /**
+     * Records stored so far.
+     */
+    private long imported;
+
+    /**
+     * Records rejected so far.
+     */
+    private long rejected;
+
+    /**
+     * The line and the reason of the first records rejected.
+     */
+    private List<String> rejections;
+
+    /**
+     * Why the import failed, null unless it failed.
+     */
+    private String message;
+
+    /**
+     * Gets file.
+     *
+     * @return the file
+     */
+    public String getFile() {
+        return file;
+    }
+
+    /**
+     * Sets file.
+     *
+     * @param file the file
+     */
+    public void setFile(String file) {
+        this.file = file;
+    }
+
+    /**
+     * Gets state.
+     *
+     * @return the state
+     */
+    public String getState() {
+        return state;
+    }
+
+    /**
+     * Sets state.
+     *
+     * @param state the state
+     */
+    public void setState(String state) {
+        this.state = state;
+    }
+
+    /**
+     * Gets total bytes.
+     *
+     * @return the total bytes
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Sets total bytes.
+     *
+     * @param totalBytes the total bytes
+     */
+    public void setTotalBytes(long totalBytes) {
+        this.totalBytes = totalBytes;
+    }
+
+    /**
+     * Gets bytes read.
+     *
+     * @return the bytes read
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * Sets bytes read.
+     *
+     * @param bytesRead the bytes read
+     */
+    public void setBytesRead(long bytesRead) {
+        this.bytesRead = bytesRead;
+    }
+
+    /**
+     * Gets records.
+     *
+     * @return the records
+     */
+    public long getRecords() {
+        return records;
+    }
+
+    /**
+     * Sets records.
+     *
+     * @param records the records
+     */
+    public void setRecords(long records) {
+        this.records = records;
+    }
+
+    /**
+     * Gets imported.
+     *
+     * @return the imported
+     */
+    public long getImported() {
+        return imported;
+    }
+
+    /**
+     * Sets imported.
+     *
+     * @param imported the imported
+     */
+    public void setImported(long imported) {
+        this.imported = imported;
+    }
+
+    /**
+     * Gets rejected.
+     *
+     * @return the rejected
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * Sets rejected.
+     *
+     * @param rejected the rejected
+     */
+    public void setRejected(long rejected) {
+        this.rejected = rejected;
+    }
+
+    /**
+     * Gets rejections.
+     *
+     * @return the rejections
+     */
+    public List<String> getRejections() {
+        return rejections;
+    }
+
+    /**
+     * Sets rejections.
+     *
+     * @param rejections the rejections
+     */
+    public void setRejections(List<String> rejections) {
+        this.rejections = rejections;
+    }
+
+    /**
+     * Gets message.
+     *
+     * @return the message
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Sets message.
+     *
+     * @param message the message
+     */
+    public void setMessage(String message) {
+        this.message = message;
+    }
+}
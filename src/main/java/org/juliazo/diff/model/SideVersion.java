@@ -0,0 +1,53 @@
+package org.juliazo.diff.model;
+
+/**
+ * POJO class for a version kept of a side of the diff
+ */
+public class SideVersion {
+
+    /**
+     * The version number. The first version of a side is 1.
+     */
+    private long version;
+
+    /**
+     * Size of the decoded data of this version, in bytes
+     */
+    private int length;
+
+    /**
+     * Gets version.
+     *
+     * @return the version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Sets version.
+     *
+     * @param version the version
+     */
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    /**
+     * Gets length.
+     *
+     * @return the length
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Sets length.
+     *
+     * @param length the length
+     */
+    public void setLength(int length) {
+        this.length = length;
+    }
+}
@@ -0,0 +1,193 @@
+package org.juliazo.diff.model;
+
+import java.util.List;
+
+/**
+ * POJO class for the memory used by the storage and its budgets
+ */
+public class StorageUsage {
+
+    /**
+     * How many data sets are stored.
+     */
+    private int ids;
+
+    /**
+     * Bytes held by the versions of the sides of every data set.
+     */
+    private long dataBytes;
+
+    /**
+     * Bytes held by the diff results computed in background.
+     */
+    private long resultBytes;
+
+    /**
+     * Bytes held by the chunks of the uploads not committed yet.
+     */
+    private long stagedBytes;
+
+    /**
+     * Bytes held by the data sets, the diff results and the uploads, checked against the global budget.
+     */
+    private long totalBytes;
+
+    /**
+     * The global budget, 0 if unlimited.
+     */
+    private long maxTotalBytes;
+
+    /**
+     * The budget of each data set, 0 if unlimited.
+     */
+    private long maxIdBytes;
+
+    /**
+     * The data sets holding the most bytes, largest first.
+     */
+    private List<IdUsage> largestIds;
+
+    /**
+     * Gets ids.
+     *
+     * @return the ids
+     */
+    public int getIds() {
+        return ids;
+    }
+
+    /**
+     * Sets ids.
+     *
+     * @param ids the ids
+     */
+    public void setIds(int ids) {
+        this.ids = ids;
+    }
+
+    /**
+     * Gets data bytes.
+     *
+     * @return the data bytes
+     */
+    public long getDataBytes() {
+        return dataBytes;
+    }
+
+    /**
+     * Sets data bytes.
+     *
+     * @param dataBytes the data bytes
+     */
+    public void setDataBytes(long dataBytes) {
+        this.dataBytes = dataBytes;
+    }
+
+    /**
+     * Gets result bytes.
+     *
+     * @return the result bytes
+     */
+    public long getResultBytes() {
+        return resultBytes;
+    }
+
+    /**
+     * Sets result bytes.
+     *
+     * @param resultBytes the result bytes
+     */
+    public void setResultBytes(long resultBytes) {
+        this.resultBytes = resultBytes;
+    }
+
+    /**
+     * Gets staged bytes.
+     *
+     * @return the staged bytes
+     */
+    public long getStagedBytes() {
+        return stagedBytes;
+    }
+
+    /**
+     * Sets staged bytes.
+     *
+     * @param stagedBytes the staged bytes
+     */
+    public void setStagedBytes(long stagedBytes) {
+        this.stagedBytes = stagedBytes;
+    }
+
+    /**
+     * Gets total bytes.
+     *
+     * @return the total bytes
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Sets total bytes.
+     *
+     * @param totalBytes the total bytes
+     */
+    public void setTotalBytes(long totalBytes) {
+        this.totalBytes = totalBytes;
+    }
+
+    /**
+     * Gets max total bytes.
+     *
+     * @return the max total bytes
+     */
+    public long getMaxTotalBytes() {
+        return maxTotalBytes;
+    }
+
+    /**
+     * Sets max total bytes.
+     *
+     * @param maxTotalBytes the max total bytes
+     */
+    public void setMaxTotalBytes(long maxTotalBytes) {
+        this.maxTotalBytes = maxTotalBytes;
+    }
+
+    /**
+     * Gets max id bytes.
+     *
+     * @return the max id bytes
+     */
+    public long getMaxIdBytes() {
+        return maxIdBytes;
+    }
+
+    /**
+     * Sets max id bytes.
+     *
+     * @param maxIdBytes the max id bytes
+     */
+    public void setMaxIdBytes(long maxIdBytes) {
+        this.maxIdBytes = maxIdBytes;
+    }
+
+    /**
+     * Gets largest ids.
+     *
+     * @return the largest ids
+     */
+    public List<IdUsage> getLargestIds() {
+        return largestIds;
+    }
+
+    /**
+     * Sets largest ids.
+     *
+     * @param largestIds the largest ids
+     */
+    public void setLargestIds(List<IdUsage> largestIds) {
+        this.largestIds = largestIds;
+    }
+}
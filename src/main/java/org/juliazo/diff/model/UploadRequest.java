@@ -0,0 +1,30 @@
+package org.juliazo.diff.model;
+
+/**
+ * POJO Class for JSON input data starting a chunked upload
+ */
+public class UploadRequest {
+
+    /**
+     * How many chunks the upload will be sent in. User input.
+     */
+    private Integer chunks;
+
+    /**
+     * Gets chunks.
+     *
+     * @return the chunks
+     */
+    public Integer getChunks() {
+        return chunks;
+    }
+
+    /**
+     * Sets chunks.
+     *
+     * @param chunks the chunks
+     */
+    public void setChunks(Integer chunks) {
+        this.chunks = chunks;
+    }
+}
@@ -0,0 +1,124 @@
+package org.juliazo.diff.model;
+
+import java.util.List;
+
+/**
+ * POJO Class for JSON output data describing the progress of a chunked upload
+ */
+public class UploadStatus {
+
+    /**
+     * The Upload id. Generated when the upload starts.
+     */
+    private String uploadId;
+
+    /**
+     * The Id of the data set receiving the upload.
+     */
+    private String id;
+
+    /**
+     * The Side of the diff receiving the upload, left or right.
+     */
+    private String side;
+
+    /**
+     * How many chunks the upload is sent in.
+     */
+    private int chunks;
+
+    /**
+     * Indexes of the chunks not received yet, starting at 0.
+     */
+    private List<Integer> missingChunks;
+
+    /**
+     * Gets upload id.
+     *
+     * @return the upload id
+     */
+    public String getUploadId() {
+        return uploadId;
+    }
+
+    /**
+     * Sets upload id.
+     *
+     * @param uploadId the upload id
+     */
+    public void setUploadId(String uploadId) {
+        this.uploadId = uploadId;
+    }
+
+    /**
+     * Gets id.
+     *
+     * @return the id
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Sets id.
+     *
+     * @param id the id
+     */
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    /**
+     * Gets side.
+     *
+     * @return the side
+     */
+    public String getSide() {
+        return side;
+    }
+
+    /**
+     * Sets side.
+     *
+     * @param side the side
+     */
+    public void setSide(String side) {
+        this.side = side;
+    }
+
+    /**
+     * Gets chunks.
+     *
+     * @return the chunks
+     */
+    public int getChunks() {
+        return chunks;
+    }
+
+    /**
+     * Sets chunks.
+     *
+     * @param chunks the chunks
+     */
+    public void setChunks(int chunks) {
+        this.chunks = chunks;
+    }
+
+    /**
+     * Gets missing chunks.
+     *
+     * @return the missing chunks
+     */
+    public List<Integer> getMissingChunks() {
+        return missingChunks;
+    }
+
+    /**
+     * Sets missing chunks.
+     *
+     * @param missingChunks the missing chunks
+     */
+    public void setMissingChunks(List<Integer> missingChunks) {
+        this.missingChunks = missingChunks;
+    }
+}
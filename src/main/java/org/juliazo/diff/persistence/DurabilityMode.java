@@ -0,0 +1,24 @@
+package org.juliazo.diff.persistence;
+
+/**
+ * How long a write to the {@link WriteAheadLog} waits before being acknowledged.
+ */
+public enum DurabilityMode {
+
+    /**
+     * Records are handed to the operating system and never forced to disk.
+     * Survives a crash of the application, not of the machine.
+     */
+    NONE,
+
+    /**
+     * Group commit: each writer waits until its record is forced to disk, but concurrent
+     * writers share a single force call.
+     */
+    BATCHED,
+
+    /**
+     * Every record is forced to disk on its own before the next one is written.
+     */
+    PER_WRITE
+}
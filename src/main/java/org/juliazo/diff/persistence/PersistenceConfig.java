@@ -0,0 +1,40 @@
+package org.juliazo.diff.persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.nio.file.Paths;
+
+/**
+ * Persistence configuration. Only active when property diff.persistence.enabled is true,
+ * otherwise the storage is kept in memory only.
+ */
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "diff.persistence.enabled", havingValue = "true")
+public class PersistenceConfig {
+
+    /**
+     * The constant logger.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(PersistenceConfig.class);
+
+    /**
+     * Creates the write-ahead log of the storage.
+     *
+     * @param directory         directory holding log segments and snapshots
+     * @param durabilityMode    the durability mode: NONE, BATCHED or PER_WRITE
+     * @return the write-ahead log
+     */
+    @Bean(destroyMethod = "close")
+    public WriteAheadLog writeAheadLog(@Value("${diff.persistence.directory:./data}") String directory,
+                                       @Value("${diff.persistence.durability:BATCHED}") DurabilityMode durabilityMode) {
+        logger.info("Persistence enabled on " + directory + " with durability " + durabilityMode);
+        return new WriteAheadLog(Paths.get(directory), durabilityMode);
+    }
+}
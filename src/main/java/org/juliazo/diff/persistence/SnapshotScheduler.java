@@ -0,0 +1,53 @@
+package org.juliazo.diff.persistence;
+
+import org.juliazo.diff.service.DiffService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Periodically snapshots the storage, keeping the write-ahead log short so replay on restart stays fast.
+ * Only active when persistence is enabled.
+ */
+@Component
+@ConditionalOnProperty(name = "diff.persistence.enabled", havingValue = "true")
+public class SnapshotScheduler {
+
+    /**
+     * The constant logger.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotScheduler.class);
+
+    /**
+     * The Diff Service, holds the storage.
+     */
+    private final DiffService diffService;
+
+    /**
+     * Instantiates a new Snapshot scheduler.
+     *
+     * @param diffService the diff service
+     */
+    @Autowired
+    public SnapshotScheduler(DiffService diffService) {
+        this.diffService = diffService;
+    }
+
+    /**
+     * Writes a snapshot of the storage. Runs every diff.persistence.snapshot-interval-ms milliseconds.
+     */
+    @Scheduled(initialDelayString = "${diff.persistence.snapshot-interval-ms:300000}",
+            fixedDelayString = "${diff.persistence.snapshot-interval-ms:300000}")
+    public void snapshot() {
+        try {
+            diffService.snapshot();
+        } catch (IOException e) {
+            logger.error("Could not write snapshot: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,609 @@
+package org.juliazo.diff.persistence;
+
+import org.juliazo.diff.model.Base64Data;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead log of the updates made to each side of the diff storage.
+ *
+ * The log is split into segments (wal-GENERATION.log). A snapshot of the whole storage starts a
+ * new generation, after which the older segments are deleted, so replay on restart only reads
+ * the latest snapshot and the segments written after it.
+ *
+ * Each record is framed by its length and CRC32, so a record torn by a crash is detected and
+ * dropped on recovery together with anything written after it.
+ *
+ * Appending and waiting for durability are separate steps: callers append while holding their
+ * own ordering lock and wait for the force outside of it, which lets concurrent writers be
+ * committed together by a single force call on {@link DurabilityMode#BATCHED}.
+ */
+public class WriteAheadLog implements AutoCloseable {
+
+    /**
+     * Record type: left side updated.
+     */
+    public static final byte LEFT = 'L';
+
+    /**
+     * Record type: right side updated.
+     */
+    public static final byte RIGHT = 'R';
+
+    /**
+     * Record type: data set removed.
+     */
+    public static final byte REMOVE = 'D';
+
+    /**
+     * Identifies snapshot files.
+     */
+    private static final int SNAPSHOT_MAGIC = 0x42364453;
+
+    /**
+     * Largest record body, the largest array the VM allocates. A longer length read on recovery
+     * can only come from a corrupted frame.
+     */
+    static final int MAX_RECORD_BYTES = Integer.MAX_VALUE - 8;
+
+    /**
+     * The constant logger.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(WriteAheadLog.class);
+
+    /**
+     * Directory holding segments and snapshots.
+     */
+    private final Path directory;
+
+    /**
+     * The durability mode.
+     */
+    private final DurabilityMode durabilityMode;
+
+    /**
+     * Segment currently receiving appends.
+     */
+    private FileChannel channel;
+
+    /**
+     * Generation of the current segment.
+     */
+    private long generation;
+
+    /**
+     * Sequence number of the last record appended. Guarded by this.
+     */
+    private long appendedSequence;
+
+    /**
+     * Guards the group commit state below.
+     */
+    private final Object syncMonitor = new Object();
+
+    /**
+     * Sequence number of the last record known to be on disk.
+     */
+    private long syncedSequence;
+
+    /**
+     * Whether a writer is currently forcing the log on behalf of the group.
+     */
+    private boolean syncing;
+
+    /**
+     * How many times the log was forced to disk. Exposed to measure the group commit.
+     */
+    private final AtomicLong forceCount = new AtomicLong();
+
+    /**
+     * Instantiates a new Write ahead log. Call {@link #recover(RecoveryHandler)} before appending.
+     *
+     * @param directory         directory holding segments and snapshots, created if needed
+     * @param durabilityMode    the durability mode
+     */
+    public WriteAheadLog(Path directory, DurabilityMode durabilityMode) {
+        this.directory = directory;
+        this.durabilityMode = durabilityMode;
+    }
+
+    /**
+     * Receives the updates replayed on recovery.
+     */
+    public interface RecoveryHandler {
+
+        /**
+         * A side of a data set was set.
+         *
+         * @param type  {@link #LEFT} or {@link #RIGHT}
+         * @param id    the unique identifier of the data set
+         * @param data  encoded base 64 data of the side
+         */
+        void side(byte type, String id, String data);
+
+        /**
+         * A data set was removed.
+         *
+         * @param id    the unique identifier of the data set
+         */
+        void remove(String id);
+    }
+
+    /**
+     * Loads the latest snapshot and replays the segments written after it through the given handler,
+     * then opens a new segment for appends.
+     *
+     * @param handler   receives the replayed updates
+     * @return how many log records were replayed
+     * @throws IOException if the log cannot be read
+     */
+    public synchronized long recover(RecoveryHandler handler) throws IOException {
+        Files.createDirectories(directory);
+        long snapshotGeneration = loadLatestSnapshot(handler);
+
+        long replayed = 0;
+        long lastGeneration = snapshotGeneration;
+        for (long segment : listGenerations("wal-", ".log")) {
+            if (segment >= snapshotGeneration) {
+                replayed += replaySegment(segmentPath(segment), handler);
+                lastGeneration = Math.max(lastGeneration, segment);
+            }
+        }
+        openSegment(lastGeneration + 1);
+        logger.info("Recovered from snapshot " + snapshotGeneration + ", replayed " + replayed + " log records");
+        return replayed;
+    }
+
+    /**
+     * Appends a record to the log. The record is not durable until {@link #awaitDurable(long)} returns,
+     * except on {@link DurabilityMode#PER_WRITE}.
+     *
+     * @param type  the record type: {@link #LEFT}, {@link #RIGHT} or {@link #REMOVE}
+     * @param id    the unique identifier of the data set
+     * @param data  encoded base 64 data of the side, ignored on {@link #REMOVE}
+     * @return the sequence number of the record
+     * @throws IOException if the record cannot be written
+     */
+    public synchronized long append(byte type, String id, String data) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(body);
+        out.writeByte(type);
+        out.writeUTF(id);
+        byte[] bytes = data == null ? new byte[0] : data.getBytes(StandardCharsets.US_ASCII);
+        if (bytes.length > MAX_RECORD_BYTES - body.size() - 4) {
+            throw new IOException("Record of id " + id + " too large for the log");
+        }
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        out.flush();
+
+        byte[] record = body.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        ByteBuffer buffer = ByteBuffer.allocate(8 + record.length);
+        buffer.putInt(record.length).putInt((int) crc.getValue()).put(record);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+
+        appendedSequence++;
+        if (durabilityMode == DurabilityMode.PER_WRITE) {
+            force();
+            synchronized (syncMonitor) {
+                syncedSequence = appendedSequence;
+            }
+        }
+        return appendedSequence;
+    }
+
+    /**
+     * Waits until the record with the given sequence number is on disk, according to the durability mode.
+     * On {@link DurabilityMode#BATCHED} the first waiting writer forces the log for every record appended
+     * so far while the others wait for it; writers that arrive during that force are committed by the next one.
+     *
+     * @param sequence  the sequence number returned by {@link #append(byte, String, String)}
+     * @throws IOException if the log cannot be forced
+     */
+    public void awaitDurable(long sequence) throws IOException {
+        if (durabilityMode != DurabilityMode.BATCHED) {
+            return;
+        }
+        synchronized (syncMonitor) {
+            while (syncing && syncedSequence < sequence) {
+                try {
+                    syncMonitor.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for the log", e);
+                }
+            }
+            if (syncedSequence >= sequence) {
+                return;
+            }
+            syncing = true;
+        }
+
+        long target;
+        FileChannel current;
+        synchronized (this) {
+            target = appendedSequence;
+            current = channel;
+        }
+        boolean forced = false;
+        try {
+            current.force(false);
+            forceCount.incrementAndGet();
+            forced = true;
+        } catch (ClosedChannelException e) {
+            //a rollover forced and closed this segment in the meantime
+            forced = true;
+        } finally {
+            synchronized (syncMonitor) {
+                if (forced) {
+                    syncedSequence = Math.max(syncedSequence, target);
+                }
+                syncing = false;
+                syncMonitor.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Closes the current segment and starts a new generation. Must be called while no update is
+     * between being applied and being appended, so the snapshot taken afterwards contains every
+     * record of the older segments.
+     *
+     * @return the new generation, to be passed to {@link #writeSnapshot(Iterable, long)}
+     * @throws IOException if the segments cannot be switched
+     */
+    public synchronized long rollover() throws IOException {
+        force();
+        synchronized (syncMonitor) {
+            syncedSequence = appendedSequence;
+        }
+        channel.close();
+        openSegment(generation + 1);
+        return generation;
+    }
+
+    /**
+     * Writes a snapshot of the storage for the given generation and deletes the older snapshots and
+     * segments. The snapshot is written to a temporary file and renamed, so a crash leaves either the
+     * previous or the new snapshot.
+     *
+     * @param entries       the data sets of the storage, read after {@link #rollover()}
+     * @param generation    the generation returned by {@link #rollover()}
+     * @throws IOException if the snapshot cannot be written
+     */
+    public void writeSnapshot(Iterable<Base64Data> entries, long generation) throws IOException {
+        Path temporary = directory.resolve("snapshot.tmp");
+        try (FileChannel snapshot = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    Channels.newOutputStream(snapshot), 1 << 16));
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(generation);
+            long count = 0;
+            for (Base64Data entry : entries) {
+                out.writeBoolean(true);
+                out.writeUTF(entry.getId());
+                writeString(out, entry.getLeftData());
+                writeString(out, entry.getRightData());
+                count++;
+            }
+            out.writeBoolean(false);
+            out.writeLong(count);
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.flush();
+            snapshot.force(true);
+        }
+        Files.move(temporary, snapshotPath(generation), StandardCopyOption.ATOMIC_MOVE);
+
+        for (long older : listGenerations("snapshot-", ".dat")) {
+            if (older < generation) {
+                Files.deleteIfExists(snapshotPath(older));
+            }
+        }
+        for (long older : listGenerations("wal-", ".log")) {
+            if (older < generation) {
+                Files.deleteIfExists(segmentPath(older));
+            }
+        }
+        logger.info("Snapshot written for generation " + generation);
+    }
+
+    /**
+     * Gets how many times the log was forced to disk.
+     *
+     * @return the force count
+     */
+    public long getForceCount() {
+        return forceCount.get();
+    }
+
+    /**
+     * Gets the durability mode.
+     *
+     * @return the durability mode
+     */
+    public DurabilityMode getDurabilityMode() {
+        return durabilityMode;
+    }
+
+    /**
+     * Forces and closes the current segment.
+     *
+     * @throws IOException if the segment cannot be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null && channel.isOpen()) {
+            if (durabilityMode != DurabilityMode.NONE) {
+                force();
+            }
+            channel.close();
+        }
+    }
+
+    /**
+     * Forces the current segment to disk.
+     *
+     * @throws IOException if the segment cannot be forced
+     */
+    private synchronized void force() throws IOException {
+        channel.force(false);
+        forceCount.incrementAndGet();
+    }
+
+    /**
+     * Opens a new segment for appends.
+     *
+     * @param newGeneration the generation of the segment
+     * @throws IOException if the segment cannot be created
+     */
+    private void openSegment(long newGeneration) throws IOException {
+        generation = newGeneration;
+        channel = FileChannel.open(segmentPath(newGeneration), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Replays the records of a segment into the storage. Stops at the first torn or corrupted record,
+     * including a record whose length does not fit in the rest of the segment, and truncates the segment there.
+     *
+     * @param segment   the segment path
+     * @param handler   receives the replayed updates
+     * @return how many records were replayed
+     * @throws IOException if the segment cannot be read
+     */
+    private long replaySegment(Path segment, RecoveryHandler handler) throws IOException {
+        long replayed = 0;
+        long validLength = 0;
+        try (FileChannel file = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    Channels.newInputStream(file), 1 << 16));
+            long size = file.size();
+            while (true) {
+                byte[] record = readRecord(in, size - validLength);
+                if (record == null) {
+                    break;
+                }
+                apply(record, handler);
+                validLength += 8 + record.length;
+                replayed++;
+            }
+            if (validLength < size) {
+                logger.warn("Dropping " + (size - validLength) + " torn bytes at the end of " + segment);
+                file.truncate(validLength);
+            }
+        }
+        return replayed;
+    }
+
+    /**
+     * Reads one framed record. The length of the frame is checked before the body is allocated,
+     * so a corrupted length is treated as a checksum mismatch instead of allocating up to 2 GB.
+     *
+     * @param in        the segment input
+     * @param remaining how many bytes of the segment are left, including the frame
+     * @return the record body, or null at the end of the segment or on a torn or corrupted record
+     * @throws IOException if the segment cannot be read
+     */
+    private static byte[] readRecord(DataInputStream in, long remaining) throws IOException {
+        try {
+            int length = in.readInt();
+            int checksum = in.readInt();
+            if (length < 0 || length > MAX_RECORD_BYTES || length > remaining - 8) {
+                return null;
+            }
+            byte[] record = new byte[length];
+            in.readFully(record);
+            CRC32 crc = new CRC32();
+            crc.update(record);
+            return (int) crc.getValue() == checksum ? record : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Applies a record through the handler.
+     *
+     * @param record    the record body
+     * @param handler   receives the replayed update
+     * @throws IOException if the record cannot be decoded
+     */
+    private static void apply(byte[] record, RecoveryHandler handler) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        byte type = in.readByte();
+        String id = in.readUTF();
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+
+        if (type == REMOVE) {
+            handler.remove(id);
+        } else {
+            handler.side(type, id, new String(bytes, StandardCharsets.US_ASCII));
+        }
+    }
+
+    /**
+     * Loads the most recent complete snapshot through the handler. Each snapshot is checked
+     * before being loaded, so an incomplete one is skipped without touching the storage.
+     *
+     * @param handler   receives the data sets of the snapshot
+     * @return the generation of the snapshot, 0 if there is none
+     * @throws IOException if the directory cannot be listed
+     */
+    private long loadLatestSnapshot(RecoveryHandler handler) throws IOException {
+        List<Long> snapshots = listGenerations("snapshot-", ".dat");
+        Collections.reverse(snapshots);
+        for (long snapshot : snapshots) {
+            try {
+                readSnapshot(snapshot, null);
+            } catch (IOException e) {
+                logger.error("Ignoring unreadable snapshot " + snapshot + ": " + e.getMessage());
+                continue;
+            }
+            readSnapshot(snapshot, handler);
+            return snapshot;
+        }
+        return 0;
+    }
+
+    /**
+     * Reads a snapshot.
+     *
+     * @param snapshot  the generation of the snapshot
+     * @param handler   receives the data sets of the snapshot, null to only check the snapshot
+     * @throws IOException if the snapshot cannot be read or is incomplete
+     */
+    private void readSnapshot(long snapshot, RecoveryHandler handler) throws IOException {
+        long size = Files.size(snapshotPath(snapshot));
+        try (InputStream file = Files.newInputStream(snapshotPath(snapshot))) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(file, 1 << 16));
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readLong() != snapshot) {
+                throw new IOException("Invalid snapshot header");
+            }
+            long count = 0;
+            while (in.readBoolean()) {
+                String id = in.readUTF();
+                String left = readString(in, size);
+                String right = readString(in, size);
+                if (handler != null) {
+                    if (!left.isEmpty()) {
+                        handler.side(LEFT, id, left);
+                    }
+                    if (!right.isEmpty()) {
+                        handler.side(RIGHT, id, right);
+                    }
+                }
+                count++;
+            }
+            if (in.readLong() != count || in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Invalid snapshot trailer");
+            }
+        }
+    }
+
+    /**
+     * Lists the generations of the files with the given prefix and suffix, in ascending order.
+     *
+     * @param prefix    the file name prefix
+     * @param suffix    the file name suffix
+     * @return the generations
+     * @throws IOException if the directory cannot be listed
+     */
+    private List<Long> listGenerations(String prefix, String suffix) throws IOException {
+        List<Long> generations = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    generations.add(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())));
+                } catch (NumberFormatException e) {
+                    logger.warn("Ignoring unexpected file " + name);
+                }
+            }
+        }
+        Collections.sort(generations);
+        return generations;
+    }
+
+    /**
+     * Path of a segment.
+     *
+     * @param segmentGeneration the generation
+     * @return the path
+     */
+    private Path segmentPath(long segmentGeneration) {
+        return directory.resolve(String.format("wal-%019d.log", segmentGeneration));
+    }
+
+    /**
+     * Path of a snapshot.
+     *
+     * @param snapshotGeneration    the generation
+     * @return the path
+     */
+    private Path snapshotPath(long snapshotGeneration) {
+        return directory.resolve(String.format("snapshot-%019d.dat", snapshotGeneration));
+    }
+
+    /**
+     * Writes a Base64 string, which may be longer than {@link DataOutputStream#writeUTF(String)} allows.
+     *
+     * @param out   the output
+     * @param value the value
+     * @throws IOException if the value cannot be written
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.US_ASCII);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a string written by {@link #writeString(DataOutputStream, String)}.
+     *
+     * @param in        the input
+     * @param maxLength the size of the file, no string is longer
+     * @return the value
+     * @throws IOException if the value cannot be read or its length is corrupted
+     */
+    private static String readString(DataInputStream in, long maxLength) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > maxLength) {
+            throw new IOException("Invalid snapshot string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+}
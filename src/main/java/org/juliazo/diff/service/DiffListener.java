@@ -0,0 +1,15 @@
+package org.juliazo.diff.service;
+
+/**
+ * Listener of the updates of the storage, notified once an update is applied (and durable,
+ * when persistence is enabled). Notified on the thread of the update, so it must not block.
+ */
+public interface DiffListener {
+
+    /**
+     * Called after a side of a data set is updated.
+     *
+     * @param id    the unique identifier of the data set
+     */
+    void sideUpdated(String id);
+}
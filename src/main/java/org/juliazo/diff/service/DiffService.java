@@ -1,22 +1,72 @@
 package org.juliazo.diff.service;
 
 import org.apache.tomcat.util.codec.binary.Base64;
+import org.juliazo.diff.commons.buffer.ByteArrayPool;
 import org.juliazo.diff.commons.exception.CompromisedDataException;
+import org.juliazo.diff.engine.DiffEngine;
 import org.juliazo.diff.model.Base64Data;
+import org.juliazo.diff.model.CompletionState;
 import org.juliazo.diff.model.DiffBytes;
+import org.juliazo.diff.model.DiffEstimate;
+import org.juliazo.diff.model.DiffQuery;
 import org.juliazo.diff.model.DiffResult;
 import org.juliazo.diff.model.ErrorPayload;
+import org.juliazo.diff.model.ExportRecord;
+import org.juliazo.diff.model.IdPage;
+import org.juliazo.diff.model.IdState;
+import org.juliazo.diff.model.IdUsage;
+import org.juliazo.diff.model.SideVersion;
+import org.juliazo.diff.model.StorageUsage;
+import org.juliazo.diff.persistence.WriteAheadLog;
+import org.juliazo.diff.storage.ArraySide;
+import org.juliazo.diff.storage.Base64Side;
+import org.juliazo.diff.storage.EncodedSide;
+import org.juliazo.diff.storage.SideHistory;
+import org.juliazo.diff.storage.StateIndex;
+import org.juliazo.diff.storage.StorageCodec;
+import org.juliazo.diff.storage.StoredData;
+import org.juliazo.diff.storage.StoredSide;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.security.SecureRandom;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Business logic of the REST Service. This class holds the implementation of all
@@ -33,13 +83,361 @@ public class DiffService {
      */
     private static final Logger logger = LoggerFactory.getLogger(DiffService.class);
 
+    /**
+     * Bytes held by each difference of a diff result: its offset and length.
+     */
+    static final long DIFF_BYTES_SIZE = 2 * Long.BYTES;
+
+    /**
+     * Bytes held by the summary of a diff result: its three counters and the similarity.
+     */
+    static final long SUMMARY_SIZE = 3 * Long.BYTES + Double.BYTES;
+
+    /**
+     * Size of a diff computed in background once its bytes are no longer accounted.
+     */
+    private static final long RELEASED = -1;
+
+    /**
+     * Maximum number of data sets listed on each page.
+     */
+    static final int MAX_PAGE_SIZE = 1000;
+
+    /**
+     * Header of the streamed differences telling whether both sides have the same size.
+     */
+    public static final String EQUAL_SIZE_HEADER = "X-Diff-Equal-Size";
+
+    /**
+     * Bytes of each streamed difference: its offset and length, as big endian 64 bit integers.
+     */
+    public static final int RUN_SIZE = 2 * Long.BYTES;
+
+    /**
+     * Size of the buffer the streamed differences are written through.
+     */
+    private static final int RUN_BUFFER_SIZE = 8192;
+
+    /**
+     * How many buffers of each size are kept for reuse, enough for the requests running at once.
+     */
+    private static final int POOLED_BUFFERS = 16;
+
+    /**
+     * Largest buffer kept for reuse, in bytes: larger ones are released after the request.
+     */
+    private static final int MAX_POOLED_BUFFER_BYTES = 8 << 20;
+
+    /**
+     * Most bytes held by the buffers kept for reuse when not configured.
+     */
+    private static final long DEFAULT_MAX_POOLED_BYTES = 64L << 20;
+
     /**
      * Diff Storage - In Memory
      * Map containing all data received via API.
      * Although data base storage was not required for this assignment,
      * it would be simple to modify this class to include it.
+     * Concurrent, since cluster rebalancing walks it while requests are served.
+     */
+    private Map<String, StoredData>  diffStorage = new ConcurrentHashMap<>();
+
+    /**
+     * Index of the stored data sets by completion state, updated with the storage.
+     */
+    private final StateIndex stateIndex = new StateIndex();
+
+    /**
+     * Buffers the sides are decoded into when ingested and read into while compared,
+     * reused by every request.
+     */
+    private ByteArrayPool bufferPool = new ByteArrayPool(POOLED_BUFFERS, MAX_POOLED_BUFFER_BYTES,
+            DEFAULT_MAX_POOLED_BYTES);
+
+    /**
+     * Compares the sides of each data set.
+     */
+    private DiffEngine diffEngine = new DiffEngine(DiffEngine.DEFAULT_CHUNK_SIZE, bufferPool);
+
+    /**
+     * Codec applied to each side before it is stored. Null to store sides as received.
+     */
+    private StorageCodec storageCodec;
+
+    /**
+     * How many versions of each side are kept, including the latest one.
+     */
+    private int historyDepth = 1;
+
+    /**
+     * Serializes the updates of the storage, so they reach the write-ahead log
+     * in the same order they are applied.
+     */
+    private final Object writeLock = new Object();
+
+    /**
+     * Source of the generations of the data sets, see {@link StoredData#getGeneration()}.
+     */
+    private final AtomicLong generations = new AtomicLong();
+
+    /**
+     * Identifies this instance on the entity tags, as versions start over when the storage
+     * is recovered or an id is moved to another member of the cluster.
+     */
+    private final String epoch = Long.toHexString(new SecureRandom().nextLong());
+
+    /**
+     * Write-ahead log of the storage updates. Null when persistence is disabled.
+     */
+    private WriteAheadLog writeAheadLog;
+
+    /**
+     * Computes the diff of a data set in background as soon as both sides are present.
+     * Null when disabled.
+     */
+    private Executor precomputeExecutor;
+
+    /**
+     * Maximum number of diffs computed in background kept at once.
+     */
+    private int maxPrecomputed = 1000;
+
+    /**
+     * Diffs computed in background, by id. Replaced on each update of the data set.
+     */
+    private final Map<String, PrecomputedDiff> precomputed = new ConcurrentHashMap<>();
+
+    /**
+     * Listeners notified of each update.
+     */
+    private final List<DiffListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Bytes held by the versions of the sides of every data set, see {@link StoredData#getStoredSize()}.
+     * Updated holding the write lock.
+     */
+    private final AtomicLong dataBytes = new AtomicLong();
+
+    /**
+     * Bytes held by the diffs computed in background.
+     */
+    private final AtomicLong resultBytes = new AtomicLong();
+
+    /**
+     * Bytes held by the chunks of the uploads not committed yet, see {@link #reserveStagedBytes(long)}.
+     */
+    private final AtomicLong stagedBytes = new AtomicLong();
+
+    /**
+     * Maximum bytes held by the data sets, the diffs computed in background and the uploads, 0 if unlimited.
+     */
+    private long maxTotalBytes;
+
+    /**
+     * Maximum bytes held by the versions of the sides of a data set, 0 if unlimited.
+     */
+    private long maxIdBytes;
+
+    /**
+     * Sets the write-ahead log, available when persistence is enabled.
+     *
+     * @param writeAheadLog the write-ahead log
+     */
+    @Autowired(required = false)
+    public void setWriteAheadLog(WriteAheadLog writeAheadLog) {
+        this.writeAheadLog = writeAheadLog;
+    }
+
+    /**
+     * Adds a listener notified of each update of a side.
+     *
+     * @param listener the listener
+     */
+    public void addListener(DiffListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Sets the storage codec, available when one is selected on property diff.storage.codec.
+     *
+     * @param storageCodec the storage codec
+     */
+    @Autowired(required = false)
+    public void setStorageCodec(StorageCodec storageCodec) {
+        this.storageCodec = storageCodec;
+    }
+
+    /**
+     * Sets how many versions of each side are kept, including the latest one.
+     * Older versions are kept as the differences to the version after them.
+     *
+     * @param historyDepth the history depth, at least 1
+     */
+    @Value("${diff.history.depth:1}")
+    public void setHistoryDepth(int historyDepth) {
+        if (historyDepth < 1) {
+            throw new IllegalArgumentException("History depth must be at least 1: " + historyDepth);
+        }
+        this.historyDepth = historyDepth;
+    }
+
+    /**
+     * Sets how many threads compute the diffs in background, as soon as both sides of a data set
+     * are present, so the GET of the diff serves the result or waits for the computation in progress.
+     *
+     * @param precomputeThreads the number of threads, 0 to disable the background computation
+     */
+    @Value("${diff.precompute.threads:2}")
+    public void setPrecomputeThreads(int precomputeThreads) {
+        if (precomputeThreads < 0) {
+            throw new IllegalArgumentException("Precompute threads must not be negative: " + precomputeThreads);
+        }
+        shutdown();
+        if (precomputeThreads == 0) {
+            precomputeExecutor = null;
+            return;
+        }
+        AtomicInteger threads = new AtomicInteger();
+        precomputeExecutor = Executors.newFixedThreadPool(precomputeThreads, runnable -> {
+            Thread thread = new Thread(runnable, "diff-precompute-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Sets the executor that computes the diffs in background.
+     *
+     * @param precomputeExecutor the executor, null to disable the background computation
+     */
+    void setPrecomputeExecutor(Executor precomputeExecutor) {
+        shutdown();
+        this.precomputeExecutor = precomputeExecutor;
+    }
+
+    /**
+     * Sets how many diffs computed in background are kept at once. Beyond it,
+     * the least recently used diff is dropped and computed again when requested.
+     *
+     * @param maxPrecomputed the maximum number of diffs kept
+     */
+    @Value("${diff.precompute.max-results:1000}")
+    public void setMaxPrecomputed(int maxPrecomputed) {
+        this.maxPrecomputed = maxPrecomputed;
+    }
+
+    /**
+     * Sets the global budget: updates that would make the data sets, the diffs computed
+     * in background and the uploads hold more bytes are rejected. Updates that do not grow the storage are
+     * always accepted.
+     *
+     * @param maxTotalBytes the maximum bytes, 0 if unlimited
+     */
+    @Value("${diff.storage.max-total-bytes:0}")
+    public void setMaxTotalBytes(long maxTotalBytes) {
+        this.maxTotalBytes = maxTotalBytes;
+    }
+
+    /**
+     * Sets the budget of each data set: updates that would make the versions of both sides
+     * of a data set hold more bytes are rejected.
+     *
+     * @param maxIdBytes the maximum bytes, 0 if unlimited
+     */
+    @Value("${diff.storage.max-id-bytes:0}")
+    public void setMaxIdBytes(long maxIdBytes) {
+        this.maxIdBytes = maxIdBytes;
+    }
+
+    /**
+     * Sets how many bytes the buffers kept for reuse hold at most, decode buffers and comparison
+     * chunks together. Buffers released beyond it are left to the garbage collector.
+     *
+     * @param maxPooledBytes the maximum bytes, 0 to keep no buffer
+     */
+    @Value("${diff.buffers.max-pooled-bytes:67108864}")
+    public void setMaxPooledBytes(long maxPooledBytes) {
+        bufferPool = new ByteArrayPool(POOLED_BUFFERS, MAX_POOLED_BUFFER_BYTES, maxPooledBytes);
+        diffEngine = new DiffEngine(DiffEngine.DEFAULT_CHUNK_SIZE, bufferPool);
+    }
+
+    /**
+     * Stops the threads that compute the diffs in background.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (precomputeExecutor instanceof ExecutorService) {
+            ((ExecutorService) precomputeExecutor).shutdownNow();
+        }
+    }
+
+    /**
+     * Gets the storage codec.
+     *
+     * @return the storage codec, null if sides are stored as received
      */
-    private Map<String, Base64Data>  diffStorage = new HashMap<>();
+    public StorageCodec getStorageCodec() {
+        return storageCodec;
+    }
+
+    /**
+     * Gets the pool of the buffers the sides are decoded and read into.
+     *
+     * @return the buffer pool
+     */
+    public ByteArrayPool getBufferPool () {
+        return bufferPool;
+    }
+
+    /**
+     * Restores the storage from the write-ahead log, when persistence is enabled.
+     */
+    @PostConstruct
+    public void recover() {
+        if (writeAheadLog != null) {
+            try {
+                writeAheadLog.recover(new WriteAheadLog.RecoveryHandler() {
+                    @Override
+                    public void side(byte type, String id, String data) {
+                        StoredData storedData = diffStorage.get(id);
+                        if (storedData == null) {
+                            storedData = StoredData.empty(id, generations.incrementAndGet());
+                        }
+                        boolean left = type == WriteAheadLog.LEFT;
+                        SideHistory history = pushVersion(history(storedData, left), toStoredSide(data));
+                        put(storedData, left ? storedData.withLeft(history) : storedData.withRight(history));
+                    }
+
+                    @Override
+                    public void remove(String id) {
+                        DiffService.this.remove(id);
+                    }
+                });
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not recover the storage from the write-ahead log", e);
+            }
+        }
+    }
+
+    /**
+     * Writes a snapshot of the storage so the write-ahead log can be truncated.
+     * The snapshot is written without blocking updates: updates made while it is being
+     * written are also on the new log segment and are replayed over it on recovery.
+     *
+     * @throws IOException if the snapshot cannot be written
+     */
+    public void snapshot() throws IOException {
+        if (writeAheadLog == null) {
+            return;
+        }
+        long generation;
+        synchronized (writeLock) {
+            generation = writeAheadLog.rollover();
+        }
+        //sides are converted one by one while the snapshot is written
+        writeAheadLog.writeSnapshot(() -> diffStorage.values().stream().map(DiffService::toBase64Data).iterator(),
+                generation);
+    }
 
     /**
      * Process POST Request for including data on the Left side of the diff.
@@ -51,52 +449,732 @@ public class DiffService {
      * @param data      encoded base 64 data to be included on this data set
      * @return the response entity containing the request payload in case of success or an error message
      */
-    public ResponseEntity inputLeft (String id, String data) {
-        ResponseEntity errorResponse = validateInput(data, id);
-        if (errorResponse == null) {
-            Base64Data base64Data = findId(id);
-            if (base64Data == null || base64Data.getLeftData().isEmpty()) {
-                logger.debug("Creating new Left data on id: " + id);
-                String rightData = base64Data == null ? "" : base64Data.getRightData();
-                base64Data = new Base64Data(id, data, rightData);
-                diffStorage.put(id, base64Data);
-                return new ResponseEntity(base64Data, HttpStatus.CREATED);
-            } else {
-                logger.debug("Updating Left data on id: " + id);
-                base64Data.setLeftData(data);
-                return new ResponseEntity(base64Data, HttpStatus.OK);
+    public ResponseEntity inputLeft (String id, String data) {
+        return inputLeft(id, data, null);
+    }
+
+    /**
+     * Process a conditional POST Request for including data on the Left side of the diff:
+     * the side is only updated if its current version matches one of the entity tags of the client,
+     * see {@link #inputSide(byte, String, String, StoredSide, String, boolean)}.
+     *
+     * @param id        the id: unique identifier of this data set
+     * @param data      encoded base 64 data to be included on this data set
+     * @param ifMatch   the entity tags of the side known by the client, null for an unconditional update
+     * @return the response entity containing the request payload and the entity tag of the new version
+     *          in case of success or an error message
+     */
+    public ResponseEntity inputLeft (String id, String data, String ifMatch) {
+        return inputSide(WriteAheadLog.LEFT, id, data, ifMatch);
+    }
+
+    /**
+     * Process POST Request for including data on the Right side of the diff.
+     * Validates input and determines whether the data is new of if is being updated.
+     * At this moment, there was no requirement to make update requests explicit,
+     * but doing so would increase the reliability of this solution.
+     *
+     * @param id        the id: unique identifier of this data set
+     * @param data      encoded base 64 data to be included on this data set
+     * @return the response entity containing the request payload in case of success or an error message
+     */
+    public ResponseEntity inputRight (String id, String data) {
+        return inputRight(id, data, null);
+    }
+
+    /**
+     * Process a conditional POST Request for including data on the Right side of the diff:
+     * the side is only updated if its current version matches one of the entity tags of the client,
+     * see {@link #inputSide(byte, String, String, StoredSide, String, boolean)}.
+     *
+     * @param id        the id: unique identifier of this data set
+     * @param data      encoded base 64 data to be included on this data set
+     * @param ifMatch   the entity tags of the side known by the client, null for an unconditional update
+     * @return the response entity containing the request payload and the entity tag of the new version
+     *          in case of success or an error message
+     */
+    public ResponseEntity inputRight (String id, String data, String ifMatch) {
+        return inputSide(WriteAheadLog.RIGHT, id, data, ifMatch);
+    }
+
+    /**
+     * Includes data already decoded from Base64 on the Left side of the diff,
+     * as received by the streaming ingest path.
+     *
+     * @param id        the id: unique identifier of this data set
+     * @param raw       decoded data to be included on this data set
+     * @return the response entity containing the request payload in case of success or an error message
+     */
+    public ResponseEntity inputLeftDecoded (String id, byte[] raw) {
+        return inputLeftDecoded(id, raw, null);
+    }
+
+    /**
+     * Includes data already decoded from Base64 on the Left side of the diff, if the current version
+     * of the side matches one of the entity tags of the client.
+     *
+     * @param id        the id: unique identifier of this data set
+     * @param raw       decoded data to be included on this data set
+     * @param ifMatch   the entity tags of the side known by the client, null for an unconditional update
+     * @return the response entity containing the request payload and the entity tag of the new version
+     *          in case of success or an error message
+     */
+    public ResponseEntity inputLeftDecoded (String id, byte[] raw, String ifMatch) {
+        return inputDecoded(WriteAheadLog.LEFT, id, raw, ifMatch);
+    }
+
+    /**
+     * Includes data already decoded from Base64 on the Right side of the diff,
+     * as received by the streaming ingest path.
+     *
+     * @param id        the id: unique identifier of this data set
+     * @param raw       decoded data to be included on this data set
+     * @return the response entity containing the request payload in case of success or an error message
+     */
+    public ResponseEntity inputRightDecoded (String id, byte[] raw) {
+        return inputRightDecoded(id, raw, null);
+    }
+
+    /**
+     * Includes data already decoded from Base64 on the Right side of the diff, if the current version
+     * of the side matches one of the entity tags of the client.
+     *
+     * @param id        the id: unique identifier of this data set
+     * @param raw       decoded data to be included on this data set
+     * @param ifMatch   the entity tags of the side known by the client, null for an unconditional update
+     * @return the response entity containing the request payload and the entity tag of the new version
+     *          in case of success or an error message
+     */
+    public ResponseEntity inputRightDecoded (String id, byte[] raw, String ifMatch) {
+        return inputDecoded(WriteAheadLog.RIGHT, id, raw, ifMatch);
+    }
+
+    /**
+     * Includes data decoded into a pooled buffer on the Left side of the diff, if the current version
+     * of the side matches one of the entity tags of the client, as received by the streaming ingest path.
+     *
+     * @param id        the id: unique identifier of this data set
+     * @param buffer    the buffer holding the decoded data, still released by the caller
+     * @param ifMatch   the entity tags of the side known by the client, null for an unconditional update
+     * @param echo      whether the response carries the data of both sides, or only the entity tag of the new version
+     * @return the response entity of the update in case of success or an error message
+     */
+    public ResponseEntity inputLeftDecoded (String id, ByteArrayPool.PooledBuffer buffer, String ifMatch,
+                                            boolean echo) {
+        return inputDecoded(WriteAheadLog.LEFT, id, buffer, ifMatch, echo);
+    }
+
+    /**
+     * Includes data decoded into a pooled buffer on the Right side of the diff, if the current version
+     * of the side matches one of the entity tags of the client, as received by the streaming ingest path.
+     *
+     * @param id        the id: unique identifier of this data set
+     * @param buffer    the buffer holding the decoded data, still released by the caller
+     * @param ifMatch   the entity tags of the side known by the client, null for an unconditional update
+     * @param echo      whether the response carries the data of both sides, or only the entity tag of the new version
+     * @return the response entity of the update in case of success or an error message
+     */
+    public ResponseEntity inputRightDecoded (String id, ByteArrayPool.PooledBuffer buffer, String ifMatch,
+                                             boolean echo) {
+        return inputDecoded(WriteAheadLog.RIGHT, id, buffer, ifMatch, echo);
+    }
+
+    /**
+     * Includes data on a side of the diff as its new version.
+     *
+     * @param type      the side, {@link WriteAheadLog#LEFT} or {@link WriteAheadLog#RIGHT}
+     * @param id        the id: unique identifier of this data set
+     * @param data      encoded base 64 data to be included on this data set
+     * @param ifMatch   the entity tags of the side known by the client, null for an unconditional update
+     * @return the response entity containing the request payload in case of success or an error message
+     */
+    private ResponseEntity inputSide (byte type, String id, String data, String ifMatch) {
+        ResponseEntity errorResponse = validateInput(data, id);
+        if (errorResponse != null) {
+            return errorResponse;
+        }
+        return inputSide(type, id, data, toStoredSide(data), ifMatch, true);
+    }
+
+    /**
+     * Includes decoded data on a side of the diff as its new version. The bytes are kept as they are,
+     * or encoded by the storage codec when one is configured, and only encoded to Base64 for the
+     * write-ahead log and the response.
+     *
+     * @param type      the side, {@link WriteAheadLog#LEFT} or {@link WriteAheadLog#RIGHT}
+     * @param id        the id: unique identifier of this data set
+     * @param raw       decoded data to be included on this data set
+     * @param ifMatch   the entity tags of the side known by the client, null for an unconditional update
+     * @return the response entity containing the request payload in case of success or an error message
+     */
+    private ResponseEntity inputDecoded (byte type, String id, byte[] raw, String ifMatch) {
+        if (raw.length == 0) {
+            return dataRequired(id);
+        }
+        StoredSide side = storageCodec == null ? new ArraySide(raw) : new EncodedSide(storageCodec, raw);
+        return inputSide(type, id, Base64.encodeBase64String(raw), side, ifMatch, true);
+    }
+
+    /**
+     * Includes data decoded into a pooled buffer on a side of the diff as its new version.
+     * Without a storage codec the buffer hands its bytes over, without copying them when its array
+     * is not kept by the pool; with one they are encoded straight from the buffer. The Base64 form is
+     * only built when the write-ahead log or the response needs it.
+     *
+     * @param type      the side, {@link WriteAheadLog#LEFT} or {@link WriteAheadLog#RIGHT}
+     * @param id        the id: unique identifier of this data set
+     * @param buffer    the buffer holding the decoded data, still released by the caller
+     * @param ifMatch   the entity tags of the side known by the client, null for an unconditional update
+     * @param echo      whether the response carries the data of both sides
+     * @return the response entity of the update in case of success or an error message
+     */
+    private ResponseEntity inputDecoded (byte type, String id, ByteArrayPool.PooledBuffer buffer, String ifMatch,
+                                         boolean echo) {
+        int length = buffer.size();
+        if (length == 0) {
+            return dataRequired(id);
+        }
+        String data = writeAheadLog != null || echo ? new ArraySide(buffer.array(), length).toBase64() : null;
+        StoredSide side = storageCodec == null ? new ArraySide(buffer.detach(), length)
+                : new EncodedSide(storageCodec, buffer.array(), length);
+        return inputSide(type, id, data, side, ifMatch, echo);
+    }
+
+    /**
+     * Includes validated data on a side of the diff as its new version.
+     *
+     * Data sets are immutable snapshots: an update builds the next snapshot and replaces the current one,
+     * so readers always see a consistent pair of sides without taking any lock. Writers are ordered by the
+     * write lock, which also orders the write-ahead log and the budgets. A conditional update compares the
+     * current version of the side with the entity tags of the client and replaces the snapshot only if they
+     * match, both under the lock, so of two clients updating the same version only the first succeeds and
+     * the other receives 412 Precondition Failed.
+     *
+     * @param type      the side, {@link WriteAheadLog#LEFT} or {@link WriteAheadLog#RIGHT}
+     * @param id        the id: unique identifier of this data set
+     * @param data      encoded base 64 data to be included on this data set, null if neither the write-ahead log
+     *                  nor the response needs it
+     * @param side      the data in its stored form
+     * @param ifMatch   the entity tags of the side known by the client, null for an unconditional update
+     * @param echo      whether the response carries the data of both sides, or only the entity tag of the new version
+     * @return the response entity containing the request payload and the entity tag of the new version
+     *          in case of success or an error message
+     */
+    private ResponseEntity inputSide (byte type, String id, String data, StoredSide side, String ifMatch,
+                                      boolean echo) {
+        boolean left = type == WriteAheadLog.LEFT;
+        String sideName = left ? "Left" : "Right";
+        //the previous version is turned into a delta outside of the lock,
+        //and again under it only if the side was updated meanwhile
+        SideHistory previous = history(findId(id), left);
+        SideHistory history = pushVersion(previous, side);
+        ResponseEntity response;
+        long sequence;
+        synchronized (writeLock) {
+            StoredData storedData = findId(id);
+            SideHistory current = history(storedData, left);
+            if (ifMatch != null && (current == null || !matches(ifMatch, sideTag(storedData, current)))) {
+                logger.info("Rejecting update of a modified " + sideName + " side on id: " + id);
+                ErrorPayload errorPayload = new ErrorPayload();
+                errorPayload.setErrorCode(HttpStatus.PRECONDITION_FAILED.toString());
+                errorPayload.setMessage(sideName + " data was modified");
+                return new ResponseEntity(errorPayload, HttpStatus.PRECONDITION_FAILED);
+            }
+            if (current != previous) {
+                history = pushVersion(current, side);
+            }
+            StoredData updated = storedData == null ? StoredData.empty(id, generations.incrementAndGet()) : storedData;
+            updated = left ? updated.withLeft(history) : updated.withRight(history);
+            ResponseEntity budgetError = checkBudget(id, storedData, updated);
+            if (budgetError != null) {
+                return budgetError;
+            }
+            try {
+                sequence = appendToLog(type, id, data);
+            } catch (IOException e) {
+                return persistenceError(id, e);
+            }
+            HttpStatus status;
+            if (current == null) {
+                logger.debug("Creating new " + sideName + " data on id: " + id);
+                status = HttpStatus.CREATED;
+            } else {
+                logger.debug("Updating " + sideName + " data on id: " + id);
+                status = HttpStatus.OK;
+            }
+            put(storedData, updated);
+            if (echo) {
+                StoredSide other = left ? updated.getRight() : updated.getLeft();
+                String otherData = other == null ? "" : other.toBase64();
+                response = ResponseEntity.status(status).eTag(sideTag(updated, history))
+                        .body(left ? new Base64Data(id, data, otherData) : new Base64Data(id, otherData, data));
+            } else {
+                response = ResponseEntity.status(status).eTag(sideTag(updated, history)).build();
+            }
+        }
+        ResponseEntity durableResponse = awaitDurable(id, sequence, response);
+        if (durableResponse == response) {
+            precompute(id);
+            for (DiffListener listener : listeners) {
+                listener.sideUpdated(id);
+            }
+        }
+        return durableResponse;
+    }
+
+    /**
+     * Mounts the entity tag of a version of a side: this instance, the generation of the data set
+     * and the version of the side.
+     *
+     * @param storedData    the data set
+     * @param history       the versions of the side, the latest being tagged
+     * @return the quoted entity tag
+     */
+    private String sideTag (StoredData storedData, SideHistory history) {
+        return "\"" + epoch + "-" + storedData.getGeneration() + "-" + history.getVersion() + "\"";
+    }
+
+    /**
+     * Checks whether an update keeps the data set and the storage within their budgets.
+     * Must be called holding the write lock.
+     *
+     * @param id        the unique identifier of the data set
+     * @param current   the data set before the update, null if it is new
+     * @param updated   the data set after the update
+     * @return the response entity containing an error message, or null if the update is within the budgets
+     */
+    private ResponseEntity checkBudget (String id, StoredData current, StoredData updated) {
+        long currentBytes = current == null ? 0 : current.getStoredSize();
+        long updatedBytes = updated.getStoredSize();
+        if (maxIdBytes > 0 && updatedBytes > maxIdBytes) {
+            logger.info("Rejecting update of " + updatedBytes + " bytes over the id budget on id: " + id);
+            ErrorPayload errorPayload = new ErrorPayload();
+            errorPayload.setErrorCode(HttpStatus.PAYLOAD_TOO_LARGE.toString());
+            errorPayload.setMessage("Data set would hold " + updatedBytes + " bytes, over the limit of "
+                    + maxIdBytes + " bytes per id");
+            return new ResponseEntity(errorPayload, HttpStatus.PAYLOAD_TOO_LARGE);
+        }
+        long growth = updatedBytes - currentBytes;
+        if (maxTotalBytes > 0 && growth > 0 && getTotalBytes() + growth > maxTotalBytes) {
+            logger.info("Rejecting update of " + updatedBytes + " bytes over the storage budget on id: " + id);
+            ErrorPayload errorPayload = new ErrorPayload();
+            errorPayload.setErrorCode(HttpStatus.INSUFFICIENT_STORAGE.toString());
+            errorPayload.setMessage("Storage would hold more than its limit of " + maxTotalBytes + " bytes");
+            return new ResponseEntity(errorPayload, HttpStatus.INSUFFICIENT_STORAGE);
+        }
+        return null;
+    }
+
+    /**
+     * Stores a data set, accounting for the bytes it holds and indexing its completion state.
+     * Must be called holding the write lock, or while recovering the storage.
+     *
+     * @param current   the data set replaced, null if it is new
+     * @param updated   the new data set
+     */
+    private void put (StoredData current, StoredData updated) {
+        diffStorage.put(updated.getId(), updated);
+        dataBytes.addAndGet(updated.getStoredSize() - (current == null ? 0 : current.getStoredSize()));
+        stateIndex.update(updated.getId(), completionState(updated), System.currentTimeMillis());
+    }
+
+    /**
+     * Removes a data set, its bytes and its index entry. Must be called holding the write lock,
+     * or while recovering the storage.
+     *
+     * @param id    the unique identifier of the data set
+     */
+    private void remove (String id) {
+        StoredData removed = diffStorage.remove(id);
+        if (removed != null) {
+            dataBytes.addAndGet(-removed.getStoredSize());
+            stateIndex.remove(id);
+        }
+    }
+
+    /**
+     * Tells which sides of a data set were received.
+     *
+     * @param storedData    the data set, with at least one side
+     * @return the completion state
+     */
+    private static CompletionState completionState (StoredData storedData) {
+        if (storedData.getLeftHistory() == null) {
+            return CompletionState.RIGHT;
+        }
+        return storedData.getRightHistory() == null ? CompletionState.LEFT : CompletionState.BOTH;
+    }
+
+    /**
+     * Lists the data sets on a completion state, least recently updated first, from the index
+     * instead of scanning the storage. The listing is paginated: the cursor of the next page
+     * is returned while there may be more data sets.
+     *
+     * @param state     which sides of the data sets were received
+     * @param minAgeMs  only data sets not updated for at least this time, in milliseconds, null for any
+     * @param maxAgeMs  only data sets updated within this time, in milliseconds, null for any
+     * @param after     the cursor returned with the previous page, null for the first page
+     * @param limit     maximum number of data sets on the page
+     * @return the response entity containing the {@link org.juliazo.diff.model.IdPage} or an error message
+     */
+    public ResponseEntity listIds (CompletionState state, Long minAgeMs, Long maxAgeMs, String after, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            logger.info("Invalid page size: " + limit);
+            ErrorPayload errorPayload = new ErrorPayload();
+            errorPayload.setErrorCode(HttpStatus.BAD_REQUEST.toString());
+            errorPayload.setMessage("Field limit must be between 1 and " + MAX_PAGE_SIZE);
+            return new ResponseEntity(errorPayload, HttpStatus.BAD_REQUEST);
+        }
+        long now = System.currentTimeMillis();
+        long updatedFrom = maxAgeMs == null ? Long.MIN_VALUE : now - maxAgeMs;
+        long updatedTo = minAgeMs == null ? Long.MAX_VALUE : now - minAgeMs;
+        List<StateIndex.Entry> entries;
+        try {
+            entries = stateIndex.list(state, updatedFrom, updatedTo, after, limit);
+        } catch (IllegalArgumentException e) {
+            logger.info("Invalid listing cursor: " + after);
+            ErrorPayload errorPayload = new ErrorPayload();
+            errorPayload.setErrorCode(HttpStatus.BAD_REQUEST.toString());
+            errorPayload.setMessage("Invalid cursor");
+            return new ResponseEntity(errorPayload, HttpStatus.BAD_REQUEST);
+        }
+
+        List<IdState> ids = new ArrayList<>(entries.size());
+        for (StateIndex.Entry entry : entries) {
+            IdState idState = new IdState();
+            idState.setId(entry.getId());
+            idState.setState(entry.getState());
+            idState.setUpdatedAt(entry.getUpdatedAt());
+            ids.add(idState);
+        }
+        IdPage idPage = new IdPage();
+        idPage.setIds(ids);
+        idPage.setNext(entries.size() == limit ? entries.get(limit - 1).toCursor() : null);
+        return new ResponseEntity(idPage, HttpStatus.OK);
+    }
+
+    /**
+     * Gets the bytes held by the data sets, the diffs computed in background and the uploads.
+     *
+     * @return the total bytes
+     */
+    private long getTotalBytes () {
+        return dataBytes.get() + resultBytes.get() + stagedBytes.get();
+    }
+
+    /**
+     * Accounts for the bytes of uploaded chunks held until their upload is committed against the global budget,
+     * as the updates of the data sets are. The bytes must be released with {@link #releaseStagedBytes(long)}
+     * once the chunks are discarded or committed.
+     *
+     * @param bytes the bytes of the chunks
+     * @return the response entity containing an error message, or null if the bytes are within the budget
+     */
+    public ResponseEntity reserveStagedBytes (long bytes) {
+        synchronized (writeLock) {
+            if (maxTotalBytes > 0 && bytes > 0 && getTotalBytes() + bytes > maxTotalBytes) {
+                logger.info("Rejecting " + bytes + " uploaded bytes over the storage budget");
+                ErrorPayload errorPayload = new ErrorPayload();
+                errorPayload.setErrorCode(HttpStatus.INSUFFICIENT_STORAGE.toString());
+                errorPayload.setMessage("Storage would hold more than its limit of " + maxTotalBytes + " bytes");
+                return new ResponseEntity(errorPayload, HttpStatus.INSUFFICIENT_STORAGE);
+            }
+            stagedBytes.addAndGet(bytes);
+            return null;
+        }
+    }
+
+    /**
+     * Stops accounting for the bytes of uploaded chunks, see {@link #reserveStagedBytes(long)}.
+     *
+     * @param bytes the bytes of the chunks
+     */
+    public void releaseStagedBytes (long bytes) {
+        stagedBytes.addAndGet(-bytes);
+    }
+
+    /**
+     * Gets the memory used by the storage: the bytes held by the data sets, by the diffs
+     * computed in background and by the uploads, the budgets and the data sets holding the most bytes.
+     *
+     * @param largest   how many of the largest data sets are listed
+     * @return the {@link org.juliazo.diff.model.StorageUsage}
+     */
+    public StorageUsage getStorageUsage (int largest) {
+        //a bounded heap of the largest data sets, its smallest one on top
+        PriorityQueue<IdUsage> heap = new PriorityQueue<>(Comparator.comparingLong(DiffService::totalBytes));
+        int ids = 0;
+        for (StoredData storedData : diffStorage.values()) {
+            ids++;
+            if (largest <= 0) {
+                continue;
+            }
+            IdUsage idUsage = new IdUsage();
+            idUsage.setId(storedData.getId());
+            idUsage.setDataBytes(storedData.getStoredSize());
+            PrecomputedDiff precomputedDiff = precomputed.get(storedData.getId());
+            idUsage.setResultBytes(precomputedDiff == null ? 0 : Math.max(precomputedDiff.size.get(), 0));
+            if (heap.size() < largest) {
+                heap.add(idUsage);
+            } else if (totalBytes(idUsage) > totalBytes(heap.peek())) {
+                heap.poll();
+                heap.add(idUsage);
+            }
+        }
+        List<IdUsage> largestIds = new ArrayList<>(heap);
+        largestIds.sort(Collections.reverseOrder(Comparator.comparingLong(DiffService::totalBytes)));
+
+        StorageUsage storageUsage = new StorageUsage();
+        storageUsage.setIds(ids);
+        storageUsage.setDataBytes(dataBytes.get());
+        storageUsage.setResultBytes(resultBytes.get());
+        storageUsage.setStagedBytes(stagedBytes.get());
+        storageUsage.setTotalBytes(storageUsage.getDataBytes() + storageUsage.getResultBytes()
+                + storageUsage.getStagedBytes());
+        storageUsage.setMaxTotalBytes(maxTotalBytes);
+        storageUsage.setMaxIdBytes(maxIdBytes);
+        storageUsage.setLargestIds(largestIds);
+        return storageUsage;
+    }
+
+    /**
+     * Gets the bytes held by a data set and its diff computed in background.
+     *
+     * @param idUsage   the memory used by the data set
+     * @return the total bytes
+     */
+    private static long totalBytes (IdUsage idUsage) {
+        return idUsage.getDataBytes() + idUsage.getResultBytes();
+    }
+
+    /**
+     * Starts computing the diff of a data set in background when both sides are present,
+     * cancelling the computation of the previous versions.
+     *
+     * @param id    the unique identifier of the data set
+     */
+    private void precompute (String id) {
+        if (precomputeExecutor == null) {
+            return;
+        }
+        if (!precomputed.containsKey(id) && precomputed.size() >= maxPrecomputed) {
+            evictLeastRecentlyUsed();
+        }
+        //the data set is read under the lock of the entry, so the latest update always prevails
+        precomputed.compute(id, (key, current) -> {
+            if (current != null) {
+                release(current);
+                current.result.cancel(true);
+            } else if (precomputed.size() >= maxPrecomputed) {
+                return null;
+            }
+            StoredData storedData = diffStorage.get(id);
+            if (storedData == null || storedData.getLeft() == null || storedData.getRight() == null) {
+                return null;
+            }
+            DiffQuery diffQuery = new DiffQuery();
+            StoredSide right = storedData.getRight();
+            StoredSide left = storedData.getLeft();
+            AtomicLong size = new AtomicLong();
+            AtomicReference<PrecomputedDiff> entry = new AtomicReference<>();
+            FutureTask<ResponseEntity> result = new FutureTask<>(() -> {
+                ResponseEntity response = compare(id, right, left, diffQuery);
+                if (!account(size, resultSize(response))) {
+                    //requests already waiting still receive it, later ones compute it again
+                    logger.debug("Diff computed in background over the storage budget dropped for id: " + id);
+                    precomputed.remove(id, entry.get());
+                }
+                return response;
+            });
+            entry.set(new PrecomputedDiff(entityTag(storedData, diffQuery), result, size));
+            try {
+                precomputeExecutor.execute(result);
+            } catch (RejectedExecutionException e) {
+                logger.debug("Diff not computed in background for id: " + id);
+                return null;
+            }
+            logger.debug("Computing diff in background for id: " + id);
+            return entry.get();
+        });
+    }
+
+    /**
+     * Accounts for the bytes of a diff computed in background against the global budget,
+     * as the updates of the data sets are.
+     *
+     * @param size          the bytes held by the diff, as kept by its entry
+     * @param resultSize    the size of the result
+     * @return false if the diff does not fit in the budget and must not be kept
+     */
+    private boolean account (AtomicLong size, long resultSize) {
+        synchronized (writeLock) {
+            if (maxTotalBytes > 0 && getTotalBytes() + resultSize > maxTotalBytes) {
+                size.set(RELEASED);
+                return false;
+            }
+            //not accounted if the diff was already replaced
+            if (size.compareAndSet(0, resultSize)) {
+                resultBytes.addAndGet(resultSize);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Drops the diff computed in background that was served or computed the longest time ago,
+     * to make room for the diff of another data set.
+     */
+    private void evictLeastRecentlyUsed () {
+        Map.Entry<String, PrecomputedDiff> eldest = null;
+        for (Map.Entry<String, PrecomputedDiff> entry : precomputed.entrySet()) {
+            if (eldest == null || entry.getValue().lastAccess < eldest.getValue().lastAccess) {
+                eldest = entry;
+            }
+        }
+        if (eldest != null && precomputed.remove(eldest.getKey(), eldest.getValue())) {
+            logger.debug("Dropping the diff computed in background for id: " + eldest.getKey());
+            release(eldest.getValue());
+            eldest.getValue().result.cancel(true);
+        }
+    }
+
+    /**
+     * Stops accounting for the bytes of a diff computed in background, once it is replaced or removed.
+     *
+     * @param precomputedDiff   the diff computed in background
+     */
+    private void release (PrecomputedDiff precomputedDiff) {
+        long size = precomputedDiff.size.getAndSet(RELEASED);
+        if (size > 0) {
+            resultBytes.addAndGet(-size);
+        }
+    }
+
+    /**
+     * Gets how many bytes a diff result holds: its differences or its summary.
+     *
+     * @param response  the response entity of the diff
+     * @return the size of the result, 0 for an error
+     */
+    static long resultSize (ResponseEntity response) {
+        if (!(response.getBody() instanceof DiffResult)) {
+            return 0;
+        }
+        DiffResult diffResult = (DiffResult) response.getBody();
+        long size = diffResult.getSummary() == null ? 0 : SUMMARY_SIZE;
+        if (diffResult.getDifferences() != null) {
+            size += diffResult.getDifferences().size() * DIFF_BYTES_SIZE;
+        }
+        return size;
+    }
+
+    /**
+     * Gets the diff computed in background for the given versions of a data set,
+     * waiting for it if the computation is in progress.
+     *
+     * @param id        the unique identifier of the data set
+     * @param entityTag the entity tag of the versions compared
+     * @return the response entity of the diff, null if it was not computed for these versions
+     */
+    private ResponseEntity precomputedResult (String id, String entityTag) {
+        PrecomputedDiff precomputedDiff = precomputed.get(id);
+        if (precomputedDiff == null || !precomputedDiff.entityTag.equals(entityTag)) {
+            return null;
+        }
+        precomputedDiff.lastAccess = System.nanoTime();
+        try {
+            return precomputedDiff.result.get();
+        } catch (CancellationException | ExecutionException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Gets the diff computed in background for a data set.
+     *
+     * @param id    the unique identifier of the data set
+     * @return the result of the computation, null if there is none
+     */
+    Future<ResponseEntity> getPrecomputed (String id) {
+        PrecomputedDiff precomputedDiff = precomputed.get(id);
+        return precomputedDiff == null ? null : precomputedDiff.result;
+    }
+
+    /**
+     * Gets the versions of a side of a data set.
+     *
+     * @param storedData    the data set, may be null
+     * @param left          whether the left or the right side
+     * @return the side history, null if the side is missing
+     */
+    private static SideHistory history (StoredData storedData, boolean left) {
+        if (storedData == null) {
+            return null;
+        }
+        return left ? storedData.getLeftHistory() : storedData.getRightHistory();
+    }
+
+    /**
+     * Adds a new version to the versions of a side, keeping at most the configured history depth.
+     *
+     * @param history   the versions of the side, null if the side is missing
+     * @param side      the new version
+     * @return the new side history
+     */
+    private SideHistory pushVersion (SideHistory history, StoredSide side) {
+        return history == null ? SideHistory.of(side) : history.push(diffEngine, side, historyDepth);
+    }
+
+    /**
+     * Appends an update to the write-ahead log, when persistence is enabled.
+     * Must be called holding the write lock.
+     *
+     * @param type  the record type
+     * @param id    the unique identifier of the data set
+     * @param data  encoded base 64 data of the side
+     * @return the sequence number of the record, 0 when persistence is disabled
+     * @throws IOException if the record cannot be written
+     */
+    private long appendToLog (byte type, String id, String data) throws IOException {
+        return writeAheadLog == null ? 0 : writeAheadLog.append(type, id, data);
+    }
+
+    /**
+     * Waits for an update to be durable, according to the configured durability mode,
+     * outside of the write lock so concurrent updates can be committed together.
+     *
+     * @param id        the unique identifier of the data set
+     * @param sequence  the sequence number of the record
+     * @param response  the response to be returned once the update is durable
+     * @return the response or an error message if the update could not be made durable
+     */
+    private ResponseEntity awaitDurable (String id, long sequence, ResponseEntity response) {
+        if (writeAheadLog != null) {
+            try {
+                writeAheadLog.awaitDurable(sequence);
+            } catch (IOException e) {
+                return persistenceError(id, e);
             }
         }
-        return errorResponse;
+        return response;
     }
 
     /**
-     * Process POST Request for including data on the Right side of the diff.
-     * Validates input and determines whether the data is new of if is being updated.
-     * At this moment, there was no requirement to make update requests explicit,
-     * but doing so would increase the reliability of this solution.
+     * Builds the error response for updates that could not be written to the write-ahead log.
      *
-     * @param id        the id: unique identifier of this data set
-     * @param data      encoded base 64 data to be included on this data set
-     * @return the response entity containing the request payload in case of success or an error message
+     * @param id    the unique identifier of the data set
+     * @param e     the cause
+     * @return the response entity containing an error message
      */
-    public ResponseEntity inputRight (String id, String data) {
-        ResponseEntity errorResponse = validateInput(data, id);
-        if (errorResponse == null) {
-            Base64Data base64Data = findId(id);
-            if (base64Data == null || base64Data.getRightData().isEmpty()) {
-                logger.debug("Creating new Right data on id: " + id);
-                String leftData = base64Data == null ? "" : base64Data.getLeftData();
-                base64Data = new Base64Data(id, leftData, data);
-                diffStorage.put(id, base64Data);
-                return new ResponseEntity(base64Data, HttpStatus.CREATED);
-            } else {
-                logger.debug("Updating Right data on id: " + id);
-                base64Data.setRightData(data);
-                return new ResponseEntity(base64Data, HttpStatus.OK);
-            }
-        }
-        return errorResponse;
+    private ResponseEntity persistenceError (String id, IOException e) {
+        logger.error("Could not persist data on id: " + id + " - " + e.getMessage());
+        ErrorPayload errorPayload = new ErrorPayload();
+        errorPayload.setErrorCode(HttpStatus.INTERNAL_SERVER_ERROR.toString());
+        errorPayload.setMessage("Could not persist data");
+        return new ResponseEntity(errorPayload, HttpStatus.INTERNAL_SERVER_ERROR);
     }
 
     /**
@@ -105,16 +1183,15 @@ public class DiffService {
      * If the data has characters outside of this alphabet,
      * it will be considered invalid.
      *
+     * Also applied to each chunk of a chunked upload.
+     *
      * @param data      input data
-     * @return whether or not the input data is not empty and a valid Base64 data
+     * @param id        the unique identifier of the data set
+     * @return the response entity containing an error message, or null if the input data is valid
      */
-    private ResponseEntity validateInput (String data, String id) {
+    ResponseEntity validateInput (String data, String id) {
         if (data == null || data.isEmpty()) {
-            logger.info("Empty data on id: " + id);
-            ErrorPayload errorPayload = new ErrorPayload();
-            errorPayload.setErrorCode(HttpStatus.BAD_REQUEST.toString());
-            errorPayload.setMessage("Field data is required");
-            return new ResponseEntity(errorPayload, HttpStatus.BAD_REQUEST);
+            return dataRequired(id);
         }
         if (!Base64.isBase64(data)) {
             logger.info("Invalid Base64 data on id: " + id);
@@ -126,22 +1203,187 @@ public class DiffService {
         return null;
     }
 
+    /**
+     * Builds the error response for an input without data.
+     *
+     * @param id        the unique identifier of the data set
+     * @return the response entity containing an error message
+     */
+    private static ResponseEntity dataRequired (String id) {
+        logger.info("Empty data on id: " + id);
+        ErrorPayload errorPayload = new ErrorPayload();
+        errorPayload.setErrorCode(HttpStatus.BAD_REQUEST.toString());
+        errorPayload.setMessage("Field data is required");
+        return new ResponseEntity(errorPayload, HttpStatus.BAD_REQUEST);
+    }
+
     /**
      * Searches the data Storage for an occurrence of the provided id.
      * Checks for miss matches on the data storage index and the id recorded on the data set.
      * If no data set is found, returns null.
      *
      * @param id    the unique identifier of a data set
-     * @return the {@link org.juliazo.diff.model.Base64Data} related to given id
+     * @return the {@link org.juliazo.diff.storage.StoredData} related to given id
      */
-    private Base64Data findId (String id) {
-        Base64Data base64Data = diffStorage.get(id);
-        if (base64Data != null && !base64Data.getId().equals(id)) {
-            String errorMessage = "FATAL ERROR: Provided id and stored id do not match: " + id + " - " + base64Data.getId();
+    private StoredData findId (String id) {
+        StoredData storedData = diffStorage.get(id);
+        if (storedData != null && !storedData.getId().equals(id)) {
+            String errorMessage = "FATAL ERROR: Provided id and stored id do not match: " + id + " - " + storedData.getId();
             logger.error(errorMessage);
             throw new CompromisedDataException(new Exception(errorMessage));
         }
-        return base64Data;
+        return storedData;
+    }
+
+    /**
+     * Converts validated Base64 data into its stored form: encoded by the storage codec
+     * when one is configured, or kept as received.
+     *
+     * @param data  encoded base 64 data
+     * @return the stored side
+     */
+    private StoredSide toStoredSide (String data) {
+        if (storageCodec == null) {
+            return new Base64Side(data);
+        }
+        return new EncodedSide(storageCodec, Base64.decodeBase64(data));
+    }
+
+    /**
+     * Converts a stored data set into its API representation.
+     *
+     * @param storedData    the stored data set
+     * @return the {@link org.juliazo.diff.model.Base64Data}
+     */
+    private static Base64Data toBase64Data (StoredData storedData) {
+        return new Base64Data(storedData.getId(),
+                storedData.getLeft() == null ? "" : storedData.getLeft().toBase64(),
+                storedData.getRight() == null ? "" : storedData.getRight().toBase64());
+    }
+
+    /**
+     * Gets the data set stored for the given id.
+     *
+     * @param id    the unique identifier of a data set
+     * @return the {@link org.juliazo.diff.model.Base64Data} related to given id or null if there is none
+     */
+    public Base64Data findData (String id) {
+        StoredData storedData = findId(id);
+        return storedData == null ? null : toBase64Data(storedData);
+    }
+
+    /**
+     * Gets the version of the data set stored for the given id: its generation and the versions of both sides.
+     * Any update of the data set changes it.
+     *
+     * @param id    the unique identifier of a data set
+     * @return the version of the data set or null if there is none
+     */
+    public String findDataVersion (String id) {
+        StoredData storedData = findId(id);
+        return storedData == null ? null : dataVersion(storedData);
+    }
+
+    /**
+     * Mounts the version of a data set, see {@link #findDataVersion(String)}.
+     *
+     * @param storedData    the data set
+     * @return the version
+     */
+    private static String dataVersion (StoredData storedData) {
+        SideHistory left = storedData.getLeftHistory();
+        SideHistory right = storedData.getRightHistory();
+        return storedData.getGeneration() + "-" + (left == null ? 0 : left.getVersion())
+                + "-" + (right == null ? 0 : right.getVersion());
+    }
+
+    /**
+     * Exports the data set stored for the given id: both sides and the diff of their latest versions,
+     * all taken from the same version of the data set, without blocking updates.
+     *
+     * @param id    the unique identifier of a data set
+     * @return the {@link org.juliazo.diff.model.ExportRecord} of the data set or null if there is none
+     * @throws IllegalStateException if the diff cannot be computed
+     */
+    public ExportRecord exportData (String id) {
+        StoredData storedData = findId(id);
+        if (storedData == null) {
+            return null;
+        }
+        ExportRecord exportRecord = new ExportRecord();
+        exportRecord.setId(id);
+        StoredSide left = storedData.getLeft();
+        StoredSide right = storedData.getRight();
+        exportRecord.setLeft(left == null ? null : left.toBase64());
+        exportRecord.setRight(right == null ? null : right.toBase64());
+        if (left != null && right != null) {
+            DiffQuery diffQuery = new DiffQuery();
+            ResponseEntity response = precomputedResult(id, entityTag(storedData, diffQuery));
+            if (response == null) {
+                response = compare(id, right, left, diffQuery);
+            }
+            if (response.getStatusCode() != HttpStatus.OK) {
+                throw new IllegalStateException("Could not compute the diff of id " + id + ": "
+                        + ((ErrorPayload) response.getBody()).getMessage());
+            }
+            exportRecord.setDiff((DiffResult) response.getBody());
+        }
+        return exportRecord;
+    }
+
+    /**
+     * Removes the data set stored for the given id.
+     *
+     * @param id    the unique identifier of a data set
+     */
+    public void removeData (String id) {
+        removeData(id, null);
+    }
+
+    /**
+     * Removes the data set stored for the given id, unless it was updated since a given version was read.
+     * Used when the id is moved to another instance of the cluster, so updates received while the data set
+     * was being sent are not lost.
+     *
+     * @param id            the unique identifier of a data set
+     * @param dataVersion   the version the data set must still have, see {@link #findDataVersion(String)},
+     *                      null to remove it whatever its version
+     * @return whether the data set was removed, false if it was updated or removed since
+     */
+    public boolean removeData (String id, String dataVersion) {
+        logger.debug("Removing data on id: " + id);
+        long sequence;
+        synchronized (writeLock) {
+            if (dataVersion != null) {
+                StoredData storedData = findId(id);
+                if (storedData == null || !dataVersion.equals(dataVersion(storedData))) {
+                    logger.debug("Data on id " + id + " changed since version " + dataVersion + ", not removed");
+                    return false;
+                }
+            }
+            try {
+                sequence = appendToLog(WriteAheadLog.REMOVE, id, null);
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not log removal of id: " + id, e);
+            }
+            remove(id);
+        }
+        PrecomputedDiff precomputedDiff = precomputed.remove(id);
+        if (precomputedDiff != null) {
+            release(precomputedDiff);
+            precomputedDiff.result.cancel(true);
+        }
+        awaitDurable(id, sequence, null);
+        return true;
+    }
+
+    /**
+     * Gets a snapshot of the ids stored on this instance.
+     *
+     * @return the stored ids
+     */
+    public Set<String> getStoredIds () {
+        return new HashSet<>(diffStorage.keySet());
     }
 
     /**
@@ -162,109 +1404,507 @@ public class DiffService {
      * @return the {@link org.juliazo.diff.model.DiffResult} with the result of the diff operation
      */
     public ResponseEntity getDiffResult (String id) {
+        return getDiffResult(id, new DiffQuery());
+    }
+
+    /**
+     * Process a GET request on a given id with the optional parameters of the query.
+     *
+     * A range of bytes restricts the diff to that range: only the range is decoded and compared,
+     * and the differences keep their offsets from the start of the data. The range must lie
+     * within both sides; sides of different sizes are not compared.
+     *
+     * On the summary mode, only the statistics of the differences are evaluated, see
+     * {@link org.juliazo.diff.model.DiffSummary}, and no difference is located.
+     *
+     * The latest version of each side is compared unless an older version kept on the
+     * history is requested.
+     *
+     * @param id        the unique identifier of a data set
+     * @param diffQuery the optional parameters of the diff operation
+     * @return the {@link org.juliazo.diff.model.DiffResult} with the result of the diff operation
+     */
+    public ResponseEntity getDiffResult (String id, DiffQuery diffQuery) {
+        return getDiffResult(id, diffQuery, null);
+    }
+
+    /**
+     * Process a conditional GET request on a given id with the optional parameters of the query.
+     *
+     * The entity tag of a diff result is derived from the versions of both sides that are compared,
+     * so the client's tag is checked before anything is compared: when it matches, the response is
+     * 304 Not Modified, without a body.
+     *
+     * @param id            the unique identifier of a data set
+     * @param diffQuery     the optional parameters of the diff operation
+     * @param ifNoneMatch   the entity tags known by the client, null if none
+     * @return the {@link org.juliazo.diff.model.DiffResult} with the result of the diff operation
+     *          and its entity tag, or the not modified response
+     */
+    public ResponseEntity getDiffResult (String id, DiffQuery diffQuery, String ifNoneMatch) {
+        ResponseEntity errorResponse = validateQuery(id, diffQuery);
+        if (errorResponse != null) {
+            return errorResponse;
+        }
 
-        Base64Data base64Data = findId(id);
-        if (base64Data != null) {
+        StoredData storedData = findId(id);
+        if (storedData != null) {
             logger.debug("Data found, performing diff operation on id: " + id);
 
-            String right = base64Data.getRightData();
-            String left = base64Data.getLeftData();
+            ResponseEntity missingSide = missingSide(id, storedData);
+            if (missingSide != null) {
+                return missingSide;
+            }
 
-            if (right.isEmpty()) {
-                logger.debug("Right Data not found for id: " + id);
-                ErrorPayload errorPayload = new ErrorPayload();
-                errorPayload.setErrorCode(HttpStatus.BAD_REQUEST.toString());
-                errorPayload.setMessage("Missing Right data");
-                return new ResponseEntity(errorPayload, HttpStatus.BAD_REQUEST);
+            //the latest versions are compared unless older ones are requested
+            StoredSide right = selectVersion(storedData.getRightHistory(), diffQuery.getRightVersion());
+            StoredSide left = selectVersion(storedData.getLeftHistory(), diffQuery.getLeftVersion());
+            if (right == null || left == null) {
+                return versionNotFound(id);
             }
-            if (left.isEmpty()) {
-                logger.debug("Left Data not found for id: " + id);
-                ErrorPayload errorPayload = new ErrorPayload();
-                errorPayload.setErrorCode(HttpStatus.BAD_REQUEST.toString());
-                errorPayload.setMessage("Missing Left data");
-                return new ResponseEntity(errorPayload, HttpStatus.BAD_REQUEST);
+            String entityTag = entityTag(storedData, diffQuery);
+            if (matches(ifNoneMatch, entityTag)) {
+                logger.debug("Diff not modified on id: " + id);
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(entityTag).build();
+            }
+            ResponseEntity response = diffQuery.isDefault() ? precomputedResult(id, entityTag) : null;
+            if (response == null) {
+                response = compare(id, right, left, diffQuery);
             }
+            if (response.getStatusCode() != HttpStatus.OK) {
+                return response;
+            }
+            return ResponseEntity.ok().eTag(entityTag).body(response.getBody());
+        }
+        return dataNotFound(id);
+    }
 
-            byte [] rightBytes = Base64.decodeBase64(right);
-            byte [] leftBytes = Base64.decodeBase64(left);
+    /**
+     * Process a GET request streaming the differences of the latest versions of a data set in binary,
+     * for clients that do not need JSON: each sequence of different bytes is written as its offset and
+     * length, see {@link #RUN_SIZE}. The diff computed in background is written when there is one;
+     * otherwise each sequence is written as soon as it is located, without building the list of differences.
+     *
+     * Whether both sides have the same size is sent on the {@link #EQUAL_SIZE_HEADER}, with the entity
+     * tag of the JSON diff; sides of different sizes are not compared and the body is empty.
+     *
+     * @param id    the unique identifier of a data set
+     * @return the response entity whose body streams the differences, or containing an error message
+     */
+    public ResponseEntity streamDifferences (String id) {
+        StoredData storedData = findId(id);
+        if (storedData == null) {
+            return dataNotFound(id);
+        }
+        ResponseEntity missingSide = missingSide(id, storedData);
+        if (missingSide != null) {
+            return missingSide;
+        }
 
-            DiffResult diffResult = new DiffResult();
-            diffResult.setId(id);
+        //the snapshot is immutable, so later updates do not reach the comparison
+        StoredSide right = storedData.getRight();
+        StoredSide left = storedData.getLeft();
+        boolean equalSize = right.getLength() == left.getLength();
+        String entityTag = entityTag(storedData, new DiffQuery());
+        StreamingResponseBody body = out -> {
+            if (!equalSize) {
+                return;
+            }
+            DataOutputStream runs = new DataOutputStream(new BufferedOutputStream(out, RUN_BUFFER_SIZE));
+            //waited for on the thread writing the body, not on the one handling the request
+            ResponseEntity precomputedDiff = precomputedResult(id, entityTag);
+            if (precomputedDiff != null && precomputedDiff.getStatusCode() == HttpStatus.OK) {
+                List<DiffBytes> differences = ((DiffResult) precomputedDiff.getBody()).getDifferences();
+                for (DiffBytes diffBytes : differences == null ? Collections.<DiffBytes>emptyList() : differences) {
+                    runs.writeLong(diffBytes.getOffset());
+                    runs.writeLong(diffBytes.getLength());
+                }
+            } else {
+                try (InputStream rightStream = right.openStream();
+                     InputStream leftStream = left.openStream()) {
+                    diffEngine.findDifferences(rightStream, leftStream, 0, (offset, length) -> {
+                        runs.writeLong(offset);
+                        runs.writeLong(length);
+                    });
+                } catch (IOException e) {
+                    logger.error("Could not stream the differences of id: " + id + " - " + e.getMessage());
+                    throw e;
+                }
+            }
+            runs.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .eTag(entityTag)
+                .header(EQUAL_SIZE_HEADER, String.valueOf(equalSize))
+                .body(body);
+    }
 
-            //right side and left side can only be equal if they have the same size
-            diffResult.setEqualSize(rightBytes.length == leftBytes.length);
+    /**
+     * Checks that both sides of a data set were received.
+     *
+     * @param id            the unique identifier of the data set
+     * @param storedData    the data set
+     * @return the response entity containing an error message, or null if both sides are present
+     */
+    private static ResponseEntity missingSide (String id, StoredData storedData) {
+        if (storedData.getRight() == null) {
+            logger.debug("Right Data not found for id: " + id);
+            ErrorPayload errorPayload = new ErrorPayload();
+            errorPayload.setErrorCode(HttpStatus.BAD_REQUEST.toString());
+            errorPayload.setMessage("Missing Right data");
+            return new ResponseEntity(errorPayload, HttpStatus.BAD_REQUEST);
+        }
+        if (storedData.getLeft() == null) {
+            logger.debug("Left Data not found for id: " + id);
+            ErrorPayload errorPayload = new ErrorPayload();
+            errorPayload.setErrorCode(HttpStatus.BAD_REQUEST.toString());
+            errorPayload.setMessage("Missing Left data");
+            return new ResponseEntity(errorPayload, HttpStatus.BAD_REQUEST);
+        }
+        return null;
+    }
 
-            ResponseEntity response = new ResponseEntity(diffResult, HttpStatus.OK);
+    /**
+     * Mounts the entity tag of the diff of a data set: this instance, the generation of the data set
+     * and the versions of both sides compared. The other parameters of the query are part of the
+     * request URL, which the tag is bound to.
+     *
+     * @param storedData    the data set
+     * @param diffQuery     the optional parameters of the diff operation
+     * @return the quoted entity tag
+     */
+    private String entityTag (StoredData storedData, DiffQuery diffQuery) {
+        long leftVersion = diffQuery.getLeftVersion() == null ? storedData.getLeftHistory().getVersion()
+                : diffQuery.getLeftVersion();
+        long rightVersion = diffQuery.getRightVersion() == null ? storedData.getRightHistory().getVersion()
+                : diffQuery.getRightVersion();
+        return "\"" + epoch + "-" + storedData.getGeneration() + "-" + leftVersion + "-" + rightVersion + "\"";
+    }
 
-            if (!diffResult.isEqualSize()) {
-                //Stop diff operation in case of different sizes to reduce response time.
-                //The reduction on response time might be more noticeable when using large input data.
-                logger.debug("Input data is not of the same size for id: " + id);
-                return response;
+    /**
+     * Checks whether an entity tag is among the ones listed on an If-None-Match header.
+     * Weak tags are compared as strong ones, as the tags are never weak.
+     *
+     * @param ifNoneMatch   the header value, null if absent
+     * @param entityTag     the quoted entity tag
+     * @return whether the tag matches
+     */
+    private static boolean matches (String ifNoneMatch, String entityTag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(entityTag)) {
+                return true;
             }
+        }
+        return false;
+    }
 
-            diffResult.setEquals(Arrays.equals(rightBytes,leftBytes));
+    /**
+     * Process a GET request comparing two versions of the same side of a data set.
+     * The base version takes the place of the left side and the target version the place of
+     * the right side on the diff operation, with the same optional parameters.
+     *
+     * @param id        the unique identifier of a data set
+     * @param side      left or right
+     * @param base      the version compared from
+     * @param target    the version compared to
+     * @param diffQuery the optional parameters of the diff operation
+     * @return the {@link org.juliazo.diff.model.DiffResult} with the result of the diff operation
+     */
+    public ResponseEntity getVersionDiffResult (String id, String side, long base, long target, DiffQuery diffQuery) {
+        ResponseEntity errorResponse = validateQuery(id, diffQuery);
+        if (errorResponse != null) {
+            return errorResponse;
+        }
+        SideHistory history = history(findId(id), "left".equals(side));
+        if (history == null) {
+            return dataNotFound(id);
+        }
+        StoredSide baseSide = history.getVersion(base);
+        StoredSide targetSide = history.getVersion(target);
+        if (baseSide == null || targetSide == null) {
+            return versionNotFound(id);
+        }
+        logger.debug("Performing diff operation of " + side + " versions " + base + " and " + target + " on id: " + id);
+        return compare(id, targetSide, baseSide, diffQuery);
+    }
 
-            if (diffResult.isEquals()) {
-                //Stop diff operation in case of equal content to reduce response time.
-                //The reduction on response time might be more noticeable when using large input data.
-                logger.debug("Input data is equal for id: " + id);
-                return response;
-            }
+    /**
+     * Lists the versions kept of a side of a data set, from the oldest to the latest,
+     * with the entity tag of the latest version for conditional updates.
+     *
+     * @param id    the unique identifier of a data set
+     * @param side  left or right
+     * @return the response entity containing the list of {@link org.juliazo.diff.model.SideVersion}
+     *          or an error message
+     */
+    public ResponseEntity getVersions (String id, String side) {
+        StoredData storedData = findId(id);
+        SideHistory history = history(storedData, "left".equals(side));
+        if (history == null) {
+            return dataNotFound(id);
+        }
+        List<SideVersion> versions = new ArrayList<>();
+        for (long version = history.getOldestVersion(); version <= history.getVersion(); version++) {
+            SideVersion sideVersion = new SideVersion();
+            sideVersion.setVersion(version);
+            sideVersion.setLength(history.getLength(version));
+            versions.add(sideVersion);
+        }
+        return ResponseEntity.ok().eTag(sideTag(storedData, history)).body(versions);
+    }
+
+    /**
+     * Selects a version of a side.
+     *
+     * @param history   the versions of the side
+     * @param version   the version number, null for the latest version
+     * @return the version, null if it is not kept
+     */
+    private static StoredSide selectVersion (SideHistory history, Long version) {
+        return version == null ? history.getLatest() : history.getVersion(version);
+    }
+
+    /**
+     * Validates the mode, the gap, the samples, the largest differences and the records of the diff operation.
+     *
+     * @param id        the unique identifier of a data set
+     * @param diffQuery the optional parameters of the diff operation
+     * @return the response entity containing an error message, or null if the query is valid
+     */
+    private static ResponseEntity validateQuery (String id, DiffQuery diffQuery) {
+        String mode = diffQuery.getMode();
+        if (mode != null && !DiffQuery.MODE_FULL.equals(mode) && !DiffQuery.MODE_SUMMARY.equals(mode)
+                && !DiffQuery.MODE_APPROXIMATE.equals(mode)) {
+            logger.info("Invalid diff mode " + mode + " for id: " + id);
+            ErrorPayload errorPayload = new ErrorPayload();
+            errorPayload.setErrorCode(HttpStatus.BAD_REQUEST.toString());
+            errorPayload.setMessage("Invalid diff mode");
+            return new ResponseEntity(errorPayload, HttpStatus.BAD_REQUEST);
+        }
+        if (diffQuery.getMaxGap() != null && diffQuery.getMaxGap() < 0) {
+            logger.info("Invalid max gap " + diffQuery.getMaxGap() + " for id: " + id);
+            ErrorPayload errorPayload = new ErrorPayload();
+            errorPayload.setErrorCode(HttpStatus.BAD_REQUEST.toString());
+            errorPayload.setMessage("Invalid max gap");
+            return new ResponseEntity(errorPayload, HttpStatus.BAD_REQUEST);
+        }
+        Integer samples = diffQuery.getSamples();
+        if (samples != null && (samples < 1 || samples > DiffQuery.MAX_SAMPLES)) {
+            logger.info("Invalid samples " + samples + " for id: " + id);
+            ErrorPayload errorPayload = new ErrorPayload();
+            errorPayload.setErrorCode(HttpStatus.BAD_REQUEST.toString());
+            errorPayload.setMessage("Invalid samples");
+            return new ResponseEntity(errorPayload, HttpStatus.BAD_REQUEST);
+        }
+        String order = diffQuery.getOrder();
+        if (diffQuery.getTop() != null && diffQuery.getTop() < 1
+                || order != null && !DiffQuery.ORDER_LENGTH.equals(order) && !DiffQuery.ORDER_OFFSET.equals(order)) {
+            logger.info("Invalid top " + diffQuery.getTop() + " " + order + " for id: " + id);
+            ErrorPayload errorPayload = new ErrorPayload();
+            errorPayload.setErrorCode(HttpStatus.BAD_REQUEST.toString());
+            errorPayload.setMessage("Invalid top differences");
+            return new ResponseEntity(errorPayload, HttpStatus.BAD_REQUEST);
+        }
+        Integer recordSize = diffQuery.getRecordSize();
+        //the size is bounded before the ignored ranges are checked against it
+        if (recordSize != null && (recordSize < 1 || recordSize > DiffQuery.MAX_RECORD_SIZE)
+                || diffQuery.getIgnore() != null
+                && (recordSize == null || DiffEngine.comparedRanges(recordSize, diffQuery.getIgnore()) == null)) {
+            logger.info("Invalid records " + recordSize + " " + diffQuery.getIgnore() + " for id: " + id);
+            ErrorPayload errorPayload = new ErrorPayload();
+            errorPayload.setErrorCode(HttpStatus.BAD_REQUEST.toString());
+            errorPayload.setMessage("Invalid record size or ignored bytes");
+            return new ResponseEntity(errorPayload, HttpStatus.BAD_REQUEST);
+        }
+        return null;
+    }
 
-            List<DiffBytes> differences = new ArrayList<>();
+    /**
+     * Compares two sides: verifies if size is equal, then evaluates the differences
+     * or their summary, according to the mode, on the requested range of bytes.
+     *
+     * @param id        the unique identifier of a data set
+     * @param right     the right side
+     * @param left      the left side
+     * @param diffQuery the optional parameters of the diff operation
+     * @return the {@link org.juliazo.diff.model.DiffResult} with the result of the diff operation
+     */
+    private ResponseEntity compare (String id, StoredSide right, StoredSide left, DiffQuery diffQuery) {
+        Integer from = diffQuery.getFrom();
+        Integer to = diffQuery.getTo();
+        int rangeStart = from == null ? 0 : from;
+        int rangeEnd = to == null ? Math.min(right.getLength(), left.getLength()) : to;
+        if (rangeStart < 0 || rangeStart > rangeEnd || rangeEnd > Math.min(right.getLength(), left.getLength())) {
+            logger.info("Invalid byte range " + from + "-" + to + " for id: " + id);
+            ErrorPayload errorPayload = new ErrorPayload();
+            errorPayload.setErrorCode(HttpStatus.BAD_REQUEST.toString());
+            errorPayload.setMessage("Invalid byte range");
+            return new ResponseEntity(errorPayload, HttpStatus.BAD_REQUEST);
+        }
 
-            int offset = -1;
-            int length = 0;
-            for (int i=0; i < rightBytes.length; i++) {
+        DiffResult diffResult = new DiffResult();
+        diffResult.setId(id);
+        if (from != null || to != null) {
+            diffResult.setFrom(rangeStart);
+            diffResult.setTo(rangeEnd);
+        }
 
-                if (rightBytes[i] != leftBytes[i]) {
-                    //when the bytes are different
-                    if (offset < 0) {
-                        //starts a new sequence of different bytes
-                        logger.debug("Found difference on index: " + i);
-                        offset = i;
-                    }
-                    //increase the number of different bytes on this sequence
-                    length++;
-                } else {
-                    if (offset < 0) {
-                        //if the bytes are equal and no difference has been found yet
-                        //continue to scan the array
-                        continue;
-                    }
-                    //if the bytes are equal but there is an active sequence of different bytes,
-                    //end this sequence and include it on the List of differences on diffResult.
-                    logger.debug("Mounting DiffBytes object for offset: " + offset);
-                    DiffBytes diffBytes = new DiffBytes();
-                    diffBytes.setOffset(offset);
-                    diffBytes.setLength(length);
-
-                    //reset values to allow the start of a new sequence
-                    offset = -1;
-                    length = 0;
-
-                    differences.add(diffBytes);
-                }
-            }
-            //end the sequence when the last byte of the array is a different one.
-            if (offset >= 0) {
-                logger.debug("Mounting DiffBytes object for offset: " + offset);
-                DiffBytes diffBytes = new DiffBytes();
-                diffBytes.setOffset(offset);
-                diffBytes.setLength(length);
+        //right side and left side can only be equal if they have the same size
+        diffResult.setEqualSize(right.getLength() == left.getLength());
+
+        ResponseEntity response = new ResponseEntity(diffResult, HttpStatus.OK);
+
+        boolean approximate = DiffQuery.MODE_APPROXIMATE.equals(diffQuery.getMode());
+        if (!diffResult.isEqualSize() && !approximate) {
+            //Stop diff operation in case of different sizes to reduce response time.
+            //The reduction on response time might be more noticeable when using large input data.
+            logger.debug("Input data is not of the same size for id: " + id);
+            return response;
+        }
+
+        Integer recordSize = diffQuery.getRecordSize();
+        if (!approximate && recordSize != null
+                && (rangeStart % recordSize != 0 || (rangeEnd - rangeStart) % recordSize != 0)) {
+            logger.info("Byte range " + rangeStart + "-" + rangeEnd + " is not made of records for id: " + id);
+            ErrorPayload errorPayload = new ErrorPayload();
+            errorPayload.setErrorCode(HttpStatus.BAD_REQUEST.toString());
+            errorPayload.setMessage("Data is not made of whole records");
+            return new ResponseEntity(errorPayload, HttpStatus.BAD_REQUEST);
+        }
 
-                differences.add(diffBytes);
+        try {
+            if (approximate) {
+                diffResult.setEstimate(estimate(right, left, rangeStart, rangeEnd, diffQuery));
+            } else {
+                //both sides are decoded chunk by chunk while being compared
+                try (InputStream rightStream = right.openStream(rangeStart, rangeEnd);
+                     InputStream leftStream = left.openStream(rangeStart, rangeEnd)) {
+                    diffEngine.compare(rightStream, leftStream, rangeStart, diffQuery, diffResult);
+                }
             }
+        } catch (InterruptedIOException e) {
+            logger.debug("Diff interrupted on id: " + id);
+            ErrorPayload errorPayload = new ErrorPayload();
+            errorPayload.setErrorCode(HttpStatus.SERVICE_UNAVAILABLE.toString());
+            errorPayload.setMessage("Diff interrupted");
+            return new ResponseEntity(errorPayload, HttpStatus.SERVICE_UNAVAILABLE);
+        } catch (IOException e) {
+            logger.error("Could not read stored data on id: " + id + " - " + e.getMessage());
+            ErrorPayload errorPayload = new ErrorPayload();
+            errorPayload.setErrorCode(HttpStatus.INTERNAL_SERVER_ERROR.toString());
+            errorPayload.setMessage("Could not read stored data");
+            return new ResponseEntity(errorPayload, HttpStatus.INTERNAL_SERVER_ERROR);
+        }
 
-            diffResult.setDifferences(differences);
+        return response;
+    }
 
-            return response;
+    /**
+     * Estimates the similarity of two sides without comparing them as a whole. Sides of the same size are
+     * sampled on the requested range, reading only the sampled positions of each side; the same positions
+     * are sampled on each request, so the estimate of a pair does not change. Sides of different sizes are
+     * compared as a whole by MinHash, streamed without keeping them in memory.
+     *
+     * @param right         the right side
+     * @param left          the left side
+     * @param rangeStart    first byte of the range, inclusive
+     * @param rangeEnd      last byte of the range, exclusive
+     * @param diffQuery     the optional parameters of the diff operation
+     * @return the estimate
+     * @throws IOException if a side cannot be read
+     */
+    private DiffEstimate estimate (StoredSide right, StoredSide left, int rangeStart, int rangeEnd,
+            DiffQuery diffQuery) throws IOException {
+        int samples = diffQuery.getSamples() == null ? DiffQuery.DEFAULT_SAMPLES : diffQuery.getSamples();
+        if (right.getLength() != left.getLength()) {
+            try (InputStream rightStream = right.openStream();
+                 InputStream leftStream = left.openStream()) {
+                return diffEngine.estimateMinHash(rightStream, leftStream, samples);
+            }
+        }
+        int[] positions = DiffEngine.samplePositions(rangeStart, rangeEnd, samples,
+                new Random(31L * rangeStart + rangeEnd));
+        try {
+            return DiffEngine.estimateSampled(right.sample(positions), left.sample(positions),
+                    positions.length == rangeEnd - rangeStart);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
+    }
+
+    /**
+     * Builds the error response for an id without data.
+     *
+     * @param id    the unique identifier of a data set
+     * @return the response entity containing an error message
+     */
+    private static ResponseEntity dataNotFound (String id) {
         logger.info("Data not found for id: " + id);
         ErrorPayload errorPayload = new ErrorPayload();
         errorPayload.setErrorCode(HttpStatus.NOT_FOUND.toString());
         errorPayload.setMessage("Data not Found");
         return  new ResponseEntity(errorPayload, HttpStatus.NOT_FOUND);
     }
+
+    /**
+     * Builds the error response for a version that is not kept.
+     *
+     * @param id    the unique identifier of a data set
+     * @return the response entity containing an error message
+     */
+    private static ResponseEntity versionNotFound (String id) {
+        logger.info("Version not found for id: " + id);
+        ErrorPayload errorPayload = new ErrorPayload();
+        errorPayload.setErrorCode(HttpStatus.NOT_FOUND.toString());
+        errorPayload.setMessage("Version not Found");
+        return new ResponseEntity(errorPayload, HttpStatus.NOT_FOUND);
+    }
+
+    /**
+     * A diff computed in background, for the versions identified by its entity tag.
+     */
+    private static class PrecomputedDiff {
+
+        /**
+         * The entity tag of the versions compared.
+         */
+        private final String entityTag;
+
+        /**
+         * The response entity of the diff, once computed.
+         */
+        private final FutureTask<ResponseEntity> result;
+
+        /**
+         * Bytes held by the result once computed, 0 before and {@link #RELEASED} once no longer accounted.
+         */
+        private final AtomicLong size;
+
+        /**
+         * When the diff was last served, or started if it was not served yet, in nanoseconds.
+         * The least recent one is dropped first.
+         */
+        private volatile long lastAccess = System.nanoTime();
+
+        /**
+         * Instantiates a new Precomputed diff.
+         *
+         * @param entityTag the entity tag of the versions compared
+         * @param result    the computation of the diff
+         * @param size      the bytes held by the result, set by the computation
+         */
+        private PrecomputedDiff (String entityTag, FutureTask<ResponseEntity> result, AtomicLong size) {
+            this.entityTag = entityTag;
+            this.result = result;
+            this.size = size;
+        }
+    }
 }
@@ -0,0 +1,448 @@
+package org.juliazo.diff.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.juliazo.diff.model.ErrorPayload;
+import org.juliazo.diff.model.ExportRecord;
+import org.juliazo.diff.model.ExportStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Bulk export of the stored data sets and their diffs to NDJSON files: one {@link ExportRecord} per line,
+ * in the order of the ids.
+ *
+ * The storage is walked without blocking updates: each record is taken from the version of its data set
+ * stored when it is exported, and data sets created or removed meanwhile may be missing or present.
+ * Data sets are exported in batches: the diffs of a batch are computed in parallel and written in order,
+ * so only one batch is held in memory. After each batch, the file is forced to disk and a checkpoint with
+ * the last id written is saved next to it, so an interrupted export can be resumed from the last batch.
+ *
+ * Only files within the export directory are written, one at a time.
+ */
+@Service
+public class ExportService {
+
+    /**
+     * The constant logger.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(ExportService.class);
+
+    /**
+     * Suffix of the checkpoint file of an export.
+     */
+    static final String CHECKPOINT_SUFFIX = ".checkpoint";
+
+    /**
+     * The Diff Service. Exports each data set.
+     */
+    private final DiffService diffService;
+
+    /**
+     * Writes the records.
+     */
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Directory the exported files are written to.
+     */
+    private final Path directory;
+
+    /**
+     * How many threads compute the diffs.
+     */
+    private final int threads;
+
+    /**
+     * How many data sets are written between checkpoints.
+     */
+    private final int batchSize;
+
+    /**
+     * The latest export, null if none was started.
+     */
+    private final AtomicReference<Job> latest = new AtomicReference<>();
+
+    /**
+     * Instantiates a new Export service.
+     *
+     * @param diffService   the diff service
+     * @param objectMapper  the object mapper
+     * @param directory     directory the exported files are written to
+     * @param threads       how many threads compute the diffs, 0 for one per processor
+     * @param batchSize     how many data sets are written between checkpoints
+     */
+    @Autowired
+    public ExportService(DiffService diffService, ObjectMapper objectMapper,
+                         @Value("${diff.export.directory:./export}") String directory,
+                         @Value("${diff.export.threads:0}") int threads,
+                         @Value("${diff.export.batch-size:256}") int batchSize) {
+        this.diffService = diffService;
+        this.objectMapper = objectMapper;
+        this.directory = Paths.get(directory).toAbsolutePath().normalize();
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Starts exporting the storage in background.
+     *
+     * @param file      the file, relative to the export directory
+     * @param resume    whether to resume an interrupted export of the same file from its checkpoint
+     * @return the response entity containing the {@link org.juliazo.diff.model.ExportStatus} or an error message
+     */
+    public ResponseEntity start (String file, boolean resume) {
+        if (file == null || file.isEmpty()) {
+            return error(HttpStatus.BAD_REQUEST, "Field file is required");
+        }
+        Path path = directory.resolve(file).normalize();
+        if (!path.startsWith(directory) || path.equals(directory)) {
+            logger.info("Export to a file outside of the export directory: " + file);
+            return error(HttpStatus.BAD_REQUEST, "File must be within the export directory");
+        }
+        if (resume && !Files.isRegularFile(checkpoint(path))) {
+            logger.info("No checkpoint to resume the export to: " + path);
+            return error(HttpStatus.NOT_FOUND, "Checkpoint not Found");
+        }
+        Job job = new Job(file);
+        Job previous = latest.get();
+        if (previous != null && ExportStatus.RUNNING.equals(previous.state)
+                || !latest.compareAndSet(previous, job)) {
+            logger.info("Export to " + file + " requested while another one is running");
+            return error(HttpStatus.CONFLICT, "An export is already running");
+        }
+        Thread writer = new Thread(() -> run(job, path, resume), "diff-export");
+        writer.setDaemon(true);
+        writer.start();
+        return new ResponseEntity(job.toStatus(), HttpStatus.ACCEPTED);
+    }
+
+    /**
+     * Gets the progress of the latest export.
+     *
+     * @return the response entity containing the {@link org.juliazo.diff.model.ExportStatus} or an error message
+     */
+    public ResponseEntity getStatus () {
+        Job job = latest.get();
+        if (job == null) {
+            return error(HttpStatus.NOT_FOUND, "No export was started");
+        }
+        return new ResponseEntity(job.toStatus(), HttpStatus.OK);
+    }
+
+    /**
+     * Exports the storage, returning once every data set is written or the export fails.
+     *
+     * @param file      the file
+     * @param resume    whether to resume from the checkpoint of the file
+     * @return the status of the export
+     */
+    ExportStatus exportFile (Path file, boolean resume) {
+        Job job = new Job(file.toString());
+        run(job, file, resume);
+        return job.toStatus();
+    }
+
+    /**
+     * Exports the storage: the data sets after the checkpoint, if resuming, are written batch by batch.
+     *
+     * @param job       the export
+     * @param file      the file
+     * @param resume    whether to resume from the checkpoint of the file
+     */
+    private void run (Job job, Path file, boolean resume) {
+        AtomicInteger workers = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "diff-export-" + workers.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Path checkpointFile = checkpoint(file);
+        try {
+            Files.createDirectories(file.getParent());
+            Checkpoint checkpoint = resume ? Checkpoint.read(checkpointFile) : new Checkpoint(null, 0, 0);
+            NavigableSet<String> ids = new TreeSet<>(diffService.getStoredIds());
+            if (checkpoint.lastId != null) {
+                ids = ids.tailSet(checkpoint.lastId, false);
+            }
+            job.ids = checkpoint.exported + ids.size();
+            job.exported = checkpoint.exported;
+            job.bytesWritten = checkpoint.offset;
+            logger.info("Exporting " + ids.size() + " ids to " + file + (resume ? " from " + checkpoint.lastId : ""));
+
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                //anything written after the checkpoint is written again
+                channel.truncate(checkpoint.offset);
+                channel.position(checkpoint.offset);
+                List<String> batch = new ArrayList<>(batchSize);
+                for (String id : ids) {
+                    batch.add(id);
+                    if (batch.size() == batchSize) {
+                        checkpoint = writeBatch(job, executor, channel, batch, checkpoint, checkpointFile);
+                        batch.clear();
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    writeBatch(job, executor, channel, batch, checkpoint, checkpointFile);
+                }
+            }
+            Files.deleteIfExists(checkpointFile);
+            job.state = ExportStatus.COMPLETED;
+            logger.info("Exported " + job.exported + " ids to " + file);
+        } catch (IOException | ExecutionException e) {
+            String reason = e instanceof ExecutionException ? e.getCause().getMessage() : e.getMessage();
+            logger.error("Could not export to " + file + " - " + reason);
+            job.message = "Could not export: " + reason;
+            job.state = ExportStatus.FAILED;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.message = "Export interrupted";
+            job.state = ExportStatus.FAILED;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Exports a batch of data sets: computes their records in parallel and writes them in order,
+     * then forces the file to disk and saves the checkpoint.
+     *
+     * @param job               the export
+     * @param executor          computes the records
+     * @param channel           the file
+     * @param batch             the ids of the batch
+     * @param checkpoint        the checkpoint before the batch
+     * @param checkpointFile    the checkpoint file
+     * @return the checkpoint after the batch
+     * @throws IOException if the file or the checkpoint cannot be written
+     * @throws ExecutionException if a record cannot be computed
+     * @throws InterruptedException if the export was interrupted
+     */
+    private Checkpoint writeBatch (Job job, ExecutorService executor, FileChannel channel, List<String> batch,
+                                   Checkpoint checkpoint, Path checkpointFile)
+            throws IOException, ExecutionException, InterruptedException {
+        List<Future<byte[]>> records = new ArrayList<>(batch.size());
+        for (String id : batch) {
+            records.add(executor.submit(() -> toLine(diffService.exportData(id))));
+        }
+        long exported = checkpoint.exported;
+        for (Future<byte[]> record : records) {
+            byte[] line = record.get();
+            if (line != null) {
+                ByteBuffer buffer = ByteBuffer.wrap(line);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                exported++;
+            }
+        }
+        channel.force(false);
+        Checkpoint next = new Checkpoint(batch.get(batch.size() - 1), channel.position(), exported);
+        next.write(checkpointFile);
+        job.exported = exported;
+        job.bytesWritten = next.offset;
+        return next;
+    }
+
+    /**
+     * Serializes a record as a line of the file.
+     *
+     * @param exportRecord  the record, null if the data set was removed
+     * @return the line, ending with a line break, or null to skip the data set
+     * @throws IOException if the record cannot be serialized
+     */
+    private byte[] toLine (ExportRecord exportRecord) throws IOException {
+        if (exportRecord == null) {
+            return null;
+        }
+        byte[] json = objectMapper.writeValueAsBytes(exportRecord);
+        byte[] line = new byte[json.length + 1];
+        System.arraycopy(json, 0, line, 0, json.length);
+        line[json.length] = '\n';
+        return line;
+    }
+
+    /**
+     * Gets the checkpoint file of an export.
+     *
+     * @param file  the exported file
+     * @return the checkpoint file
+     */
+    static Path checkpoint (Path file) {
+        return file.resolveSibling(file.getFileName() + CHECKPOINT_SUFFIX);
+    }
+
+    /**
+     * Builds an error response.
+     *
+     * @param status    the status
+     * @param message   the message
+     * @return the response entity containing an error message
+     */
+    private static ResponseEntity error (HttpStatus status, String message) {
+        ErrorPayload errorPayload = new ErrorPayload();
+        errorPayload.setErrorCode(status.toString());
+        errorPayload.setMessage(message);
+        return new ResponseEntity(errorPayload, status);
+    }
+
+    /**
+     * How far an export got: the ids up to the last one written are on the file, up to the offset.
+     */
+    private static class Checkpoint {
+
+        /**
+         * The last id written, null if none.
+         */
+        private final String lastId;
+
+        /**
+         * Size of the file once the last id was written.
+         */
+        private final long offset;
+
+        /**
+         * How many data sets were written.
+         */
+        private final long exported;
+
+        /**
+         * Instantiates a new Checkpoint.
+         *
+         * @param lastId    the last id written, null if none
+         * @param offset    size of the file once the last id was written
+         * @param exported  how many data sets were written
+         */
+        private Checkpoint (String lastId, long offset, long exported) {
+            this.lastId = lastId;
+            this.offset = offset;
+            this.exported = exported;
+        }
+
+        /**
+         * Reads a checkpoint file.
+         *
+         * @param file  the checkpoint file
+         * @return the checkpoint
+         * @throws IOException if the file cannot be read or is invalid
+         */
+        private static Checkpoint read (Path file) throws IOException {
+            Properties properties = new Properties();
+            try (InputStream in = Files.newInputStream(file)) {
+                properties.load(in);
+            }
+            try {
+                return new Checkpoint(properties.getProperty("lastId"),
+                        Long.parseLong(properties.getProperty("offset")),
+                        Long.parseLong(properties.getProperty("exported")));
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid checkpoint " + file, e);
+            }
+        }
+
+        /**
+         * Writes the checkpoint file, replacing the previous one at once.
+         *
+         * @param file  the checkpoint file
+         * @throws IOException if the file cannot be written
+         */
+        private void write (Path file) throws IOException {
+            Properties properties = new Properties();
+            properties.setProperty("lastId", lastId);
+            properties.setProperty("offset", String.valueOf(offset));
+            properties.setProperty("exported", String.valueOf(exported));
+            Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+            try (OutputStream out = Files.newOutputStream(temporary)) {
+                properties.store(out, null);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    /**
+     * An export, updated as batches are written.
+     */
+    private static class Job {
+
+        /**
+         * The file written.
+         */
+        private final String file;
+
+        /**
+         * The state of the export.
+         */
+        private volatile String state = ExportStatus.RUNNING;
+
+        /**
+         * How many data sets are exported.
+         */
+        private volatile long ids;
+
+        /**
+         * Data sets written so far.
+         */
+        private volatile long exported;
+
+        /**
+         * Size of the file written so far.
+         */
+        private volatile long bytesWritten;
+
+        /**
+         * Why the export failed.
+         */
+        private volatile String message;
+
+        /**
+         * Instantiates a new Job.
+         *
+         * @param file  the file written
+         */
+        private Job (String file) {
+            this.file = file;
+        }
+
+        /**
+         * Mounts the status of the export.
+         *
+         * @return the export status
+         */
+        private ExportStatus toStatus () {
+            ExportStatus exportStatus = new ExportStatus();
+            exportStatus.setFile(file);
+            exportStatus.setState(state);
+            exportStatus.setIds(ids);
+            exportStatus.setExported(exported);
+            exportStatus.setBytesWritten(bytesWritten);
+            exportStatus.setMessage(message);
+            return exportStatus;
+        }
+    }
+}
@@ -0,0 +1,560 @@
+package org.juliazo.diff.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.juliazo.diff.cluster.ClusterService;
+import org.juliazo.diff.model.ErrorPayload;
+import org.juliazo.diff.model.ImportRecord;
+import org.juliazo.diff.model.ImportStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Bulk import of data sets from NDJSON files: one JSON object per line, holding the id and both sides
+ * of a data set, e.g. {"id":"1","left":"dGVsZXR1Ymll","right":"dGVsZXRvYmll"}.
+ *
+ * The file is read through a {@link FileChannel} into a large buffer and split into batches of lines,
+ * which are parsed, validated, decoded and stored in parallel, one batch per thread. Reading waits while
+ * every thread has a batch queued, so memory stays bounded whatever the size of the file.
+ * Records are validated as POSTs to each side are; invalid records are counted and skipped.
+ * Records of the same id are not guaranteed to be stored in the order of the file.
+ *
+ * Only files within the import directory are imported, one at a time.
+ */
+@Service
+public class ImportService {
+
+    /**
+     * The constant logger.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(ImportService.class);
+
+    /**
+     * Lines handed to a thread at once.
+     */
+    static final int BATCH_SIZE = 1000;
+
+    /**
+     * How many rejected records are described on the status.
+     */
+    static final int MAX_REJECTIONS = 100;
+
+    /**
+     * The Diff Service. Validates and stores the records.
+     */
+    private final DiffService diffService;
+
+    /**
+     * The Cluster Service. Records of ids owned by another member are rejected.
+     */
+    private final ClusterService clusterService;
+
+    /**
+     * Parses the records.
+     */
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Directory the imported files must be in.
+     */
+    private final Path directory;
+
+    /**
+     * How many threads store the records.
+     */
+    private final int threads;
+
+    /**
+     * Size of the buffer the file is read into, in bytes.
+     */
+    private final int bufferBytes;
+
+    /**
+     * File imported on startup, empty for none.
+     */
+    private String startupFile = "";
+
+    /**
+     * The latest import, null if none was started.
+     */
+    private final AtomicReference<Job> latest = new AtomicReference<>();
+
+    /**
+     * Instantiates a new Import service.
+     *
+     * @param diffService       the diff service
+     * @param clusterService    the cluster service
+     * @param objectMapper      the object mapper
+     * @param directory         directory the imported files must be in
+     * @param threads           how many threads store the records, 0 for one per processor
+     * @param bufferBytes       size of the buffer the file is read into, in bytes
+     */
+    @Autowired
+    public ImportService(DiffService diffService, ClusterService clusterService, ObjectMapper objectMapper,
+                         @Value("${diff.import.directory:./import}") String directory,
+                         @Value("${diff.import.threads:0}") int threads,
+                         @Value("${diff.import.buffer-bytes:8388608}") int bufferBytes) {
+        this.diffService = diffService;
+        this.clusterService = clusterService;
+        this.objectMapper = objectMapper;
+        this.directory = Paths.get(directory).toAbsolutePath().normalize();
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.bufferBytes = bufferBytes;
+    }
+
+    /**
+     * Sets the file imported once the application is started.
+     *
+     * @param startupFile   the file, relative to the import directory, empty for none
+     */
+    @Value("${diff.import.file:}")
+    public void setStartupFile(String startupFile) {
+        this.startupFile = startupFile;
+    }
+
+    /**
+     * Starts the import of the startup file, if one is set.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void importOnStartup() {
+        if (!startupFile.isEmpty()) {
+            ResponseEntity response = start(startupFile);
+            if (response.getStatusCode().isError()) {
+                logger.error("Could not import " + startupFile + ": " + ((ErrorPayload) response.getBody()).getMessage());
+            }
+        }
+    }
+
+    /**
+     * Starts importing a file in background.
+     *
+     * @param file  the file, relative to the import directory
+     * @return the response entity containing the {@link org.juliazo.diff.model.ImportStatus} or an error message
+     */
+    public ResponseEntity start (String file) {
+        if (file == null || file.isEmpty()) {
+            return error(HttpStatus.BAD_REQUEST, "Field file is required");
+        }
+        Path path = directory.resolve(file).normalize();
+        if (!path.startsWith(directory)) {
+            logger.info("Import of a file outside of the import directory: " + file);
+            return error(HttpStatus.BAD_REQUEST, "File must be within the import directory");
+        }
+        if (!Files.isRegularFile(path)) {
+            logger.info("Import file not found: " + path);
+            return error(HttpStatus.NOT_FOUND, "File not Found");
+        }
+        Job job = new Job(file);
+        Job previous = latest.get();
+        if (previous != null && ImportStatus.RUNNING.equals(previous.state)
+                || !latest.compareAndSet(previous, job)) {
+            logger.info("Import of " + file + " requested while another one is running");
+            return error(HttpStatus.CONFLICT, "An import is already running");
+        }
+        Thread reader = new Thread(() -> run(job, path), "diff-import");
+        reader.setDaemon(true);
+        reader.start();
+        return new ResponseEntity(job.toStatus(), HttpStatus.ACCEPTED);
+    }
+
+    /**
+     * Gets the progress of the latest import.
+     *
+     * @return the response entity containing the {@link org.juliazo.diff.model.ImportStatus} or an error message
+     */
+    public ResponseEntity getStatus () {
+        Job job = latest.get();
+        if (job == null) {
+            return error(HttpStatus.NOT_FOUND, "No import was started");
+        }
+        return new ResponseEntity(job.toStatus(), HttpStatus.OK);
+    }
+
+    /**
+     * Imports a file, returning once every record is stored or rejected.
+     *
+     * @param file  the file
+     * @return the status of the import
+     */
+    ImportStatus importFile (Path file) {
+        Job job = new Job(file.toString());
+        run(job, file);
+        return job.toStatus();
+    }
+
+    /**
+     * Imports a file: reads it into batches of lines handed to the threads storing the records.
+     *
+     * @param job   the import
+     * @param file  the file
+     */
+    private void run (Job job, Path file) {
+        logger.info("Importing " + file + " with " + threads + " threads");
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "diff-import-" + job.workers.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        //a batch running and one queued for each thread
+        int maxBatches = threads * 2;
+        Semaphore batches = new Semaphore(maxBatches);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            job.totalBytes = channel.size();
+            LineReader lineReader = new LineReader(lines -> {
+                batches.acquireUninterruptibly();
+                executor.execute(() -> {
+                    try {
+                        lines.forEach(line -> importLine(job, line));
+                    } finally {
+                        batches.release();
+                    }
+                });
+            });
+            ByteBuffer buffer = ByteBuffer.allocate(bufferBytes);
+            while (channel.read(buffer) >= 0) {
+                job.bytesRead = channel.position();
+                buffer = lineReader.split(buffer);
+            }
+            lineReader.finish(buffer);
+            batches.acquireUninterruptibly(maxBatches);
+            job.state = ImportStatus.COMPLETED;
+            logger.info("Imported " + file + ": " + job.imported.get() + " records, " + job.rejected.get() + " rejected");
+        } catch (IOException e) {
+            batches.acquireUninterruptibly(maxBatches);
+            logger.error("Could not import " + file + " - " + e.getMessage());
+            job.message = "Could not read file";
+            job.state = ImportStatus.FAILED;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Parses, validates and stores one record.
+     *
+     * @param job   the import
+     * @param line  the line of the record
+     */
+    private void importLine (Job job, Line line) {
+        job.records.incrementAndGet();
+        ImportRecord record;
+        try {
+            record = objectMapper.readValue(line.bytes, ImportRecord.class);
+        } catch (IOException e) {
+            job.reject(line.number, "Invalid JSON");
+            return;
+        }
+        if (record.getId() == null || record.getId().isEmpty()) {
+            job.reject(line.number, "Field id is required");
+            return;
+        }
+        if (clusterService.findRemoteOwner(record.getId()) != null) {
+            job.reject(line.number, "Id is owned by another member of the cluster");
+            return;
+        }
+        ResponseEntity errorResponse = diffService.validateInput(record.getLeft(), record.getId());
+        if (errorResponse == null) {
+            errorResponse = diffService.validateInput(record.getRight(), record.getId());
+        }
+        if (errorResponse == null) {
+            errorResponse = stored(diffService.inputLeft(record.getId(), record.getLeft()));
+        }
+        if (errorResponse == null) {
+            errorResponse = stored(diffService.inputRight(record.getId(), record.getRight()));
+        }
+        if (errorResponse != null) {
+            job.reject(line.number, ((ErrorPayload) errorResponse.getBody()).getMessage());
+            return;
+        }
+        long imported = job.imported.incrementAndGet();
+        if (imported % 100000 == 0) {
+            logger.info("Imported " + imported + " records of " + job.file);
+        }
+    }
+
+    /**
+     * Checks whether a side was stored.
+     *
+     * @param response  the response entity of the update of the side
+     * @return the response entity if it contains an error message, null otherwise
+     */
+    private static ResponseEntity stored (ResponseEntity response) {
+        return response.getStatusCode().isError() ? response : null;
+    }
+
+    /**
+     * Builds an error response.
+     *
+     * @param status    the status
+     * @param message   the message
+     * @return the response entity containing an error message
+     */
+    private static ResponseEntity error (HttpStatus status, String message) {
+        ErrorPayload errorPayload = new ErrorPayload();
+        errorPayload.setErrorCode(status.toString());
+        errorPayload.setMessage(message);
+        return new ResponseEntity(errorPayload, status);
+    }
+
+    /**
+     * A line of the file.
+     */
+    private static class Line {
+
+        /**
+         * The line number, starting at 1.
+         */
+        private final long number;
+
+        /**
+         * The bytes of the line, without the line break.
+         */
+        private final byte[] bytes;
+
+        /**
+         * Instantiates a new Line.
+         *
+         * @param number    the line number
+         * @param bytes     the bytes of the line
+         */
+        private Line (long number, byte[] bytes) {
+            this.number = number;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Splits the bytes read from a file into batches of non blank lines.
+     */
+    private static class LineReader {
+
+        /**
+         * Receives each full batch.
+         */
+        private final Consumer<List<Line>> handler;
+
+        /**
+         * The batch being filled.
+         */
+        private List<Line> batch = new ArrayList<>(BATCH_SIZE);
+
+        /**
+         * Number of the last line split.
+         */
+        private long lineNumber;
+
+        /**
+         * Bytes at the start of the buffer already known not to hold a line break.
+         */
+        private int scanned;
+
+        /**
+         * Instantiates a new Line reader.
+         *
+         * @param handler   receives each full batch
+         */
+        private LineReader (Consumer<List<Line>> handler) {
+            this.handler = handler;
+        }
+
+        /**
+         * Splits the lines of a buffer being filled, keeping the last partial line at its start.
+         *
+         * @param buffer    the buffer, in write mode, backed by an array
+         * @return the buffer to keep filling, larger when a line does not fit in it
+         */
+        private ByteBuffer split (ByteBuffer buffer) {
+            byte[] array = buffer.array();
+            int end = buffer.position();
+            int start = 0;
+            for (int i = scanned; i < end; i++) {
+                if (array[i] == '\n') {
+                    addLine(array, start, i);
+                    start = i + 1;
+                }
+            }
+            System.arraycopy(array, start, array, 0, end - start);
+            buffer.position(end - start);
+            scanned = end - start;
+            if (!buffer.hasRemaining()) {
+                ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+                buffer.flip();
+                larger.put(buffer);
+                return larger;
+            }
+            return buffer;
+        }
+
+        /**
+         * Splits the last line, which may not end with a line break, and hands the last batch.
+         *
+         * @param buffer    the buffer, in write mode, holding the last partial line
+         */
+        private void finish (ByteBuffer buffer) {
+            addLine(buffer.array(), 0, buffer.position());
+            if (!batch.isEmpty()) {
+                handler.accept(batch);
+            }
+        }
+
+        /**
+         * Adds a line to the batch, unless it is blank, and hands the batch once it is full.
+         *
+         * @param array the bytes read
+         * @param from  start of the line, inclusive
+         * @param to    end of the line, exclusive, before the line break
+         */
+        private void addLine (byte[] array, int from, int to) {
+            lineNumber++;
+            if (isBlank(array, from, to)) {
+                return;
+            }
+            batch.add(new Line(lineNumber, Arrays.copyOfRange(array, from, to)));
+            if (batch.size() == BATCH_SIZE) {
+                handler.accept(batch);
+                batch = new ArrayList<>(BATCH_SIZE);
+            }
+        }
+
+        /**
+         * Checks whether a line only holds whitespace, e.g. the carriage return of a Windows line break.
+         *
+         * @param array the bytes read
+         * @param from  start of the line, inclusive
+         * @param to    end of the line, exclusive
+         * @return whether the line is blank
+         */
+        private static boolean isBlank (byte[] array, int from, int to) {
+            for (int i = from; i < to; i++) {
+                if (array[i] != ' ' && array[i] != '\t' && array[i] != '\r') {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * An import, updated by the threads storing its records.
+     */
+    private static class Job {
+
+        /**
+         * The file imported.
+         */
+        private final String file;
+
+        /**
+         * The state of the import.
+         */
+        private volatile String state = ImportStatus.RUNNING;
+
+        /**
+         * Size of the file, in bytes.
+         */
+        private volatile long totalBytes;
+
+        /**
+         * Bytes of the file read so far.
+         */
+        private volatile long bytesRead;
+
+        /**
+         * Records read so far.
+         */
+        private final AtomicLong records = new AtomicLong();
+
+        /**
+         * Records stored so far.
+         */
+        private final AtomicLong imported = new AtomicLong();
+
+        /**
+         * Records rejected so far.
+         */
+        private final AtomicLong rejected = new AtomicLong();
+
+        /**
+         * The first records rejected.
+         */
+        private final List<String> rejections = new ArrayList<>();
+
+        /**
+         * Why the import failed.
+         */
+        private volatile String message;
+
+        /**
+         * Names the threads storing the records.
+         */
+        private final AtomicInteger workers = new AtomicInteger();
+
+        /**
+         * Instantiates a new Job.
+         *
+         * @param file  the file imported
+         */
+        private Job (String file) {
+            this.file = file;
+        }
+
+        /**
+         * Counts a rejected record, describing it while few records were rejected.
+         *
+         * @param lineNumber    the line of the record
+         * @param reason        why it was rejected
+         */
+        private void reject (long lineNumber, String reason) {
+            if (rejected.incrementAndGet() <= MAX_REJECTIONS) {
+                synchronized (rejections) {
+                    rejections.add("Line " + lineNumber + ": " + reason);
+                }
+            }
+        }
+
+        /**
+         * Mounts the status of the import.
+         *
+         * @return the import status
+         */
+        private ImportStatus toStatus () {
+            ImportStatus importStatus = new ImportStatus();
+            importStatus.setFile(file);
+            importStatus.setState(state);
+            importStatus.setTotalBytes(totalBytes);
+            importStatus.setBytesRead(bytesRead);
+            importStatus.setRecords(records.get());
+            importStatus.setImported(imported.get());
+            importStatus.setRejected(rejected.get());
+            synchronized (rejections) {
+                importStatus.setRejections(new ArrayList<>(rejections));
+            }
+            importStatus.setMessage(message);
+            return importStatus;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package org.juliazo.diff.service;
+
+import com.fasterxml.jackson.core.Base64Variants;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.juliazo.diff.commons.buffer.ByteArrayPool;
+import org.juliazo.diff.model.ErrorPayload;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Streaming ingest of the sides of a diff. The same JSON payload of a POST to a side is read
+ * with the streaming parser, which decodes the Base64 of the data field straight into a buffer of the
+ * pool of the Diff Service: the encoded data is never held as a String and is not validated in a separate pass.
+ *
+ * Data must be standard Base64 with padding; whitespace is only accepted between blocks of 4 characters.
+ * Clients may also send the raw bytes of a side, which skips the encoding altogether.
+ */
+@Service
+public class IngestService {
+
+    /**
+     * The constant logger.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(IngestService.class);
+
+    /**
+     * Name of the field holding the encoded data.
+     */
+    private static final String DATA_FIELD = "data";
+
+    /**
+     * The Diff Service. Receives the decoded data.
+     */
+    private final DiffService diffService;
+
+    /**
+     * Creates the streaming parsers.
+     */
+    private final JsonFactory jsonFactory;
+
+    /**
+     * Instantiates a new Ingest service.
+     *
+     * @param diffService       the diff service
+     * @param objectMapper      the object mapper, whose factory creates the parsers
+     */
+    @Autowired
+    public IngestService(DiffService diffService, ObjectMapper objectMapper) {
+        this.diffService = diffService;
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    /**
+     * Reads a JSON payload containing the encoded data of a side and includes it on the side.
+     *
+     * @param id            the unique identifier of the data set
+     * @param side          left or right
+     * @param body          the request body
+     * @param contentLength the length of the request body, -1 if unknown
+     * @param ifMatch       the entity tags of the side known by the client, null for an unconditional update
+     * @return the response entity of the update of the side or an error message
+     */
+    public ResponseEntity ingest (String id, String side, InputStream body, long contentLength, String ifMatch) {
+        //4 characters of Base64 hold 3 bytes
+        int expectedSize = contentLength > 0 && contentLength < Integer.MAX_VALUE ? (int) (contentLength / 4 * 3) : 0;
+        ByteArrayPool.PooledBuffer buffer = diffService.getBufferPool().buffer(expectedSize);
+        try {
+            ResponseEntity errorResponse = readData(id, body, buffer);
+            if (errorResponse != null) {
+                return errorResponse;
+            }
+            return "left".equals(side) ? diffService.inputLeftDecoded(id, buffer, ifMatch, true)
+                    : diffService.inputRightDecoded(id, buffer, ifMatch, true);
+        } finally {
+            buffer.release();
+        }
+    }
+
+    /**
+     * Reads the raw bytes of a side, sent as they are instead of encoded in a JSON payload,
+     * and includes them on the side. The bytes are read straight into a pooled buffer.
+     * The client already holds the bytes, so only the entity tag of the new version is sent back on success.
+     *
+     * @param id            the unique identifier of the data set
+     * @param side          left or right
+     * @param body          the request body
+     * @param contentLength the length of the request body, -1 if unknown
+     * @param ifMatch       the entity tags of the side known by the client, null for an unconditional update
+     * @return the response entity with the status of the update of the side, or an error message
+     */
+    public ResponseEntity ingestRaw (String id, String side, InputStream body, long contentLength, String ifMatch) {
+        int expectedSize = contentLength > 0 && contentLength < Integer.MAX_VALUE ? (int) contentLength : 0;
+        ByteArrayPool.PooledBuffer buffer = diffService.getBufferPool().buffer(expectedSize);
+        try {
+            buffer.readFrom(body);
+            return "left".equals(side) ? diffService.inputLeftDecoded(id, buffer, ifMatch, false)
+                    : diffService.inputRightDecoded(id, buffer, ifMatch, false);
+        } catch (IOException e) {
+            logger.info("Could not read payload on id: " + id + " - " + e.getMessage());
+            return error(HttpStatus.BAD_REQUEST, "Could not read payload");
+        } finally {
+            buffer.release();
+        }
+    }
+
+    /**
+     * Decodes the data field of the payload into the buffer. Other fields are skipped.
+     *
+     * @param id        the unique identifier of the data set
+     * @param body      the request body
+     * @param buffer    the buffer receiving the decoded data, empty if the field is missing
+     * @return the response entity containing an error message, or null if the payload is valid
+     */
+    private ResponseEntity readData (String id, InputStream body, ByteArrayPool.PooledBuffer buffer) {
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Payload must be a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if (!DATA_FIELD.equals(field) || value == JsonToken.VALUE_NULL) {
+                    parser.skipChildren();
+                } else if (value != JsonToken.VALUE_STRING || !decode(parser, buffer)) {
+                    logger.info("Invalid Base64 data on id: " + id);
+                    return error(HttpStatus.BAD_REQUEST, "Input must use valid Base64 characters");
+                }
+            }
+            return null;
+        } catch (JsonProcessingException e) {
+            logger.info("Invalid JSON payload on id: " + id + " - " + e.getOriginalMessage());
+            return error(HttpStatus.BAD_REQUEST, "Invalid JSON payload");
+        } catch (IOException e) {
+            logger.info("Could not read payload on id: " + id + " - " + e.getMessage());
+            return error(HttpStatus.BAD_REQUEST, "Could not read payload");
+        }
+    }
+
+    /**
+     * Decodes the current string value of the parser into the buffer, replacing its content.
+     *
+     * @param parser    the parser, positioned on the string value
+     * @param buffer    the buffer
+     * @return whether the value is valid Base64
+     * @throws IOException if the payload cannot be read
+     */
+    private static boolean decode (JsonParser parser, ByteArrayPool.PooledBuffer buffer) throws IOException {
+        buffer.reset();
+        try {
+            parser.readBinaryValue(Base64Variants.MIME_NO_LINEFEEDS, buffer);
+            return true;
+        } catch (IllegalArgumentException | JsonParseException e) {
+            //the parser reports invalid characters and incomplete blocks either way
+            return false;
+        }
+    }
+
+    /**
+     * Builds an error response.
+     *
+     * @param status    the status
+     * @param message   the message
+     * @return the response entity containing an error message
+     */
+    private static ResponseEntity error (HttpStatus status, String message) {
+        ErrorPayload errorPayload = new ErrorPayload();
+        errorPayload.setErrorCode(status.toString());
+        errorPayload.setMessage(message);
+        return new ResponseEntity(errorPayload, status);
+    }
+}
@@ -0,0 +1,273 @@
+package org.juliazo.diff.service;
+
+import org.juliazo.diff.model.DiffQuery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Subscriptions to the diff of an id, pushed as server-sent events: the diff result is sent
+ * once both sides are present and again after each update, instead of being polled.
+ *
+ * Idle subscribers hold no thread, only their entry on the registry. Updates only schedule
+ * the push: a few publisher threads compute each diff once for all the subscribers of the id,
+ * and updates received while a push is pending are sent together as a single one.
+ * Each event carries the entity tag of the diff result as its id, so a subscriber that
+ * reconnects with Last-Event-ID does not receive the same result again.
+ */
+@Service
+public class SubscriptionService implements DiffListener {
+
+    /**
+     * Name of the events carrying a diff result.
+     */
+    public static final String DIFF_EVENT = "diff";
+
+    /**
+     * The constant logger.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(SubscriptionService.class);
+
+    /**
+     * The Diff Service. Computes the diff results pushed.
+     */
+    private final DiffService diffService;
+
+    /**
+     * Maximum number of subscribers, on all ids.
+     */
+    private final int maxSubscribers;
+
+    /**
+     * How long a subscription is kept open, in milliseconds. Clients reconnect afterwards.
+     */
+    private final long timeoutMs;
+
+    /**
+     * Subscribers of each id.
+     */
+    private final Map<String, Subscribers> subscribers = new ConcurrentHashMap<>();
+
+    /**
+     * Number of subscribers, on all ids.
+     */
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+
+    /**
+     * Computes and sends the diff results.
+     */
+    private final ExecutorService publisher;
+
+    /**
+     * Instantiates a new Subscription service, listening to the updates of the diff service.
+     *
+     * @param diffService       the diff service
+     * @param maxSubscribers    maximum number of subscribers, on all ids
+     * @param timeoutMs         how long a subscription is kept open, in milliseconds
+     * @param publisherThreads  how many threads compute and send the diff results
+     */
+    @Autowired
+    public SubscriptionService(DiffService diffService,
+                               @Value("${diff.subscriptions.max:10000}") int maxSubscribers,
+                               @Value("${diff.subscriptions.timeout-ms:300000}") long timeoutMs,
+                               @Value("${diff.subscriptions.publisher-threads:2}") int publisherThreads) {
+        this.diffService = diffService;
+        this.maxSubscribers = maxSubscribers;
+        this.timeoutMs = timeoutMs;
+        AtomicInteger threads = new AtomicInteger();
+        this.publisher = Executors.newFixedThreadPool(publisherThreads, runnable -> {
+            Thread thread = new Thread(runnable, "diff-publisher-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        diffService.addListener(this);
+    }
+
+    /**
+     * Subscribes to the diff of an id. The current diff result is sent right away
+     * when both sides are present.
+     *
+     * @param id            the unique identifier of the data set
+     * @param lastEventId   the entity tag of the last diff result received by the client, null if none
+     * @return the emitter of the events, or null if the maximum number of subscribers was reached
+     */
+    public SseEmitter subscribe (String id, String lastEventId) {
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            logger.info("Too many subscribers, rejecting subscription on id: " + id);
+            return null;
+        }
+        Subscriber subscriber = new Subscriber(new SseEmitter(timeoutMs), lastEventId);
+        subscriber.emitter.onCompletion(() -> unsubscribe(id, subscriber));
+        subscriber.emitter.onTimeout(() -> unsubscribe(id, subscriber));
+        Subscribers idSubscribers = subscribers.compute(id, (key, current) -> {
+            Subscribers updated = current == null ? new Subscribers() : current;
+            updated.queue.add(subscriber);
+            return updated;
+        });
+        logger.debug("New subscriber on id: " + id);
+        schedule(id, idSubscribers);
+        return subscriber.emitter;
+    }
+
+    /**
+     * Schedules a push to the subscribers of the updated id, if there are any.
+     *
+     * @param id    the unique identifier of the data set
+     */
+    @Override
+    public void sideUpdated (String id) {
+        Subscribers idSubscribers = subscribers.get(id);
+        if (idSubscribers != null) {
+            schedule(id, idSubscribers);
+        }
+    }
+
+    /**
+     * Gets the number of subscribers, on all ids.
+     *
+     * @return the number of subscribers
+     */
+    public int getSubscriberCount () {
+        return subscriberCount.get();
+    }
+
+    /**
+     * Stops the publisher threads.
+     */
+    @PreDestroy
+    public void shutdown () {
+        publisher.shutdownNow();
+    }
+
+    /**
+     * Schedules a push, unless one is already pending: the pending push then sends the latest result.
+     *
+     * @param id            the unique identifier of the data set
+     * @param idSubscribers the subscribers of the id
+     */
+    private void schedule (String id, Subscribers idSubscribers) {
+        if (idSubscribers.pending.getAndIncrement() == 0) {
+            publisher.execute(() -> {
+                int missed = 1;
+                do {
+                    try {
+                        publish(id, idSubscribers);
+                    } catch (RuntimeException e) {
+                        //the push is still counted as sent, so the next update schedules a new one
+                        logger.error("Could not push the diff of id " + id + ": " + e.getMessage());
+                    }
+                    missed = idSubscribers.pending.addAndGet(-missed);
+                } while (missed != 0);
+            });
+        }
+    }
+
+    /**
+     * Computes the diff of an id and sends it to each subscriber that did not receive it yet.
+     * Nothing is sent while a side is missing.
+     *
+     * @param id            the unique identifier of the data set
+     * @param idSubscribers the subscribers of the id
+     */
+    private void publish (String id, Subscribers idSubscribers) {
+        if (idSubscribers.queue.isEmpty()) {
+            return;
+        }
+        ResponseEntity response = diffService.getDiffResult(id, new DiffQuery(), null);
+        if (response.getStatusCode() != HttpStatus.OK) {
+            logger.debug("No diff to push on id: " + id);
+            return;
+        }
+        String entityTag = response.getHeaders().getETag();
+        for (Subscriber subscriber : idSubscribers.queue) {
+            if (entityTag.equals(subscriber.lastEntityTag)) {
+                continue;
+            }
+            try {
+                subscriber.emitter.send(SseEmitter.event().name(DIFF_EVENT).id(entityTag)
+                        .data(response.getBody(), MediaType.APPLICATION_JSON));
+                subscriber.lastEntityTag = entityTag;
+            } catch (IOException | IllegalStateException e) {
+                logger.debug("Subscriber on id " + id + " is gone: " + e.getMessage());
+                unsubscribe(id, subscriber);
+                subscriber.emitter.completeWithError(e);
+            }
+        }
+    }
+
+    /**
+     * Removes a subscriber, and the entry of the id once it has no subscribers.
+     *
+     * @param id            the unique identifier of the data set
+     * @param subscriber    the subscriber
+     */
+    private void unsubscribe (String id, Subscriber subscriber) {
+        subscribers.computeIfPresent(id, (key, current) -> {
+            if (current.queue.remove(subscriber)) {
+                subscriberCount.decrementAndGet();
+                logger.debug("Subscriber removed on id: " + id);
+            }
+            return current.queue.isEmpty() ? null : current;
+        });
+    }
+
+    /**
+     * The subscribers of an id.
+     */
+    private static class Subscribers {
+
+        /**
+         * The subscribers.
+         */
+        private final Queue<Subscriber> queue = new ConcurrentLinkedQueue<>();
+
+        /**
+         * Pushes requested and not sent yet. Only the thread that takes it from zero sends them.
+         */
+        private final AtomicInteger pending = new AtomicInteger();
+    }
+
+    /**
+     * A subscriber of an id.
+     */
+    private static class Subscriber {
+
+        /**
+         * The emitter of the events.
+         */
+        private final SseEmitter emitter;
+
+        /**
+         * The entity tag of the last diff result sent, null if none.
+         */
+        private volatile String lastEntityTag;
+
+        /**
+         * Instantiates a new Subscriber.
+         *
+         * @param emitter       the emitter of the events
+         * @param lastEntityTag the entity tag of the last diff result received, null if none
+         */
+        private Subscriber (SseEmitter emitter, String lastEntityTag) {
+            this.emitter = emitter;
+            this.lastEntityTag = lastEntityTag;
+        }
+    }
+}
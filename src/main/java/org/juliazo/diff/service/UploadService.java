@@ -0,0 +1,490 @@
+package org.juliazo.diff.service;
+
+import org.apache.tomcat.util.codec.binary.Base64;
+import org.juliazo.diff.commons.buffer.ByteArrayPool;
+import org.juliazo.diff.model.ErrorPayload;
+import org.juliazo.diff.model.UploadStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Chunked uploads. Sides too large for a single request are sent in numbered chunks:
+ * the upload is started with the number of chunks, each chunk is decoded as soon as it is
+ * received and the upload is committed to its side once every chunk is present.
+ *
+ * Chunks can be sent in any order and sent again, a chunk sent again replaces the previous one.
+ * Every chunk but the last must contain whole Base64 blocks, so each chunk can be decoded alone.
+ * Uploads not updated for diff.upload.expiry-ms are discarded, checked every diff.upload.sweep-interval-ms
+ * and whenever an upload starts.
+ *
+ * The decoded chunks are held until their upload is committed, aborted or expires, so their bytes count
+ * against diff.upload.max-bytes and against the global storage budget of the {@link DiffService}:
+ * a chunk that does not fit is rejected with 507.
+ */
+@Service
+public class UploadService {
+
+    /**
+     * The constant logger.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(UploadService.class);
+
+    /**
+     * The Diff Service. Receives the committed uploads.
+     */
+    private final DiffService diffService;
+
+    /**
+     * Maximum number of chunks of an upload.
+     */
+    private final int maxChunks;
+
+    /**
+     * Maximum bytes held by the chunks of every upload, 0 if unlimited.
+     */
+    private final long maxBytes;
+
+    /**
+     * How long an upload is kept without receiving chunks, in milliseconds.
+     */
+    private final long expiryMs;
+
+    /**
+     * Uploads in progress, by upload id.
+     */
+    private final Map<String, Upload> uploads = new ConcurrentHashMap<>();
+
+    /**
+     * Bytes held by the chunks of every upload.
+     */
+    private final AtomicLong stagedBytes = new AtomicLong();
+
+    /**
+     * Instantiates a new Upload service.
+     *
+     * @param diffService   the diff service
+     * @param maxChunks     maximum number of chunks of an upload
+     * @param maxBytes      maximum bytes held by the chunks of every upload, 0 if unlimited
+     * @param expiryMs      how long an upload is kept without receiving chunks, in milliseconds
+     */
+    @Autowired
+    public UploadService(DiffService diffService,
+                         @Value("${diff.upload.max-chunks:10000}") int maxChunks,
+                         @Value("${diff.upload.max-bytes:536870912}") long maxBytes,
+                         @Value("${diff.upload.expiry-ms:3600000}") long expiryMs) {
+        this.diffService = diffService;
+        this.maxChunks = maxChunks;
+        this.maxBytes = maxBytes;
+        this.expiryMs = expiryMs;
+    }
+
+    /**
+     * Starts an upload to one side of a data set.
+     *
+     * @param id        the unique identifier of the data set
+     * @param side      left or right
+     * @param chunks    how many chunks the upload will be sent in
+     * @return the response entity containing the {@link org.juliazo.diff.model.UploadStatus}
+     *          of the new upload or an error message
+     */
+    public ResponseEntity begin (String id, String side, Integer chunks) {
+        if (chunks == null || chunks < 1 || chunks > maxChunks) {
+            logger.info("Invalid number of chunks on id: " + id);
+            return error(HttpStatus.BAD_REQUEST, "Field chunks must be between 1 and " + maxChunks);
+        }
+        removeExpired();
+        Upload upload = new Upload(UUID.randomUUID().toString(), id, side, chunks);
+        uploads.put(upload.uploadId, upload);
+        logger.debug("Starting upload " + upload.uploadId + " of " + chunks + " chunks on id: " + id);
+        return new ResponseEntity(upload.toStatus(), HttpStatus.CREATED);
+    }
+
+    /**
+     * Receives one chunk of an upload, decoding it right away.
+     *
+     * @param id        the unique identifier of the data set
+     * @param side      left or right
+     * @param uploadId  the upload id
+     * @param index     the chunk index, starting at 0
+     * @param data      encoded base 64 data of the chunk
+     * @return the response entity containing the {@link org.juliazo.diff.model.UploadStatus} or an error message
+     */
+    public ResponseEntity putChunk (String id, String side, String uploadId, int index, String data) {
+        Upload upload = findUpload(id, side, uploadId);
+        if (upload == null) {
+            return uploadNotFound(uploadId);
+        }
+        if (index < 0 || index >= upload.chunks.length()) {
+            logger.info("Chunk index " + index + " out of range on upload: " + uploadId);
+            return error(HttpStatus.BAD_REQUEST, "Chunk index out of range");
+        }
+        ResponseEntity errorResponse = diffService.validateInput(data, id);
+        if (errorResponse != null) {
+            return errorResponse;
+        }
+        if (index < upload.chunks.length() - 1 && !isWholeBlocks(data)) {
+            logger.info("Chunk " + index + " ends with a partial Base64 block on upload: " + uploadId);
+            return error(HttpStatus.BAD_REQUEST, "Only the last chunk may end with a partial Base64 block");
+        }
+        byte[] chunk = Base64.decodeBase64(data);
+        errorResponse = stage(upload, chunk.length);
+        if (errorResponse != null) {
+            return errorResponse;
+        }
+        byte[] previous = upload.chunks.getAndSet(index, chunk);
+        //the chunk replaced is no longer held, unless the upload was discarded and released it meanwhile
+        if (previous != null && upload.charge(-previous.length)) {
+            unstage(previous.length);
+        }
+        upload.lastUpdate = System.currentTimeMillis();
+        logger.debug("Received chunk " + index + " on upload: " + uploadId);
+        return new ResponseEntity(upload.toStatus(), HttpStatus.OK);
+    }
+
+    /**
+     * Gets the progress of an upload, including which chunks are missing.
+     *
+     * @param id        the unique identifier of the data set
+     * @param side      left or right
+     * @param uploadId  the upload id
+     * @return the response entity containing the {@link org.juliazo.diff.model.UploadStatus} or an error message
+     */
+    public ResponseEntity getStatus (String id, String side, String uploadId) {
+        Upload upload = findUpload(id, side, uploadId);
+        if (upload == null) {
+            return uploadNotFound(uploadId);
+        }
+        return new ResponseEntity(upload.toStatus(), HttpStatus.OK);
+    }
+
+    /**
+     * Commits an upload: once every chunk is received, the whole data replaces the side
+     * in a single update, exactly as a POST to the side would.
+     *
+     * @param id        the unique identifier of the data set
+     * @param side      left or right
+     * @param uploadId  the upload id
+     * @return the response entity of the update of the side or an error message
+     */
+    public ResponseEntity commit (String id, String side, String uploadId) {
+        Upload upload = findUpload(id, side, uploadId);
+        if (upload == null) {
+            return uploadNotFound(uploadId);
+        }
+        if (!upload.toStatus().getMissingChunks().isEmpty()) {
+            logger.info("Commit with missing chunks on upload: " + uploadId);
+            return error(HttpStatus.CONFLICT, "Missing chunks");
+        }
+        if (!uploads.remove(uploadId, upload)) {
+            //committed concurrently
+            return uploadNotFound(uploadId);
+        }
+        logger.debug("Committing upload " + uploadId + " on id: " + id);
+        //released before the update, which accounts for the same bytes as stored data
+        unstage(upload.release());
+        //the chunks are already decoded and validated, so they are stored without going through Base64 again
+        ByteArrayPool.PooledBuffer buffer = diffService.getBufferPool().buffer(upload.length());
+        ResponseEntity response;
+        try {
+            upload.writeTo(buffer);
+            response = "left".equals(side) ? diffService.inputLeftDecoded(id, buffer, null, true)
+                    : diffService.inputRightDecoded(id, buffer, null, true);
+        } finally {
+            buffer.release();
+        }
+        if (response.getStatusCode().isError()) {
+            //keeps the upload so the commit can be retried, if its chunks still fit
+            upload.reopen();
+            if (stage(upload, upload.length()) == null) {
+                uploads.put(uploadId, upload);
+            } else {
+                logger.info("Discarding upload " + uploadId + " after a failed commit, over the upload budget");
+            }
+        }
+        return response;
+    }
+
+    /**
+     * Aborts an upload, discarding its chunks.
+     *
+     * @param id        the unique identifier of the data set
+     * @param side      left or right
+     * @param uploadId  the upload id
+     * @return the response entity with no content or an error message
+     */
+    public ResponseEntity abort (String id, String side, String uploadId) {
+        Upload upload = findUpload(id, side, uploadId);
+        if (upload == null || !uploads.remove(uploadId, upload)) {
+            return uploadNotFound(uploadId);
+        }
+        logger.debug("Aborting upload " + uploadId + " on id: " + id);
+        unstage(upload.release());
+        return new ResponseEntity(HttpStatus.NO_CONTENT);
+    }
+
+    /**
+     * Accounts for the bytes of a chunk received, against the budget of the uploads and the global budget.
+     *
+     * @param upload    the upload receiving the chunk
+     * @param bytes     the bytes of the chunk
+     * @return the response entity containing an error message, or null if the chunk is accounted for
+     */
+    private ResponseEntity stage (Upload upload, long bytes) {
+        if (stagedBytes.addAndGet(bytes) > maxBytes && maxBytes > 0) {
+            stagedBytes.addAndGet(-bytes);
+            logger.info("Rejecting " + bytes + " bytes over the upload budget on upload: " + upload.uploadId);
+            return error(HttpStatus.INSUFFICIENT_STORAGE, "Uploads would hold more than their limit of "
+                    + maxBytes + " bytes");
+        }
+        ResponseEntity errorResponse = diffService.reserveStagedBytes(bytes);
+        if (errorResponse != null) {
+            stagedBytes.addAndGet(-bytes);
+            return errorResponse;
+        }
+        if (!upload.charge(bytes)) {
+            //discarded meanwhile
+            unstage(bytes);
+            return uploadNotFound(upload.uploadId);
+        }
+        return null;
+    }
+
+    /**
+     * Stops accounting for the bytes of chunks no longer held.
+     *
+     * @param bytes the bytes of the chunks
+     */
+    private void unstage (long bytes) {
+        stagedBytes.addAndGet(-bytes);
+        diffService.releaseStagedBytes(bytes);
+    }
+
+    /**
+     * Finds an upload to the given side of the given data set.
+     *
+     * @param id        the unique identifier of the data set
+     * @param side      left or right
+     * @param uploadId  the upload id
+     * @return the upload or null if there is none
+     */
+    private Upload findUpload (String id, String side, String uploadId) {
+        Upload upload = uploads.get(uploadId);
+        if (upload == null || !upload.id.equals(id) || !upload.side.equals(side)) {
+            return null;
+        }
+        return upload;
+    }
+
+    /**
+     * Discards the uploads that were not updated within the expiry time. Runs every
+     * diff.upload.sweep-interval-ms milliseconds, so abandoned uploads do not hold their chunks
+     * until another upload starts.
+     */
+    @Scheduled(initialDelayString = "${diff.upload.sweep-interval-ms:60000}",
+            fixedDelayString = "${diff.upload.sweep-interval-ms:60000}")
+    public void removeExpired () {
+        long limit = System.currentTimeMillis() - expiryMs;
+        uploads.values().removeIf(upload -> {
+            if (upload.lastUpdate < limit) {
+                logger.info("Discarding expired upload: " + upload.uploadId);
+                unstage(upload.release());
+                return true;
+            }
+            return false;
+        });
+    }
+
+    /**
+     * Checks whether the data holds whole Base64 blocks of 4 characters, without padding.
+     *
+     * @param data  encoded base 64 data
+     * @return whether the data can be followed by more data
+     */
+    private static boolean isWholeBlocks (String data) {
+        int characters = 0;
+        for (int i = 0; i < data.length(); i++) {
+            char c = data.charAt(i);
+            if (c == '=') {
+                return false;
+            }
+            if (!Character.isWhitespace(c)) {
+                characters++;
+            }
+        }
+        return characters % 4 == 0;
+    }
+
+    /**
+     * Builds the error response for an upload that does not exist.
+     *
+     * @param uploadId  the upload id
+     * @return the response entity containing an error message
+     */
+    private static ResponseEntity uploadNotFound (String uploadId) {
+        logger.info("Upload not found: " + uploadId);
+        return error(HttpStatus.NOT_FOUND, "Upload not Found");
+    }
+
+    /**
+     * Builds an error response.
+     *
+     * @param status    the status
+     * @param message   the message
+     * @return the response entity containing an error message
+     */
+    private static ResponseEntity error (HttpStatus status, String message) {
+        ErrorPayload errorPayload = new ErrorPayload();
+        errorPayload.setErrorCode(status.toString());
+        errorPayload.setMessage(message);
+        return new ResponseEntity(errorPayload, status);
+    }
+
+    /**
+     * An upload in progress. Chunks are received concurrently without locking.
+     */
+    private static class Upload {
+
+        /**
+         * Value of {@link #stagedBytes} once the upload no longer accounts for its chunks.
+         */
+        private static final long RELEASED = -1;
+
+        /**
+         * The upload id.
+         */
+        private final String uploadId;
+
+        /**
+         * The unique identifier of the data set.
+         */
+        private final String id;
+
+        /**
+         * Left or right.
+         */
+        private final String side;
+
+        /**
+         * Decoded chunks, null until received.
+         */
+        private final AtomicReferenceArray<byte[]> chunks;
+
+        /**
+         * When a chunk was last received, in milliseconds.
+         */
+        private volatile long lastUpdate = System.currentTimeMillis();
+
+        /**
+         * Bytes of the chunks accounted for, {@link #RELEASED} once the upload is discarded or committed.
+         */
+        private final AtomicLong stagedBytes = new AtomicLong();
+
+        /**
+         * Instantiates a new Upload.
+         *
+         * @param uploadId  the upload id
+         * @param id        the unique identifier of the data set
+         * @param side      left or right
+         * @param chunks    how many chunks the upload is sent in
+         */
+        private Upload (String uploadId, String id, String side, int chunks) {
+            this.uploadId = uploadId;
+            this.id = id;
+            this.side = side;
+            this.chunks = new AtomicReferenceArray<>(chunks);
+        }
+
+        /**
+         * Accounts for a change of the bytes held by the chunks, unless the upload was released.
+         *
+         * @param bytes the bytes added, negative when removed
+         * @return false if the upload was released, the bytes are then not accounted for
+         */
+        private boolean charge (long bytes) {
+            long current;
+            do {
+                current = stagedBytes.get();
+                if (current == RELEASED) {
+                    return false;
+                }
+            } while (!stagedBytes.compareAndSet(current, current + bytes));
+            return true;
+        }
+
+        /**
+         * Stops accounting for the chunks, once the upload is discarded or committed.
+         *
+         * @return the bytes that were accounted for
+         */
+        private long release () {
+            return Math.max(stagedBytes.getAndSet(RELEASED), 0);
+        }
+
+        /**
+         * Accounts for the chunks again from nothing, after a release.
+         */
+        private void reopen () {
+            stagedBytes.set(0);
+        }
+
+        /**
+         * Mounts the status of the upload.
+         *
+         * @return the upload status
+         */
+        private UploadStatus toStatus () {
+            List<Integer> missingChunks = new ArrayList<>();
+            for (int i = 0; i < chunks.length(); i++) {
+                if (chunks.get(i) == null) {
+                    missingChunks.add(i);
+                }
+            }
+            UploadStatus uploadStatus = new UploadStatus();
+            uploadStatus.setUploadId(uploadId);
+            uploadStatus.setId(id);
+            uploadStatus.setSide(side);
+            uploadStatus.setChunks(chunks.length());
+            uploadStatus.setMissingChunks(missingChunks);
+            return uploadStatus;
+        }
+
+        /**
+         * Gets the length of the decoded data of the upload, once every chunk is received.
+         *
+         * @return the length, in bytes
+         */
+        private int length () {
+            long length = 0;
+            for (int i = 0; i < chunks.length(); i++) {
+                length += chunks.get(i).length;
+            }
+            return (int) Math.min(length, Integer.MAX_VALUE);
+        }
+
+        /**
+         * Joins every chunk, in order, into a buffer.
+         *
+         * @param buffer    the buffer receiving the decoded data of the upload
+         */
+        private void writeTo (ByteArrayPool.PooledBuffer buffer) {
+            for (int i = 0; i < chunks.length(); i++) {
+                byte[] chunk = chunks.get(i);
+                buffer.write(chunk, 0, chunk.length);
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package org.juliazo.diff.storage;
+
+import org.apache.tomcat.util.codec.binary.Base64;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Side held as decoded bytes. Used for the sides received already decoded, e.g. by the streaming ingest,
+ * and for the older versions of a side, which are rebuilt from the latest version when they are requested.
+ */
+public class ArraySide implements StoredSide {
+
+    /**
+     * The decoded bytes.
+     */
+    private final byte[] bytes;
+
+    /**
+     * How many of the bytes belong to the side, from the start of the array.
+     */
+    private final int length;
+
+    /**
+     * Instantiates a new Array side.
+     *
+     * @param bytes the decoded bytes, not copied
+     */
+    public ArraySide(byte[] bytes) {
+        this(bytes, bytes.length);
+    }
+
+    /**
+     * Instantiates a new Array side held by the start of a larger array, e.g. the array a buffer grew into,
+     * so the bytes are not copied into an array of their size.
+     *
+     * @param bytes     the array, not copied
+     * @param length    how many bytes of the array belong to the side
+     */
+    public ArraySide(byte[] bytes, int length) {
+        this.bytes = bytes;
+        this.length = length;
+    }
+
+    @Override
+    public int getLength() {
+        return length;
+    }
+
+    @Override
+    public InputStream openStream() {
+        return new ByteArrayInputStream(bytes, 0, length);
+    }
+
+    @Override
+    public InputStream openStream(int from, int to) {
+        return new ByteArrayInputStream(bytes, from, to - from);
+    }
+
+    @Override
+    public byte[] sample(int[] positions) {
+        byte[] sample = new byte[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            sample[i] = bytes[positions[i]];
+        }
+        return sample;
+    }
+
+    @Override
+    public byte[] toBytes() {
+        return Arrays.copyOf(bytes, length);
+    }
+
+    @Override
+    public String toBase64() {
+        return new String(new Base64().encode(bytes, 0, length), StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The whole array is held, including the bytes after the side.
+     */
+    @Override
+    public long getStoredSize() {
+        return bytes.length;
+    }
+}
@@ -0,0 +1,135 @@
+package org.juliazo.diff.storage;
+
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Stream of the bytes of Base64 data, decoded straight into the arrays read into, so reading a side
+ * does not decode it into a new array first. As {@link org.apache.tomcat.util.codec.binary.Base64},
+ * characters out of the Base64 alphabets, e.g. whitespace, are skipped.
+ */
+class Base64DecodingStream extends InputStream {
+
+    /**
+     * The 6 bits held by each ASCII character, -1 for the characters skipped.
+     * Both the standard and the URL safe alphabets are decoded.
+     */
+    private static final byte[] SEXTETS = new byte[128];
+
+    static {
+        Arrays.fill(SEXTETS, (byte) -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++) {
+            SEXTETS[alphabet.charAt(i)] = (byte) i;
+        }
+        SEXTETS['-'] = 62;
+        SEXTETS['_'] = 63;
+    }
+
+    /**
+     * The Base64 data, already validated.
+     */
+    private final String data;
+
+    /**
+     * The next character decoded.
+     */
+    private int index;
+
+    /**
+     * Bits decoded and not read yet, the latest ones lowest.
+     */
+    private int bits;
+
+    /**
+     * How many bits are decoded and not read yet.
+     */
+    private int bitCount;
+
+    /**
+     * How many bytes are left to read.
+     */
+    private int remaining;
+
+    /**
+     * Instantiates a new Base64 decoding stream.
+     *
+     * @param data      the Base64 data, already validated
+     * @param index     the first character decoded, the beginning of a block of 4 characters
+     * @param length    how many bytes are read, not more than the characters from the index hold
+     */
+    Base64DecodingStream(String data, int index, int length) {
+        this.data = data;
+        this.index = index;
+        this.remaining = length;
+    }
+
+    @Override
+    public int read() {
+        if (remaining == 0) {
+            return -1;
+        }
+        remaining--;
+        return nextByte();
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) {
+        if (length == 0) {
+            return 0;
+        }
+        if (remaining == 0) {
+            return -1;
+        }
+        int read = Math.min(length, remaining);
+        for (int i = offset; i < offset + read; i++) {
+            bytes[i] = (byte) nextByte();
+        }
+        remaining -= read;
+        return read;
+    }
+
+    @Override
+    public long skip(long n) {
+        int skipped = (int) Math.max(0, Math.min(n, remaining));
+        for (int i = 0; i < skipped; i++) {
+            nextByte();
+        }
+        remaining -= skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return remaining;
+    }
+
+    /**
+     * Decodes the 6 bits held by a character, of the standard or the URL safe alphabet.
+     *
+     * @param c the character
+     * @return the bits, -1 if the character is out of both alphabets
+     */
+    static int sextet(char c) {
+        return c < SEXTETS.length ? SEXTETS[c] : -1;
+    }
+
+    /**
+     * Decodes the next byte.
+     *
+     * @return the byte, unsigned
+     */
+    private int nextByte() {
+        while (bitCount < 8) {
+            char c = data.charAt(index++);
+            int sextet = sextet(c);
+            if (sextet >= 0) {
+                //the bits already read are dropped, so the bits kept fit in an int
+                bits = (bits << 6 | sextet) & 0xFFFF;
+                bitCount += 6;
+            }
+        }
+        bitCount -= 8;
+        return bits >>> bitCount & 0xFF;
+    }
+}
@@ -0,0 +1,151 @@
+package org.juliazo.diff.storage;
+
+import org.apache.tomcat.util.codec.binary.Base64;
+
+import java.io.InputStream;
+
+/**
+ * Side stored as received: a Base64 string, decoded each time it is read, as it is read.
+ * This is the storage used when no {@link StorageCodec} is configured.
+ */
+public class Base64Side implements StoredSide {
+
+    /**
+     * The Base64 data.
+     */
+    private final String data;
+
+    /**
+     * The decoded length, computed once at ingest.
+     */
+    private final int length;
+
+    /**
+     * Whether the data has no whitespace before its padding, so each block of 3 bytes
+     * is found at a known position of the data.
+     */
+    private final boolean dense;
+
+    /**
+     * Instantiates a new Base64 side.
+     *
+     * @param data  the Base64 data, already validated
+     */
+    public Base64Side(String data) {
+        this.data = data;
+        int characters = base64Characters(data);
+        this.length = (int) (characters * 6L / 8);
+        int padding = data.indexOf('=');
+        this.dense = characters == (padding < 0 ? data.length() : padding);
+    }
+
+    @Override
+    public int getLength() {
+        return length;
+    }
+
+    @Override
+    public InputStream openStream() {
+        return new Base64DecodingStream(data, 0, length);
+    }
+
+    @Override
+    public InputStream openStream(int from, int to) {
+        if (!dense) {
+            Base64DecodingStream stream = new Base64DecodingStream(data, 0, to);
+            stream.skip(from);
+            return stream;
+        }
+        //every 4 characters hold 3 bytes: decoding starts on the block holding the range
+        int firstBlock = from / 3;
+        Base64DecodingStream stream = new Base64DecodingStream(data, firstBlock * 4, to - firstBlock * 3);
+        stream.skip(from - firstBlock * 3);
+        return stream;
+    }
+
+    @Override
+    public byte[] sample(int[] positions) {
+        if (!dense) {
+            return StoredSide.super.sample(positions);
+        }
+        //each byte is decoded from the 2 characters of its block holding its bits
+        byte[] sample = new byte[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            int block = positions[i] / 3 * 4;
+            switch (positions[i] % 3) {
+                case 0:
+                    sample[i] = (byte) (sextet(block) << 2 | sextet(block + 1) >> 4);
+                    break;
+                case 1:
+                    sample[i] = (byte) (sextet(block + 1) << 4 | sextet(block + 2) >> 2);
+                    break;
+                default:
+                    sample[i] = (byte) (sextet(block + 2) << 6 | sextet(block + 3));
+            }
+        }
+        return sample;
+    }
+
+    /**
+     * Decodes the 6 bits held by a character of the data, which is already validated.
+     *
+     * @param index the index of the character
+     * @return the bits
+     */
+    private int sextet(int index) {
+        return Base64DecodingStream.sextet(data.charAt(index));
+    }
+
+    @Override
+    public byte[] toBytes() {
+        return Base64.decodeBase64(data);
+    }
+
+    @Override
+    public String toBase64() {
+        return data;
+    }
+
+    /**
+     * Gets how many bytes the Base64 string holds, 2 bytes per character.
+     *
+     * @return the stored size
+     */
+    @Override
+    public long getStoredSize() {
+        return 2L * data.length();
+    }
+
+    /**
+     * Computes how many bytes the Base64 data decodes to without decoding it.
+     * Whitespace is skipped and decoding stops at the first padding character,
+     * as {@link Base64#decodeBase64(String)} does.
+     *
+     * @param data  the Base64 data
+     * @return the decoded length
+     */
+    static int decodedLength(String data) {
+        return (int) (base64Characters(data) * 6L / 8);
+    }
+
+    /**
+     * Counts the characters of the Base64 data that hold bits: whitespace is skipped
+     * and the count stops at the first padding character.
+     *
+     * @param data  the Base64 data
+     * @return how many characters hold bits
+     */
+    private static int base64Characters(String data) {
+        int characters = 0;
+        for (int i = 0; i < data.length(); i++) {
+            char c = data.charAt(i);
+            if (c == '=') {
+                break;
+            }
+            if (!Character.isWhitespace(c)) {
+                characters++;
+            }
+        }
+        return characters;
+    }
+}
@@ -0,0 +1,151 @@
+package org.juliazo.diff.storage;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics of a {@link StorageCodec}: how much it saves and how much CPU it costs.
+ */
+public class CodecMetrics {
+
+    /**
+     * The codec name.
+     */
+    private final String codec;
+
+    /**
+     * How many payloads were encoded.
+     */
+    private final AtomicLong payloads = new AtomicLong();
+
+    /**
+     * Bytes received by the encoder.
+     */
+    private final AtomicLong rawBytes = new AtomicLong();
+
+    /**
+     * Bytes produced by the encoder.
+     */
+    private final AtomicLong storedBytes = new AtomicLong();
+
+    /**
+     * Time spent encoding, in nanoseconds.
+     */
+    private final AtomicLong encodeNanos = new AtomicLong();
+
+    /**
+     * Bytes produced by the decoder.
+     */
+    private final AtomicLong decodedBytes = new AtomicLong();
+
+    /**
+     * Time spent decoding, in nanoseconds.
+     */
+    private final AtomicLong decodeNanos = new AtomicLong();
+
+    /**
+     * Instantiates new Codec metrics.
+     *
+     * @param codec the codec name
+     */
+    public CodecMetrics(String codec) {
+        this.codec = codec;
+    }
+
+    /**
+     * Records an encoded payload.
+     *
+     * @param raw       bytes received by the encoder
+     * @param stored    bytes produced by the encoder
+     * @param nanos     time spent encoding
+     */
+    public void recordEncode(long raw, long stored, long nanos) {
+        payloads.incrementAndGet();
+        rawBytes.addAndGet(raw);
+        storedBytes.addAndGet(stored);
+        encodeNanos.addAndGet(nanos);
+    }
+
+    /**
+     * Records a decoded chunk.
+     *
+     * @param decoded   bytes produced by the decoder
+     * @param nanos     time spent decoding
+     */
+    public void recordDecode(long decoded, long nanos) {
+        decodedBytes.addAndGet(decoded);
+        decodeNanos.addAndGet(nanos);
+    }
+
+    /**
+     * Gets codec.
+     *
+     * @return the codec
+     */
+    public String getCodec() {
+        return codec;
+    }
+
+    /**
+     * Gets payloads.
+     *
+     * @return the payloads
+     */
+    public long getPayloads() {
+        return payloads.get();
+    }
+
+    /**
+     * Gets raw bytes.
+     *
+     * @return the raw bytes
+     */
+    public long getRawBytes() {
+        return rawBytes.get();
+    }
+
+    /**
+     * Gets stored bytes.
+     *
+     * @return the stored bytes
+     */
+    public long getStoredBytes() {
+        return storedBytes.get();
+    }
+
+    /**
+     * Gets the compression ratio: stored bytes over raw bytes, 1 when nothing was encoded.
+     *
+     * @return the compression ratio
+     */
+    public double getCompressionRatio() {
+        long raw = rawBytes.get();
+        return raw == 0 ? 1 : (double) storedBytes.get() / raw;
+    }
+
+    /**
+     * Gets encode nanos.
+     *
+     * @return the encode nanos
+     */
+    public long getEncodeNanos() {
+        return encodeNanos.get();
+    }
+
+    /**
+     * Gets decoded bytes.
+     *
+     * @return the decoded bytes
+     */
+    public long getDecodedBytes() {
+        return decodedBytes.get();
+    }
+
+    /**
+     * Gets decode nanos.
+     *
+     * @return the decode nanos
+     */
+    public long getDecodeNanos() {
+        return decodeNanos.get();
+    }
+}
@@ -0,0 +1,96 @@
+package org.juliazo.diff.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compresses stored sides with {@link Deflater}. A fast level is used by default since
+ * compression happens on the request path.
+ */
+public class DeflateCodec implements StorageCodec {
+
+    /**
+     * Size of the buffers used while compressing and decompressing.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The compression level, from 1 (fastest) to 9 (smallest).
+     */
+    private final int level;
+
+    /**
+     * The metrics of this codec.
+     */
+    private final CodecMetrics metrics = new CodecMetrics("deflate");
+
+    /**
+     * Instantiates a new Deflate codec.
+     *
+     * @param level the compression level, from 1 (fastest) to 9 (smallest)
+     */
+    public DeflateCodec(int level) {
+        if (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Deflate level must be between 1 and 9");
+        }
+        this.level = level;
+    }
+
+    @Override
+    public String getName() {
+        return "deflate";
+    }
+
+    @Override
+    public byte[] encode(byte[] raw, int length) {
+        long start = System.nanoTime();
+        Deflater deflater = new Deflater(level);
+        try {
+            deflater.setInput(raw, 0, length);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, length / 4));
+            byte[] buffer = new byte[Math.min(BUFFER_SIZE, length + 64)];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            byte[] encoded = out.toByteArray();
+            metrics.recordEncode(length, encoded.length, System.nanoTime() - start);
+            return encoded;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    @Override
+    public InputStream decode(byte[] encoded) {
+        Inflater inflater = new Inflater();
+        InputStream inflating = new InflaterInputStream(new ByteArrayInputStream(encoded), inflater, BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                super.close();
+                //a custom inflater is not released by InflaterInputStream
+                inflater.end();
+            }
+        };
+        return new FilterInputStream(inflating) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                long start = System.nanoTime();
+                int read = super.read(b, off, len);
+                metrics.recordDecode(Math.max(read, 0), System.nanoTime() - start);
+                return read;
+            }
+        };
+    }
+
+    @Override
+    public CodecMetrics getMetrics() {
+        return metrics;
+    }
+}
@@ -0,0 +1,106 @@
+package org.juliazo.diff.storage;
+
+import org.apache.tomcat.util.codec.binary.Base64;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Side stored through a {@link StorageCodec}, e.g. compressed.
+ */
+public class EncodedSide implements StoredSide {
+
+    /**
+     * The codec that encoded this side.
+     */
+    private final StorageCodec codec;
+
+    /**
+     * The encoded bytes.
+     */
+    private final byte[] encoded;
+
+    /**
+     * The decoded length.
+     */
+    private final int length;
+
+    /**
+     * Instantiates a new Encoded side.
+     *
+     * @param codec     the codec
+     * @param raw       the decoded bytes
+     */
+    public EncodedSide(StorageCodec codec, byte[] raw) {
+        this(codec, raw, raw.length);
+    }
+
+    /**
+     * Instantiates a new Encoded side from the start of a larger array, e.g. a pooled buffer.
+     *
+     * @param codec     the codec
+     * @param raw       the array holding the decoded bytes, not kept
+     * @param length    how many bytes of the array belong to the side
+     */
+    public EncodedSide(StorageCodec codec, byte[] raw, int length) {
+        this.codec = codec;
+        this.encoded = codec.encode(raw, length);
+        this.length = length;
+    }
+
+    @Override
+    public int getLength() {
+        return length;
+    }
+
+    @Override
+    public InputStream openStream() {
+        return codec.decode(encoded);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Encoded bytes can only be decoded from the start, so the bytes before the range are
+     * decoded and skipped.
+     */
+    @Override
+    public InputStream openStream(int from, int to) {
+        return new RangeInputStream(openStream(), from, to);
+    }
+
+    @Override
+    public byte[] toBytes() {
+        ByteArrayOutputStream raw = new ByteArrayOutputStream(length);
+        byte[] buffer = new byte[1 << 16];
+        try (InputStream in = openStream()) {
+            for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+                raw.write(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return raw.toByteArray();
+    }
+
+    @Override
+    public String toBase64() {
+        return Base64.encodeBase64String(toBytes());
+    }
+
+    @Override
+    public long getStoredSize() {
+        return encoded.length;
+    }
+
+    /**
+     * Gets the size of the encoded bytes.
+     *
+     * @return the stored length
+     */
+    public int getStoredLength() {
+        return encoded.length;
+    }
+}
@@ -0,0 +1,91 @@
+package org.juliazo.diff.storage;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Stream of a range of the bytes of another stream. The bytes before the range are
+ * skipped on the first read and the stream ends at the end of the range.
+ */
+class RangeInputStream extends FilterInputStream {
+
+    /**
+     * How many bytes are still to be skipped before the range.
+     */
+    private long toSkip;
+
+    /**
+     * How many bytes of the range are still to be read.
+     */
+    private long remaining;
+
+    /**
+     * Instantiates a new Range input stream.
+     *
+     * @param in    the whole stream
+     * @param from  first byte of the range, inclusive
+     * @param to    last byte of the range, exclusive
+     */
+    RangeInputStream(InputStream in, int from, int to) {
+        super(in);
+        this.toSkip = from;
+        this.remaining = to - from;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        while (toSkip > 0) {
+            long skipped = in.skip(toSkip);
+            if (skipped <= 0) {
+                //skip may stop early, a read tells whether the stream has ended
+                if (in.read() < 0) {
+                    return -1;
+                }
+                skipped = 1;
+            }
+            toSkip -= skipped;
+        }
+        if (remaining <= 0) {
+            return -1;
+        }
+        int read = in.read(b, off, (int) Math.min(len, remaining));
+        if (read > 0) {
+            remaining -= read;
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+        long skipped = 0;
+        byte[] buffer = new byte[(int) Math.min(n, 8192)];
+        while (skipped < n) {
+            int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+            if (read < 0) {
+                break;
+            }
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return toSkip > 0 ? 0 : (int) Math.min(in.available(), remaining);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+}
@@ -0,0 +1,155 @@
+package org.juliazo.diff.storage;
+
+import org.juliazo.diff.engine.DiffEngine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Versions of one side of a data set. The latest version is kept as stored and the older ones
+ * as a chain of {@link VersionDelta}s, each rebuilding a version from the version after it.
+ * Immutable, a new version replaces the whole history.
+ */
+public class SideHistory {
+
+    /**
+     * Number of the latest version. The first version of a side is 1.
+     */
+    private final long version;
+
+    /**
+     * The latest version.
+     */
+    private final StoredSide latest;
+
+    /**
+     * Deltas of the older versions, from the newest to the oldest: the first one rebuilds
+     * version - 1 from the latest version.
+     */
+    private final List<VersionDelta> deltas;
+
+    /**
+     * Instantiates a new Side history.
+     *
+     * @param version   number of the latest version
+     * @param latest    the latest version
+     * @param deltas    deltas of the older versions, newest first
+     */
+    private SideHistory(long version, StoredSide latest, List<VersionDelta> deltas) {
+        this.version = version;
+        this.latest = latest;
+        this.deltas = deltas;
+    }
+
+    /**
+     * Starts the history of a side.
+     *
+     * @param side  the first version
+     * @return the history, holding version 1
+     */
+    public static SideHistory of(StoredSide side) {
+        return of(side, 1);
+    }
+
+    /**
+     * Starts the history of a side at a given version, e.g. when it is restored.
+     *
+     * @param side      the latest version
+     * @param version   number of the latest version
+     * @return the history, without older versions
+     */
+    public static SideHistory of(StoredSide side, long version) {
+        return new SideHistory(version, side, Collections.emptyList());
+    }
+
+    /**
+     * Adds a new version. The current latest version becomes an older version, kept as a delta
+     * when the depth allows, and the oldest versions beyond the depth are dropped.
+     *
+     * @param diffEngine    the engine locating the differences between versions
+     * @param side          the new version
+     * @param depth         how many versions are kept, including the latest one
+     * @return the new history
+     */
+    public SideHistory push(DiffEngine diffEngine, StoredSide side, int depth) {
+        if (depth <= 1) {
+            return new SideHistory(version + 1, side, Collections.emptyList());
+        }
+        List<VersionDelta> newDeltas = new ArrayList<>(Math.min(depth - 1, deltas.size() + 1));
+        newDeltas.add(VersionDelta.between(diffEngine, latest.toBytes(), side.toBytes()));
+        newDeltas.addAll(deltas.subList(0, Math.min(deltas.size(), depth - 2)));
+        return new SideHistory(version + 1, side, Collections.unmodifiableList(newDeltas));
+    }
+
+    /**
+     * Gets a version of the side. Older versions are rebuilt by applying the deltas from the latest one.
+     *
+     * @param number    the version number
+     * @return the version, null if it is not kept
+     */
+    public StoredSide getVersion(long number) {
+        if (number == version) {
+            return latest;
+        }
+        if (number > version || number < getOldestVersion()) {
+            return null;
+        }
+        byte[] bytes = latest.toBytes();
+        for (long current = version; current > number; current--) {
+            bytes = deltas.get((int) (version - current)).apply(bytes);
+        }
+        return new ArraySide(bytes);
+    }
+
+    /**
+     * Gets the number of the latest version.
+     *
+     * @return the version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the number of the oldest version kept.
+     *
+     * @return the oldest version
+     */
+    public long getOldestVersion() {
+        return version - deltas.size();
+    }
+
+    /**
+     * Gets the latest version.
+     *
+     * @return the latest version
+     */
+    public StoredSide getLatest() {
+        return latest;
+    }
+
+    /**
+     * Gets the length of a version, without rebuilding it.
+     *
+     * @param number    the version number, between the oldest and the latest version
+     * @return the length in bytes
+     */
+    public int getLength(long number) {
+        return number == version ? latest.getLength() : deltas.get((int) (version - number - 1)).getLength();
+    }
+
+    /**
+     * Gets how many bytes the versions hold in memory: the latest version as stored
+     * and the ranges of the deltas of the older ones.
+     *
+     * @return the stored size
+     */
+    public long getStoredSize() {
+        long size = latest.getStoredSize();
+        for (VersionDelta delta : deltas) {
+            size += delta.getSize();
+        }
+        return size;
+    }
+}
@@ -0,0 +1,202 @@
+package org.juliazo.diff.storage;
+
+import org.juliazo.diff.model.CompletionState;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Secondary index of the data sets by completion state, each state ordered by the time of the last update,
+ * so the data sets missing a side, or the ones not updated for a while, are listed without scanning the storage.
+ *
+ * Updates of different ids run concurrently: each id is moved between states under the lock of its own entry,
+ * and listings run without any lock. A data set being moved may be on two states for a moment, so listings
+ * only return the entry currently indexed for each id.
+ */
+public class StateIndex {
+
+    /**
+     * Orders the entries by the time of the last update, then by id.
+     */
+    private static final Comparator<Entry> ORDER = Comparator.comparingLong(Entry::getUpdatedAt)
+            .thenComparing(Entry::getId);
+
+    /**
+     * The entry currently indexed for each id.
+     */
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * The entries of each state, least recently updated first.
+     */
+    private final Map<CompletionState, NavigableSet<Entry>> byState = new EnumMap<>(CompletionState.class);
+
+    /**
+     * Instantiates a new empty State index.
+     */
+    public StateIndex() {
+        for (CompletionState state : CompletionState.values()) {
+            byState.put(state, new ConcurrentSkipListSet<>(ORDER));
+        }
+    }
+
+    /**
+     * Indexes an updated data set.
+     *
+     * @param id        the unique identifier of the data set
+     * @param state     which sides of the data set were received
+     * @param updatedAt when the data set was updated, in milliseconds since the epoch
+     */
+    public void update(String id, CompletionState state, long updatedAt) {
+        Entry entry = new Entry(id, state, updatedAt);
+        entries.compute(id, (key, previous) -> {
+            //an equal entry on the same state is already listed, adding it would do nothing and removing
+            //the previous one would then remove the id
+            if (previous != null && previous.state == state && ORDER.compare(previous, entry) == 0) {
+                return previous;
+            }
+            //added before the previous entry is removed, so the id is always listed
+            byState.get(state).add(entry);
+            if (previous != null) {
+                byState.get(previous.state).remove(previous);
+            }
+            return entry;
+        });
+    }
+
+    /**
+     * Removes a data set from the index.
+     *
+     * @param id    the unique identifier of the data set
+     */
+    public void remove(String id) {
+        entries.computeIfPresent(id, (key, previous) -> {
+            byState.get(previous.state).remove(previous);
+            return null;
+        });
+    }
+
+    /**
+     * Lists the data sets on a state updated within a period, least recently updated first.
+     *
+     * @param state         which sides of the data sets were received
+     * @param updatedFrom   earliest time of the last update, inclusive, in milliseconds since the epoch
+     * @param updatedTo     latest time of the last update, inclusive, in milliseconds since the epoch
+     * @param after         cursor of the last entry of the previous page, see {@link Entry#toCursor()},
+     *                      null for the first page
+     * @param limit         maximum number of entries listed
+     * @return the entries
+     * @throws IllegalArgumentException if the cursor is invalid
+     */
+    public List<Entry> list(CompletionState state, long updatedFrom, long updatedTo, String after, int limit) {
+        NavigableSet<Entry> stateEntries = byState.get(state);
+        Entry from = new Entry("", state, updatedFrom);
+        Entry previous = after == null ? null : Entry.fromCursor(after, state);
+        NavigableSet<Entry> range = previous != null && ORDER.compare(previous, from) >= 0
+                ? stateEntries.tailSet(previous, false) : stateEntries.tailSet(from, true);
+
+        List<Entry> page = new ArrayList<>(Math.min(limit, 1024));
+        for (Entry entry : range) {
+            if (page.size() == limit || entry.updatedAt > updatedTo) {
+                break;
+            }
+            //skips entries being replaced or removed
+            if (entries.get(entry.id) == entry) {
+                page.add(entry);
+            }
+        }
+        return page;
+    }
+
+    /**
+     * An indexed data set.
+     */
+    public static class Entry {
+
+        /**
+         * The unique identifier of the data set.
+         */
+        private final String id;
+
+        /**
+         * Which sides of the data set were received.
+         */
+        private final CompletionState state;
+
+        /**
+         * When the data set was last updated, in milliseconds since the epoch.
+         */
+        private final long updatedAt;
+
+        /**
+         * Instantiates a new Entry.
+         *
+         * @param id        the unique identifier of the data set
+         * @param state     which sides of the data set were received
+         * @param updatedAt when the data set was last updated
+         */
+        private Entry(String id, CompletionState state, long updatedAt) {
+            this.id = id;
+            this.state = state;
+            this.updatedAt = updatedAt;
+        }
+
+        /**
+         * Gets id.
+         *
+         * @return the id
+         */
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * Gets state.
+         *
+         * @return the state
+         */
+        public CompletionState getState() {
+            return state;
+        }
+
+        /**
+         * Gets when the data set was last updated.
+         *
+         * @return the time in milliseconds since the epoch
+         */
+        public long getUpdatedAt() {
+            return updatedAt;
+        }
+
+        /**
+         * Mounts the cursor listing the entries after this one.
+         *
+         * @return the cursor
+         */
+        public String toCursor() {
+            return updatedAt + ":" + id;
+        }
+
+        /**
+         * Reads a cursor, see {@link #toCursor()}.
+         *
+         * @param cursor    the cursor
+         * @param state     the state listed
+         * @return the entry the cursor points to
+         * @throws IllegalArgumentException if the cursor is invalid
+         */
+        private static Entry fromCursor(String cursor, CompletionState state) {
+            int separator = cursor.indexOf(':');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+            return new Entry(cursor.substring(separator + 1), state, Long.parseLong(cursor.substring(0, separator)));
+        }
+    }
+}
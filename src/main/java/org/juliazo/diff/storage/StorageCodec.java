@@ -0,0 +1,52 @@
+package org.juliazo.diff.storage;
+
+import java.io.InputStream;
+
+/**
+ * Codec applied to each side of the diff before it is stored, e.g. compression.
+ * Implementations must be thread safe.
+ */
+public interface StorageCodec {
+
+    /**
+     * Gets the name of the codec, as used on property diff.storage.codec.
+     *
+     * @return the name
+     */
+    String getName();
+
+    /**
+     * Encodes the decoded bytes of a side for storage.
+     *
+     * @param raw   the decoded bytes
+     * @return the encoded bytes
+     */
+    default byte[] encode(byte[] raw) {
+        return encode(raw, raw.length);
+    }
+
+    /**
+     * Encodes the decoded bytes of a side held by the start of a larger array, e.g. a pooled buffer.
+     *
+     * @param raw       the array holding the decoded bytes, not kept
+     * @param length    how many bytes of the array belong to the side
+     * @return the encoded bytes
+     */
+    byte[] encode(byte[] raw, int length);
+
+    /**
+     * Opens a stream of the decoded bytes of a stored side. The bytes are produced as they are read,
+     * so a full decoded copy of the side is never held in memory.
+     *
+     * @param encoded   the encoded bytes
+     * @return the stream of decoded bytes, must be closed
+     */
+    InputStream decode(byte[] encoded);
+
+    /**
+     * Gets the metrics of this codec.
+     *
+     * @return the metrics
+     */
+    CodecMetrics getMetrics();
+}
@@ -0,0 +1,34 @@
+package org.juliazo.diff.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Storage codec configuration. Sides are stored as received unless property
+ * diff.storage.codec selects a codec.
+ */
+@Configuration
+public class StorageConfig {
+
+    /**
+     * The constant logger.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(StorageConfig.class);
+
+    /**
+     * Creates the Deflate codec, selected with diff.storage.codec=deflate.
+     *
+     * @param level the compression level, from 1 (fastest) to 9 (smallest)
+     * @return the codec
+     */
+    @Bean
+    @ConditionalOnProperty(name = "diff.storage.codec", havingValue = "deflate")
+    public StorageCodec deflateCodec(@Value("${diff.storage.deflate-level:1}") int level) {
+        logger.info("Storing sides compressed with Deflate level " + level);
+        return new DeflateCodec(level);
+    }
+}
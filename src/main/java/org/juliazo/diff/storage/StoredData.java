@@ -0,0 +1,159 @@
+package org.juliazo.diff.storage;
+
+/**
+ * A data set as it is kept in the storage: both sides of the diff for one id.
+ * Immutable, an update replaces the whole data set.
+ */
+public class StoredData {
+
+    /**
+     * The Id. Each set of data has its own ID for security reasons
+     */
+    private final String id;
+
+    /**
+     * The versions of the Left side, null until it is received.
+     */
+    private final SideHistory left;
+
+    /**
+     * The versions of the Right side, null until it is received.
+     */
+    private final SideHistory right;
+
+    /**
+     * Tells apart data sets created for the same id, e.g. after the id was removed,
+     * as the versions of their sides start over.
+     */
+    private final long generation;
+
+    /**
+     * Instantiates a new Stored data with the first version of each side.
+     *
+     * @param id    the id
+     * @param left  the left side, null if missing
+     * @param right the right side, null if missing
+     */
+    public StoredData(String id, StoredSide left, StoredSide right) {
+        this(id, left == null ? null : SideHistory.of(left), right == null ? null : SideHistory.of(right), 0);
+    }
+
+    /**
+     * Instantiates a new Stored data.
+     *
+     * @param id    the id
+     * @param left  the versions of the left side, null if missing
+     * @param right the versions of the right side, null if missing
+     * @param generation    the generation of the data set
+     */
+    private StoredData(String id, SideHistory left, SideHistory right, long generation) {
+        this.id = id;
+        this.left = left;
+        this.right = right;
+        this.generation = generation;
+    }
+
+    /**
+     * Starts a data set without any side.
+     *
+     * @param id    the id
+     * @return the empty data set
+     */
+    public static StoredData empty(String id) {
+        return empty(id, 0);
+    }
+
+    /**
+     * Starts a data set without any side.
+     *
+     * @param id            the id
+     * @param generation    the generation of the data set, unique among the data sets created for the id
+     * @return the empty data set
+     */
+    public static StoredData empty(String id, long generation) {
+        return new StoredData(id, null, null, generation);
+    }
+
+    /**
+     * Gets id.
+     *
+     * @return the id
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Gets the generation of the data set.
+     *
+     * @return the generation
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Gets the latest version of the left side.
+     *
+     * @return the left side, null if missing
+     */
+    public StoredSide getLeft() {
+        return left == null ? null : left.getLatest();
+    }
+
+    /**
+     * Gets the latest version of the right side.
+     *
+     * @return the right side, null if missing
+     */
+    public StoredSide getRight() {
+        return right == null ? null : right.getLatest();
+    }
+
+    /**
+     * Gets the versions of the left side.
+     *
+     * @return the left side history, null if missing
+     */
+    public SideHistory getLeftHistory() {
+        return left;
+    }
+
+    /**
+     * Gets the versions of the right side.
+     *
+     * @return the right side history, null if missing
+     */
+    public SideHistory getRightHistory() {
+        return right;
+    }
+
+    /**
+     * Gets how many bytes the versions of both sides hold in memory.
+     *
+     * @return the stored size
+     */
+    public long getStoredSize() {
+        return (left == null ? 0 : left.getStoredSize()) + (right == null ? 0 : right.getStoredSize());
+    }
+
+    /**
+     * Copy of this data set with new versions of the Left side.
+     *
+     * @param newLeft the new left side history
+     * @return the new data set
+     */
+    public StoredData withLeft(SideHistory newLeft) {
+        return new StoredData(id, newLeft, right, generation);
+    }
+
+    /**
+     * Copy of this data set with new versions of the Right side.
+     *
+     * @param newRight the new right side history
+     * @return the new data set
+     */
+    public StoredData withRight(SideHistory newRight) {
+        return new StoredData(id, left, newRight, generation);
+    }
+}
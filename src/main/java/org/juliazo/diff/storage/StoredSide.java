@@ -0,0 +1,91 @@
+package org.juliazo.diff.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * One side of the diff as it is kept in the storage.
+ * Implementations are immutable.
+ */
+public interface StoredSide {
+
+    /**
+     * Gets the size of the side once decoded, in bytes.
+     *
+     * @return the length
+     */
+    int getLength();
+
+    /**
+     * Opens a stream of the decoded bytes of this side.
+     *
+     * @return the stream of decoded bytes, must be closed
+     */
+    InputStream openStream();
+
+    /**
+     * Opens a stream of the decoded bytes of a range of this side. Only as much of the side
+     * as the implementation needs to reach the range is decoded.
+     *
+     * @param from  first byte of the range, inclusive
+     * @param to    last byte of the range, exclusive, at most the length
+     * @return the stream of decoded bytes of the range, must be closed
+     */
+    InputStream openStream(int from, int to);
+
+    /**
+     * Reads the bytes at some positions of this side, e.g. to estimate how different two sides are.
+     * By default the side is streamed once and only the bytes at the positions are kept, so it is never
+     * decoded as a whole in memory; implementations with random access read each position directly.
+     *
+     * @param positions the positions, in increasing order, each one less than the length
+     * @return the byte at each position
+     */
+    default byte[] sample(int[] positions) {
+        byte[] sample = new byte[positions.length];
+        byte[] skipped = new byte[8192];
+        try (InputStream in = openStream()) {
+            int position = 0;
+            for (int i = 0; i < positions.length; i++) {
+                //the bytes before the position are read and dropped, as decoding streams do on skip
+                int read = 0;
+                while (position < positions[i] && read >= 0) {
+                    read = in.read(skipped, 0, Math.min(skipped.length, positions[i] - position));
+                    position += Math.max(read, 0);
+                }
+                read = read < 0 ? -1 : in.read();
+                if (read < 0) {
+                    throw new IOException("Position " + positions[i] + " is beyond the side");
+                }
+                sample[i] = (byte) read;
+                position++;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return sample;
+    }
+
+    /**
+     * Decodes this side as a whole.
+     *
+     * @return the decoded bytes
+     */
+    byte[] toBytes();
+
+    /**
+     * Gets this side encoded in Base64, as it is exposed by the API.
+     *
+     * @return the Base64 data
+     */
+    String toBase64();
+
+    /**
+     * Gets how many bytes this side holds in memory: the size of the arrays holding its data,
+     * without the headers of the objects.
+     *
+     * @return the stored size
+     */
+    long getStoredSize();
+}
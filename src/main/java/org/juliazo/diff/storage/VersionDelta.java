@@ -0,0 +1,117 @@
+package org.juliazo.diff.storage;
+
+import org.juliazo.diff.engine.DiffEngine;
+import org.juliazo.diff.model.DiffBytes;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Older version of a side, kept as the byte ranges where it differs from the version after it.
+ * The ranges are the sequences of different bytes found by the {@link DiffEngine}, plus the
+ * bytes past the end of the newer version when the older one is longer.
+ */
+public class VersionDelta {
+
+    /**
+     * Length of the older version.
+     */
+    private final int length;
+
+    /**
+     * Offset of each range.
+     */
+    private final int[] offsets;
+
+    /**
+     * Bytes of the older version on each range.
+     */
+    private final byte[][] ranges;
+
+    /**
+     * Instantiates a new Version delta.
+     *
+     * @param length    length of the older version
+     * @param offsets   offset of each range
+     * @param ranges    bytes of the older version on each range
+     */
+    private VersionDelta(int length, int[] offsets, byte[][] ranges) {
+        this.length = length;
+        this.offsets = offsets;
+        this.ranges = ranges;
+    }
+
+    /**
+     * Computes the delta that rebuilds the older version from the newer one.
+     *
+     * @param diffEngine    the engine locating the differences
+     * @param older         the older version
+     * @param newer         the newer version
+     * @return the delta
+     */
+    public static VersionDelta between(DiffEngine diffEngine, byte[] older, byte[] newer) {
+        int common = Math.min(older.length, newer.length);
+        List<DiffBytes> differences;
+        try {
+            differences = diffEngine.findDifferences(new ByteArrayInputStream(newer, 0, common),
+                    new ByteArrayInputStream(older, 0, common));
+        } catch (IOException e) {
+            //both streams are in memory and have the same length
+            throw new UncheckedIOException(e);
+        }
+        boolean tail = older.length > common;
+        int count = differences.size() + (tail ? 1 : 0);
+        int[] offsets = new int[count];
+        byte[][] ranges = new byte[count][];
+        for (int i = 0; i < differences.size(); i++) {
+            DiffBytes diffBytes = differences.get(i);
+            offsets[i] = (int) diffBytes.getOffset();
+            ranges[i] = Arrays.copyOfRange(older, (int) diffBytes.getOffset(),
+                    (int) (diffBytes.getOffset() + diffBytes.getLength()));
+        }
+        if (tail) {
+            offsets[count - 1] = common;
+            ranges[count - 1] = Arrays.copyOfRange(older, common, older.length);
+        }
+        return new VersionDelta(older.length, offsets, ranges);
+    }
+
+    /**
+     * Rebuilds the older version.
+     *
+     * @param newer the newer version
+     * @return the older version
+     */
+    public byte[] apply(byte[] newer) {
+        byte[] older = Arrays.copyOf(newer, length);
+        for (int i = 0; i < offsets.length; i++) {
+            System.arraycopy(ranges[i], 0, older, offsets[i], ranges[i].length);
+        }
+        return older;
+    }
+
+    /**
+     * Gets the length of the older version.
+     *
+     * @return the length
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Gets how many bytes the delta holds, without the overhead of each range.
+     *
+     * @return the size of the ranges
+     */
+    public long getSize() {
+        long size = 0;
+        for (byte[] range : ranges) {
+            size += range.length;
+        }
+        return size;
+    }
+}
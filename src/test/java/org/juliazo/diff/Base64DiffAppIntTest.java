@@ -1,11 +1,16 @@
 package org.juliazo.diff;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.juliazo.diff.controller.Base64DiffController;
 import org.juliazo.diff.model.Base64Data;
 import org.juliazo.diff.model.Base64DataPayload;
 import org.juliazo.diff.model.DiffBytes;
 import org.juliazo.diff.model.DiffResult;
 import org.juliazo.diff.model.ErrorPayload;
+import org.juliazo.diff.model.UploadRequest;
+import org.juliazo.diff.model.UploadStatus;
+import org.juliazo.diff.service.DiffService;
+import org.juliazo.diff.service.SubscriptionService;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -16,9 +21,16 @@ import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -26,6 +38,8 @@ import static org.apache.commons.lang3.RandomUtils.nextInt;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
@@ -567,4 +581,232 @@ public class Base64DiffAppIntTest {
         assertEquals(diffBytes3.getOffset(), response.getBody().getDifferences().get(2).getOffset());
         assertEquals(diffBytes3.getLength(), response.getBody().getDifferences().get(2).getLength());
     }
+
+    /**
+     * Test: Sends a side in chunks, the last one twice, checks the missing chunks and commits it
+     */
+    @Test
+    public void testChunkedUpload() {
+        String id = String.valueOf(nextInt());
+        addValidData("/left", id, payload("dGVsZXR1Ymll"));
+
+        UploadRequest uploadRequest = new UploadRequest();
+        uploadRequest.setChunks(2);
+        ResponseEntity<UploadStatus> begin = restTemplate.exchange(createURLWithPort(id + "/right/uploads"),
+                HttpMethod.POST, new HttpEntity<>(uploadRequest, headers), UploadStatus.class);
+        assertEquals(HttpStatus.CREATED, begin.getStatusCode());
+        String uploads = id + "/right/uploads/" + begin.getBody().getUploadId();
+
+        for (int i = 0; i < 2; i++) {
+            ResponseEntity<UploadStatus> chunk = restTemplate.exchange(createURLWithPort(uploads + "/chunks/1"),
+                    HttpMethod.PUT, new HttpEntity<>(payload("Ymlv"), headers), UploadStatus.class);
+            assertEquals(HttpStatus.OK, chunk.getStatusCode());
+        }
+        ResponseEntity<UploadStatus> status = restTemplate.getForEntity(createURLWithPort(uploads), UploadStatus.class);
+        assertEquals(1, status.getBody().getMissingChunks().size());
+        assertEquals(Integer.valueOf(0), status.getBody().getMissingChunks().get(0));
+
+        restTemplate.exchange(createURLWithPort(uploads + "/chunks/0"),
+                HttpMethod.PUT, new HttpEntity<>(payload("dGVsZXR1"), headers), UploadStatus.class);
+        ResponseEntity<Base64Data> commit = restTemplate.exchange(createURLWithPort(uploads + "/commit"),
+                HttpMethod.POST, new HttpEntity<>(null, headers), Base64Data.class);
+        assertEquals(HttpStatus.CREATED, commit.getStatusCode());
+        assertEquals("dGVsZXR1Ymlv", commit.getBody().getRightData());
+
+        ResponseEntity<DiffResult> response = getValidDiff(id);
+        assertEquals(1, response.getBody().getDifferences().size());
+        assertEquals(8, response.getBody().getDifferences().get(0).getOffset());
+    }
+
+    /**
+     * Test: Sends a side through the streaming ingest path, then invalid data
+     */
+    @Test
+    public void testIngest() {
+        String id = String.valueOf(nextInt());
+        addValidData("/left", id, payload("dGVsZXR1Ymll"));
+
+        ResponseEntity<Base64Data> ingest = restTemplate.exchange(createURLWithPort(id + "/right/ingest"),
+                HttpMethod.POST, new HttpEntity<>(payload("dGVsZXR1Ymlv"), headers), Base64Data.class);
+        assertEquals(HttpStatus.CREATED, ingest.getStatusCode());
+        assertEquals("dGVsZXR1Ymll", ingest.getBody().getLeftData());
+        assertEquals("dGVsZXR1Ymlv", ingest.getBody().getRightData());
+
+        ResponseEntity<ErrorPayload> invalid = restTemplate.exchange(createURLWithPort(id + "/right/ingest"),
+                HttpMethod.POST, new HttpEntity<>(payload("dGVs#XR1"), headers), ErrorPayload.class);
+        assertEquals(HttpStatus.BAD_REQUEST, invalid.getStatusCode());
+        assertEquals("Input must use valid Base64 characters", invalid.getBody().getMessage());
+
+        ResponseEntity<DiffResult> response = getValidDiff(id);
+        assertEquals(8, response.getBody().getDifferences().get(0).getOffset());
+    }
+
+    /**
+     * Test: Sends both sides as raw bytes, then streams their differences in binary,
+     * and an error message as JSON for an id without data
+     */
+    @Test
+    public void testRawTransport() {
+        String id = String.valueOf(nextInt());
+        HttpHeaders rawHeaders = new HttpHeaders();
+        rawHeaders.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        byte[] left = "telefunken".getBytes();
+        byte[] right = "telEFUnkeN".getBytes();
+
+        ResponseEntity<String> ingest = restTemplate.exchange(createURLWithPort(id + "/left/ingest"),
+                HttpMethod.POST, new HttpEntity<>(left, rawHeaders), String.class);
+        assertEquals(HttpStatus.CREATED, ingest.getStatusCode());
+        assertNull(ingest.getBody());
+        ingest = restTemplate.exchange(createURLWithPort(id + "/right/ingest"),
+                HttpMethod.POST, new HttpEntity<>(right, rawHeaders), String.class);
+        assertEquals(HttpStatus.CREATED, ingest.getStatusCode());
+
+        ResponseEntity<byte[]> runs = restTemplate.getForEntity(createURLWithPort(id + "/runs"), byte[].class);
+        assertEquals(HttpStatus.OK, runs.getStatusCode());
+        assertEquals("true", runs.getHeaders().getFirst(DiffService.EQUAL_SIZE_HEADER));
+        ByteBuffer body = ByteBuffer.wrap(runs.getBody());
+        assertEquals(2 * DiffService.RUN_SIZE, body.remaining());
+        assertEquals(3, body.getLong());
+        assertEquals(3, body.getLong());
+        assertEquals(9, body.getLong());
+        assertEquals(1, body.getLong());
+
+        ResponseEntity<ErrorPayload> missing = restTemplate.getForEntity(createURLWithPort(nextInt() + "/runs"),
+                ErrorPayload.class);
+        assertEquals(HttpStatus.NOT_FOUND, missing.getStatusCode());
+        assertNotNull(missing.getBody().getMessage());
+    }
+
+    /**
+     * Test: Polls a diff with its entity tag, which is current until a side is updated
+     */
+    @Test
+    public void testConditionalGetDiff() {
+        String id = String.valueOf(nextInt());
+        addValidDataBothSides(id, "dG9sZXRpYmV1", "dGVsZXR1Ymll");
+
+        ResponseEntity<DiffResult> first = getValidDiff(id);
+        String entityTag = first.getHeaders().getETag();
+        assertNotNull(entityTag);
+
+        HttpHeaders conditional = new HttpHeaders();
+        conditional.setIfNoneMatch(entityTag);
+        ResponseEntity<String> notModified = restTemplate.exchange(createURLWithPort(id), HttpMethod.GET,
+                new HttpEntity<>(conditional), String.class);
+        assertEquals(HttpStatus.NOT_MODIFIED, notModified.getStatusCode());
+        assertNull(notModified.getBody());
+
+        addValidData("/left", id, payload("dGVsZXR1Ymll"));
+        ResponseEntity<DiffResult> updated = restTemplate.exchange(createURLWithPort(id), HttpMethod.GET,
+                new HttpEntity<>(conditional), DiffResult.class);
+        assertEquals(HttpStatus.OK, updated.getStatusCode());
+        assertTrue(updated.getBody().isEquals());
+    }
+
+    /**
+     * Test: Updates a side with the entity tag of its version, which is rejected once the side was updated
+     */
+    @Test
+    public void testConditionalUpdate() {
+        String id = String.valueOf(nextInt());
+        ResponseEntity<Base64Data> created = addValidData("/left", id, payload("dGVsZXR1Ymll"));
+        String entityTag = created.getHeaders().getETag();
+        assertNotNull(entityTag);
+
+        HttpHeaders conditional = new HttpHeaders();
+        conditional.setContentType(MediaType.APPLICATION_JSON);
+        conditional.setIfMatch(entityTag);
+        ResponseEntity<Base64Data> updated = restTemplate.exchange(createURLWithPort(id + "/left"), HttpMethod.POST,
+                new HttpEntity<>(payload("dGVsZXRvYmll"), conditional), Base64Data.class);
+        assertEquals(HttpStatus.OK, updated.getStatusCode());
+        assertNotEquals(entityTag, updated.getHeaders().getETag());
+
+        ResponseEntity<ErrorPayload> stale = restTemplate.exchange(createURLWithPort(id + "/left"), HttpMethod.POST,
+                new HttpEntity<>(payload("dGVsZXRpYmll"), conditional), ErrorPayload.class);
+        assertEquals(HttpStatus.PRECONDITION_FAILED, stale.getStatusCode());
+        assertEquals(HttpStatus.PRECONDITION_FAILED.toString(), stale.getBody().getErrorCode());
+    }
+
+    /**
+     * Test: Subscribes to an id before its sides are sent, receives the diff once both are present
+     * and again after an update
+     *
+     * @throws IOException the io exception
+     */
+    @Test
+    public void testSubscribe() throws IOException {
+        String id = String.valueOf(nextInt());
+        HttpURLConnection connection = (HttpURLConnection) new URL(createURLWithPort(id + "/events")).openConnection();
+        connection.setRequestProperty(HttpHeaders.ACCEPT, MediaType.TEXT_EVENT_STREAM_VALUE);
+        connection.setReadTimeout(10000);
+        assertEquals(HttpStatus.OK.value(), connection.getResponseCode());
+
+        try (BufferedReader events = new BufferedReader(new InputStreamReader(connection.getInputStream()))) {
+            addValidData("/left", id, payload("dGVsZXR1Ymll"));
+            addValidData("/right", id, payload("dGVsZXR1Ymlv"));
+            DiffResult first = new ObjectMapper().readValue(nextEventData(events), DiffResult.class);
+            assertFalse(first.isEquals());
+            assertEquals(8, first.getDifferences().get(0).getOffset());
+
+            addValidData("/left", id, payload("dGVsZXR1Ymlv"));
+            DiffResult updated = new ObjectMapper().readValue(nextEventData(events), DiffResult.class);
+            assertTrue(updated.isEquals());
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Reads a stream of server-sent events up to the data of the next diff event.
+     *
+     * @param events    the stream of events
+     * @return the data of the event
+     * @throws IOException the io exception
+     */
+    private static String nextEventData(BufferedReader events) throws IOException {
+        boolean diffEvent = false;
+        for (String line = events.readLine(); line != null; line = events.readLine()) {
+            if (line.equals("event:" + SubscriptionService.DIFF_EVENT)) {
+                diffEvent = true;
+            } else if (diffEvent && line.startsWith("data:")) {
+                return line.substring("data:".length());
+            }
+        }
+        throw new IOException("Stream of events closed");
+    }
+
+    /**
+     * Test: Compares only a range of the data
+     */
+    @Test
+    public void testGetDiffResultRange() {
+        String id = String.valueOf(nextInt());
+        addValidDataBothSides(id, "dG9sZXRpYmV1", "dGVsZXR1Ymll");
+
+        ResponseEntity<DiffResult> response = restTemplate.getForEntity(createURLWithPort(id + "?from=2&to=6"),
+                DiffResult.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(Integer.valueOf(2), response.getBody().getFrom());
+        assertEquals(Integer.valueOf(6), response.getBody().getTo());
+        assertEquals(1, response.getBody().getDifferences().size());
+        assertEquals(5, response.getBody().getDifferences().get(0).getOffset());
+
+        ResponseEntity<ErrorPayload> invalid = restTemplate.getForEntity(createURLWithPort(id + "?from=7&to=6"),
+                ErrorPayload.class);
+        assertEquals(HttpStatus.BAD_REQUEST, invalid.getStatusCode());
+        assertEquals("Invalid byte range", invalid.getBody().getMessage());
+    }
+
+    /**
+     * Mounts a payload.
+     *
+     * @param data  the data
+     * @return the {@link org.juliazo.diff.model.Base64DataPayload}
+     */
+    private static Base64DataPayload payload(String data) {
+        Base64DataPayload payload = new Base64DataPayload();
+        payload.setData(data);
+        return payload;
+    }
 }
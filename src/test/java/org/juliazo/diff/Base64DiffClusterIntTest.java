@@ -0,0 +1,211 @@
+package org.juliazo.diff;
+
+import org.juliazo.diff.cluster.ClusterService;
+import org.juliazo.diff.model.Base64DataPayload;
+import org.juliazo.diff.model.DiffResult;
+import org.juliazo.diff.service.DiffService;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Integration tests for the cluster mode of Base64 Diff Application.
+ * Starts three instances on localhost ports with a static member list.
+ *
+ * To run only these tests use command line:
+ *      mvn clean test -Dtest=Base64DiffClusterIntTest
+ */
+public class Base64DiffClusterIntTest {
+
+    /**
+     * How many instances form the cluster
+     */
+    private static final int INSTANCES = 3;
+
+    /**
+     * Ports of each instance
+     */
+    private static final List<Integer> ports = new ArrayList<>();
+
+    /**
+     * Application context of each instance
+     */
+    private static final List<ConfigurableApplicationContext> contexts = new ArrayList<>();
+
+    /**
+     * The Rest template.
+     */
+    private final TestRestTemplate restTemplate = new TestRestTemplate();
+
+    /**
+     * Starts every instance of the cluster.
+     *
+     * @throws IOException when no free port is found
+     */
+    @BeforeClass
+    public static void startCluster() throws IOException {
+        List<String> members = new ArrayList<>();
+        for (int i = 0; i < INSTANCES; i++) {
+            try (ServerSocket socket = new ServerSocket(0)) {
+                ports.add(socket.getLocalPort());
+                members.add("localhost:" + socket.getLocalPort());
+            }
+        }
+        for (int port : ports) {
+            contexts.add(new SpringApplicationBuilder(Base64DiffApp.class).run(
+                    "--server.port=" + port,
+                    "--spring.jmx.enabled=false",
+                    "--diff.cluster.self=localhost:" + port,
+                    "--diff.cluster.members=" + String.join(",", members),
+                    "--diff.cluster.virtual-nodes=64"));
+        }
+    }
+
+    /**
+     * Stops every instance of the cluster.
+     */
+    @AfterClass
+    public static void stopCluster() {
+        contexts.forEach(ConfigurableApplicationContext::close);
+    }
+
+    /**
+     * Test: Data sent to any instance is stored on its owner only and
+     * the diff can be requested from any instance, whatever the characters of the id
+     */
+    @Test
+    public void testRequestsAreForwardedToOwner() {
+        List<String> ids = addPairs("forward-{?#} %", 30);
+
+        int stored = 0;
+        for (int i = 0; i < INSTANCES; i++) {
+            int storedOnInstance = 0;
+            for (String id : diffService(i).getStoredIds()) {
+                if (id.startsWith("forward-")) {
+                    storedOnInstance++;
+                }
+            }
+            assertTrue("Every instance owns some ids", storedOnInstance > 0);
+            stored += storedOnInstance;
+        }
+        assertEquals(ids.size(), stored);
+
+        for (int i = 0; i < ids.size(); i++) {
+            assertDiff(i % INSTANCES, ids.get(i));
+        }
+    }
+
+    /**
+     * Test: When a member leaves, the ids it owned are moved to the remaining members
+     */
+    @Test
+    public void testRebalanceOnMembershipChange() {
+        List<String> ids = addPairs("rebalance-{?#} %", 30);
+
+        List<String> remaining = Arrays.asList("localhost:" + ports.get(0), "localhost:" + ports.get(1));
+        for (int i = 0; i < INSTANCES; i++) {
+            ResponseEntity<String> response = restTemplate.exchange(
+                    "http://localhost:" + ports.get(i) + "/v1/cluster/members",
+                    HttpMethod.PUT, new HttpEntity<>(remaining), String.class);
+            assertEquals(HttpStatus.OK, response.getStatusCode());
+        }
+
+        for (String id : diffService(2).getStoredIds()) {
+            assertFalse("Removed member still holds " + id, id.startsWith("rebalance-"));
+        }
+        for (String id : ids) {
+            assertDiff(0, id);
+            assertDiff(1, id);
+        }
+
+        List<String> all = new ArrayList<>();
+        ports.forEach(port -> all.add("localhost:" + port));
+        for (int i = 0; i < INSTANCES; i++) {
+            restTemplate.exchange("http://localhost:" + ports.get(i) + "/v1/cluster/members",
+                    HttpMethod.PUT, new HttpEntity<>(all), String.class);
+        }
+        for (String id : ids) {
+            assertDiff(2, id);
+        }
+    }
+
+    /**
+     * Sends both sides of several data sets, spreading the requests over every instance.
+     *
+     * @param prefix    prefix of the ids
+     * @param count     how many data sets
+     * @return the ids
+     */
+    private List<String> addPairs(String prefix, int count) {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String id = prefix + i;
+            Base64DataPayload payload = new Base64DataPayload();
+            payload.setData("dGVsZXR1Ymll");
+            assertEquals(HttpStatus.CREATED, post(i % INSTANCES, id, "left", payload).getStatusCode());
+            payload.setData("dGVsZXR1Ymlv");
+            assertEquals(HttpStatus.CREATED, post((i + 1) % INSTANCES, id, "right", payload).getStatusCode());
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    /**
+     * Checks the diff of a data set created by {@link #addPairs(String, int)}.
+     *
+     * @param instance  the instance receiving the request
+     * @param id        the id
+     */
+    private void assertDiff(int instance, String id) {
+        ResponseEntity<DiffResult> response = restTemplate.getForEntity(
+                URI.create("http://localhost:" + ports.get(instance) + ClusterService.diffPath(id)), DiffResult.class);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(id, response.getBody().getId());
+        assertFalse(response.getBody().isEquals());
+        assertEquals(1, response.getBody().getDifferences().size());
+        assertEquals(8, response.getBody().getDifferences().get(0).getOffset());
+    }
+
+    /**
+     * POST Operation to add data to a given side of the diff.
+     *
+     * @param instance  the instance receiving the request
+     * @param id        the id
+     * @param side      left or right
+     * @param payload   the payload
+     * @return the response
+     */
+    private ResponseEntity<String> post(int instance, String id, String side, Base64DataPayload payload) {
+        return restTemplate.postForEntity(
+                URI.create("http://localhost:" + ports.get(instance) + ClusterService.diffPath(id) + "/" + side),
+                payload, String.class);
+    }
+
+    /**
+     * Gets the diff service of an instance.
+     *
+     * @param instance  the instance
+     * @return the diff service
+     */
+    private DiffService diffService(int instance) {
+        return contexts.get(instance).getBean(DiffService.class);
+    }
+}
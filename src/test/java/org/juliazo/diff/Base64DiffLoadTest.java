@@ -0,0 +1,60 @@
+package org.juliazo.diff;
+
+import org.juliazo.diff.load.LoadGenerator;
+import org.juliazo.diff.load.LoadProfile;
+import org.juliazo.diff.load.LoadReport;
+import org.junit.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Load test of Base64 Diff Application: starts the application on a random local port, drives it
+ * with the mix of requests of the {@link org.juliazo.diff.load.LoadProfile} and prints the throughput
+ * and the latency percentiles, to compare versions and configurations.
+ *
+ * Skipped unless enabled, to run it use command line:
+ *      mvn test -Dtest=Base64DiffLoadTest -Dload=true
+ *
+ * The profile is set with properties such as -Dload.concurrency=64 -Dload.duration-seconds=30
+ * -Dload.payload-bytes=65536, and the application is configured with -Dload.app-args, a comma
+ * separated list of arguments such as --diff.precompute.threads=0
+ */
+public class Base64DiffLoadTest {
+
+    /**
+     * Test: Runs the load test, no request may fail
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testLoad() throws Exception {
+        assumeTrue(Boolean.getBoolean("load"));
+        LoadProfile profile = LoadProfile.fromSystemProperties();
+        //reuses a connection per virtual user
+        System.setProperty("http.maxConnections", String.valueOf(profile.getConcurrency()));
+
+        List<String> args = new ArrayList<>(Arrays.asList("--server.port=0", "--spring.jmx.enabled=false",
+                "--logging.level.org.juliazo=WARN"));
+        String appArgs = System.getProperty("load.app-args", "");
+        if (!appArgs.isEmpty()) {
+            args.addAll(Arrays.asList(appArgs.split(",")));
+        }
+        try (ServletWebServerApplicationContext context = (ServletWebServerApplicationContext)
+                new SpringApplicationBuilder(Base64DiffApp.class).run(args.toArray(new String[0]))) {
+            int port = context.getWebServer().getPort();
+            LoadReport report = new LoadGenerator("http://localhost:" + port + "/v1/diff/", profile).run();
+            report.print(System.out);
+
+            assertTrue(report.getRequests() > 0);
+            assertEquals(0, report.getErrors());
+        }
+    }
+}
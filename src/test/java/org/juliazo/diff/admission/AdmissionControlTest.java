@@ -0,0 +1,90 @@
+package org.juliazo.diff.admission;
+
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for {@link org.juliazo.diff.admission.AdmissionControl}
+ */
+public class AdmissionControlTest {
+
+    /**
+     * Test: Large requests leave the reserve free for small requests
+     *
+     * @throws InterruptedException the interrupted exception
+     */
+    @Test
+    public void testReserveForSmallRequests () throws InterruptedException {
+        AdmissionControl admissionControl = new AdmissionControl(1000, 200, 100, 1, 0);
+
+        assertTrue(admissionControl.acquireBytes(500));
+        assertTrue(admissionControl.acquireBytes(300));
+        //a large request cannot take the reserve
+        assertFalse(admissionControl.acquireBytes(101));
+        //small requests can
+        assertTrue(admissionControl.acquireBytes(100));
+        assertTrue(admissionControl.acquireBytes(100));
+        assertFalse(admissionControl.acquireBytes(1));
+        assertEquals(1000, admissionControl.getInFlightBytes());
+        assertEquals(2, admissionControl.getRejectedRequests());
+
+        admissionControl.releaseBytes(500);
+        assertTrue(admissionControl.acquireBytes(101));
+        assertEquals(601, admissionControl.getInFlightBytes());
+
+        assertTrue(admissionControl.fits(800));
+        assertFalse(admissionControl.fits(801));
+        assertTrue(admissionControl.fits(100));
+    }
+
+    /**
+     * Test: A request waits up to the queue timeout for capacity to be released
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testQueueing () throws Exception {
+        AdmissionControl admissionControl = new AdmissionControl(1000, 200, 100, 1, 5000);
+        assertTrue(admissionControl.acquireBytes(800));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<Boolean> waiting = executor.submit(() -> admissionControl.acquireBytes(800));
+        Thread.sleep(50);
+        assertFalse(waiting.isDone());
+        admissionControl.releaseBytes(800);
+        assertTrue(waiting.get());
+        executor.shutdown();
+    }
+
+    /**
+     * Test: Diff operations are limited and released
+     *
+     * @throws InterruptedException the interrupted exception
+     */
+    @Test
+    public void testConcurrentDiffs () throws InterruptedException {
+        AdmissionControl admissionControl = new AdmissionControl(1000, 200, 100, 2, 10);
+
+        assertTrue(admissionControl.acquireDiff());
+        assertTrue(admissionControl.acquireDiff());
+        assertFalse(admissionControl.acquireDiff());
+        admissionControl.releaseDiff();
+        assertTrue(admissionControl.acquireDiff());
+        assertEquals(1, admissionControl.getRejectedRequests());
+    }
+
+    /**
+     * Test: The reserve must hold a small request and leave room for large ones
+     */
+    @Test (expected = IllegalArgumentException.class)
+    public void testInvalidBudgets () {
+        new AdmissionControl(1000, 1000, 100, 1, 0);
+    }
+}
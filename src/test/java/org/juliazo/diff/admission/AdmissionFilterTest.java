@@ -0,0 +1,262 @@
+package org.juliazo.diff.admission;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.juliazo.diff.model.ErrorPayload;
+import org.junit.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.StreamUtils;
+
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Test class for {@link org.juliazo.diff.admission.AdmissionFilter}
+ */
+public class AdmissionFilterTest {
+
+    /**
+     * Budgets of 1000 bytes, 200 reserved for requests up to 100 bytes, and one diff at a time
+     */
+    private final AdmissionControl admissionControl = new AdmissionControl(1000, 200, 100, 1, 0);
+
+    /**
+     * The filter under test
+     */
+    private final AdmissionFilter admissionFilter = new AdmissionFilter(admissionControl, new ObjectMapper(), 2);
+
+    /**
+     * Test: Requests within the budgets are admitted and release their capacity once handled
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testAdmitted () throws Exception {
+        MockHttpServletResponse response = filter(post(600), new MockFilterChain());
+        assertEquals(200, response.getStatus());
+        response = filter(get("/v1/diff/1"), new MockFilterChain());
+        assertEquals(200, response.getStatus());
+        assertEquals(0, admissionControl.getInFlightBytes());
+        assertEquals(0, admissionControl.getRejectedRequests());
+    }
+
+    /**
+     * Test: A request arriving while the byte budget is taken is rejected with 429
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testBytesExhausted () throws Exception {
+        MockHttpServletResponse[] rejected = new MockHttpServletResponse[1];
+        //while the first request is handled, a second large one arrives
+        MockHttpServletResponse first = filter(post(700), new MockFilterChain(new HttpServlet() {
+            @Override
+            public void service(ServletRequest request, ServletResponse response) throws ServletException, IOException {
+                rejected[0] = filter(post(200), new MockFilterChain());
+            }
+        }));
+
+        assertEquals(200, first.getStatus());
+        assertRejected(rejected[0], 429, "Too many bytes in flight");
+    }
+
+    /**
+     * Test: A diff arriving while the other diffs run is rejected with 503,
+     * other GET requests are not limited
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testDiffsExhausted () throws Exception {
+        MockHttpServletResponse[] responses = new MockHttpServletResponse[3];
+        filter(get("/v1/diff/1"), new MockFilterChain(new HttpServlet() {
+            @Override
+            public void service(ServletRequest request, ServletResponse response) throws ServletException, IOException {
+                responses[0] = filter(get("/v1/diff/2"), new MockFilterChain());
+                responses[1] = filter(get("/v1/diff/2/left/versions/1/diff/2"), new MockFilterChain());
+                responses[2] = filter(get("/v1/diff/2/left/versions"), new MockFilterChain());
+            }
+        }));
+
+        assertRejected(responses[0], 503, "Too many diffs in progress");
+        assertRejected(responses[1], 503, "Too many diffs in progress");
+        assertEquals(200, responses[2].getStatus());
+    }
+
+    /**
+     * Test: Streamed differences are limited as the other diffs, and take their diff until
+     * the asynchronous response ends, not only until the filter returns
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testStreamedDiff () throws Exception {
+        MockHttpServletRequest streamed = get("/v1/diff/1/runs");
+        streamed.setAsyncSupported(true);
+        filter(streamed, new MockFilterChain(new HttpServlet() {
+            @Override
+            public void service(ServletRequest request, ServletResponse response) {
+                request.startAsync();
+            }
+        }));
+
+        assertRejected(filter(get("/v1/diff/2/runs"), new MockFilterChain()), 503, "Too many diffs in progress");
+        assertRejected(filter(get("/v1/diff/2"), new MockFilterChain()), 503, "Too many diffs in progress");
+        streamed.getAsyncContext().complete();
+        assertEquals(200, filter(get("/v1/diff/2/runs"), new MockFilterChain()).getStatus());
+    }
+
+    /**
+     * Test: Requests larger than the budget available to them are rejected with 413
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testTooLarge () throws Exception {
+        assertRejected(filter(post(801), new MockFilterChain()), 413, "Request exceeds the in-flight byte budget");
+        assertEquals(0, admissionControl.getInFlightBytes());
+    }
+
+    /**
+     * Test: Requests without Content-Length are charged the bytes read, as they are read,
+     * and released once handled
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testChunkedAdmitted () throws Exception {
+        long[] inFlight = new long[2];
+        MockHttpServletResponse response = filter(chunked(600), new MockFilterChain(new HttpServlet() {
+            @Override
+            public void service(ServletRequest request, ServletResponse response) throws IOException {
+                inFlight[0] = admissionControl.getInFlightBytes();
+                assertEquals(600, StreamUtils.copyToByteArray(request.getInputStream()).length);
+                inFlight[1] = admissionControl.getInFlightBytes();
+            }
+        }));
+
+        assertEquals(200, response.getStatus());
+        assertEquals(0, inFlight[0]);
+        assertEquals(600, inFlight[1]);
+        assertEquals(0, admissionControl.getInFlightBytes());
+    }
+
+    /**
+     * Test: Requests without Content-Length fail to read once they grow beyond the budget,
+     * and are rejected with 413 when larger than it or 429 when it is taken
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testChunkedRejected () throws Exception {
+        MockFilterChain reading = new MockFilterChain(new HttpServlet() {
+            @Override
+            public void service(ServletRequest request, ServletResponse response) throws IOException {
+                StreamUtils.copyToByteArray(request.getInputStream());
+            }
+        });
+        assertRejected(filter(chunked(801), reading), 413, "Request exceeds the in-flight byte budget");
+        assertEquals(0, admissionControl.getInFlightBytes());
+
+        MockHttpServletResponse[] rejected = new MockHttpServletResponse[1];
+        filter(post(700), new MockFilterChain(new HttpServlet() {
+            @Override
+            public void service(ServletRequest request, ServletResponse response) throws ServletException, IOException {
+                //the handler reports the failure to read the payload itself, the rejection replaces it
+                rejected[0] = filter(chunked(200), new MockFilterChain(new HttpServlet() {
+                    @Override
+                    public void service(ServletRequest request, ServletResponse response) {
+                        try {
+                            StreamUtils.copyToByteArray(request.getInputStream());
+                        } catch (IOException e) {
+                            ((HttpServletResponse) response).setStatus(400);
+                        }
+                    }
+                }));
+            }
+        }));
+        assertRejected(rejected[0], 429, "Too many bytes in flight");
+        assertEquals(0, admissionControl.getInFlightBytes());
+    }
+
+    /**
+     * Runs a request through the filter.
+     *
+     * @param request       the request
+     * @param filterChain   the chain handling admitted requests
+     * @return the response
+     * @throws ServletException the servlet exception
+     * @throws IOException      the io exception
+     */
+    private MockHttpServletResponse filter(MockHttpServletRequest request, MockFilterChain filterChain)
+            throws ServletException, IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        admissionFilter.doFilter(request, response, filterChain);
+        return response;
+    }
+
+    /**
+     * Mounts a POST request with a payload of the given size.
+     *
+     * @param bytes the payload size
+     * @return the request
+     */
+    private static MockHttpServletRequest post(int bytes) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/v1/diff/1/left");
+        request.setContent(new byte[bytes]);
+        return request;
+    }
+
+    /**
+     * Mounts a POST request with a payload of the given size and no Content-Length, as a chunked transfer.
+     *
+     * @param bytes the payload size
+     * @return the request
+     */
+    private static MockHttpServletRequest chunked(int bytes) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/v1/diff/1/left") {
+            @Override
+            public long getContentLengthLong() {
+                return -1;
+            }
+        };
+        request.setContent(new byte[bytes]);
+        return request;
+    }
+
+    /**
+     * Mounts a GET request.
+     *
+     * @param uri   the request uri
+     * @return the request
+     */
+    private static MockHttpServletRequest get(String uri) {
+        return new MockHttpServletRequest("GET", uri);
+    }
+
+    /**
+     * Checks the response of a rejected request.
+     *
+     * @param response  the response
+     * @param status    the expected status
+     * @param message   the expected message
+     * @throws IOException the io exception
+     */
+    private static void assertRejected(MockHttpServletResponse response, int status, String message)
+            throws IOException {
+        assertEquals(status, response.getStatus());
+        assertEquals("2", response.getHeader("Retry-After"));
+        ErrorPayload errorPayload = new ObjectMapper().readValue(response.getContentAsByteArray(), ErrorPayload.class);
+        assertEquals(String.valueOf(status), errorPayload.getErrorCode());
+        assertEquals(message, errorPayload.getMessage());
+        assertNull(response.getForwardedUrl());
+    }
+}
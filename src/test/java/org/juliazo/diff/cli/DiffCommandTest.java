@@ -0,0 +1,195 @@
+package org.juliazo.diff.cli;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.juliazo.diff.model.DiffResult;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for {@link org.juliazo.diff.cli.DiffCommand}
+ */
+public class DiffCommandTest {
+
+    /**
+     * Directory of the files compared
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * What the command printed as result
+     */
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    /**
+     * What the command printed as errors
+     */
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    /**
+     * The command under test, mapping segments of 4 bytes
+     */
+    private final DiffCommand diffCommand = new DiffCommand(new PrintStream(out, true), new PrintStream(err, true), 4);
+
+    /**
+     * Test: Differences crossing the segments of the files are printed as JSON, exiting with 1
+     *
+     * @throws IOException the io exception
+     */
+    @Test
+    public void testDifferentFiles () throws IOException {
+        Path left = file("left.bin", "telefunken");
+        Path right = file("right.bin", "telEFUnkeN");
+
+        assertEquals(DiffCommand.DIFFERENT, diffCommand.run(new String[] {left.toString(), right.toString()}));
+
+        DiffResult diffResult = new ObjectMapper().readValue(out.toString(), DiffResult.class);
+        assertTrue(diffResult.isEqualSize());
+        assertFalse(diffResult.isEquals());
+        assertEquals(2, diffResult.getDifferences().size());
+        assertEquals(3, diffResult.getDifferences().get(0).getOffset());
+        assertEquals(3, diffResult.getDifferences().get(0).getLength());
+        assertEquals(9, diffResult.getDifferences().get(1).getOffset());
+    }
+
+    /**
+     * Test: Only the summary is printed with the summary option, and equal files exit with 0
+     *
+     * @throws IOException the io exception
+     */
+    @Test
+    public void testSummary () throws IOException {
+        Path left = file("left.bin", "telefunken");
+        Path right = file("right.bin", "telefunken");
+
+        assertEquals(DiffCommand.EQUAL,
+                diffCommand.run(new String[] {DiffCommand.SUMMARY_OPTION, left.toString(), right.toString()}));
+
+        DiffResult diffResult = new ObjectMapper().readValue(out.toString(), DiffResult.class);
+        assertTrue(diffResult.isEquals());
+        assertEquals(0, diffResult.getSummary().getRuns());
+        assertEquals(1, diffResult.getSummary().getSimilarity(), 0);
+        assertNull(diffResult.getDifferences());
+    }
+
+    /**
+     * Test: Differences separated by at most the max gap are printed merged, and only the largest ones
+     * with the top option
+     *
+     * @throws IOException the io exception
+     */
+    @Test
+    public void testMaxGapAndTop () throws IOException {
+        Path left = file("left.bin", "telefunken");
+        Path right = file("right.bin", "telEFUnkeN");
+
+        assertEquals(DiffCommand.DIFFERENT,
+                diffCommand.run(new String[] {DiffCommand.MAX_GAP_OPTION + "3", left.toString(), right.toString()}));
+
+        DiffResult diffResult = new ObjectMapper().readValue(out.toString(), DiffResult.class);
+        assertEquals(1, diffResult.getDifferences().size());
+        assertEquals(3, diffResult.getDifferences().get(0).getOffset());
+        assertEquals(7, diffResult.getDifferences().get(0).getLength());
+
+        out.reset();
+        assertEquals(DiffCommand.DIFFERENT,
+                diffCommand.run(new String[] {DiffCommand.TOP_OPTION + "1", left.toString(), right.toString()}));
+        diffResult = new ObjectMapper().readValue(out.toString(), DiffResult.class);
+        assertEquals(Long.valueOf(2), diffResult.getRuns());
+        assertEquals(1, diffResult.getDifferences().size());
+        assertEquals(3, diffResult.getDifferences().get(0).getOffset());
+    }
+
+    /**
+     * Test: Records are compared instead of bytes with the record size option, skipping the ignored bytes
+     *
+     * @throws IOException the io exception
+     */
+    @Test
+    public void testRecords () throws IOException {
+        Path left = file("left.bin", "telefunken");
+        Path right = file("right.bin", "telEFUnkeN");
+
+        assertEquals(DiffCommand.DIFFERENT, diffCommand.run(new String[] {DiffCommand.RECORD_SIZE_OPTION + "5",
+                DiffCommand.IGNORE_OPTION + "3-5", left.toString(), right.toString()}));
+
+        DiffResult diffResult = new ObjectMapper().readValue(out.toString(), DiffResult.class);
+        assertEquals(1, diffResult.getRecords().size());
+        assertEquals(1, diffResult.getRecords().get(0).getIndex());
+        assertEquals(1, diffResult.getRecords().get(0).getCount());
+
+        assertEquals(DiffCommand.ERROR, diffCommand.run(new String[] {DiffCommand.RECORD_SIZE_OPTION + "3",
+                left.toString(), right.toString()}));
+        assertTrue(err.toString().startsWith("Could not compare the files"));
+        err.reset();
+        assertEquals(DiffCommand.ERROR, diffCommand.run(new String[] {DiffCommand.IGNORE_OPTION + "3-5",
+                left.toString(), right.toString()}));
+        assertTrue(err.toString().startsWith("Usage:"));
+    }
+
+    /**
+     * Test: Files of different sizes are not compared
+     *
+     * @throws IOException the io exception
+     */
+    @Test
+    public void testDifferentSizes () throws IOException {
+        Path left = file("left.bin", "telefunken");
+        Path right = file("right.bin", "tele");
+
+        assertEquals(DiffCommand.DIFFERENT, diffCommand.run(new String[] {left.toString(), right.toString()}));
+
+        DiffResult diffResult = new ObjectMapper().readValue(out.toString(), DiffResult.class);
+        assertFalse(diffResult.isEqualSize());
+        assertNull(diffResult.isEquals());
+    }
+
+    /**
+     * Test: Missing arguments and files are reported, exiting with 2
+     *
+     * @throws IOException the io exception
+     */
+    @Test
+    public void testErrors () throws IOException {
+        Path left = file("left.bin", "telefunken");
+
+        assertEquals(DiffCommand.ERROR, diffCommand.run(new String[] {left.toString()}));
+        assertTrue(err.toString().startsWith("Usage:"));
+
+        err.reset();
+        assertEquals(DiffCommand.ERROR,
+                diffCommand.run(new String[] {DiffCommand.MAX_GAP_OPTION + "-1", left.toString(), left.toString()}));
+        assertTrue(err.toString().startsWith("Usage:"));
+
+        err.reset();
+        assertEquals(DiffCommand.ERROR, diffCommand.run(new String[] {left.toString(), "missing.bin"}));
+        assertEquals("File not Found: missing.bin", err.toString().trim());
+        assertEquals(0, out.size());
+    }
+
+    /**
+     * Writes a file of the temporary folder.
+     *
+     * @param name      the name of the file
+     * @param content   the content of the file
+     * @return the file
+     * @throws IOException the io exception
+     */
+    private Path file(String name, String content) throws IOException {
+        Path file = folder.getRoot().toPath().resolve(name);
+        Files.write(file, content.getBytes("UTF-8"));
+        return file;
+    }
+}
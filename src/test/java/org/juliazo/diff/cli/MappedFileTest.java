@@ -0,0 +1,75 @@
+package org.juliazo.diff.cli;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test class for {@link org.juliazo.diff.cli.MappedFile}
+ */
+public class MappedFileTest {
+
+    /**
+     * Directory of the files read
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Test: A file mapped in several segments is read whole, reads stopping at the end of each segment
+     *
+     * @throws IOException the io exception
+     */
+    @Test
+    public void testSegments () throws IOException {
+        byte[] data = new byte[23];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        Path file = folder.newFile("data.bin").toPath();
+        Files.write(file, data);
+
+        try (MappedFile mappedFile = new MappedFile(file, 5);
+             InputStream in = mappedFile.openStream()) {
+            assertEquals(23, mappedFile.getSize());
+            byte[] chunk = new byte[8];
+            assertEquals(5, in.read(chunk, 0, chunk.length));
+            assertEquals(5, in.read());
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            out.write(chunk, 0, 5);
+            out.write(5);
+            int read;
+            while ((read = in.read(chunk, 0, chunk.length)) > 0) {
+                out.write(chunk, 0, read);
+            }
+            assertEquals(-1, read);
+            assertArrayEquals(data, out.toByteArray());
+        }
+    }
+
+    /**
+     * Test: An empty file ends on the first read
+     *
+     * @throws IOException the io exception
+     */
+    @Test
+    public void testEmpty () throws IOException {
+        Path file = folder.newFile("empty.bin").toPath();
+
+        try (MappedFile mappedFile = new MappedFile(file);
+             InputStream in = mappedFile.openStream()) {
+            assertEquals(0, mappedFile.getSize());
+            assertEquals(-1, in.read(new byte[4], 0, 4));
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package org.juliazo.diff.cluster;
+
+import org.juliazo.diff.service.DiffService;
+import org.junit.Test;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.web.client.MockRestServiceServer;
+
+import java.util.Collections;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.springframework.test.web.client.ExpectedCount.once;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.content;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+/**
+ * Test class for {@link org.juliazo.diff.cluster.ClusterService}
+ */
+public class ClusterServiceTest {
+
+    /**
+     * Test: Requests from clients are sent to the owner of the id, unless it is this instance,
+     * and requests forwarded by another member are always handled locally
+     */
+    @Test
+    public void testFindRemoteOwner () {
+        ClusterService clusterService = new ClusterService(new DiffService(), new RestTemplateBuilder(),
+                "localhost:8081", "localhost:8082", 16);
+
+        assertEquals("localhost:8082", clusterService.findRemoteOwner("1"));
+        assertEquals("localhost:8082", clusterService.findRemoteOwner("1", null));
+        assertNull(clusterService.findRemoteOwner("1", "localhost:8083"));
+
+        ClusterService standalone = new ClusterService(new DiffService(), new RestTemplateBuilder(), "", "", 16);
+        assertNull(standalone.findRemoteOwner("1", null));
+    }
+
+    /**
+     * Test: A data set updated while it is moved to its new owner is sent again instead of being removed
+     * with the update, and removed once the owner received its latest version
+     */
+    @Test
+    public void testHandOffRetriesUpdatedData () {
+        DiffService diffService = new DiffService();
+        diffService.inputLeft("1", "dGVsZXR1Ymll");
+        MockRestServiceServer[] owner = new MockRestServiceServer[1];
+        RestTemplateBuilder restTemplateBuilder = new RestTemplateBuilder()
+                .additionalCustomizers(restTemplate -> owner[0] = MockRestServiceServer.bindTo(restTemplate).build());
+        ClusterService clusterService = new ClusterService(diffService, restTemplateBuilder,
+                "localhost:8081", "localhost:8081", 16);
+
+        owner[0].expect(once(), requestTo("http://localhost:8082/v1/diff/1/left"))
+                .andExpect(method(HttpMethod.POST))
+                .andExpect(content().string(containsString("dGVsZXR1Ymll")))
+                .andRespond(request -> {
+                    //a write admitted before the membership changed lands while the data set is sent
+                    diffService.inputLeft("1", "dGVsZXRvYmll");
+                    return withSuccess().createResponse(request);
+                });
+        owner[0].expect(once(), requestTo("http://localhost:8082/v1/diff/1/left"))
+                .andExpect(content().string(containsString("dGVsZXRvYmll")))
+                .andRespond(withSuccess());
+
+        assertEquals(1, clusterService.updateMembers(Collections.singletonList("localhost:8082")));
+        owner[0].verify();
+        assertNull(diffService.findData("1"));
+    }
+
+    /**
+     * Test: The response of the owner is relayed with its status, content type and headers,
+     * except the ones that only apply to the connection with the owner
+     */
+    @Test
+    public void testForwardRelaysHeaders () {
+        MockRestServiceServer[] owner = new MockRestServiceServer[1];
+        RestTemplateBuilder restTemplateBuilder = new RestTemplateBuilder()
+                .additionalCustomizers(restTemplate -> owner[0] = MockRestServiceServer.bindTo(restTemplate).build());
+        ClusterService clusterService = new ClusterService(new DiffService(), restTemplateBuilder,
+                "localhost:8081", "localhost:8081,localhost:8082", 16);
+        HttpHeaders ownerHeaders = new HttpHeaders();
+        ownerHeaders.set(HttpHeaders.RETRY_AFTER, "2");
+        ownerHeaders.set("X-Diff-Example", "value");
+        ownerHeaders.set(HttpHeaders.CONNECTION, "close");
+        owner[0].expect(requestTo("http://localhost:8082/v1/diff/1"))
+                .andRespond(withStatus(HttpStatus.TOO_MANY_REQUESTS).contentType(MediaType.TEXT_PLAIN)
+                        .headers(ownerHeaders).body("Too many requests"));
+
+        ResponseEntity response = clusterService.forward("localhost:8082", HttpMethod.GET, "/v1/diff/1", null);
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, response.getStatusCode());
+        assertEquals("Too many requests", response.getBody());
+        assertEquals(MediaType.TEXT_PLAIN, response.getHeaders().getContentType());
+        assertEquals("2", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        assertEquals("value", response.getHeaders().getFirst("X-Diff-Example"));
+        assertNull(response.getHeaders().getFirst(HttpHeaders.CONNECTION));
+    }
+
+    /**
+     * Test: Ids are encoded as a path segment on the paths forwarded to the owner
+     */
+    @Test
+    public void testDiffPath () {
+        assertEquals("/v1/diff/1", ClusterService.diffPath("1"));
+        assertEquals("/v1/diff/a%20b%3Fc%23d%7Be%7D%2Ff%25", ClusterService.diffPath("a b?c#d{e}/f%"));
+    }
+}
@@ -0,0 +1,94 @@
+package org.juliazo.diff.cluster;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for {@link org.juliazo.diff.cluster.ConsistentHashRing}
+ */
+public class ConsistentHashRingTest {
+
+    /**
+     * Members used on the tests
+     */
+    private final List<String> members = Arrays.asList("localhost:8081", "localhost:8082", "localhost:8083");
+
+    /**
+     * Test: An empty ring has no owner for any id
+     */
+    @Test
+    public void testEmptyRing () {
+        ConsistentHashRing ring = new ConsistentHashRing(Collections.emptyList(), 16);
+        assertTrue(ring.isEmpty());
+        assertNull(ring.ownerOf("1"));
+    }
+
+    /**
+     * Test: Virtual nodes must be positive
+     */
+    @Test (expected = IllegalArgumentException.class)
+    public void testInvalidVirtualNodes () {
+        new ConsistentHashRing(members, 0);
+    }
+
+    /**
+     * Test: The owner of an id does not depend on the order of the members
+     */
+    @Test
+    public void testOwnerIsStable () {
+        ConsistentHashRing ring = new ConsistentHashRing(members, 64);
+        ConsistentHashRing reversed = new ConsistentHashRing(
+                Arrays.asList("localhost:8083", "localhost:8082", "localhost:8081"), 64);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(ring.ownerOf(String.valueOf(i)), reversed.ownerOf(String.valueOf(i)));
+        }
+    }
+
+    /**
+     * Test: Every member holds one position per virtual node and
+     * ids are spread evenly across the members
+     */
+    @Test
+    public void testBalance () {
+        ConsistentHashRing ring = new ConsistentHashRing(members, 128);
+        for (int positions : ring.positionsPerMember().values()) {
+            assertEquals(128, positions);
+        }
+
+        Map<String, Integer> owned = new HashMap<>();
+        int ids = 30000;
+        for (int i = 0; i < ids; i++) {
+            owned.merge(ring.ownerOf(String.valueOf(i)), 1, Integer::sum);
+        }
+        for (String member : members) {
+            //each member must own between 2/3 and 4/3 of its fair share
+            int share = owned.get(member);
+            assertTrue(member + " owns " + share, share > ids / 3 * 2 / 3 && share < ids / 3 * 4 / 3);
+        }
+    }
+
+    /**
+     * Test: When a member leaves the ring only the ids it owned change owner
+     */
+    @Test
+    public void testMemberRemovalOnlyMovesItsIds () {
+        ConsistentHashRing ring = new ConsistentHashRing(members, 128);
+        ConsistentHashRing shrunk = new ConsistentHashRing(members.subList(0, 2), 128);
+        for (int i = 0; i < 5000; i++) {
+            String id = String.valueOf(i);
+            String owner = ring.ownerOf(id);
+            if (!owner.equals("localhost:8083")) {
+                assertEquals(owner, shrunk.ownerOf(id));
+            }
+        }
+    }
+}
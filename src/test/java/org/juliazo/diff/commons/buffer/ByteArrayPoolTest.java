@@ -0,0 +1,186 @@
+package org.juliazo.diff.commons.buffer;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for {@link org.juliazo.diff.commons.buffer.ByteArrayPool}
+ */
+public class ByteArrayPoolTest {
+
+    /**
+     * Test: Arrays are rounded up to their size class and reused by any size of the same class
+     */
+    @Test
+    public void testSizeClasses () {
+        ByteArrayPool pool = new ByteArrayPool(2, 1 << 16, 1 << 20);
+
+        byte[] small = pool.acquire(100);
+        assertEquals(ByteArrayPool.MIN_CLASS_SIZE, small.length);
+        byte[] medium = pool.acquire(5000);
+        assertEquals(8192, medium.length);
+        assertEquals(2, pool.getOutstanding());
+        pool.release(small);
+        pool.release(medium);
+        assertEquals(0, pool.getOutstanding());
+        assertEquals(2, pool.getAvailable());
+
+        assertSame(medium, pool.acquire(8192));
+        assertSame(small, pool.acquire(1));
+        assertNotSame(small, pool.acquire(4096));
+        assertEquals(1 << 16, pool.acquire(40000).length);
+    }
+
+    /**
+     * Test: Arrays beyond the largest class are allocated with the size requested and not kept,
+     * each class keeps a bounded number of arrays and the pool a bounded number of bytes
+     */
+    @Test
+    public void testLimits () {
+        ByteArrayPool pool = new ByteArrayPool(1, 10000, 20000);
+
+        byte[] large = pool.acquire(20000);
+        assertEquals(20000, large.length);
+        pool.release(large);
+        assertEquals(0, pool.getAvailable());
+
+        byte[] first = pool.acquire(16384);
+        byte[] second = pool.acquire(16384);
+        pool.release(first);
+        pool.release(second);
+        assertEquals(1, pool.getAvailable());
+        assertEquals(0, pool.getOutstanding());
+
+        //a 16 KB array is kept, there is no room left for a 8 KB one
+        pool.release(pool.acquire(8192));
+        assertEquals(1, pool.getAvailable());
+        assertEquals(16384, pool.getPooledBytes());
+    }
+
+    /**
+     * Test: Threads acquiring and releasing at once never share an array, and every array is accounted for
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testConcurrentUse () throws Exception {
+        ByteArrayPool pool = new ByteArrayPool(4, 1 << 16, 1 << 20);
+        Set<byte[]> inUse = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                results.add(executor.submit(() -> {
+                    boolean exclusive = true;
+                    for (int i = 0; i < 10000; i++) {
+                        byte[] array = pool.acquire(i % 2 == 0 ? 4096 : 1 << 16);
+                        exclusive &= inUse.add(array);
+                        inUse.remove(array);
+                        pool.release(array);
+                    }
+                    return exclusive;
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(0, pool.getOutstanding());
+        assertTrue(pool.getAvailable() <= 8);
+    }
+
+    /**
+     * Test: A buffer grows into larger arrays of the pool, returning the smaller ones,
+     * and is reused empty once released
+     *
+     * @throws IOException the io exception
+     */
+    @Test
+    public void testBuffer () throws IOException {
+        ByteArrayPool pool = new ByteArrayPool(2, 1 << 16, 1 << 20);
+        byte[] data = new byte[10000];
+        new Random(7).nextBytes(data);
+
+        ByteArrayPool.PooledBuffer buffer = pool.buffer(0);
+        buffer.write(9);
+        buffer.readFrom(new ByteArrayInputStream(data));
+        assertEquals(data.length + 1, buffer.size());
+        assertEquals(9, buffer.array()[0]);
+        assertArrayEquals(data, Arrays.copyOfRange(buffer.array(), 1, data.length + 1));
+        assertEquals(1, pool.getOutstanding());
+        //the arrays of 4 and 8 KB were returned while growing
+        assertEquals(2, pool.getAvailable());
+        byte[] array = buffer.array();
+        buffer.release();
+        assertEquals(0, pool.getOutstanding());
+
+        ByteArrayPool.PooledBuffer reused = pool.buffer(10001);
+        assertSame(array, reused.array());
+        assertEquals(0, reused.size());
+        reused.write(data, 0, 3);
+        reused.reset();
+        assertEquals(0, reused.size());
+        reused.release();
+        assertEquals(0, pool.getOutstanding());
+    }
+
+    /**
+     * Test: Arrays the pool would not keep are handed over as they are, others are copied
+     * and return to the pool
+     */
+    @Test
+    public void testDetach () {
+        ByteArrayPool pool = new ByteArrayPool(2, 1 << 16, 1 << 20);
+
+        ByteArrayPool.PooledBuffer small = pool.buffer(100);
+        small.write(new byte[] {1, 2, 3}, 0, 3);
+        byte[] copy = small.detach();
+        assertArrayEquals(new byte[] {1, 2, 3}, copy);
+        assertNotSame(copy, small.array());
+        small.release();
+        assertEquals(1, pool.getAvailable());
+
+        ByteArrayPool.PooledBuffer large = pool.buffer(100000);
+        large.write(new byte[99000], 0, 99000);
+        byte[] array = large.array();
+        assertSame(array, large.detach());
+        large.release();
+        assertEquals(0, pool.getOutstanding());
+
+        //mostly empty arrays are not kept by the caller
+        ByteArrayPool.PooledBuffer sparse = pool.buffer(100000);
+        sparse.write(7);
+        assertEquals(1, sparse.detach().length);
+        sparse.release();
+        assertEquals(0, pool.getOutstanding());
+    }
+
+    /**
+     * Test: Pool limits must be positive
+     */
+    @Test (expected = IllegalArgumentException.class)
+    public void testInvalidLimits () {
+        new ByteArrayPool(0, 4096, 1 << 20);
+    }
+}
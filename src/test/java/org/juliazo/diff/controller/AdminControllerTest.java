@@ -0,0 +1,87 @@
+package org.juliazo.diff.controller;
+
+import org.juliazo.diff.model.CompletionState;
+import org.juliazo.diff.model.ErrorPayload;
+import org.juliazo.diff.model.IdPage;
+import org.juliazo.diff.model.StorageUsage;
+import org.juliazo.diff.service.DiffService;
+import org.juliazo.diff.storage.DeflateCodec;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the operational endpoints of the rest application
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class AdminControllerTest {
+
+    /**
+     * The controller responsible for handling admin REST requests
+     */
+    @InjectMocks
+    private AdminController adminController;
+
+    /**
+     * The service that holds the entire functionality of the application
+     */
+    @Mock
+    private DiffService diffService;
+
+    /**
+     * Test: Gets the metrics of the configured storage codec
+     */
+    @Test
+    public void testCodecMetrics () {
+        DeflateCodec codec = new DeflateCodec(1);
+        when(diffService.getStorageCodec()).thenReturn(codec);
+
+        ResponseEntity actual = adminController.getCodecMetrics();
+
+        assertEquals(HttpStatus.OK, actual.getStatusCode());
+        assertEquals(codec.getMetrics(), actual.getBody());
+    }
+
+    /**
+     * Test: Gets the codec metrics when no codec is configured
+     */
+    @Test
+    public void testNoCodec () {
+        ResponseEntity actual = adminController.getCodecMetrics();
+
+        assertEquals(HttpStatus.NOT_FOUND, actual.getStatusCode());
+        assertEquals("No storage codec configured", ((ErrorPayload) actual.getBody()).getMessage());
+    }
+
+    /**
+     * Test: Gets the memory used by the storage
+     */
+    @Test
+    public void testStorageUsage () {
+        StorageUsage storageUsage = new StorageUsage();
+        when(diffService.getStorageUsage(5)).thenReturn(storageUsage);
+
+        ResponseEntity actual = adminController.getStorageUsage(5);
+
+        assertEquals(HttpStatus.OK, actual.getStatusCode());
+        assertEquals(storageUsage, actual.getBody());
+    }
+
+    /**
+     * Test: Lists the ids on a completion state
+     */
+    @Test
+    public void testListIds () {
+        ResponseEntity expected = new ResponseEntity(new IdPage(), HttpStatus.OK);
+        when(diffService.listIds(CompletionState.LEFT, 1000L, null, "10:1", 50)).thenReturn(expected);
+
+        assertEquals(expected, adminController.listIds(CompletionState.LEFT, 1000L, null, "10:1", 50));
+    }
+}
@@ -1,9 +1,11 @@
 package org.juliazo.diff.controller;
 
 
+import org.juliazo.diff.cluster.ClusterService;
 import org.juliazo.diff.model.Base64Data;
 import org.juliazo.diff.model.Base64DataPayload;
 import org.juliazo.diff.model.DiffBytes;
+import org.juliazo.diff.model.DiffQuery;
 import org.juliazo.diff.model.DiffResult;
 import org.juliazo.diff.service.DiffService;
 import org.junit.Test;
@@ -11,6 +13,7 @@ import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
@@ -19,7 +22,11 @@ import java.util.List;
 
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.argThat;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -40,6 +47,12 @@ public class Base64DiffControllerTest {
     @Mock
     private DiffService diffService;
 
+    /**
+     * The cluster service, no remote owner is found so every request is handled locally
+     */
+    @Mock
+    private ClusterService clusterService;
+
     /**
      * Test: Adds data to a new ID on /left endpoint
      */
@@ -51,9 +64,9 @@ public class Base64DiffControllerTest {
 
         ResponseEntity expected = new ResponseEntity (new Base64Data(id, leftPayload.getData(), ""), HttpStatus.CREATED);
 
-        when(diffService.inputLeft(eq(id), any())).thenReturn(expected);
+        when(diffService.inputLeft(eq(id), any(), isNull())).thenReturn(expected);
 
-        ResponseEntity  actual = base64DiffController.inputLeft(id, leftPayload);
+        ResponseEntity  actual = base64DiffController.inputLeft(id, leftPayload, null, null);
 
         assertEquals(expected, actual);
     }
@@ -69,9 +82,9 @@ public class Base64DiffControllerTest {
 
         ResponseEntity expected = new ResponseEntity (new Base64Data(id, "", rightPayload.getData()), HttpStatus.CREATED);
 
-        when(diffService.inputRight(eq(id), any())).thenReturn(expected);
+        when(diffService.inputRight(eq(id), any(), isNull())).thenReturn(expected);
 
-        ResponseEntity actual = base64DiffController.inputRight(id, rightPayload);
+        ResponseEntity actual = base64DiffController.inputRight(id, rightPayload, null, null);
 
         assertEquals(expected, actual);
     }
@@ -95,10 +108,80 @@ public class Base64DiffControllerTest {
 
         ResponseEntity expected = new ResponseEntity (diffResult, HttpStatus.OK);
 
-        when(diffService.getDiffResult(eq(id))).thenReturn(expected);
+        DiffQuery diffQuery = new DiffQuery();
+
+        when(diffService.getDiffResult(eq(id), eq(diffQuery), eq("\"tag\""))).thenReturn(expected);
+
+        ResponseEntity actual = base64DiffController.getDiff(id, diffQuery, "\"tag\"", null);
+
+        assertEquals(expected, actual);
+    }
+
+    /**
+     * Test: Gets a diff of an id owned by another member of the cluster,
+     * the request is forwarded to the owner
+     */
+    @Test
+    public void testGetDiffForwarded () {
+        String id = "1";
+        String owner = "localhost:8081";
+        ResponseEntity expected = new ResponseEntity ("{\"id\":\"1\"}", HttpStatus.OK);
+
+        when(clusterService.findRemoteOwner(eq(id), isNull())).thenReturn(owner);
+        DiffQuery diffQuery = new DiffQuery();
+        diffQuery.setFrom(2);
+        diffQuery.setTo(5);
+        diffQuery.setMode(DiffQuery.MODE_SUMMARY);
+
+        when(clusterService.forward(eq(owner), eq(HttpMethod.GET), eq("/v1/diff/1?from=2&to=5&mode=summary"),
+                isNull(), argThat(headers -> headers.getIfNoneMatch().contains("\"tag\"")))).thenReturn(expected);
+
+        ResponseEntity actual = base64DiffController.getDiff(id, diffQuery, "\"tag\"", null);
+
+        assertEquals(expected, actual);
+        verify(diffService, never()).getDiffResult(any(), any(), any());
+    }
+
+    /**
+     * Test: Adds data to an id owned by another member of the cluster on a request that
+     * was already forwarded, the request is handled locally
+     */
+    @Test
+    public void testLeftInputAlreadyForwarded () {
+        Base64DataPayload leftPayload = new Base64DataPayload();
+        leftPayload.setData("dGVsZXR1Ymll");
+        String id = "1";
+
+        ResponseEntity expected = new ResponseEntity (new Base64Data(id, leftPayload.getData(), ""), HttpStatus.CREATED);
+
+        when(diffService.inputLeft(eq(id), any(), isNull())).thenReturn(expected);
+
+        ResponseEntity actual = base64DiffController.inputLeft(id, leftPayload, null, "localhost:8082");
+
+        assertEquals(expected, actual);
+        verify(clusterService).findRemoteOwner(id, "localhost:8082");
+        verify(clusterService, never()).forward(any(), any(), any(), any(), any());
+    }
+
+    /**
+     * Test: Conditional updates of an id owned by another member of the cluster
+     * are forwarded to the owner with the entity tags of the client
+     */
+    @Test
+    public void testRightInputConditionalForwarded () {
+        Base64DataPayload rightPayload = new Base64DataPayload();
+        rightPayload.setData("dGVsZXR1Ymll");
+        String id = "1";
+        String owner = "localhost:8081";
+        ResponseEntity expected = new ResponseEntity ("{\"errorCode\":\"412\"}", HttpStatus.PRECONDITION_FAILED);
+
+        when(clusterService.findRemoteOwner(eq(id), isNull())).thenReturn(owner);
+        when(clusterService.forward(eq(owner), eq(HttpMethod.POST), eq("/v1/diff/1/right"), eq(rightPayload),
+                argThat(headers -> headers.getIfMatch().contains("\"tag\"")))).thenReturn(expected);
 
-        ResponseEntity actual = base64DiffController.getDiff(id);
+        ResponseEntity actual = base64DiffController.inputRight(id, rightPayload, "\"tag\"", null);
 
         assertEquals(expected, actual);
+        verify(diffService, never()).inputRight(any(), any(), any());
     }
 }
@@ -0,0 +1,106 @@
+package org.juliazo.diff.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.juliazo.diff.cluster.ClusterService;
+import org.juliazo.diff.model.ErrorPayload;
+import org.juliazo.diff.service.DiffService;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the endpoint streaming the differences in binary
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class DiffRunsControllerTest {
+
+    /**
+     * The controller responsible for handling the streaming requests
+     */
+    @InjectMocks
+    private DiffRunsController diffRunsController;
+
+    /**
+     * The service that streams the differences
+     */
+    @Mock
+    private DiffService diffService;
+
+    /**
+     * The cluster service, no remote owner is found unless stated by the test
+     */
+    @Mock
+    private ClusterService clusterService;
+
+    /**
+     * The object mapper, writes the error messages
+     */
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * Test: The stream of the service is returned as it is
+     */
+    @Test
+    public void testStreamDifferences () {
+        StreamingResponseBody body = out -> out.write(new byte[DiffService.RUN_SIZE]);
+        ResponseEntity expected = ResponseEntity.ok(body);
+        when(diffService.streamDifferences("1")).thenReturn(expected);
+
+        assertSame(expected, diffRunsController.streamDifferences("1", null));
+    }
+
+    /**
+     * Test: Error messages are written as JSON
+     *
+     * @throws IOException the io exception
+     */
+    @Test
+    public void testError () throws IOException {
+        ErrorPayload errorPayload = new ErrorPayload();
+        errorPayload.setErrorCode(HttpStatus.NOT_FOUND.toString());
+        errorPayload.setMessage("Data not Found");
+        when(diffService.streamDifferences("1")).thenReturn(new ResponseEntity(errorPayload, HttpStatus.NOT_FOUND));
+
+        ResponseEntity<StreamingResponseBody> actual = diffRunsController.streamDifferences("1", null);
+
+        assertEquals(HttpStatus.NOT_FOUND, actual.getStatusCode());
+        assertEquals(MediaType.APPLICATION_JSON, actual.getHeaders().getContentType());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        actual.getBody().writeTo(out);
+        assertEquals("Data not Found", objectMapper.readValue(out.toByteArray(), ErrorPayload.class).getMessage());
+    }
+
+    /**
+     * Test: Requests for an id owned by another member of the cluster are redirected to the owner
+     */
+    @Test
+    public void testRedirect () {
+        when(clusterService.findRemoteOwner(eq("1"), isNull())).thenReturn("localhost:8082");
+
+        ResponseEntity<StreamingResponseBody> actual = diffRunsController.streamDifferences("1", null);
+
+        assertEquals(HttpStatus.TEMPORARY_REDIRECT, actual.getStatusCode());
+        assertEquals("http://localhost:8082/v1/diff/1/runs", actual.getHeaders().getLocation().toString());
+        verify(diffService, never()).streamDifferences(anyString());
+    }
+}
@@ -0,0 +1,54 @@
+package org.juliazo.diff.controller;
+
+import org.juliazo.diff.model.ExportRequest;
+import org.juliazo.diff.model.ExportStatus;
+import org.juliazo.diff.service.ExportService;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the bulk export endpoints of the rest application
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class ExportControllerTest {
+
+    /**
+     * The controller responsible for handling import REST requests
+     */
+    @InjectMocks
+    private ExportController exportController;
+
+    /**
+     * The service that runs the exports
+     */
+    @Mock
+    private ExportService exportService;
+
+    /**
+     * Test: Resumes an export and gets its status
+     */
+    @Test
+    public void testExport () {
+        ExportStatus exportStatus = new ExportStatus();
+        exportStatus.setFile("snapshot.ndjson");
+        ResponseEntity accepted = new ResponseEntity(exportStatus, HttpStatus.ACCEPTED);
+        ResponseEntity ok = new ResponseEntity(exportStatus, HttpStatus.OK);
+        ExportRequest exportRequest = new ExportRequest();
+        exportRequest.setFile("snapshot.ndjson");
+        exportRequest.setResume(true);
+
+        when(exportService.start("snapshot.ndjson", true)).thenReturn(accepted);
+        when(exportService.getStatus()).thenReturn(ok);
+
+        assertEquals(accepted, exportController.start(exportRequest));
+        assertEquals(ok, exportController.getStatus());
+    }
+}
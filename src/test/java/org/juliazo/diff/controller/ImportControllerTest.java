@@ -0,0 +1,53 @@
+package org.juliazo.diff.controller;
+
+import org.juliazo.diff.model.ImportRequest;
+import org.juliazo.diff.model.ImportStatus;
+import org.juliazo.diff.service.ImportService;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the bulk import endpoints of the rest application
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class ImportControllerTest {
+
+    /**
+     * The controller responsible for handling import REST requests
+     */
+    @InjectMocks
+    private ImportController importController;
+
+    /**
+     * The service that runs the imports
+     */
+    @Mock
+    private ImportService importService;
+
+    /**
+     * Test: Starts an import and gets its status
+     */
+    @Test
+    public void testImport () {
+        ImportStatus importStatus = new ImportStatus();
+        importStatus.setFile("baseline.ndjson");
+        ResponseEntity accepted = new ResponseEntity(importStatus, HttpStatus.ACCEPTED);
+        ResponseEntity ok = new ResponseEntity(importStatus, HttpStatus.OK);
+        ImportRequest importRequest = new ImportRequest();
+        importRequest.setFile("baseline.ndjson");
+
+        when(importService.start("baseline.ndjson")).thenReturn(accepted);
+        when(importService.getStatus()).thenReturn(ok);
+
+        assertEquals(accepted, importController.start(importRequest));
+        assertEquals(ok, importController.getStatus());
+    }
+}
@@ -0,0 +1,129 @@
+package org.juliazo.diff.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.juliazo.diff.cluster.ClusterService;
+import org.juliazo.diff.model.Base64Data;
+import org.juliazo.diff.model.Base64DataPayload;
+import org.juliazo.diff.service.IngestService;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.argThat;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the streaming ingest endpoint of the rest application
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class IngestControllerTest {
+
+    /**
+     * The controller responsible for handling ingest REST requests
+     */
+    @InjectMocks
+    private IngestController ingestController;
+
+    /**
+     * The service that decodes the payloads
+     */
+    @Mock
+    private IngestService ingestService;
+
+    /**
+     * The cluster service, no remote owner is found unless stated by the test
+     */
+    @Mock
+    private ClusterService clusterService;
+
+    /**
+     * The object mapper, reads the payloads of forwarded requests
+     */
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * Test: The request body is handed to the ingest service
+     *
+     * @throws IOException the io exception
+     */
+    @Test
+    public void testIngest () throws IOException {
+        MockHttpServletRequest request = request("{\"data\":\"dGVs\"}");
+        ResponseEntity expected = new ResponseEntity(new Base64Data("1", "dGVs", ""), HttpStatus.CREATED);
+        when(ingestService.ingest(eq("1"), eq("left"), any(), eq(15L), eq("\"tag\""))).thenReturn(expected);
+
+        assertEquals(expected, ingestController.ingest("1", "left", request, "\"tag\"", null));
+    }
+
+    /**
+     * Test: Requests for an id owned by another member of the cluster are forwarded to the owner
+     *
+     * @throws IOException the io exception
+     */
+    @Test
+    public void testIngestForwarded () throws IOException {
+        ResponseEntity expected = new ResponseEntity(new Base64Data("1", "", "dGVs"), HttpStatus.CREATED);
+        when(clusterService.findRemoteOwner(eq("1"), isNull())).thenReturn("localhost:8082");
+        when(clusterService.forward(eq("localhost:8082"), eq(HttpMethod.POST), eq("/v1/diff/1/right/ingest"),
+                any(Base64DataPayload.class), any(HttpHeaders.class))).thenReturn(expected);
+
+        assertEquals(expected, ingestController.ingest("1", "right", request("{\"data\":\"dGVs\"}"), null, null));
+        verify(ingestService, never()).ingest(anyString(), anyString(), any(), anyLong(), any());
+    }
+
+    /**
+     * Test: Raw request bodies are handed to the ingest service, and forwarded encoded to the owner of the id
+     *
+     * @throws IOException the io exception
+     */
+    @Test
+    public void testIngestRaw () throws IOException {
+        ResponseEntity expected = new ResponseEntity(new Base64Data("1", "dGVs", ""), HttpStatus.CREATED);
+        when(ingestService.ingestRaw(eq("1"), eq("left"), any(), eq(3L), isNull())).thenReturn(expected);
+        assertEquals(expected, ingestController.ingestRaw("1", "left", request("tel"), null, null));
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag("\"tag\"");
+        ResponseEntity forwarded = new ResponseEntity(new Base64Data("2", "dGVs", ""), headers, HttpStatus.CREATED);
+        when(clusterService.findRemoteOwner(eq("2"), isNull())).thenReturn("localhost:8082");
+        when(clusterService.forward(eq("localhost:8082"), eq(HttpMethod.POST), eq("/v1/diff/2/left/ingest"),
+                argThat(payload -> "dGVs".equals(((Base64DataPayload) payload).getData())), any(HttpHeaders.class)))
+                .thenReturn(forwarded);
+        ResponseEntity actual = ingestController.ingestRaw("2", "left", request("tel"), null, null);
+        assertEquals(HttpStatus.CREATED, actual.getStatusCode());
+        assertEquals("\"tag\"", actual.getHeaders().getETag());
+        assertNull(actual.getBody());
+    }
+
+    /**
+     * Mounts a request with the given body.
+     *
+     * @param body  the body
+     * @return the request
+     */
+    private static MockHttpServletRequest request(String body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/v1/diff/1/left/ingest");
+        request.setContent(body.getBytes());
+        return request;
+    }
+}
@@ -0,0 +1,83 @@
+package org.juliazo.diff.controller;
+
+import org.juliazo.diff.cluster.ClusterService;
+import org.juliazo.diff.service.SubscriptionService;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the subscription endpoint of the rest application
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class SubscriptionControllerTest {
+
+    /**
+     * The controller responsible for handling subscription REST requests
+     */
+    @InjectMocks
+    private SubscriptionController subscriptionController;
+
+    /**
+     * The service that holds the subscribers
+     */
+    @Mock
+    private SubscriptionService subscriptionService;
+
+    /**
+     * The cluster service, no remote owner is found unless stated by the test
+     */
+    @Mock
+    private ClusterService clusterService;
+
+    /**
+     * Test: Subscribes to an id, resuming from the last event received
+     */
+    @Test
+    public void testSubscribe () {
+        SseEmitter emitter = new SseEmitter();
+        when(subscriptionService.subscribe("1", "\"tag\"")).thenReturn(emitter);
+
+        ResponseEntity<SseEmitter> response = subscriptionController.subscribe("1", "\"tag\"");
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertSame(emitter, response.getBody());
+    }
+
+    /**
+     * Test: Subscriptions beyond the limit are rejected
+     */
+    @Test
+    public void testTooManySubscribers () {
+        ResponseEntity<SseEmitter> response = subscriptionController.subscribe("1", null);
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+        assertEquals("1", response.getHeaders().getFirst("Retry-After"));
+    }
+
+    /**
+     * Test: Subscriptions to an id owned by another member of the cluster are redirected to the owner
+     */
+    @Test
+    public void testSubscribeRedirected () {
+        when(clusterService.findRemoteOwner("1")).thenReturn("localhost:8082");
+
+        ResponseEntity<SseEmitter> response = subscriptionController.subscribe("1", null);
+
+        assertEquals(HttpStatus.TEMPORARY_REDIRECT, response.getStatusCode());
+        assertEquals("http://localhost:8082/v1/diff/1/events", response.getHeaders().getLocation().toString());
+        verify(subscriptionService, never()).subscribe(any(), any());
+    }
+}
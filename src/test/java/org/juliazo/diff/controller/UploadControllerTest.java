@@ -0,0 +1,101 @@
+package org.juliazo.diff.controller;
+
+import org.juliazo.diff.cluster.ClusterService;
+import org.juliazo.diff.model.Base64Data;
+import org.juliazo.diff.model.Base64DataPayload;
+import org.juliazo.diff.model.UploadRequest;
+import org.juliazo.diff.model.UploadStatus;
+import org.juliazo.diff.service.UploadService;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the chunked upload endpoints of the rest application
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class UploadControllerTest {
+
+    /**
+     * The controller responsible for handling upload REST requests
+     */
+    @InjectMocks
+    private UploadController uploadController;
+
+    /**
+     * The service that holds the uploads in progress
+     */
+    @Mock
+    private UploadService uploadService;
+
+    /**
+     * The cluster service, no remote owner is found unless stated by the test
+     */
+    @Mock
+    private ClusterService clusterService;
+
+    /**
+     * Test: Starts an upload, sends a chunk, gets its status and commits it, and aborts another one
+     */
+    @Test
+    public void testUpload () {
+        UploadStatus uploadStatus = new UploadStatus();
+        uploadStatus.setUploadId("upload");
+        ResponseEntity created = new ResponseEntity(uploadStatus, HttpStatus.CREATED);
+        ResponseEntity ok = new ResponseEntity(uploadStatus, HttpStatus.OK);
+        ResponseEntity committed = new ResponseEntity(new Base64Data("1", "dGVs", ""), HttpStatus.CREATED);
+        UploadRequest uploadRequest = new UploadRequest();
+        uploadRequest.setChunks(1);
+        Base64DataPayload chunk = new Base64DataPayload();
+        chunk.setData("dGVs");
+
+        when(uploadService.begin("1", "left", 1)).thenReturn(created);
+        when(uploadService.putChunk("1", "left", "upload", 0, "dGVs")).thenReturn(ok);
+        when(uploadService.getStatus("1", "left", "upload")).thenReturn(ok);
+        when(uploadService.commit("1", "left", "upload")).thenReturn(committed);
+        ResponseEntity aborted = new ResponseEntity(HttpStatus.NO_CONTENT);
+        when(uploadService.abort("1", "left", "other")).thenReturn(aborted);
+
+        assertEquals(created, uploadController.begin("1", "left", uploadRequest, null));
+        assertEquals(ok, uploadController.putChunk("1", "left", "upload", 0, chunk, null));
+        assertEquals(ok, uploadController.getStatus("1", "left", "upload", null));
+        assertEquals(committed, uploadController.commit("1", "left", "upload", null));
+        assertEquals(aborted, uploadController.abort("1", "left", "other", null));
+    }
+
+    /**
+     * Test: Upload requests for an id owned by another member of the cluster are forwarded to the owner
+     */
+    @Test
+    public void testUploadForwarded () {
+        String owner = "localhost:8081";
+        ResponseEntity expected = new ResponseEntity("{}", HttpStatus.OK);
+        Base64DataPayload chunk = new Base64DataPayload();
+        chunk.setData("dGVs");
+
+        when(clusterService.findRemoteOwner(eq("1"), isNull())).thenReturn(owner);
+        when(clusterService.forward(eq(owner), eq(HttpMethod.PUT), eq("/v1/diff/1/right/uploads/upload/chunks/3"),
+                eq(chunk))).thenReturn(expected);
+        when(clusterService.forward(eq(owner), eq(HttpMethod.POST), eq("/v1/diff/1/right/uploads/upload/commit"),
+                isNull())).thenReturn(expected);
+
+        assertEquals(expected, uploadController.putChunk("1", "right", "upload", 3, chunk, null));
+        assertEquals(expected, uploadController.commit("1", "right", "upload", null));
+        verify(uploadService, never()).putChunk(any(), any(), any(), anyInt(), any());
+        verify(uploadService, never()).commit(any(), any(), any());
+    }
+}
@@ -0,0 +1,89 @@
+package org.juliazo.diff.controller;
+
+import org.juliazo.diff.cluster.ClusterService;
+import org.juliazo.diff.model.DiffQuery;
+import org.juliazo.diff.model.DiffResult;
+import org.juliazo.diff.model.SideVersion;
+import org.juliazo.diff.service.DiffService;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the version endpoints of the rest application
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class VersionControllerTest {
+
+    /**
+     * The controller responsible for handling version REST requests
+     */
+    @InjectMocks
+    private VersionController versionController;
+
+    /**
+     * The service that holds the entire functionality of the application
+     */
+    @Mock
+    private DiffService diffService;
+
+    /**
+     * The cluster service, no remote owner is found unless stated by the test
+     */
+    @Mock
+    private ClusterService clusterService;
+
+    /**
+     * Test: Lists the versions of a side and compares two of them
+     */
+    @Test
+    public void testVersions () {
+        ResponseEntity versions = new ResponseEntity(Collections.singletonList(new SideVersion()), HttpStatus.OK);
+        ResponseEntity diff = new ResponseEntity(new DiffResult(), HttpStatus.OK);
+        DiffQuery diffQuery = new DiffQuery();
+
+        when(diffService.getVersions("1", "left")).thenReturn(versions);
+        when(diffService.getVersionDiffResult("1", "left", 1, 2, diffQuery)).thenReturn(diff);
+
+        assertEquals(versions, versionController.getVersions("1", "left", null));
+        assertEquals(diff, versionController.getVersionDiff("1", "left", 1, 2, diffQuery, null));
+    }
+
+    /**
+     * Test: Version requests for an id owned by another member of the cluster are forwarded to the owner
+     */
+    @Test
+    public void testVersionsForwarded () {
+        String owner = "localhost:8081";
+        ResponseEntity expected = new ResponseEntity("[]", HttpStatus.OK);
+        DiffQuery diffQuery = new DiffQuery();
+        diffQuery.setMode(DiffQuery.MODE_SUMMARY);
+
+        when(clusterService.findRemoteOwner(eq("1"), isNull())).thenReturn(owner);
+        when(clusterService.forward(eq(owner), eq(HttpMethod.GET), eq("/v1/diff/1/right/versions"), isNull()))
+                .thenReturn(expected);
+        when(clusterService.forward(eq(owner), eq(HttpMethod.GET),
+                eq("/v1/diff/1/right/versions/1/diff/3?mode=summary"), isNull())).thenReturn(expected);
+
+        assertEquals(expected, versionController.getVersions("1", "right", null));
+        assertEquals(expected, versionController.getVersionDiff("1", "right", 1, 3, diffQuery, null));
+        verify(diffService, never()).getVersions(any(), any());
+        verify(diffService, never()).getVersionDiffResult(any(), any(), anyLong(), anyLong(), any());
+    }
+}
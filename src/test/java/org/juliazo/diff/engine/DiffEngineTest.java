@@ -0,0 +1,451 @@
+package org.juliazo.diff.engine;
+
+import org.juliazo.diff.commons.buffer.ByteArrayPool;
+import org.juliazo.diff.model.DiffBytes;
+import org.juliazo.diff.model.DiffEstimate;
+import org.juliazo.diff.model.DiffQuery;
+import org.juliazo.diff.model.DiffResult;
+import org.juliazo.diff.model.DiffSummary;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test class for {@link org.juliazo.diff.engine.DiffEngine}
+ */
+public class DiffEngineTest {
+
+    /**
+     * Test: Equal sides have no differences
+     *
+     * @throws IOException the io exception
+     */
+    @Test
+    public void testEqual () throws IOException {
+        byte[] data = {1, 2, 3, 4, 5};
+        assertTrue(new DiffEngine().findDifferences(stream(data), stream(data.clone())).isEmpty());
+    }
+
+    /**
+     * Test: Sequences of different bytes that cross chunk boundaries are reported as one difference,
+     * even when the streams return fewer bytes than requested
+     *
+     * @throws IOException the io exception
+     */
+    @Test
+    public void testDifferencesAcrossChunks () throws IOException {
+        byte[] right = new byte[20];
+        byte[] left = new byte[20];
+        for (int i : new int[] {0, 3, 4, 5, 6, 7, 12, 19}) {
+            left[i] = 1;
+        }
+
+        List<DiffBytes> differences = new DiffEngine(4).findDifferences(trickle(right), stream(left));
+
+        assertEquals(4, differences.size());
+        assertDiff(differences.get(0), 0, 1);
+        assertDiff(differences.get(1), 3, 5);
+        assertDiff(differences.get(2), 12, 1);
+        assertDiff(differences.get(3), 19, 1);
+    }
+
+    /**
+     * Test: Sides of different lengths are rejected
+     *
+     * @throws IOException the io exception
+     */
+    @Test (expected = IOException.class)
+    public void testDifferentLengths () throws IOException {
+        new DiffEngine().findDifferences(stream(new byte[3]), stream(new byte[2]));
+    }
+
+    /**
+     * Test: The summary agrees with the differences located by the full diff, for sequences
+     * of different bytes at any position of the 64 bit words and across chunks
+     *
+     * @throws IOException the io exception
+     */
+    @Test
+    public void testSummaryMatchesDifferences () throws IOException {
+        Random random = new Random(13);
+        for (int round = 0; round < 50; round++) {
+            byte[] right = new byte[random.nextInt(300)];
+            random.nextBytes(right);
+            byte[] left = right.clone();
+            for (int i = 0; i < left.length; i++) {
+                if (random.nextInt(4) == 0) {
+                    left[i] ^= 1 << random.nextInt(8);
+                }
+            }
+            DiffEngine diffEngine = new DiffEngine(8 * (1 + random.nextInt(4)) + random.nextInt(2));
+
+            List<DiffBytes> differences = diffEngine.findDifferences(stream(right), stream(left));
+            DiffSummary summary = diffEngine.summarize(trickle(right), stream(left));
+
+            long differentBytes = 0;
+            for (DiffBytes diffBytes : differences) {
+                differentBytes += diffBytes.getLength();
+            }
+            assertEquals(differences.size(), summary.getRuns());
+            assertEquals(differentBytes, summary.getDifferentBytes());
+            //one bit was flipped on each different byte
+            assertEquals(differentBytes, summary.getHammingDistance());
+            assertEquals(right.length == 0 ? 1 : 1 - (double) differentBytes / right.length,
+                    summary.getSimilarity(), 1e-9);
+        }
+    }
+
+    /**
+     * Test: Every bit of a word is counted on the Hamming distance
+     *
+     * @throws IOException the io exception
+     */
+    @Test
+    public void testSummaryHammingDistance () throws IOException {
+        byte[] right = new byte[17];
+        byte[] left = new byte[17];
+        Arrays.fill(left, (byte) 0xFF);
+
+        DiffSummary summary = new DiffEngine().summarize(stream(right), stream(left));
+
+        assertEquals(1, summary.getRuns());
+        assertEquals(17, summary.getDifferentBytes());
+        assertEquals(17 * 8, summary.getHammingDistance());
+        assertEquals(0, summary.getSimilarity(), 0);
+    }
+
+    /**
+     * Test: Sides of different lengths are rejected by the summary
+     *
+     * @throws IOException the io exception
+     */
+    @Test (expected = IOException.class)
+    public void testSummaryDifferentLengths () throws IOException {
+        new DiffEngine().summarize(stream(new byte[3]), stream(new byte[2]));
+    }
+
+    /**
+     * Test: The result is filled with the differences located past 2 GB, or only with their summary
+     *
+     * @throws IOException the io exception
+     */
+    @Test
+    public void testCompare () throws IOException {
+        byte[] right = {1, 2, 3, 4, 5};
+        byte[] left = {1, 0, 0, 4, 0};
+        long start = 3_000_000_000L;
+
+        DiffResult full = new DiffResult();
+        new DiffEngine().compare(stream(right), stream(left), start, new DiffQuery(), full);
+        assertFalse(full.isEquals());
+        assertEquals(2, full.getDifferences().size());
+        assertDiff(full.getDifferences().get(0), start + 1, 2);
+        assertDiff(full.getDifferences().get(1), start + 4, 1);
+        assertNull(full.getSummary());
+
+        DiffQuery summaryQuery = new DiffQuery();
+        summaryQuery.setMode(DiffQuery.MODE_SUMMARY);
+        DiffResult summary = new DiffResult();
+        new DiffEngine().compare(stream(right), stream(left), start, summaryQuery, summary);
+        assertFalse(summary.isEquals());
+        assertEquals(2, summary.getSummary().getRuns());
+        assertNull(summary.getDifferences());
+
+        DiffResult equal = new DiffResult();
+        new DiffEngine().compare(stream(right), stream(right.clone()), 0, new DiffQuery(), equal);
+        assertTrue(equal.isEquals());
+        assertNull(equal.getDifferences());
+    }
+
+    /**
+     * Test: Sequences separated by at most maxGap equal bytes are merged, across chunks,
+     * and a gap of 0 locates the same differences as the exact comparison
+     *
+     * @throws IOException the io exception
+     */
+    @Test
+    public void testMaxGap () throws IOException {
+        byte[] right = {0, 1, 0, 1, 1, 0, 0, 1, 0, 0, 0, 1, 0};
+        byte[] left = new byte[right.length];
+        DiffEngine diffEngine = new DiffEngine(3);
+
+        assertEquals(4, diffEngine.findDifferences(trickle(right), stream(left)).size());
+
+        List<Long> merged = new ArrayList<>();
+        diffEngine.findDifferences(trickle(right), stream(left), 10, 2, (offset, length) -> {
+            merged.add(offset);
+            merged.add(length);
+        });
+        assertEquals(Arrays.asList(11L, 7L, 21L, 1L), merged);
+
+        DiffQuery diffQuery = new DiffQuery();
+        diffQuery.setMaxGap(right.length);
+        DiffResult diffResult = new DiffResult();
+        diffEngine.compare(stream(right), stream(left), 0, diffQuery, diffResult);
+        assertEquals(1, diffResult.getDifferences().size());
+        assertDiff(diffResult.getDifferences().get(0), 1, 11);
+    }
+
+    /**
+     * Test: Records are compared whole, across chunks, and consecutive different records are reported
+     * as a single sequence of their indices, skipping the ignored bytes of each record
+     *
+     * @throws IOException the io exception
+     */
+    @Test
+    public void testCompareRecords () throws IOException {
+        int recordSize = 12;
+        byte[] left = new byte[recordSize * 6];
+        byte[] right = left.clone();
+        //records 1 and 2 on a compared byte of a whole word and of the bytes after it
+        right[recordSize + 2] = 1;
+        right[2 * recordSize + 10] = 1;
+        //record 3 only on an ignored byte
+        right[3 * recordSize + 5] = 1;
+        //record 5 on its last byte
+        right[6 * recordSize - 1] = 1;
+        DiffEngine diffEngine = new DiffEngine(30);
+
+        List<Long> records = new ArrayList<>();
+        diffEngine.compareRecords(trickle(right), stream(left), 2 * recordSize, recordSize,
+                DiffEngine.comparedRanges(recordSize, "4-8"), (index, count) -> {
+                    records.add(index);
+                    records.add(count);
+                });
+        assertEquals(Arrays.asList(3L, 2L, 7L, 1L), records);
+
+        DiffQuery diffQuery = new DiffQuery();
+        diffQuery.setRecordSize(recordSize);
+        DiffResult diffResult = new DiffResult();
+        diffEngine.compare(stream(right), stream(left), 0, diffQuery, diffResult);
+        assertFalse(diffResult.isEquals());
+        assertNull(diffResult.getDifferences());
+        assertEquals(2, diffResult.getRecords().size());
+        assertEquals(1, diffResult.getRecords().get(0).getIndex());
+        assertEquals(3, diffResult.getRecords().get(0).getCount());
+        assertEquals(5, diffResult.getRecords().get(1).getIndex());
+
+        DiffResult equal = new DiffResult();
+        diffEngine.compare(stream(right), stream(right.clone()), 0, diffQuery, equal);
+        assertTrue(equal.isEquals());
+        assertNull(equal.getRecords());
+    }
+
+    /**
+     * Test: Sides that are not made of whole records are not compared
+     *
+     * @throws IOException the io exception
+     */
+    @Test(expected = IOException.class)
+    public void testPartialRecord () throws IOException {
+        new DiffEngine().compareRecords(stream(new byte[10]), stream(new byte[10]), 0, 4,
+                DiffEngine.comparedRanges(4, null), (index, count) -> { });
+    }
+
+    /**
+     * Test: The compared ranges are the complement of the ignored ones, which may overlap,
+     * and ignored ranges must be within the record
+     */
+    @Test
+    public void testComparedRanges () {
+        assertArrayEquals(new int[] {0, 1, 3, 4}, DiffEngine.comparedRanges(5, "4-5, 1-3"));
+        assertArrayEquals(new int[] {0, 1, 6, 10}, DiffEngine.comparedRanges(10, "1-4,2-6,3-5"));
+        assertArrayEquals(new int[] {0, 2}, DiffEngine.comparedRanges(2, null));
+        assertArrayEquals(new int[0], DiffEngine.comparedRanges(2, "0-2"));
+        assertNull(DiffEngine.comparedRanges(5, "4-6"));
+        assertNull(DiffEngine.comparedRanges(5, "3-3"));
+        assertNull(DiffEngine.comparedRanges(5, "3"));
+        assertNull(DiffEngine.comparedRanges(5, "a-b"));
+        assertNull(DiffEngine.comparedRanges(5, ""));
+    }
+
+    /**
+     * Test: Sampled positions are spread over the range, one on each stratum, or are every position
+     * of a short range
+     */
+    @Test
+    public void testSamplePositions () {
+        int[] positions = DiffEngine.samplePositions(100, 1100, 10, new Random(49));
+        assertEquals(10, positions.length);
+        for (int i = 0; i < positions.length; i++) {
+            assertTrue(positions[i] >= 100 + 100 * i && positions[i] < 200 + 100 * i);
+        }
+        assertTrue(Arrays.equals(new int[] {5, 6, 7}, DiffEngine.samplePositions(5, 8, 10, new Random(49))));
+        assertEquals(0, DiffEngine.samplePositions(5, 5, 10, new Random(49)).length);
+    }
+
+    /**
+     * Test: The ratio of equal bytes estimated by sampling is within its bounds, which are exact
+     * when every byte is sampled
+     */
+    @Test
+    public void testEstimateSampled () {
+        Random random = new Random(49);
+        byte[] left = new byte[1_000_000];
+        byte[] right = left.clone();
+        for (int i = 0; i < right.length; i += 1 + random.nextInt(60)) {
+            right[i] = 1;
+        }
+        long equal = 0;
+        for (int i = 0; i < right.length; i++) {
+            equal += right[i] == left[i] ? 1 : 0;
+        }
+        double similarity = (double) equal / right.length;
+
+        int[] positions = DiffEngine.samplePositions(0, right.length, 4096, random);
+        byte[] rightSample = new byte[positions.length];
+        byte[] leftSample = new byte[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            rightSample[i] = right[positions[i]];
+            leftSample[i] = left[positions[i]];
+        }
+        DiffEstimate estimate = DiffEngine.estimateSampled(rightSample, leftSample, false);
+        assertEquals(DiffEstimate.METHOD_SAMPLING, estimate.getMethod());
+        assertEquals(4096, estimate.getSamples());
+        assertTrue(estimate.getLowerBound() < estimate.getSimilarity());
+        assertTrue(estimate.getUpperBound() > estimate.getSimilarity());
+        assertTrue(estimate.getLowerBound() <= similarity && similarity <= estimate.getUpperBound());
+        assertTrue(estimate.getUpperBound() - estimate.getLowerBound() < 0.02);
+
+        DiffEstimate exact = DiffEngine.estimateSampled(new byte[] {1, 2, 3, 4}, new byte[] {1, 0, 3, 4}, true);
+        assertEquals(0.75, exact.getSimilarity(), 0);
+        assertEquals(0.75, exact.getLowerBound(), 0);
+        assertEquals(0.75, exact.getUpperBound(), 0);
+        DiffEstimate empty = DiffEngine.estimateSampled(new byte[0], new byte[0], true);
+        assertEquals(1, empty.getSimilarity(), 0);
+    }
+
+    /**
+     * Test: Sides of different sizes are compared by MinHash, exactly when they are shorter than the samples
+     *
+     * @throws IOException the io exception
+     */
+    @Test
+    public void testEstimateMinHash () throws IOException {
+        byte[] left = new byte[200000];
+        new Random(49).nextBytes(left);
+        byte[] right = Arrays.copyOf(left, 150000);
+        DiffEngine diffEngine = new DiffEngine(1000);
+
+        DiffEstimate estimate = diffEngine.estimateMinHash(trickle(right), stream(left), 1024);
+        assertEquals(DiffEstimate.METHOD_MINHASH, estimate.getMethod());
+        assertEquals(1024, estimate.getSamples());
+        assertEquals(0.75, estimate.getSimilarity(), 0.05);
+        assertTrue(estimate.getLowerBound() <= 0.75 && 0.75 <= estimate.getUpperBound());
+
+        DiffEstimate small = diffEngine.estimateMinHash(stream("telefunken".getBytes()),
+                stream("telefunke".getBytes()), 1024);
+        //2 of the 3 shingles of 8 bytes are on both sides
+        assertEquals(2.0 / 3, small.getSimilarity(), 1e-9);
+        assertEquals(small.getSimilarity(), small.getLowerBound(), 0);
+        assertEquals(1, diffEngine.estimateMinHash(stream(new byte[0]), stream(new byte[0]), 10).getSimilarity(), 0);
+    }
+
+    /**
+     * Test: Every comparison returns its chunks to the pool, also when it fails,
+     * and the next comparisons reuse them
+     *
+     * @throws IOException the io exception
+     */
+    @Test
+    public void testPooledChunks () throws IOException {
+        ByteArrayPool chunkPool = new ByteArrayPool(2, 1 << 16, 1 << 20);
+        DiffEngine diffEngine = new DiffEngine(1000, chunkPool);
+        byte[] right = new byte[5000];
+        new Random(50).nextBytes(right);
+        byte[] left = right.clone();
+        left[10] ^= 1;
+
+        assertEquals(1, diffEngine.findDifferences(stream(right), stream(left)).size());
+        assertEquals(2, chunkPool.getAvailable());
+        diffEngine.summarize(stream(right), stream(left));
+        diffEngine.compareRecords(stream(right), stream(left), 0, 100, DiffEngine.comparedRanges(100, null),
+                (offset, length) -> { });
+        diffEngine.estimateMinHash(stream(right), stream(left), 16);
+        try {
+            diffEngine.findDifferences(stream(right), stream(new byte[10]));
+            fail();
+        } catch (IOException e) {
+            assertEquals("Sides have different lengths", e.getMessage());
+        }
+        try {
+            diffEngine.findDifferences(stream(right), stream(left), 0, 0, (offset, length) -> {
+                throw new IOException("Closed");
+            });
+            fail();
+        } catch (IOException e) {
+            assertEquals("Closed", e.getMessage());
+        }
+
+        assertEquals(0, chunkPool.getOutstanding());
+        assertEquals(2, chunkPool.getAvailable());
+    }
+
+    /**
+     * Test: A comparison on an interrupted thread stops
+     *
+     * @throws IOException the io exception
+     */
+    @Test (expected = InterruptedIOException.class)
+    public void testInterrupted () throws IOException {
+        Thread.currentThread().interrupt();
+        try {
+            new DiffEngine().findDifferences(stream(new byte[3]), stream(new byte[3]));
+        } finally {
+            //clears the interruption so it does not reach other tests
+            Thread.interrupted();
+        }
+    }
+
+    /**
+     * Checks a difference.
+     *
+     * @param diffBytes the difference
+     * @param offset    the expected offset
+     * @param length    the expected length
+     */
+    private static void assertDiff(DiffBytes diffBytes, long offset, long length) {
+        assertEquals(offset, diffBytes.getOffset());
+        assertEquals(length, diffBytes.getLength());
+    }
+
+    /**
+     * Stream of the given bytes.
+     *
+     * @param data  the bytes
+     * @return the stream
+     */
+    private static InputStream stream(byte[] data) {
+        return new ByteArrayInputStream(data);
+    }
+
+    /**
+     * Stream of the given bytes that returns at most 3 bytes per read, as a decompressing stream may.
+     *
+     * @param data  the bytes
+     * @return the stream
+     */
+    private static InputStream trickle(byte[] data) {
+        return new FilterInputStream(stream(data)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 3));
+            }
+        };
+    }
+}
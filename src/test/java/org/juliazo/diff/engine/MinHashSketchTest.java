@@ -0,0 +1,76 @@
+package org.juliazo.diff.engine;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for {@link org.juliazo.diff.engine.MinHashSketch}
+ */
+public class MinHashSketchTest {
+
+    /**
+     * Test: The sketch keeps the smallest distinct hashes, whatever the chunks the side is added in
+     */
+    @Test
+    public void testHashes () {
+        byte[] side = new byte[100000];
+        new Random(49).nextBytes(side);
+        MinHashSketch whole = new MinHashSketch(64);
+        whole.add(side, 0, side.length);
+        MinHashSketch chunked = new MinHashSketch(64);
+        for (int offset = 0; offset < side.length; offset += 333) {
+            chunked.add(side, offset, Math.min(333, side.length - offset));
+        }
+
+        long[] hashes = whole.getHashes();
+        assertEquals(64, hashes.length);
+        for (int i = 1; i < hashes.length; i++) {
+            assertTrue(hashes[i - 1] < hashes[i]);
+        }
+        assertArrayEquals(hashes, chunked.getHashes());
+
+        //a repeated shingle is kept once
+        MinHashSketch repeated = new MinHashSketch(64);
+        repeated.add(new byte[1000], 0, 1000);
+        assertEquals(1, repeated.getHashes().length);
+        //a side shorter than a shingle is a single shingle
+        MinHashSketch shorter = new MinHashSketch(64);
+        shorter.add(new byte[] {1, 2, 3}, 0, 3);
+        assertEquals(1, shorter.getHashes().length);
+    }
+
+    /**
+     * Test: The share of the smallest hashes found on both sides estimates the share of shingles found on both
+     */
+    @Test
+    public void testCompare () {
+        Random random = new Random(49);
+        byte[] shared = new byte[60000];
+        byte[] rightOnly = new byte[20000];
+        byte[] leftOnly = new byte[20000];
+        random.nextBytes(shared);
+        random.nextBytes(rightOnly);
+        random.nextBytes(leftOnly);
+        MinHashSketch right = new MinHashSketch(1024);
+        right.add(shared, 0, shared.length);
+        right.add(rightOnly, 0, rightOnly.length);
+        MinHashSketch left = new MinHashSketch(1024);
+        left.add(leftOnly, 0, leftOnly.length);
+        left.add(shared, 0, shared.length);
+
+        long[] compared = MinHashSketch.compare(right.getHashes(), left.getHashes(), 1024);
+        assertEquals(1024, compared[1]);
+        //60000 shingles on both out of 100000
+        assertEquals(0.6, (double) compared[0] / compared[1], 0.06);
+
+        long[] same = MinHashSketch.compare(right.getHashes(), right.getHashes(), 1024);
+        assertEquals(same[1], same[0]);
+        long[] empty = MinHashSketch.compare(new long[0], new long[0], 1024);
+        assertEquals(0, empty[1]);
+    }
+}
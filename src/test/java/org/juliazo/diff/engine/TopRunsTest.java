@@ -0,0 +1,90 @@
+package org.juliazo.diff.engine;
+
+import org.juliazo.diff.model.DiffBytes;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for {@link org.juliazo.diff.engine.TopRuns}
+ */
+public class TopRunsTest {
+
+    /**
+     * Test: The largest sequences are kept, the earliest ones on equal lengths, sorted by length or by offset
+     */
+    @Test
+    public void testTopRuns () {
+        TopRuns topRuns = new TopRuns(3);
+        topRuns.run(0, 2);
+        topRuns.run(10, 5);
+        topRuns.run(20, 2);
+        topRuns.run(30, 1);
+        topRuns.run(40, 5);
+        topRuns.run(50, 2);
+
+        assertEquals(6, topRuns.getRuns());
+        List<DiffBytes> byLength = topRuns.toDifferences(false);
+        assertEquals(3, byLength.size());
+        assertDiff(byLength.get(0), 10, 5);
+        assertDiff(byLength.get(1), 40, 5);
+        assertDiff(byLength.get(2), 0, 2);
+        List<DiffBytes> byOffset = topRuns.toDifferences(true);
+        assertDiff(byOffset.get(0), 0, 2);
+        assertDiff(byOffset.get(1), 10, 5);
+        assertDiff(byOffset.get(2), 40, 5);
+    }
+
+    /**
+     * Test: The sequences kept are the same as the first ones of all the sequences sorted by length,
+     * including while the heap grows
+     */
+    @Test
+    public void testMatchesSort () {
+        Random random = new Random(47);
+        for (int k : new int[] {1, 7, 16, 40, 1000}) {
+            TopRuns topRuns = new TopRuns(k);
+            List<DiffBytes> all = new ArrayList<>();
+            long offset = 0;
+            for (int i = 0; i < 500; i++) {
+                long length = 1 + random.nextInt(20);
+                topRuns.run(offset, length);
+                DiffBytes diffBytes = new DiffBytes();
+                diffBytes.setOffset(offset);
+                diffBytes.setLength(length);
+                all.add(diffBytes);
+                offset += length + 1 + random.nextInt(3);
+            }
+            all.sort(Comparator.comparingLong(DiffBytes::getLength).reversed()
+                    .thenComparingLong(DiffBytes::getOffset));
+
+            List<DiffBytes> top = topRuns.toDifferences(false);
+            assertEquals(Math.min(k, all.size()), top.size());
+            for (int i = 0; i < top.size(); i++) {
+                assertDiff(top.get(i), all.get(i).getOffset(), all.get(i).getLength());
+            }
+            List<DiffBytes> byOffset = topRuns.toDifferences(true);
+            for (int i = 1; i < byOffset.size(); i++) {
+                assertTrue(byOffset.get(i - 1).getOffset() < byOffset.get(i).getOffset());
+            }
+        }
+    }
+
+    /**
+     * Checks a difference.
+     *
+     * @param diffBytes the difference
+     * @param offset    the expected offset
+     * @param length    the expected length
+     */
+    private static void assertDiff(DiffBytes diffBytes, long offset, long length) {
+        assertEquals(offset, diffBytes.getOffset());
+        assertEquals(length, diffBytes.getLength());
+    }
+}
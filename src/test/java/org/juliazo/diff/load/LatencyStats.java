@@ -0,0 +1,116 @@
+package org.juliazo.diff.load;
+
+import java.util.Arrays;
+
+/**
+ * Latencies recorded by one virtual user, in microseconds. Not thread safe: each user records
+ * its own latencies and they are merged once the load test is over.
+ */
+public class LatencyStats {
+
+    /**
+     * The latencies recorded.
+     */
+    private long[] latencies = new long[1024];
+
+    /**
+     * How many latencies were recorded.
+     */
+    private int count;
+
+    /**
+     * How many requests failed, counted apart from the latencies.
+     */
+    private long errors;
+
+    /**
+     * Bytes sent and received by the requests recorded, bodies only.
+     */
+    private long bytes;
+
+    /**
+     * Records the latency of a request.
+     *
+     * @param micros the latency, in microseconds
+     */
+    public void record(long micros) {
+        if (count == latencies.length) {
+            latencies = Arrays.copyOf(latencies, count * 2);
+        }
+        latencies[count++] = micros;
+    }
+
+    /**
+     * Records the bytes sent and received by a request.
+     *
+     * @param transferred the bytes of the request and response bodies
+     */
+    public void recordBytes(long transferred) {
+        bytes += transferred;
+    }
+
+    /**
+     * Records a failed request.
+     */
+    public void recordError() {
+        errors++;
+    }
+
+    /**
+     * Adds the latencies recorded by another user.
+     *
+     * @param other the latencies of the other user
+     */
+    public void merge(LatencyStats other) {
+        if (count + other.count > latencies.length) {
+            latencies = Arrays.copyOf(latencies, count + other.count);
+        }
+        System.arraycopy(other.latencies, 0, latencies, count, other.count);
+        count += other.count;
+        errors += other.errors;
+        bytes += other.bytes;
+    }
+
+    /**
+     * Gets how many requests were recorded, including the failed ones.
+     *
+     * @return the number of requests
+     */
+    public long getRequests() {
+        return count + errors;
+    }
+
+    /**
+     * Gets how many requests failed.
+     *
+     * @return the number of errors
+     */
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * Gets the bytes sent and received by the requests recorded.
+     *
+     * @return the bytes of the request and response bodies
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Gets a percentile of the latencies, by the nearest rank.
+     *
+     * @param percentile the percentile, between 0 (exclusive) and 100
+     * @return the latency, in microseconds, 0 if none was recorded
+     */
+    public long percentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        Arrays.sort(latencies, 0, count);
+        //the tolerance keeps e.g. 99.9% of 1000 latencies at rank 999 despite the rounding of 99.9 / 100
+        int rank = (int) Math.ceil(percentile / 100 * count - 1e-9);
+        return latencies[Math.max(rank, 1) - 1];
+    }
+}
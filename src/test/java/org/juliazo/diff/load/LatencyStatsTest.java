@@ -0,0 +1,35 @@
+package org.juliazo.diff.load;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test class for {@link org.juliazo.diff.load.LatencyStats}
+ */
+public class LatencyStatsTest {
+
+    /**
+     * Test: Percentiles are taken by the nearest rank over the latencies of every user
+     */
+    @Test
+    public void testPercentiles () {
+        LatencyStats first = new LatencyStats();
+        LatencyStats second = new LatencyStats();
+        for (int i = 1000; i >= 1; i--) {
+            (i % 2 == 0 ? first : second).record(i);
+            (i % 2 == 0 ? first : second).recordBytes(2);
+        }
+        second.recordError();
+        first.merge(second);
+
+        assertEquals(1001, first.getRequests());
+        assertEquals(1, first.getErrors());
+        assertEquals(2000, first.getBytes());
+        assertEquals(500, first.percentile(50));
+        assertEquals(990, first.percentile(99));
+        assertEquals(999, first.percentile(99.9));
+        assertEquals(1000, first.percentile(100));
+        assertEquals(0, new LatencyStats().percentile(50));
+    }
+}
@@ -0,0 +1,352 @@
+package org.juliazo.diff.load;
+
+import org.apache.tomcat.util.codec.binary.Base64;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives a running Base64 Diff Application with a mix of POSTs to the sides and GETs of the diff,
+ * as described by a {@link LoadProfile}, and measures the latency and the bytes of each request.
+ * With the binary transport the raw sides are sent to the ingest path and the differences are
+ * streamed in binary, to compare with the JSON REST path.
+ *
+ * Virtual users never wait on a thread of their own: each request is scheduled on a shared pool,
+ * and schedules the next one once it returns. With a fixed rate, the latency is measured from the
+ * time the request should have been sent, so a slow response is not hidden by the requests it delayed.
+ */
+public class LoadGenerator {
+
+    /**
+     * How many different payloads are sent to each side.
+     */
+    private static final int VARIANTS = 4;
+
+    /**
+     * The base URL of the diff endpoints, e.g. http://localhost:8080/v1/diff/
+     */
+    private final String baseUrl;
+
+    /**
+     * The load profile.
+     */
+    private final LoadProfile profile;
+
+    /**
+     * Prefix of the ids used, so repeated runs on the same instance do not share ids.
+     */
+    private final String idPrefix = "load-" + Long.toHexString(System.nanoTime()) + "-";
+
+    /**
+     * Request bodies of the left side.
+     */
+    private final byte[][] leftBodies = new byte[VARIANTS][];
+
+    /**
+     * Request bodies of the right side, each differing from the left body of the same variant
+     * on the configured fraction of bytes.
+     */
+    private final byte[][] rightBodies = new byte[VARIANTS][];
+
+    /**
+     * Instantiates a new Load generator.
+     *
+     * @param baseUrl   the base URL of the diff endpoints
+     * @param profile   the load profile
+     */
+    public LoadGenerator(String baseUrl, LoadProfile profile) {
+        this.baseUrl = baseUrl;
+        this.profile = profile;
+        Random random = new Random(42);
+        for (int i = 0; i < VARIANTS; i++) {
+            byte[] left = new byte[profile.getPayloadBytes()];
+            random.nextBytes(left);
+            byte[] right = left.clone();
+            for (int j = 0; j < right.length; j++) {
+                if (random.nextDouble() < profile.getDifferenceDensity()) {
+                    right[j] ^= 1 + random.nextInt(255);
+                }
+            }
+            leftBodies[i] = binary() ? left : body(left);
+            rightBodies[i] = binary() ? right : body(right);
+        }
+    }
+
+    /**
+     * Sends both sides of every id, then runs the load test.
+     *
+     * @return the report of the measured requests
+     * @throws IOException          if the sides cannot be sent before the test
+     * @throws InterruptedException if interrupted while the test runs
+     */
+    public LoadReport run() throws IOException, InterruptedException {
+        for (int i = 0; i < profile.getIds(); i++) {
+            int variant = i % VARIANTS;
+            expectSuccess(send("POST", postPath(i, true), leftBodies[variant]).status);
+            expectSuccess(send("POST", postPath(i, false), rightBodies[variant]).status);
+        }
+
+        ScheduledExecutorService pool = Executors.newScheduledThreadPool(profile.getConcurrency());
+        long start = System.nanoTime();
+        long measureStart = start + TimeUnit.SECONDS.toNanos(profile.getWarmupSeconds());
+        long end = measureStart + TimeUnit.SECONDS.toNanos(profile.getDurationSeconds());
+        long interval = profile.getRate() == 0 ? 0 : TimeUnit.SECONDS.toNanos(profile.getConcurrency()) / profile.getRate();
+        CountDownLatch finished = new CountDownLatch(profile.getConcurrency());
+        List<VirtualUser> users = new ArrayList<>();
+        for (int i = 0; i < profile.getConcurrency(); i++) {
+            //users with a fixed rate are spread over the interval
+            VirtualUser user = new VirtualUser(pool, i, start + interval * i / profile.getConcurrency(), interval,
+                    measureStart, end, finished);
+            users.add(user);
+            pool.execute(user);
+        }
+        finished.await();
+        pool.shutdown();
+
+        LatencyStats posts = new LatencyStats();
+        LatencyStats gets = new LatencyStats();
+        for (VirtualUser user : users) {
+            posts.merge(user.posts);
+            gets.merge(user.gets);
+        }
+        return new LoadReport(profile, posts, gets);
+    }
+
+    /**
+     * Whether the binary transport is used.
+     *
+     * @return true for the binary transport, false for JSON
+     */
+    private boolean binary() {
+        return LoadProfile.TRANSPORT_BINARY.equals(profile.getTransport());
+    }
+
+    /**
+     * Mounts the path of a POST to a side on the transport of the profile.
+     *
+     * @param id    the number of the id
+     * @param left  whether the left side is sent
+     * @return the path after the base URL
+     */
+    private String postPath(int id, boolean left) {
+        return idPrefix + id + (left ? "/left" : "/right") + (binary() ? "/ingest" : "");
+    }
+
+    /**
+     * Mounts the path of a GET of the diff on the transport of the profile.
+     *
+     * @param id    the number of the id
+     * @return the path after the base URL
+     */
+    private String getPath(int id) {
+        return idPrefix + id + (binary() ? "/runs" : "");
+    }
+
+    /**
+     * Sends a request and reads the whole response, so the connection can be reused.
+     *
+     * @param method    the HTTP method
+     * @param path      the path after the base URL
+     * @param body      the body on the transport of the profile, null for requests without a body
+     * @return the response
+     * @throws IOException if the request fails
+     */
+    private Response send(String method, String path, byte[] body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setRequestMethod(method);
+        long bytes = 0;
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", binary() ? "application/octet-stream" : "application/json");
+            connection.setFixedLengthStreamingMode(body.length);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+            bytes += body.length;
+        }
+        int status = connection.getResponseCode();
+        try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            if (in != null) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) >= 0) {
+                    //discards the response
+                    bytes += read;
+                }
+            }
+        }
+        return new Response(status, bytes);
+    }
+
+    /**
+     * Checks that a request sent before the test succeeded.
+     *
+     * @param status the response status
+     * @throws IOException if the request failed
+     */
+    private static void expectSuccess(int status) throws IOException {
+        if (status >= 300) {
+            throw new IOException("Could not send the sides before the load test: " + status);
+        }
+    }
+
+    /**
+     * Mounts the JSON body of a POST to a side.
+     *
+     * @param raw   the decoded data
+     * @return the body
+     */
+    private static byte[] body(byte[] raw) {
+        return ("{\"data\":\"" + Base64.encodeBase64String(raw) + "\"}").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * A virtual user: sends one request at a time, each scheduled once the previous one returns.
+     */
+    private class VirtualUser implements Runnable {
+
+        /**
+         * The pool the requests are scheduled on.
+         */
+        private final ScheduledExecutorService pool;
+
+        /**
+         * Chooses the requests of this user.
+         */
+        private final Random random;
+
+        /**
+         * Time between the requests of this user, in nanoseconds, 0 for as fast as possible.
+         */
+        private final long interval;
+
+        /**
+         * When the requests start being measured, in nanoseconds.
+         */
+        private final long measureStart;
+
+        /**
+         * When the test ends, in nanoseconds.
+         */
+        private final long end;
+
+        /**
+         * Counted down once this user is done.
+         */
+        private final CountDownLatch finished;
+
+        /**
+         * When the next request should be sent, in nanoseconds, with a fixed rate.
+         */
+        private long nextRequest;
+
+        /**
+         * Latencies of the POSTs.
+         */
+        private final LatencyStats posts = new LatencyStats();
+
+        /**
+         * Latencies of the GETs.
+         */
+        private final LatencyStats gets = new LatencyStats();
+
+        /**
+         * Instantiates a new Virtual user.
+         *
+         * @param pool          the pool the requests are scheduled on
+         * @param number        the number of the user, seeds its choices
+         * @param firstRequest  when the first request should be sent, in nanoseconds
+         * @param interval      time between the requests, in nanoseconds, 0 for as fast as possible
+         * @param measureStart  when the requests start being measured, in nanoseconds
+         * @param end           when the test ends, in nanoseconds
+         * @param finished      counted down once this user is done
+         */
+        private VirtualUser(ScheduledExecutorService pool, int number, long firstRequest, long interval,
+                            long measureStart, long end, CountDownLatch finished) {
+            this.pool = pool;
+            this.random = new Random(number);
+            this.nextRequest = firstRequest;
+            this.interval = interval;
+            this.measureStart = measureStart;
+            this.end = end;
+            this.finished = finished;
+        }
+
+        @Override
+        public void run() {
+            long now = System.nanoTime();
+            long intended = interval == 0 ? now : nextRequest;
+            if (intended >= end) {
+                finished.countDown();
+                return;
+            }
+            int id = random.nextInt(profile.getIds());
+            boolean post = random.nextDouble() < profile.getPostRatio();
+            Response response;
+            try {
+                if (post) {
+                    int variant = random.nextInt(VARIANTS);
+                    boolean left = random.nextBoolean();
+                    response = send("POST", postPath(id, left), left ? leftBodies[variant] : rightBodies[variant]);
+                } else {
+                    response = send("GET", getPath(id), null);
+                }
+            } catch (IOException e) {
+                response = new Response(-1, 0);
+            }
+            if (intended >= measureStart) {
+                LatencyStats stats = post ? posts : gets;
+                if (response.status >= 200 && response.status < 300) {
+                    stats.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intended));
+                    stats.recordBytes(response.bytes);
+                } else {
+                    stats.recordError();
+                }
+            }
+            if (interval == 0) {
+                pool.execute(this);
+            } else {
+                nextRequest += interval;
+                pool.schedule(this, nextRequest - System.nanoTime(), TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    /**
+     * The outcome of a request.
+     */
+    private static class Response {
+
+        /**
+         * The response status, -1 if the request failed.
+         */
+        private final int status;
+
+        /**
+         * Bytes of the request and response bodies.
+         */
+        private final long bytes;
+
+        /**
+         * Instantiates a new Response.
+         *
+         * @param status    the response status
+         * @param bytes     bytes of the request and response bodies
+         */
+        private Response(int status, long bytes) {
+            this.status = status;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package org.juliazo.diff.load;
+
+/**
+ * Configuration of a load test: the mix of requests, the data sent and how hard the application is driven.
+ * Every value can be set as a system property prefixed by "load.", e.g. -Dload.concurrency=64.
+ */
+public class LoadProfile {
+
+    /**
+     * Transport sending the sides Base64 encoded in JSON and reading the diff as JSON.
+     */
+    public static final String TRANSPORT_JSON = "json";
+
+    /**
+     * Transport sending the raw bytes of the sides and streaming the differences in binary.
+     */
+    public static final String TRANSPORT_BINARY = "binary";
+
+    /**
+     * How many virtual users send requests at the same time.
+     */
+    private final int concurrency;
+
+    /**
+     * How long the requests are measured, in seconds.
+     */
+    private final int durationSeconds;
+
+    /**
+     * How long requests are sent before being measured, in seconds.
+     */
+    private final int warmupSeconds;
+
+    /**
+     * Requests per second sent by all users together, 0 to send each request as soon as the previous one returns.
+     */
+    private final int rate;
+
+    /**
+     * Fraction of the requests that are POSTs to a side, the others are GETs of the diff.
+     */
+    private final double postRatio;
+
+    /**
+     * Size of the decoded data of each side, in bytes.
+     */
+    private final int payloadBytes;
+
+    /**
+     * Fraction of the bytes that differ between the sides.
+     */
+    private final double differenceDensity;
+
+    /**
+     * How many ids the requests are spread over.
+     */
+    private final int ids;
+
+    /**
+     * How the sides are sent and the diff read, {@link #TRANSPORT_JSON} or {@link #TRANSPORT_BINARY}.
+     */
+    private final String transport;
+
+    /**
+     * Instantiates a new Load profile.
+     *
+     * @param concurrency       how many virtual users send requests at the same time
+     * @param durationSeconds   how long the requests are measured, in seconds
+     * @param warmupSeconds     how long requests are sent before being measured, in seconds
+     * @param rate              requests per second of all users together, 0 for as fast as possible
+     * @param postRatio         fraction of the requests that are POSTs
+     * @param payloadBytes      size of the decoded data of each side, in bytes
+     * @param differenceDensity fraction of the bytes that differ between the sides
+     * @param ids               how many ids the requests are spread over
+     * @param transport         how the sides are sent and the diff read
+     */
+    public LoadProfile(int concurrency, int durationSeconds, int warmupSeconds, int rate, double postRatio,
+                       int payloadBytes, double differenceDensity, int ids, String transport) {
+        if (concurrency < 1 || durationSeconds < 1 || warmupSeconds < 0 || rate < 0 || postRatio < 0 || postRatio > 1
+                || payloadBytes < 1 || differenceDensity < 0 || differenceDensity > 1 || ids < 1
+                || !(TRANSPORT_JSON.equals(transport) || TRANSPORT_BINARY.equals(transport))) {
+            throw new IllegalArgumentException("Invalid load profile");
+        }
+        this.concurrency = concurrency;
+        this.durationSeconds = durationSeconds;
+        this.warmupSeconds = warmupSeconds;
+        this.rate = rate;
+        this.postRatio = postRatio;
+        this.payloadBytes = payloadBytes;
+        this.differenceDensity = differenceDensity;
+        this.ids = ids;
+        this.transport = transport;
+    }
+
+    /**
+     * Reads the profile from the system properties, with defaults for a short run.
+     *
+     * @return the load profile
+     */
+    public static LoadProfile fromSystemProperties() {
+        return new LoadProfile(
+                Integer.getInteger("load.concurrency", 16),
+                Integer.getInteger("load.duration-seconds", 10),
+                Integer.getInteger("load.warmup-seconds", 3),
+                Integer.getInteger("load.rate", 0),
+                Double.parseDouble(System.getProperty("load.post-ratio", "0.2")),
+                Integer.getInteger("load.payload-bytes", 4096),
+                Double.parseDouble(System.getProperty("load.difference-density", "0.01")),
+                Integer.getInteger("load.ids", 100),
+                System.getProperty("load.transport", TRANSPORT_JSON));
+    }
+
+    /**
+     * Gets concurrency.
+     *
+     * @return the concurrency
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Gets duration seconds.
+     *
+     * @return the duration seconds
+     */
+    public int getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    /**
+     * Gets warmup seconds.
+     *
+     * @return the warmup seconds
+     */
+    public int getWarmupSeconds() {
+        return warmupSeconds;
+    }
+
+    /**
+     * Gets rate.
+     *
+     * @return the rate, 0 for as fast as possible
+     */
+    public int getRate() {
+        return rate;
+    }
+
+    /**
+     * Gets post ratio.
+     *
+     * @return the post ratio
+     */
+    public double getPostRatio() {
+        return postRatio;
+    }
+
+    /**
+     * Gets payload bytes.
+     *
+     * @return the payload bytes
+     */
+    public int getPayloadBytes() {
+        return payloadBytes;
+    }
+
+    /**
+     * Gets difference density.
+     *
+     * @return the difference density
+     */
+    public double getDifferenceDensity() {
+        return differenceDensity;
+    }
+
+    /**
+     * Gets ids.
+     *
+     * @return the ids
+     */
+    public int getIds() {
+        return ids;
+    }
+
+    /**
+     * Gets transport.
+     *
+     * @return the transport
+     */
+    public String getTransport() {
+        return transport;
+    }
+
+    @Override
+    public String toString() {
+        return "concurrency=" + concurrency + ", duration=" + durationSeconds + "s, warmup=" + warmupSeconds
+                + "s, rate=" + (rate == 0 ? "max" : rate + "/s") + ", postRatio=" + postRatio
+                + ", payloadBytes=" + payloadBytes + ", differenceDensity=" + differenceDensity + ", ids=" + ids
+                + ", transport=" + transport;
+    }
+}
@@ -0,0 +1,87 @@
+package org.juliazo.diff.load;
+
+import java.io.PrintStream;
+
+/**
+ * Throughput and latency percentiles of a load test, by type of request.
+ */
+public class LoadReport {
+
+    /**
+     * The load profile of the test.
+     */
+    private final LoadProfile profile;
+
+    /**
+     * Latencies of the POSTs to the sides.
+     */
+    private final LatencyStats posts;
+
+    /**
+     * Latencies of the GETs of the diff.
+     */
+    private final LatencyStats gets;
+
+    /**
+     * Instantiates a new Load report.
+     *
+     * @param profile   the load profile of the test
+     * @param posts     latencies of the POSTs to the sides
+     * @param gets      latencies of the GETs of the diff
+     */
+    public LoadReport(LoadProfile profile, LatencyStats posts, LatencyStats gets) {
+        this.profile = profile;
+        this.posts = posts;
+        this.gets = gets;
+    }
+
+    /**
+     * Gets how many requests failed.
+     *
+     * @return the number of errors
+     */
+    public long getErrors() {
+        return posts.getErrors() + gets.getErrors();
+    }
+
+    /**
+     * Gets how many requests were measured.
+     *
+     * @return the number of requests
+     */
+    public long getRequests() {
+        return posts.getRequests() + gets.getRequests();
+    }
+
+    /**
+     * Prints the report as a table, one line per type of request and one for all of them.
+     *
+     * @param out the stream printed to
+     */
+    public void print(PrintStream out) {
+        LatencyStats all = new LatencyStats();
+        all.merge(posts);
+        all.merge(gets);
+        out.println("Load profile: " + profile);
+        out.println(String.format("%-5s %10s %8s %12s %10s %10s %10s %12s", "type", "requests", "errors", "req/s",
+                "p50 ms", "p99 ms", "p999 ms", "bytes/req"));
+        printLine(out, "POST", posts);
+        printLine(out, "GET", gets);
+        printLine(out, "ALL", all);
+    }
+
+    /**
+     * Prints the line of a type of request.
+     *
+     * @param out   the stream printed to
+     * @param type  the type of request
+     * @param stats the latencies of the requests
+     */
+    private void printLine(PrintStream out, String type, LatencyStats stats) {
+        long succeeded = stats.getRequests() - stats.getErrors();
+        out.println(String.format("%-5s %10d %8d %12.1f %10.3f %10.3f %10.3f %12d", type, stats.getRequests(),
+                stats.getErrors(), (double) stats.getRequests() / profile.getDurationSeconds(),
+                stats.percentile(50) / 1000.0, stats.percentile(99) / 1000.0, stats.percentile(99.9) / 1000.0,
+                succeeded == 0 ? 0 : stats.getBytes() / succeeded));
+    }
+}
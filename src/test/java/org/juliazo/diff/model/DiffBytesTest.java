@@ -20,8 +20,8 @@ public class DiffBytesTest {
      */
     @Test
     public void testDiffBytes () {
-        int offset = 1;
-        int length = 2;
+        long offset = 3_000_000_000L;
+        long length = 2;
 
         DiffBytes actual = new DiffBytes();
         actual.setOffset(offset);
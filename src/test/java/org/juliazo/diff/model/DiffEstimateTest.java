@@ -0,0 +1,32 @@
+package org.juliazo.diff.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test class for POJO {@link org.juliazo.diff.model.DiffEstimate}
+ */
+public class DiffEstimateTest {
+
+    /**
+     * Creates a new element using the default constructor,
+     * alters the data using the element's set methods and then
+     * checks that data using the element's get methods
+     */
+    @Test
+    public void testDiffEstimate () {
+        DiffEstimate actual = new DiffEstimate();
+        actual.setMethod(DiffEstimate.METHOD_SAMPLING);
+        actual.setSamples(1024);
+        actual.setSimilarity(0.97);
+        actual.setLowerBound(0.95);
+        actual.setUpperBound(0.98);
+
+        assertEquals("sampling", actual.getMethod());
+        assertEquals(1024, actual.getSamples());
+        assertEquals(0.97, actual.getSimilarity(), 0);
+        assertEquals(0.95, actual.getLowerBound(), 0);
+        assertEquals(0.98, actual.getUpperBound(), 0);
+    }
+}
@@ -0,0 +1,96 @@
+package org.juliazo.diff.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for POJO {@link org.juliazo.diff.model.DiffQuery}
+ */
+public class DiffQueryTest {
+
+    /**
+     * Creates a new element using the default constructor,
+     * alters the data using the element's set methods and then
+     * checks that data using the element's get methods
+     */
+    @Test
+    public void testDiffQuery () {
+        DiffQuery actual = new DiffQuery();
+        assertEquals("", actual.toQueryString());
+
+        actual.setTo(10);
+        assertEquals("?to=10", actual.toQueryString());
+
+        actual.setFrom(2);
+        actual.setMode(DiffQuery.MODE_SUMMARY);
+
+        assertEquals(Integer.valueOf(2), actual.getFrom());
+        assertEquals(Integer.valueOf(10), actual.getTo());
+        assertEquals("summary", actual.getMode());
+        assertEquals("?from=2&to=10&mode=summary", actual.toQueryString());
+
+        actual.setLeftVersion(1L);
+        actual.setRightVersion(4L);
+        assertEquals(Long.valueOf(1), actual.getLeftVersion());
+        assertEquals(Long.valueOf(4), actual.getRightVersion());
+        assertEquals("?from=2&to=10&mode=summary&leftVersion=1&rightVersion=4", actual.toQueryString());
+
+        actual.setMaxGap(3);
+        actual.setTop(5);
+        actual.setOrder(DiffQuery.ORDER_OFFSET);
+        assertEquals(Integer.valueOf(3), actual.getMaxGap());
+        assertEquals(Integer.valueOf(5), actual.getTop());
+        assertEquals("offset", actual.getOrder());
+        assertEquals("?from=2&to=10&mode=summary&maxGap=3&top=5&order=offset&leftVersion=1&rightVersion=4",
+                actual.toQueryString());
+
+        actual.setSamples(64);
+        actual.setRecordSize(16);
+        actual.setIgnore("0-8");
+        assertEquals(Integer.valueOf(64), actual.getSamples());
+        assertEquals(Integer.valueOf(16), actual.getRecordSize());
+        assertEquals("0-8", actual.getIgnore());
+        assertEquals("?from=2&to=10&mode=summary&maxGap=3&top=5&order=offset&samples=64&recordSize=16&ignore=0-8"
+                + "&leftVersion=1&rightVersion=4", actual.toQueryString());
+
+        //values sent as they were received, encoded
+        DiffQuery encoded = new DiffQuery();
+        encoded.setIgnore("0-8, 9&mode=full");
+        assertEquals("?ignore=0-8,%209%26mode%3Dfull", encoded.toQueryString());
+    }
+
+    /**
+     * Test: Only queries without parameters, or with the full mode and no gap, are the default one
+     */
+    @Test
+    public void testIsDefault () {
+        DiffQuery diffQuery = new DiffQuery();
+        assertTrue(diffQuery.isDefault());
+        diffQuery.setMode(DiffQuery.MODE_FULL);
+        assertTrue(diffQuery.isDefault());
+        diffQuery.setMode(DiffQuery.MODE_SUMMARY);
+        assertFalse(diffQuery.isDefault());
+
+        DiffQuery olderVersion = new DiffQuery();
+        olderVersion.setRightVersion(1L);
+        assertFalse(olderVersion.isDefault());
+        DiffQuery range = new DiffQuery();
+        range.setFrom(0);
+        assertFalse(range.isDefault());
+
+        DiffQuery gap = new DiffQuery();
+        gap.setMaxGap(0);
+        assertTrue(gap.isDefault());
+        gap.setMaxGap(1);
+        assertFalse(gap.isDefault());
+        DiffQuery top = new DiffQuery();
+        top.setTop(10);
+        assertFalse(top.isDefault());
+        DiffQuery records = new DiffQuery();
+        records.setRecordSize(4);
+        assertFalse(records.isDefault());
+    }
+}
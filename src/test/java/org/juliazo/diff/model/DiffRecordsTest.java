@@ -0,0 +1,26 @@
+package org.juliazo.diff.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test class for POJO {@link org.juliazo.diff.model.DiffRecords}
+ */
+public class DiffRecordsTest {
+
+    /**
+     * Creates a new element using the default constructor,
+     * alters the data using the element's set methods and then
+     * checks that data using the element's get methods
+     */
+    @Test
+    public void testDiffRecords () {
+        DiffRecords actual = new DiffRecords();
+        actual.setIndex(3_000_000_000L);
+        actual.setCount(2);
+
+        assertEquals(3_000_000_000L, actual.getIndex());
+        assertEquals(2, actual.getCount());
+    }
+}
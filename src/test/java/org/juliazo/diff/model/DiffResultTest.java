@@ -37,11 +37,26 @@ public class DiffResultTest {
         actual.setEqualSize(true);
         actual.setEquals(Boolean.TRUE);
         actual.setDifferences(differences);
+        actual.setFrom(0);
+        DiffSummary summary = new DiffSummary();
+        actual.setSummary(summary);
+        actual.setTo(10);
+        actual.setRuns(4L);
+        List<DiffRecords> records = new ArrayList<>();
+        actual.setRecords(records);
+        DiffEstimate estimate = new DiffEstimate();
+        actual.setEstimate(estimate);
 
         assertEquals(id, actual.getId());
         assertTrue(actual.isEqualSize());
         assertTrue(actual.isEquals());
         assertEquals(differences, actual.getDifferences());
+        assertEquals(Integer.valueOf(0), actual.getFrom());
+        assertEquals(summary, actual.getSummary());
+        assertEquals(Integer.valueOf(10), actual.getTo());
+        assertEquals(Long.valueOf(4), actual.getRuns());
+        assertEquals(records, actual.getRecords());
+        assertEquals(estimate, actual.getEstimate());
     }
 
 }
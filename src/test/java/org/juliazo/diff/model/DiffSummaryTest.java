@@ -0,0 +1,30 @@
+package org.juliazo.diff.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test class for POJO {@link org.juliazo.diff.model.DiffSummary}
+ */
+public class DiffSummaryTest {
+
+    /**
+     * Creates a new element using the default constructor,
+     * alters the data using the element's set methods and then
+     * checks that data using the element's get methods
+     */
+    @Test
+    public void testDiffSummary () {
+        DiffSummary actual = new DiffSummary();
+        actual.setRuns(2);
+        actual.setDifferentBytes(3);
+        actual.setHammingDistance(5);
+        actual.setSimilarity(0.5);
+
+        assertEquals(2, actual.getRuns());
+        assertEquals(3, actual.getDifferentBytes());
+        assertEquals(5, actual.getHammingDistance());
+        assertEquals(0.5, actual.getSimilarity(), 0);
+    }
+}
@@ -0,0 +1,32 @@
+package org.juliazo.diff.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test class for POJO {@link org.juliazo.diff.model.ExportRecord}
+ */
+public class ExportRecordTest {
+
+    /**
+     * Creates a new element using the default constructor,
+     * alters the data using the element's set methods and then
+     * checks that data using the element's get methods
+     */
+    @Test
+    public void testExportRecord () {
+        DiffResult diffResult = new DiffResult();
+
+        ExportRecord actual = new ExportRecord();
+        actual.setId("1");
+        actual.setLeft("dGVsZXR1Ymll");
+        actual.setRight("dGVsZXRvYmll");
+        actual.setDiff(diffResult);
+
+        assertEquals("1", actual.getId());
+        assertEquals("dGVsZXR1Ymll", actual.getLeft());
+        assertEquals("dGVsZXRvYmll", actual.getRight());
+        assertEquals(diffResult, actual.getDiff());
+    }
+}
@@ -0,0 +1,27 @@
+package org.juliazo.diff.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for POJO {@link org.juliazo.diff.model.ExportRequest}
+ */
+public class ExportRequestTest {
+
+    /**
+     * Creates a new element using the default constructor,
+     * alters the data using the element's set methods and then
+     * checks that data using the element's get methods
+     */
+    @Test
+    public void testExportRequest () {
+        ExportRequest actual = new ExportRequest();
+        actual.setFile("snapshot.ndjson");
+        actual.setResume(true);
+
+        assertEquals("snapshot.ndjson", actual.getFile());
+        assertTrue(actual.isResume());
+    }
+}
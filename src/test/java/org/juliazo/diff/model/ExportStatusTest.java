@@ -0,0 +1,34 @@
+package org.juliazo.diff.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test class for POJO {@link org.juliazo.diff.model.ExportStatus}
+ */
+public class ExportStatusTest {
+
+    /**
+     * Creates a new element using the default constructor,
+     * alters the data using the element's set methods and then
+     * checks that data using the element's get methods
+     */
+    @Test
+    public void testExportStatus () {
+        ExportStatus actual = new ExportStatus();
+        actual.setFile("snapshot.ndjson");
+        actual.setState(ExportStatus.FAILED);
+        actual.setIds(10);
+        actual.setExported(4);
+        actual.setBytesWritten(400);
+        actual.setMessage("Could not write file");
+
+        assertEquals("snapshot.ndjson", actual.getFile());
+        assertEquals(ExportStatus.FAILED, actual.getState());
+        assertEquals(10, actual.getIds());
+        assertEquals(4, actual.getExported());
+        assertEquals(400, actual.getBytesWritten());
+        assertEquals("Could not write file", actual.getMessage());
+    }
+}
@@ -0,0 +1,31 @@
+package org.juliazo.diff.model;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test class for POJO {@link org.juliazo.diff.model.IdPage}
+ */
+public class IdPageTest {
+
+    /**
+     * Creates a new element using the default constructor,
+     * alters the data using the element's set methods and then
+     * checks that data using the element's get methods
+     */
+    @Test
+    public void testIdPage () {
+        List<IdState> ids = Collections.singletonList(new IdState());
+
+        IdPage actual = new IdPage();
+        actual.setIds(ids);
+        actual.setNext("1000:1");
+
+        assertEquals(ids, actual.getIds());
+        assertEquals("1000:1", actual.getNext());
+    }
+}
@@ -0,0 +1,28 @@
+package org.juliazo.diff.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test class for POJO {@link org.juliazo.diff.model.IdState}
+ */
+public class IdStateTest {
+
+    /**
+     * Creates a new element using the default constructor,
+     * alters the data using the element's set methods and then
+     * checks that data using the element's get methods
+     */
+    @Test
+    public void testIdState () {
+        IdState actual = new IdState();
+        actual.setId("1");
+        actual.setState(CompletionState.LEFT);
+        actual.setUpdatedAt(1000);
+
+        assertEquals("1", actual.getId());
+        assertEquals(CompletionState.LEFT, actual.getState());
+        assertEquals(1000, actual.getUpdatedAt());
+    }
+}
@@ -0,0 +1,28 @@
+package org.juliazo.diff.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test class for POJO {@link org.juliazo.diff.model.IdUsage}
+ */
+public class IdUsageTest {
+
+    /**
+     * Creates a new element using the default constructor,
+     * alters the data using the element's set methods and then
+     * checks that data using the element's get methods
+     */
+    @Test
+    public void testIdUsage () {
+        IdUsage actual = new IdUsage();
+        actual.setId("1");
+        actual.setDataBytes(24);
+        actual.setResultBytes(8);
+
+        assertEquals("1", actual.getId());
+        assertEquals(24, actual.getDataBytes());
+        assertEquals(8, actual.getResultBytes());
+    }
+}
@@ -0,0 +1,28 @@
+package org.juliazo.diff.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test class for POJO {@link org.juliazo.diff.model.ImportRecord}
+ */
+public class ImportRecordTest {
+
+    /**
+     * Creates a new element using the default constructor,
+     * alters the data using the element's set methods and then
+     * checks that data using the element's get methods
+     */
+    @Test
+    public void testImportRecord () {
+        ImportRecord actual = new ImportRecord();
+        actual.setId("1");
+        actual.setLeft("dGVsZXR1Ymll");
+        actual.setRight("dGVsZXRvYmll");
+
+        assertEquals("1", actual.getId());
+        assertEquals("dGVsZXR1Ymll", actual.getLeft());
+        assertEquals("dGVsZXRvYmll", actual.getRight());
+    }
+}
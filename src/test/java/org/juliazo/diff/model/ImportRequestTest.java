@@ -0,0 +1,24 @@
+package org.juliazo.diff.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test class for POJO {@link org.juliazo.diff.model.ImportRequest}
+ */
+public class ImportRequestTest {
+
+    /**
+     * Creates a new element using the default constructor,
+     * alters the data using the element's set methods and then
+     * checks that data using the element's get methods
+     */
+    @Test
+    public void testImportRequest () {
+        ImportRequest actual = new ImportRequest();
+        actual.setFile("baseline.ndjson");
+
+        assertEquals("baseline.ndjson", actual.getFile());
+    }
+}
@@ -0,0 +1,45 @@
+package org.juliazo.diff.model;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test class for POJO {@link org.juliazo.diff.model.ImportStatus}
+ */
+public class ImportStatusTest {
+
+    /**
+     * Creates a new element using the default constructor,
+     * alters the data using the element's set methods and then
+     * checks that data using the element's get methods
+     */
+    @Test
+    public void testImportStatus () {
+        List<String> rejections = Collections.singletonList("Line 2: Invalid JSON");
+
+        ImportStatus actual = new ImportStatus();
+        actual.setFile("baseline.ndjson");
+        actual.setState(ImportStatus.FAILED);
+        actual.setTotalBytes(100);
+        actual.setBytesRead(50);
+        actual.setRecords(3);
+        actual.setImported(2);
+        actual.setRejected(1);
+        actual.setRejections(rejections);
+        actual.setMessage("Could not read file");
+
+        assertEquals("baseline.ndjson", actual.getFile());
+        assertEquals(ImportStatus.FAILED, actual.getState());
+        assertEquals(100, actual.getTotalBytes());
+        assertEquals(50, actual.getBytesRead());
+        assertEquals(3, actual.getRecords());
+        assertEquals(2, actual.getImported());
+        assertEquals(1, actual.getRejected());
+        assertEquals(rejections, actual.getRejections());
+        assertEquals("Could not read file", actual.getMessage());
+    }
+}
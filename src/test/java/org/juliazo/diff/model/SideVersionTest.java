@@ -0,0 +1,26 @@
+package org.juliazo.diff.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test class for POJO {@link org.juliazo.diff.model.SideVersion}
+ */
+public class SideVersionTest {
+
+    /**
+     * Creates a new element using the default constructor,
+     * alters the data using the element's set methods and then
+     * checks that data using the element's get methods
+     */
+    @Test
+    public void testSideVersion () {
+        SideVersion actual = new SideVersion();
+        actual.setVersion(3);
+        actual.setLength(12);
+
+        assertEquals(3, actual.getVersion());
+        assertEquals(12, actual.getLength());
+    }
+}
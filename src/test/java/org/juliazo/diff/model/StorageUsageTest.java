@@ -0,0 +1,43 @@
+package org.juliazo.diff.model;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test class for POJO {@link org.juliazo.diff.model.StorageUsage}
+ */
+public class StorageUsageTest {
+
+    /**
+     * Creates a new element using the default constructor,
+     * alters the data using the element's set methods and then
+     * checks that data using the element's get methods
+     */
+    @Test
+    public void testStorageUsage () {
+        List<IdUsage> largestIds = Collections.singletonList(new IdUsage());
+
+        StorageUsage actual = new StorageUsage();
+        actual.setIds(2);
+        actual.setDataBytes(48);
+        actual.setResultBytes(8);
+        actual.setStagedBytes(4);
+        actual.setTotalBytes(60);
+        actual.setMaxTotalBytes(1024);
+        actual.setMaxIdBytes(128);
+        actual.setLargestIds(largestIds);
+
+        assertEquals(2, actual.getIds());
+        assertEquals(48, actual.getDataBytes());
+        assertEquals(8, actual.getResultBytes());
+        assertEquals(4, actual.getStagedBytes());
+        assertEquals(60, actual.getTotalBytes());
+        assertEquals(1024, actual.getMaxTotalBytes());
+        assertEquals(128, actual.getMaxIdBytes());
+        assertEquals(largestIds, actual.getLargestIds());
+    }
+}
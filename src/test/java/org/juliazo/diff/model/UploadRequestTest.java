@@ -0,0 +1,22 @@
+package org.juliazo.diff.model;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test class for POJO {@link org.juliazo.diff.model.UploadRequest}
+ */
+public class UploadRequestTest {
+
+    /**
+     * Creates a new element using the default constructor,
+     * alters the data using the element's set methods and then
+     * checks that data using the element's get methods
+     */
+    @Test
+    public void testUploadRequest () {
+        UploadRequest actual = new UploadRequest();
+        actual.setChunks(3);
+        assertEquals(Integer.valueOf(3), actual.getChunks());
+    }
+}
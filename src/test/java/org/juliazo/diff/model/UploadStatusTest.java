@@ -0,0 +1,37 @@
+package org.juliazo.diff.model;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test class for POJO {@link org.juliazo.diff.model.UploadStatus}
+ */
+public class UploadStatusTest {
+
+    /**
+     * Creates a new element using the default constructor,
+     * alters the data using the element's set methods and then
+     * checks that data using the element's get methods
+     */
+    @Test
+    public void testUploadStatus () {
+        List<Integer> missingChunks = Arrays.asList(0, 2);
+
+        UploadStatus actual = new UploadStatus();
+        actual.setUploadId("upload");
+        actual.setId("1");
+        actual.setSide("left");
+        actual.setChunks(3);
+        actual.setMissingChunks(missingChunks);
+
+        assertEquals("upload", actual.getUploadId());
+        assertEquals("1", actual.getId());
+        assertEquals("left", actual.getSide());
+        assertEquals(3, actual.getChunks());
+        assertEquals(missingChunks, actual.getMissingChunks());
+    }
+}
@@ -0,0 +1,370 @@
+package org.juliazo.diff.persistence;
+
+import org.juliazo.diff.model.Base64Data;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for {@link org.juliazo.diff.persistence.WriteAheadLog}
+ */
+public class WriteAheadLogTest {
+
+    /**
+     * Directory holding the log of each test
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Logs opened by each test, closed after it
+     */
+    private final List<WriteAheadLog> logs = new ArrayList<>();
+
+    /**
+     * Closes the logs opened by the test, including the ones left open to simulate a crash
+     *
+     * @throws IOException the io exception
+     */
+    @After
+    public void closeLogs () throws IOException {
+        for (WriteAheadLog log : logs) {
+            log.close();
+        }
+    }
+
+    /**
+     * Test: Records written before a crash are replayed on recovery
+     *
+     * @throws IOException the io exception
+     */
+    @Test
+    public void testRecover () throws IOException {
+        Path directory = folder.getRoot().toPath();
+        WriteAheadLog log = open(directory, DurabilityMode.PER_WRITE);
+        log.recover(new Storage());
+        log.append(WriteAheadLog.LEFT, "1", "dGVsZXR1Ymll");
+        log.append(WriteAheadLog.RIGHT, "1", "dGVsZXR1");
+        log.append(WriteAheadLog.LEFT, "2", "dGVsZXR1");
+        log.append(WriteAheadLog.LEFT, "1", "ZGVsZXR1Ymll");
+        log.append(WriteAheadLog.REMOVE, "2", null);
+        //no close: simulates a crash
+
+        Storage storage = new Storage();
+        assertEquals(5, open(directory, DurabilityMode.PER_WRITE).recover(storage));
+
+        assertEquals(1, storage.data.size());
+        assertEquals("ZGVsZXR1Ymll", storage.data.get("1").getLeftData());
+        assertEquals("dGVsZXR1", storage.data.get("1").getRightData());
+        assertNull(storage.data.get("2"));
+    }
+
+    /**
+     * Test: A record torn by a crash in the middle of its write is dropped,
+     * the records before it are kept and the log accepts new records afterwards
+     *
+     * @throws IOException the io exception
+     */
+    @Test
+    public void testTornRecordIsDropped () throws IOException {
+        Path directory = folder.getRoot().toPath();
+        WriteAheadLog log = open(directory, DurabilityMode.NONE);
+        log.recover(new Storage());
+        log.append(WriteAheadLog.LEFT, "1", "dGVsZXR1Ymll");
+        log.append(WriteAheadLog.RIGHT, "1", "dGVsZXR1");
+        log.close();
+
+        Path segment = segments(directory).get(0);
+        long size = Files.size(segment);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 3);
+        }
+
+        Storage storage = new Storage();
+        WriteAheadLog recovered = open(directory, DurabilityMode.NONE);
+        assertEquals(1, recovered.recover(storage));
+        assertEquals("dGVsZXR1Ymll", storage.data.get("1").getLeftData());
+        assertEquals("", storage.data.get("1").getRightData());
+
+        recovered.append(WriteAheadLog.RIGHT, "1", "dGVsZXR1Ymlv");
+        recovered.close();
+
+        storage = new Storage();
+        assertEquals(2, open(directory, DurabilityMode.NONE).recover(storage));
+        assertEquals("dGVsZXR1Ymlv", storage.data.get("1").getRightData());
+    }
+
+    /**
+     * Test: Concurrent writers are killed partway through by cutting the log at a random offset.
+     * Recovery must return, for each writer, one of the values it wrote and never a value
+     * it wrote after a lost one.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testCrashDuringConcurrentWrites () throws Exception {
+        Path directory = folder.getRoot().toPath();
+        WriteAheadLog log = open(directory, DurabilityMode.BATCHED);
+        log.recover(new Storage());
+
+        int writers = 8;
+        int writes = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            String id = String.valueOf(w);
+            futures.add(executor.submit(() -> {
+                for (int i = 1; i <= writes; i++) {
+                    log.awaitDurable(log.append(WriteAheadLog.LEFT, id, "dmVyc2lvbi" + i));
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        Path segment = segments(directory).get(0);
+        long cut = new Random(42).nextInt((int) Files.size(segment));
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(cut);
+        }
+
+        Storage storage = new Storage();
+        long replayed = open(directory, DurabilityMode.BATCHED).recover(storage);
+        assertTrue(replayed < writers * writes);
+
+        long recoveredWrites = 0;
+        for (Base64Data base64Data : storage.data.values()) {
+            int version = Integer.parseInt(base64Data.getLeftData().substring("dmVyc2lvbi".length()));
+            assertTrue(version >= 1 && version <= writes);
+            recoveredWrites += version;
+        }
+        //writes of each writer are ordered, so the last replayed version is how many of its writes survived
+        assertEquals(replayed, recoveredWrites);
+    }
+
+    /**
+     * Test: On batched mode, one force commits every record appended before it
+     *
+     * @throws IOException the io exception
+     */
+    @Test
+    public void testGroupCommit () throws IOException {
+        WriteAheadLog log = open(folder.getRoot().toPath(), DurabilityMode.BATCHED);
+        log.recover(new Storage());
+
+        List<Long> sequences = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            sequences.add(log.append(WriteAheadLog.LEFT, String.valueOf(i), "dGVsZXR1Ymll"));
+        }
+        log.awaitDurable(sequences.get(9));
+        for (long sequence : sequences) {
+            log.awaitDurable(sequence);
+        }
+        assertEquals(1, log.getForceCount());
+        log.close();
+    }
+
+    /**
+     * Test: Each durability mode forces the log as expected
+     *
+     * @throws IOException the io exception
+     */
+    @Test
+    public void testDurabilityModes () throws IOException {
+        WriteAheadLog none = open(folder.newFolder().toPath(), DurabilityMode.NONE);
+        WriteAheadLog perWrite = open(folder.newFolder().toPath(), DurabilityMode.PER_WRITE);
+        none.recover(new Storage());
+        perWrite.recover(new Storage());
+        for (int i = 0; i < 5; i++) {
+            none.awaitDurable(none.append(WriteAheadLog.LEFT, "1", "dGVsZXR1Ymll"));
+            perWrite.awaitDurable(perWrite.append(WriteAheadLog.LEFT, "1", "dGVsZXR1Ymll"));
+        }
+        assertEquals(0, none.getForceCount());
+        assertEquals(5, perWrite.getForceCount());
+        assertEquals(DurabilityMode.NONE, none.getDurabilityMode());
+    }
+
+    /**
+     * Test: A snapshot replaces the older segments and recovery combines it
+     * with the records written after it
+     *
+     * @throws IOException the io exception
+     */
+    @Test
+    public void testSnapshot () throws IOException {
+        Path directory = folder.getRoot().toPath();
+        WriteAheadLog log = open(directory, DurabilityMode.BATCHED);
+        log.recover(new Storage());
+        log.awaitDurable(log.append(WriteAheadLog.LEFT, "1", "dGVsZXR1Ymll"));
+        log.awaitDurable(log.append(WriteAheadLog.RIGHT, "1", "dGVsZXR1"));
+
+        long generation = log.rollover();
+        List<Base64Data> entries = new ArrayList<>();
+        entries.add(new Base64Data("1", "dGVsZXR1Ymll", "dGVsZXR1"));
+        log.writeSnapshot(entries, generation);
+        log.awaitDurable(log.append(WriteAheadLog.RIGHT, "1", "dGVsZXR1Ymlv"));
+        log.awaitDurable(log.append(WriteAheadLog.LEFT, "2", "dGVsZXR1"));
+
+        assertEquals(1, segments(directory).size());
+
+        Storage storage = new Storage();
+        assertEquals(2, open(directory, DurabilityMode.BATCHED).recover(storage));
+        assertEquals("dGVsZXR1Ymll", storage.data.get("1").getLeftData());
+        assertEquals("dGVsZXR1Ymlv", storage.data.get("1").getRightData());
+        assertEquals("dGVsZXR1", storage.data.get("2").getLeftData());
+        assertFalse(Files.exists(directory.resolve("snapshot.tmp")));
+    }
+
+    /**
+     * Test: A record whose length does not fit in the rest of the segment is treated as corrupted:
+     * recovery does not allocate it, truncates the segment there and keeps the records before it
+     *
+     * @throws IOException the io exception
+     */
+    @Test
+    public void testCorruptedLengthIsDropped () throws IOException {
+        Path directory = folder.getRoot().toPath();
+        WriteAheadLog log = open(directory, DurabilityMode.NONE);
+        log.recover(new Storage());
+        log.append(WriteAheadLog.LEFT, "1", "dGVsZXR1Ymll");
+        log.append(WriteAheadLog.RIGHT, "1", "dGVsZXR1");
+        log.close();
+
+        Path segment = segments(directory).get(0);
+        long size = Files.size(segment);
+        //the second record starts after the frame of the first one: its length, checksum and body
+        long second = 8 + 1 + 3 + 4 + "dGVsZXR1Ymll".length();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putInt(0, Integer.MAX_VALUE - 16), second);
+        }
+
+        Storage storage = new Storage();
+        WriteAheadLog recovered = open(directory, DurabilityMode.NONE);
+        assertEquals(1, recovered.recover(storage));
+        assertEquals("dGVsZXR1Ymll", storage.data.get("1").getLeftData());
+        assertEquals("", storage.data.get("1").getRightData());
+        assertEquals(second, Files.size(segment));
+        assertTrue(size > second);
+    }
+
+    /**
+     * Test: A snapshot holding a corrupted length is skipped, and recovery falls back to the older one
+     *
+     * @throws IOException the io exception
+     */
+    @Test
+    public void testCorruptedSnapshotIsSkipped () throws IOException {
+        Path directory = folder.getRoot().toPath();
+        WriteAheadLog log = open(directory, DurabilityMode.NONE);
+        log.recover(new Storage());
+        List<Base64Data> entries = new ArrayList<>();
+        entries.add(new Base64Data("1", "dGVsZXR1Ymll", ""));
+        log.writeSnapshot(entries, log.rollover());
+        entries.set(0, new Base64Data("1", "dGVsZXR1Ymlv", ""));
+        long generation = log.rollover();
+        log.writeSnapshot(entries, generation);
+        log.close();
+
+        //the older snapshot was deleted, write it again and corrupt the newer one
+        Path latest = directory.resolve(String.format("snapshot-%019d.dat", generation));
+        Path older = directory.resolve(String.format("snapshot-%019d.dat", generation - 1));
+        Files.copy(latest, older);
+        try (FileChannel channel = FileChannel.open(older, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap("dGVsZXR1Ymll".getBytes(StandardCharsets.US_ASCII)), 4 + 8 + 1 + 3 + 4);
+            channel.write(ByteBuffer.allocate(8).putLong(0, generation - 1), 4);
+        }
+        try (FileChannel channel = FileChannel.open(latest, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putInt(0, Integer.MAX_VALUE - 16), 4 + 8 + 1 + 3);
+        }
+
+        Storage storage = new Storage();
+        open(directory, DurabilityMode.NONE).recover(storage);
+        assertEquals("dGVsZXR1Ymll", storage.data.get("1").getLeftData());
+    }
+
+    /**
+     * Opens a log, closed after the test.
+     *
+     * @param directory         the directory of the log
+     * @param durabilityMode    the durability mode
+     * @return the log
+     */
+    private WriteAheadLog open (Path directory, DurabilityMode durabilityMode) {
+        WriteAheadLog log = new WriteAheadLog(directory, durabilityMode);
+        logs.add(log);
+        return log;
+    }
+
+    /**
+     * Keeps the latest data of each id replayed by a recovery, as the storage of the Diff Service would
+     */
+    private static class Storage implements WriteAheadLog.RecoveryHandler {
+
+        /**
+         * The data sets, by id
+         */
+        private final Map<String, Base64Data> data = new HashMap<>();
+
+        @Override
+        public void side (byte type, String id, String value) {
+            Base64Data base64Data = data.computeIfAbsent(id, key -> new Base64Data(key, "", ""));
+            if (type == WriteAheadLog.LEFT) {
+                base64Data.setLeftData(value);
+            } else {
+                base64Data.setRightData(value);
+            }
+        }
+
+        @Override
+        public void remove (String id) {
+            data.remove(id);
+        }
+    }
+
+    /**
+     * Lists the log segments of a directory.
+     *
+     * @param directory the directory
+     * @return the segments, in order
+     * @throws IOException the io exception
+     */
+    private static List<Path> segments(Path directory) throws IOException {
+        return Files.list(directory)
+                .filter(path -> path.getFileName().toString().startsWith("wal-"))
+                .filter(path -> {
+                    try {
+                        return Files.size(path) > 0;
+                    } catch (IOException e) {
+                        return false;
+                    }
+                })
+                .sorted()
+                .collect(Collectors.toList());
+    }
+}
@@ -1,23 +1,56 @@
 package org.juliazo.diff.service;
 
+import org.apache.tomcat.util.codec.binary.Base64;
 import org.juliazo.diff.commons.exception.CompromisedDataException;
 import org.juliazo.diff.model.Base64Data;
+import org.juliazo.diff.model.CompletionState;
 import org.juliazo.diff.model.DiffBytes;
+import org.juliazo.diff.model.DiffEstimate;
+import org.juliazo.diff.model.DiffQuery;
 import org.juliazo.diff.model.DiffResult;
 import org.juliazo.diff.model.ErrorPayload;
+import org.juliazo.diff.model.IdPage;
+import org.juliazo.diff.model.SideVersion;
+import org.juliazo.diff.model.StorageUsage;
+import org.juliazo.diff.persistence.DurabilityMode;
+import org.juliazo.diff.persistence.WriteAheadLog;
+import org.juliazo.diff.storage.Base64Side;
+import org.juliazo.diff.storage.DeflateCodec;
+import org.juliazo.diff.storage.StoredData;
+import org.junit.After;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Future;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * Test Class for the core functionality of the Base64 Diff App
@@ -29,6 +62,20 @@ public class DiffServiceTest {
      */
     private final DiffService diffService = new DiffService();
 
+    /**
+     * Checks that every chunk the test took from the pool while comparing was returned to it.
+     */
+    @After
+    public void checkChunkLeaks () {
+        assertEquals(0, diffService.getBufferPool().getOutstanding());
+    }
+
+    /**
+     * Directory for the write-ahead log
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     /**
      * Test: Add data to a non existent id on /left endpoint
      */
@@ -212,9 +259,9 @@ public class DiffServiceTest {
     @Test (expected = CompromisedDataException.class)
     public void testCompromisedData () throws NoSuchFieldException, IllegalAccessException {
         String id = "11";
-        Base64Data compromisedData = new Base64Data("10", "dGVsZXR1Ymll", "dGVsZXR1Ymll");
+        StoredData compromisedData = new StoredData("10", new Base64Side("dGVsZXR1Ymll"), new Base64Side("dGVsZXR1Ymll"));
 
-        Map<String, Base64Data> alteredDiffStorage = new HashMap<>();
+        Map<String, StoredData> alteredDiffStorage = new HashMap<>();
         alteredDiffStorage.put(id, compromisedData);
 
         DiffService alteredDiffService = new DiffService();
@@ -489,6 +536,862 @@ public class DiffServiceTest {
         assertEquals(1, diffBytes.getLength());
     }
 
+    /**
+     * Test: Data stored with persistence enabled is recovered by a new instance
+     * of the service, after a snapshot and further updates
+     *
+     * @throws IOException the io exception
+     */
+    @Test
+    public void testRecoverFromWriteAheadLog () throws IOException {
+        Path directory = temporaryFolder.getRoot().toPath();
+        WriteAheadLog log = new WriteAheadLog(directory, DurabilityMode.BATCHED);
+        DiffService persistentService = new DiffService();
+        persistentService.setWriteAheadLog(log);
+        persistentService.recover();
+
+        persistentService.inputLeft("22", "dGVsZXR1Ymll");
+        persistentService.inputRight("22", "dGVsZXR1Ymll");
+        persistentService.snapshot();
+        persistentService.inputRight("22", "dGVsZXR1Ymlv");
+        persistentService.inputLeft("23", "dGVsZXR1Ymll");
+        persistentService.removeData("23");
+        log.close();
+
+        try (WriteAheadLog recoveredLog = new WriteAheadLog(directory, DurabilityMode.BATCHED)) {
+            DiffService recoveredService = new DiffService();
+            recoveredService.setWriteAheadLog(recoveredLog);
+            recoveredService.recover();
+
+            assertNull(recoveredService.findData("23"));
+            ResponseEntity actual = recoveredService.getDiffResult("22");
+            assertEquals(HttpStatus.OK, actual.getStatusCode());
+            DiffResult diffResult = (DiffResult) actual.getBody();
+            assertFalse(diffResult.isEquals());
+            assertEquals(8, diffResult.getDifferences().get(0).getOffset());
+        }
+    }
+
+    /**
+     * Test: With a compression codec, sides are stored compressed, the diff is the same
+     * as without compression and the codec metrics are recorded
+     */
+    @Test
+    public void testCompressedStorage () {
+        DiffService compressedService = new DiffService();
+        DeflateCodec codec = new DeflateCodec(1);
+        compressedService.setStorageCodec(codec);
+
+        byte[] left = new byte[100000];
+        byte[] right = new byte[100000];
+        for (int i = 0; i < left.length; i++) {
+            left[i] = (byte) (i % 64);
+            right[i] = (byte) (i % 64);
+        }
+        right[0] = 1;
+        right[70000] = 1;
+        right[70001] = 1;
+        right[99999] = 1;
+
+        String leftData = Base64.encodeBase64String(left);
+        String rightData = Base64.encodeBase64String(right);
+        assertEquals(HttpStatus.CREATED, compressedService.inputLeft("24", leftData).getStatusCode());
+        ResponseEntity rightResponse = compressedService.inputRight("24", rightData);
+        assertEquals(HttpStatus.CREATED, rightResponse.getStatusCode());
+        assertEquals(leftData, ((Base64Data) rightResponse.getBody()).getLeftData());
+
+        DiffResult diffResult = (DiffResult) compressedService.getDiffResult("24").getBody();
+        assertTrue(diffResult.isEqualSize());
+        assertFalse(diffResult.isEquals());
+        assertEquals(3, diffResult.getDifferences().size());
+        assertEquals(0, diffResult.getDifferences().get(0).getOffset());
+        assertEquals(70000, diffResult.getDifferences().get(1).getOffset());
+        assertEquals(2, diffResult.getDifferences().get(1).getLength());
+        assertEquals(99999, diffResult.getDifferences().get(2).getOffset());
+
+        assertEquals(2, codec.getMetrics().getPayloads());
+        assertEquals(200000, codec.getMetrics().getRawBytes());
+        assertTrue(codec.getMetrics().getCompressionRatio() < 0.1);
+        //the left side is decoded once for the right response and once for the diff
+        assertEquals(300000, codec.getMetrics().getDecodedBytes());
+        assertEquals(codec, compressedService.getStorageCodec());
+    }
+
+    /**
+     * Test: A range of the data is compared, differences outside of it are ignored
+     * and the differences inside keep their offsets from the start of the data
+     */
+    @Test
+    public void testDiffRange () {
+        //telegraphs / telEgrapHS
+        inputRightLeft("25", "dGVsRWdyYXBIUw==", "dGVsZWdyYXBocw==");
+
+        DiffResult diffResult = (DiffResult) diffService.getDiffResult("25", range(2, 9)).getBody();
+        assertFalse(diffResult.isEquals());
+        assertEquals(Integer.valueOf(2), diffResult.getFrom());
+        assertEquals(Integer.valueOf(9), diffResult.getTo());
+        assertEquals(2, diffResult.getDifferences().size());
+        assertEquals(3, diffResult.getDifferences().get(0).getOffset());
+        assertEquals(1, diffResult.getDifferences().get(0).getLength());
+        assertEquals(8, diffResult.getDifferences().get(1).getOffset());
+        assertEquals(1, diffResult.getDifferences().get(1).getLength());
+
+        diffResult = (DiffResult) diffService.getDiffResult("25", range(null, 3)).getBody();
+        assertTrue(diffResult.isEquals());
+        assertEquals(Integer.valueOf(0), diffResult.getFrom());
+        assertNull(diffResult.getDifferences());
+
+        diffResult = (DiffResult) diffService.getDiffResult("25", range(8, null)).getBody();
+        assertEquals(Integer.valueOf(10), diffResult.getTo());
+        assertEquals(1, diffResult.getDifferences().size());
+        assertEquals(8, diffResult.getDifferences().get(0).getOffset());
+        assertEquals(2, diffResult.getDifferences().get(0).getLength());
+
+        diffResult = (DiffResult) diffService.getDiffResult("25").getBody();
+        assertNull(diffResult.getFrom());
+        assertEquals(2, diffResult.getDifferences().size());
+    }
+
+    /**
+     * Test: Ranges outside of the data or ending before they start are rejected
+     */
+    @Test
+    public void testInvalidDiffRange () {
+        inputRightLeft("26", "dGVsZXR1Ymll", "dGVsZXR1Ymlv");
+
+        for (Integer[] bounds : new Integer[][] {{-1, 3}, {5, 4}, {0, 10}, {10, null}}) {
+            ResponseEntity response = diffService.getDiffResult("26", range(bounds[0], bounds[1]));
+            assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+            assertEquals("Invalid byte range", ((ErrorPayload) response.getBody()).getMessage());
+        }
+        assertTrue(((DiffResult) diffService.getDiffResult("26", range(9, 9)).getBody()).isEquals());
+    }
+
+    /**
+     * Test: The summary mode returns the statistics of the differences instead of the differences
+     */
+    @Test
+    public void testDiffSummary () {
+        //telegraphs / telEgrapHS
+        inputRightLeft("27", "dGVsRWdyYXBIUw==", "dGVsZWdyYXBocw==");
+        DiffQuery diffQuery = new DiffQuery();
+        diffQuery.setMode(DiffQuery.MODE_SUMMARY);
+
+        DiffResult diffResult = (DiffResult) diffService.getDiffResult("27", diffQuery).getBody();
+
+        assertTrue(diffResult.isEqualSize());
+        assertFalse(diffResult.isEquals());
+        assertNull(diffResult.getDifferences());
+        assertEquals(2, diffResult.getSummary().getRuns());
+        assertEquals(3, diffResult.getSummary().getDifferentBytes());
+        //upper and lower case ASCII letters differ on one bit
+        assertEquals(3, diffResult.getSummary().getHammingDistance());
+        assertEquals(0.7, diffResult.getSummary().getSimilarity(), 1e-9);
+
+        diffQuery.setTo(3);
+        diffResult = (DiffResult) diffService.getDiffResult("27", diffQuery).getBody();
+        assertTrue(diffResult.isEquals());
+        assertEquals(0, diffResult.getSummary().getRuns());
+        assertEquals(1.0, diffResult.getSummary().getSimilarity(), 0);
+    }
+
+    /**
+     * Test: Differences separated by at most the max gap are merged, negative gaps are rejected
+     */
+    @Test
+    public void testMaxGap () {
+        inputRightLeft("50", "dGVsRUZVbmtlTg==", "dGVsZWZ1bmtlbg==");
+        DiffQuery diffQuery = new DiffQuery();
+        diffQuery.setMaxGap(2);
+
+        DiffResult diffResult = (DiffResult) diffService.getDiffResult("50", diffQuery).getBody();
+        assertEquals(2, diffResult.getDifferences().size());
+        diffQuery.setMaxGap(3);
+        diffResult = (DiffResult) diffService.getDiffResult("50", diffQuery).getBody();
+        assertEquals(1, diffResult.getDifferences().size());
+        assertEquals(3, diffResult.getDifferences().get(0).getOffset());
+        assertEquals(7, diffResult.getDifferences().get(0).getLength());
+        assertEquals("?maxGap=3", diffQuery.toQueryString());
+
+        diffQuery.setMaxGap(-1);
+        ResponseEntity response = diffService.getDiffResult("50", diffQuery);
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertEquals("Invalid max gap", ((ErrorPayload) response.getBody()).getMessage());
+    }
+
+    /**
+     * Test: Only the largest differences are returned, by length or by offset, along with how many were found
+     */
+    @Test
+    public void testTopDifferences () {
+        //differences at 0, 2-3 and 5-8
+        inputRightLeft("51", "VGVMRWZVTktFbg==", "dGVsZWZ1bmtlbg==");
+        DiffQuery diffQuery = new DiffQuery();
+        diffQuery.setTop(2);
+
+        DiffResult diffResult = (DiffResult) diffService.getDiffResult("51", diffQuery).getBody();
+        assertEquals(Long.valueOf(3), diffResult.getRuns());
+        assertEquals(2, diffResult.getDifferences().size());
+        assertEquals(5, diffResult.getDifferences().get(0).getOffset());
+        assertEquals(4, diffResult.getDifferences().get(0).getLength());
+        assertEquals(2, diffResult.getDifferences().get(1).getOffset());
+        diffQuery.setOrder(DiffQuery.ORDER_OFFSET);
+        diffResult = (DiffResult) diffService.getDiffResult("51", diffQuery).getBody();
+        assertEquals(2, diffResult.getDifferences().get(0).getOffset());
+        assertEquals(5, diffResult.getDifferences().get(1).getOffset());
+        assertNull(((DiffResult) diffService.getDiffResult("51").getBody()).getRuns());
+
+        diffQuery.setOrder("size");
+        assertEquals("Invalid top differences",
+                ((ErrorPayload) diffService.getDiffResult("51", diffQuery).getBody()).getMessage());
+        diffQuery.setOrder(null);
+        diffQuery.setTop(0);
+        assertEquals(HttpStatus.BAD_REQUEST, diffService.getDiffResult("51", diffQuery).getStatusCode());
+    }
+
+    /**
+     * Test: Records are compared instead of bytes, on ranges of whole records,
+     * and invalid record sizes or ignored bytes are rejected
+     */
+    @Test
+    public void testRecords () {
+        //records of 2 bytes of "telefunken" against "teLEfUNKEn", the 2nd byte of each is ignored
+        inputRightLeft("52", "VGVMRWZVTktFbg==", "dGVsZWZ1bmtlbg==");
+        DiffQuery diffQuery = new DiffQuery();
+        diffQuery.setRecordSize(2);
+        diffQuery.setIgnore("1-2");
+
+        DiffResult diffResult = (DiffResult) diffService.getDiffResult("52", diffQuery).getBody();
+        assertNull(diffResult.getDifferences());
+        assertEquals(2, diffResult.getRecords().size());
+        assertEquals(0, diffResult.getRecords().get(0).getIndex());
+        assertEquals(2, diffResult.getRecords().get(0).getCount());
+        assertEquals(3, diffResult.getRecords().get(1).getIndex());
+        assertEquals(2, diffResult.getRecords().get(1).getCount());
+        diffQuery.setFrom(6);
+        diffQuery.setTo(8);
+        diffResult = (DiffResult) diffService.getDiffResult("52", diffQuery).getBody();
+        assertEquals(3, diffResult.getRecords().get(0).getIndex());
+        assertEquals(1, diffResult.getRecords().get(0).getCount());
+
+        diffQuery.setFrom(5);
+        assertEquals("Data is not made of whole records",
+                ((ErrorPayload) diffService.getDiffResult("52", diffQuery).getBody()).getMessage());
+        diffQuery.setFrom(null);
+        diffQuery.setTo(null);
+        diffQuery.setIgnore("1-3");
+        assertEquals("Invalid record size or ignored bytes",
+                ((ErrorPayload) diffService.getDiffResult("52", diffQuery).getBody()).getMessage());
+        diffQuery.setIgnore(null);
+        diffQuery.setRecordSize(0);
+        assertEquals(HttpStatus.BAD_REQUEST, diffService.getDiffResult("52", diffQuery).getStatusCode());
+        //a huge record is rejected before its ignored bytes are looked at
+        diffQuery.setRecordSize(2000000000);
+        diffQuery.setIgnore("0-1");
+        assertEquals("Invalid record size or ignored bytes",
+                ((ErrorPayload) diffService.getDiffResult("52", diffQuery).getBody()).getMessage());
+        //a record larger than the data is not a whole record
+        diffQuery.setRecordSize(DiffQuery.MAX_RECORD_SIZE);
+        assertEquals("Data is not made of whole records",
+                ((ErrorPayload) diffService.getDiffResult("52", diffQuery).getBody()).getMessage());
+    }
+
+    /**
+     * Test: The approximate mode estimates the similarity by sampling sides of the same size, exactly when
+     * they are shorter than the samples, and by MinHash sides of different sizes
+     */
+    @Test
+    public void testApproximate () {
+        byte[] left = new byte[100000];
+        new Random(49).nextBytes(left);
+        byte[] right = left.clone();
+        for (int i = 0; i < right.length; i += 20) {
+            right[i] ^= 1;
+        }
+        inputRightLeft("53", Base64.encodeBase64String(right), Base64.encodeBase64String(left));
+        DiffQuery diffQuery = new DiffQuery();
+        diffQuery.setMode(DiffQuery.MODE_APPROXIMATE);
+
+        DiffResult diffResult = (DiffResult) diffService.getDiffResult("53", diffQuery).getBody();
+        assertNull(diffResult.getDifferences());
+        assertNull(diffResult.isEquals());
+        DiffEstimate estimate = diffResult.getEstimate();
+        assertEquals(DiffEstimate.METHOD_SAMPLING, estimate.getMethod());
+        assertEquals(DiffQuery.DEFAULT_SAMPLES, estimate.getSamples());
+        assertTrue(estimate.getLowerBound() <= 0.95 && 0.95 <= estimate.getUpperBound());
+        //the same positions are sampled again
+        assertEquals(estimate.getSimilarity(), ((DiffResult) diffService.getDiffResult("53", diffQuery).getBody())
+                .getEstimate().getSimilarity(), 0);
+
+        diffQuery.setFrom(0);
+        diffQuery.setTo(40);
+        estimate = ((DiffResult) diffService.getDiffResult("53", diffQuery).getBody()).getEstimate();
+        assertEquals(40, estimate.getSamples());
+        assertEquals(0.95, estimate.getSimilarity(), 0);
+        assertEquals(0.95, estimate.getLowerBound(), 0);
+
+        diffService.inputRight("53", Base64.encodeBase64String(Arrays.copyOf(left, 50000)));
+        diffQuery.setFrom(null);
+        diffQuery.setTo(null);
+        diffQuery.setSamples(256);
+        diffResult = (DiffResult) diffService.getDiffResult("53", diffQuery).getBody();
+        assertFalse(diffResult.isEqualSize());
+        assertEquals(DiffEstimate.METHOD_MINHASH, diffResult.getEstimate().getMethod());
+        assertEquals(256, diffResult.getEstimate().getSamples());
+        assertEquals(0.5, diffResult.getEstimate().getSimilarity(), 0.1);
+
+        diffQuery.setSamples(0);
+        ResponseEntity response = diffService.getDiffResult("53", diffQuery);
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertEquals("Invalid samples", ((ErrorPayload) response.getBody()).getMessage());
+    }
+
+    /**
+     * Test: Repeated diffs of every kind reuse the same chunks, which are returned to the pool
+     * also when the comparison fails
+     *
+     * @throws IOException the io exception
+     */
+    @Test
+    public void testPooledChunks () throws IOException {
+        inputRightLeft("54", "dGVsRWdyYXBIUw==", "dGVsZWdyYXBocw==");
+        DiffQuery summaryQuery = new DiffQuery();
+        summaryQuery.setMode(DiffQuery.MODE_SUMMARY);
+        DiffQuery recordQuery = new DiffQuery();
+        recordQuery.setRecordSize(2);
+        for (int i = 0; i < 3; i++) {
+            diffService.getDiffResult("54", new DiffQuery());
+            diffService.getDiffResult("54", summaryQuery);
+            diffService.getDiffResult("54", recordQuery);
+            StreamingResponseBody runs = (StreamingResponseBody) diffService.streamDifferences("54").getBody();
+            runs.writeTo(new ByteArrayOutputStream());
+        }
+        assertEquals(2, diffService.getBufferPool().getAvailable());
+
+        StreamingResponseBody failing = (StreamingResponseBody) diffService.streamDifferences("54").getBody();
+        try {
+            failing.writeTo(new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    throw new IOException("Closed");
+                }
+            });
+            fail();
+        } catch (IOException e) {
+            assertEquals("Closed", e.getMessage());
+        }
+        assertEquals(0, diffService.getBufferPool().getOutstanding());
+        assertEquals(2, diffService.getBufferPool().getAvailable());
+    }
+
+    /**
+     * Test: Unknown modes are rejected
+     */
+    @Test
+    public void testInvalidDiffMode () {
+        DiffQuery diffQuery = new DiffQuery();
+        diffQuery.setMode("partial");
+
+        ResponseEntity response = diffService.getDiffResult("27", diffQuery);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertEquals("Invalid diff mode", ((ErrorPayload) response.getBody()).getMessage());
+    }
+
+    /**
+     * Test: Older versions of each side are kept up to the history depth and
+     * can be compared with the other side or with each other
+     */
+    @Test
+    public void testVersionHistory () {
+        DiffService versionedService = new DiffService();
+        versionedService.setHistoryDepth(3);
+        //teletubie, teletubio, teletubia, teletubiu
+        versionedService.inputLeft("28", "dGVsZXR1Ymll");
+        versionedService.inputLeft("28", "dGVsZXR1Ymlv");
+        versionedService.inputLeft("28", "dGVsZXR1Ymlh");
+        versionedService.inputLeft("28", "dGVsZXR1Yml1");
+        versionedService.inputRight("28", "dGVsZXR1Ymll");
+
+        List<SideVersion> versions = (List<SideVersion>) versionedService.getVersions("28", "left").getBody();
+        assertEquals(3, versions.size());
+        assertEquals(2, versions.get(0).getVersion());
+        assertEquals(4, versions.get(2).getVersion());
+        assertEquals(9, versions.get(0).getLength());
+        assertEquals(1, ((List<SideVersion>) versionedService.getVersions("28", "right").getBody()).size());
+
+        DiffResult latest = (DiffResult) versionedService.getDiffResult("28").getBody();
+        assertFalse(latest.isEquals());
+
+        DiffQuery diffQuery = new DiffQuery();
+        diffQuery.setLeftVersion(2L);
+        diffQuery.setRightVersion(1L);
+        DiffResult older = (DiffResult) versionedService.getDiffResult("28", diffQuery).getBody();
+        assertFalse(older.isEquals());
+        assertEquals(8, older.getDifferences().get(0).getOffset());
+
+        DiffResult versionDiff = (DiffResult) versionedService.getVersionDiffResult("28", "left", 2, 4,
+                new DiffQuery()).getBody();
+        assertFalse(versionDiff.isEquals());
+        assertEquals(1, versionDiff.getDifferences().size());
+        assertTrue(((DiffResult) versionedService.getVersionDiffResult("28", "left", 3, 3,
+                new DiffQuery()).getBody()).isEquals());
+
+        diffQuery.setLeftVersion(1L);
+        ResponseEntity response = versionedService.getDiffResult("28", diffQuery);
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+        assertEquals("Version not Found", ((ErrorPayload) response.getBody()).getMessage());
+        assertEquals(HttpStatus.NOT_FOUND,
+                versionedService.getVersionDiffResult("28", "right", 1, 2, new DiffQuery()).getStatusCode());
+        assertEquals(HttpStatus.NOT_FOUND, versionedService.getVersions("29", "left").getStatusCode());
+        assertEquals(HttpStatus.NOT_FOUND,
+                versionedService.getVersionDiffResult("29", "left", 1, 1, new DiffQuery()).getStatusCode());
+    }
+
+    /**
+     * Test: The history depth must keep at least the latest version
+     */
+    @Test (expected = IllegalArgumentException.class)
+    public void testInvalidHistoryDepth () {
+        new DiffService().setHistoryDepth(0);
+    }
+
+    /**
+     * Test: Diff results carry an entity tag that changes with the versions compared,
+     * a current tag is answered with not modified and no body
+     */
+    @Test
+    public void testConditionalDiff () {
+        DiffService versionedService = new DiffService();
+        versionedService.setHistoryDepth(2);
+        versionedService.inputRight("30", "dGVsZXR1Ymll");
+        versionedService.inputLeft("30", "dGVsZXR1Ymlv");
+
+        ResponseEntity first = versionedService.getDiffResult("30", new DiffQuery(), null);
+        assertEquals(HttpStatus.OK, first.getStatusCode());
+        String entityTag = first.getHeaders().getETag();
+        assertNotNull(entityTag);
+
+        ResponseEntity notModified = versionedService.getDiffResult("30", new DiffQuery(), "\"other\", " + entityTag);
+        assertEquals(HttpStatus.NOT_MODIFIED, notModified.getStatusCode());
+        assertEquals(entityTag, notModified.getHeaders().getETag());
+        assertNull(notModified.getBody());
+        assertEquals(HttpStatus.NOT_MODIFIED,
+                versionedService.getDiffResult("30", new DiffQuery(), "W/" + entityTag).getStatusCode());
+        assertEquals(HttpStatus.OK, versionedService.getDiffResult("30", new DiffQuery(), "\"other\"").getStatusCode());
+
+        //a new version changes the tag, the older version keeps its own
+        versionedService.inputLeft("30", "dGVsZXR1Ymll");
+        ResponseEntity updated = versionedService.getDiffResult("30", new DiffQuery(), entityTag);
+        assertEquals(HttpStatus.OK, updated.getStatusCode());
+        assertTrue(((DiffResult) updated.getBody()).isEquals());
+        DiffQuery olderLeft = new DiffQuery();
+        olderLeft.setLeftVersion(1L);
+        assertEquals(HttpStatus.NOT_MODIFIED, versionedService.getDiffResult("30", olderLeft, entityTag).getStatusCode());
+
+        //the same versions of a data set created again are not the same result
+        String updatedTag = updated.getHeaders().getETag();
+        versionedService.removeData("30");
+        versionedService.inputRight("30", "dGVsZXR1Ymll");
+        versionedService.inputLeft("30", "dGVsZXR1Ymlv");
+        versionedService.inputLeft("30", "dGVsZXR1Ymlv");
+        assertEquals(HttpStatus.OK, versionedService.getDiffResult("30", new DiffQuery(), updatedTag).getStatusCode());
+
+        //errors are not tagged
+        ResponseEntity invalidRange = versionedService.getDiffResult("30", range(5, 2), null);
+        assertEquals(HttpStatus.BAD_REQUEST, invalidRange.getStatusCode());
+        assertNull(invalidRange.getHeaders().getETag());
+    }
+
+    /**
+     * Test: The diff is computed in background once both sides are present, served by the GET,
+     * and cancelled by a newer upload
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testPrecompute () throws Exception {
+        List<Runnable> tasks = new ArrayList<>();
+        DiffService precomputingService = new DiffService();
+        precomputingService.setPrecomputeExecutor(tasks::add);
+
+        precomputingService.inputRight("31", "dGVsZXR1Ymll");
+        assertTrue(tasks.isEmpty());
+        precomputingService.inputLeft("31", "dGVsZXR1Ymlv");
+        assertEquals(1, tasks.size());
+        Future<ResponseEntity> first = precomputingService.getPrecomputed("31");
+
+        precomputingService.inputLeft("31", "dGVsZXRvYmll");
+        assertTrue(first.isCancelled());
+        assertEquals(2, tasks.size());
+        tasks.forEach(Runnable::run);
+
+        Future<ResponseEntity> latest = precomputingService.getPrecomputed("31");
+        ResponseEntity response = precomputingService.getDiffResult("31");
+        assertSame(latest.get().getBody(), response.getBody());
+        DiffResult diffResult = (DiffResult) response.getBody();
+        assertEquals(1, diffResult.getDifferences().size());
+        assertEquals(5, diffResult.getDifferences().get(0).getOffset());
+        assertNotNull(response.getHeaders().getETag());
+        //other queries are computed when requested
+        assertNotSame(latest.get().getBody(), precomputingService.getDiffResult("31", range(0, 6)).getBody());
+
+        precomputingService.removeData("31");
+        assertNull(precomputingService.getPrecomputed("31"));
+
+        //beyond the maximum, diffs are only computed when requested
+        precomputingService.setMaxPrecomputed(0);
+        precomputingService.inputRight("32", "dGVsZXR1Ymll");
+        precomputingService.inputLeft("32", "dGVsZXR1Ymll");
+        assertNull(precomputingService.getPrecomputed("32"));
+        assertTrue(((DiffResult) precomputingService.getDiffResult("32").getBody()).isEquals());
+    }
+
+    /**
+     * Test: Beyond the maximum, the diff served or computed the longest time ago is dropped
+     * to keep the diff of another data set
+     */
+    @Test
+    public void testPrecomputeEviction () {
+        List<Runnable> tasks = new ArrayList<>();
+        DiffService precomputingService = new DiffService();
+        precomputingService.setPrecomputeExecutor(tasks::add);
+        precomputingService.setMaxPrecomputed(2);
+
+        for (String id : new String[] {"34", "35"}) {
+            precomputingService.inputRight(id, "dGVsZXR1Ymll");
+            precomputingService.inputLeft(id, "dGVsZXR1Ymlv");
+        }
+        tasks.forEach(Runnable::run);
+        Future<ResponseEntity> served = precomputingService.getPrecomputed("34");
+        precomputingService.getDiffResult("34");
+
+        precomputingService.inputRight("36", "dGVsZXR1Ymll");
+        precomputingService.inputLeft("36", "dGVsZXR1Ymll");
+        assertSame(served, precomputingService.getPrecomputed("34"));
+        assertNull(precomputingService.getPrecomputed("35"));
+        assertNotNull(precomputingService.getPrecomputed("36"));
+        //the dropped diff is computed when requested
+        assertEquals(1, ((DiffResult) precomputingService.getDiffResult("35").getBody()).getDifferences().size());
+    }
+
+    /**
+     * Test: A diff computed in background that does not fit in the global budget is not kept,
+     * and the requests waiting for it still receive it
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testPrecomputeOverBudget () throws Exception {
+        List<Runnable> tasks = new ArrayList<>();
+        DiffService precomputingService = new DiffService();
+        precomputingService.setPrecomputeExecutor(tasks::add);
+        precomputingService.inputRight("37", "dGVsZXR1Ymll");
+        precomputingService.inputLeft("37", "dGVsZXR1Ymlv");
+        long dataBytes = precomputingService.getStorageUsage(0).getDataBytes();
+        precomputingService.setMaxTotalBytes(dataBytes + 1);
+
+        Future<ResponseEntity> result = precomputingService.getPrecomputed("37");
+        tasks.forEach(Runnable::run);
+        assertEquals(1, ((DiffResult) result.get().getBody()).getDifferences().size());
+        assertNull(precomputingService.getPrecomputed("37"));
+        assertEquals(0, precomputingService.getStorageUsage(0).getResultBytes());
+        assertEquals(1, ((DiffResult) precomputingService.getDiffResult("37").getBody()).getDifferences().size());
+    }
+
+    /**
+     * Test: A diff computed in background by a thread pool is waited for
+     */
+    @Test
+    public void testPrecomputeThreads () {
+        DiffService precomputingService = new DiffService();
+        precomputingService.setPrecomputeThreads(1);
+        try {
+            precomputingService.inputRight("33", "dGVsZXR1Ymll");
+            precomputingService.inputLeft("33", "dGVsZXR1Ymll");
+            assertNotNull(precomputingService.getPrecomputed("33"));
+            assertTrue(((DiffResult) precomputingService.getDiffResult("33").getBody()).isEquals());
+        } finally {
+            precomputingService.shutdown();
+        }
+    }
+
+    /**
+     * Test: The bytes held by both sides and the diffs computed in background are accounted,
+     * and the largest data sets are listed first
+     */
+    @Test
+    public void testStorageUsage () {
+        List<Runnable> tasks = new ArrayList<>();
+        DiffService precomputingService = new DiffService();
+        precomputingService.setPrecomputeExecutor(tasks::add);
+
+        precomputingService.inputRight("34", "dGVsZXR1Ymll");
+        precomputingService.inputLeft("34", "dGVsZXR1Ymlv");
+        precomputingService.inputRight("35", "dGVsZXR1Ymlldg==");
+        tasks.forEach(Runnable::run);
+
+        StorageUsage storageUsage = precomputingService.getStorageUsage(1);
+        assertEquals(2, storageUsage.getIds());
+        //Base64 strings hold 2 bytes per character
+        assertEquals(24 + 24 + 32, storageUsage.getDataBytes());
+        assertEquals(DiffService.DIFF_BYTES_SIZE, storageUsage.getResultBytes());
+        assertEquals(storageUsage.getDataBytes() + storageUsage.getResultBytes(), storageUsage.getTotalBytes());
+        assertEquals(1, storageUsage.getLargestIds().size());
+        assertEquals("34", storageUsage.getLargestIds().get(0).getId());
+        assertEquals(48, storageUsage.getLargestIds().get(0).getDataBytes());
+        assertEquals(DiffService.DIFF_BYTES_SIZE, storageUsage.getLargestIds().get(0).getResultBytes());
+
+        //an update replaces the bytes of the side and releases the previous diff
+        precomputingService.inputRight("34", "dGVsZXR1Ymlldg==");
+        storageUsage = precomputingService.getStorageUsage(2);
+        assertEquals(24 + 32 + 32, storageUsage.getDataBytes());
+        assertEquals(0, storageUsage.getResultBytes());
+        assertEquals("34", storageUsage.getLargestIds().get(0).getId());
+        assertEquals("35", storageUsage.getLargestIds().get(1).getId());
+
+        precomputingService.removeData("34");
+        precomputingService.removeData("35");
+        storageUsage = precomputingService.getStorageUsage(2);
+        assertEquals(0, storageUsage.getIds());
+        assertEquals(0, storageUsage.getTotalBytes());
+        assertTrue(storageUsage.getLargestIds().isEmpty());
+    }
+
+    /**
+     * Test: Updates that would make a data set hold more than the id budget are rejected
+     */
+    @Test
+    public void testIdBudget () {
+        diffService.setMaxIdBytes(48);
+        diffService.inputRight("36", "dGVsZXR1Ymll");
+        assertEquals(HttpStatus.CREATED, diffService.inputLeft("36", "dGVsZXR1Ymlv").getStatusCode());
+
+        ResponseEntity actual = diffService.inputLeft("36", "dGVsZXR1Ymlldg==");
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, actual.getStatusCode());
+        ErrorPayload errorPayload = (ErrorPayload) actual.getBody();
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE.toString(), errorPayload.getErrorCode());
+        assertEquals("Data set would hold 56 bytes, over the limit of 48 bytes per id", errorPayload.getMessage());
+        assertEquals("dGVsZXR1Ymlv", diffService.findData("36").getLeftData());
+    }
+
+    /**
+     * Test: Updates that would grow the storage over the global budget are rejected,
+     * while updates that do not grow it are accepted
+     */
+    @Test
+    public void testTotalBudget () {
+        diffService.setMaxTotalBytes(56);
+        diffService.inputRight("37", "dGVsZXR1Ymlldg==");
+        assertEquals(HttpStatus.CREATED, diffService.inputLeft("37", "dGVsZXR1Ymll").getStatusCode());
+
+        ResponseEntity actual = diffService.inputLeft("38", "dGVsZXR1Ymll");
+        assertEquals(HttpStatus.INSUFFICIENT_STORAGE, actual.getStatusCode());
+        assertEquals("Storage would hold more than its limit of 56 bytes",
+                ((ErrorPayload) actual.getBody()).getMessage());
+        assertNull(diffService.findData("38"));
+
+        assertEquals(HttpStatus.OK, diffService.inputRight("37", "dGVsZXR1Ymlv").getStatusCode());
+        assertEquals(48, diffService.getStorageUsage(0).getTotalBytes());
+        assertEquals(HttpStatus.CREATED, diffService.inputLeft("38", "dGVs").getStatusCode());
+    }
+
+    /**
+     * Test: Ids are listed by completion state, page by page, as sides are received and removed
+     */
+    @Test
+    public void testListIds () {
+        diffService.inputLeft("39", "dGVsZXR1Ymll");
+        diffService.inputLeft("40", "dGVsZXR1Ymll");
+        diffService.inputRight("41", "dGVsZXR1Ymll");
+        diffService.inputLeft("42", "dGVsZXR1Ymll");
+        diffService.inputRight("40", "dGVsZXR1Ymll");
+        diffService.removeData("42");
+
+        assertEquals(Collections.singletonList("41"), listedIds(CompletionState.RIGHT, null));
+        assertEquals(Collections.singletonList("40"), listedIds(CompletionState.BOTH, null));
+        ResponseEntity response = diffService.listIds(CompletionState.LEFT, null, null, null, 1);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        IdPage idPage = (IdPage) response.getBody();
+        assertEquals("39", idPage.getIds().get(0).getId());
+        assertEquals(CompletionState.LEFT, idPage.getIds().get(0).getState());
+        assertNotNull(idPage.getNext());
+        assertTrue(listedIds(CompletionState.LEFT, idPage.getNext()).isEmpty());
+
+        //only ids not updated for an hour
+        response = diffService.listIds(CompletionState.LEFT, 3600000L, null, null, 10);
+        assertTrue(((IdPage) response.getBody()).getIds().isEmpty());
+        assertNull(((IdPage) response.getBody()).getNext());
+    }
+
+    /**
+     * Test: Listings with an invalid page size or cursor are rejected
+     */
+    @Test
+    public void testInvalidListing () {
+        ResponseEntity actual = diffService.listIds(CompletionState.BOTH, null, null, null, 0);
+        assertEquals(HttpStatus.BAD_REQUEST, actual.getStatusCode());
+        assertEquals("Field limit must be between 1 and 1000", ((ErrorPayload) actual.getBody()).getMessage());
+
+        actual = diffService.listIds(CompletionState.BOTH, null, null, "cursor", 10);
+        assertEquals(HttpStatus.BAD_REQUEST, actual.getStatusCode());
+        assertEquals("Invalid cursor", ((ErrorPayload) actual.getBody()).getMessage());
+    }
+
+    /**
+     * Test: Differences are streamed as pairs of offset and length, from the sides present when the request
+     * arrived, and sides of different sizes are not compared
+     *
+     * @throws IOException the io exception
+     */
+    @Test
+    public void testStreamDifferences() throws IOException {
+        inputRightLeft("43", "dGVsZXRvYmxl", "dGVsZXR1Ymll");
+        ResponseEntity actual = diffService.streamDifferences("43");
+        assertEquals(HttpStatus.OK, actual.getStatusCode());
+        assertEquals("true", actual.getHeaders().getFirst(DiffService.EQUAL_SIZE_HEADER));
+        assertNotNull(actual.getHeaders().getETag());
+        //updates after the request do not reach the stream
+        diffService.inputRight("43", "dGVsZXR1Ymll");
+
+        DataInputStream runs = new DataInputStream(new ByteArrayInputStream(streamed(actual)));
+        assertEquals(5, runs.readLong());
+        assertEquals(1, runs.readLong());
+        assertEquals(7, runs.readLong());
+        assertEquals(1, runs.readLong());
+        assertEquals(-1, runs.read());
+
+        inputRightLeft("44", "dGVsZXR1Ymll", "dGVs");
+        actual = diffService.streamDifferences("44");
+        assertEquals("false", actual.getHeaders().getFirst(DiffService.EQUAL_SIZE_HEADER));
+        assertEquals(0, streamed(actual).length);
+
+        diffService.inputLeft("45", "dGVs");
+        actual = diffService.streamDifferences("45");
+        assertEquals(HttpStatus.BAD_REQUEST, actual.getStatusCode());
+        assertEquals("Missing Right data", ((ErrorPayload) actual.getBody()).getMessage());
+        assertEquals(HttpStatus.NOT_FOUND, diffService.streamDifferences("46").getStatusCode());
+    }
+
+    /**
+     * Test: The diff computed in background is streamed when there is one
+     *
+     * @throws IOException the io exception
+     */
+    @Test
+    public void testStreamPrecomputed() throws IOException {
+        List<Runnable> tasks = new ArrayList<>();
+        DiffService precomputingService = new DiffService();
+        precomputingService.setPrecomputeExecutor(tasks::add);
+        precomputingService.inputRight("47", "dGVsZXRvYmxl");
+        precomputingService.inputLeft("47", "dGVsZXR1Ymll");
+        precomputingService.inputRight("48", "dGVsZXR1Ymll");
+        precomputingService.inputLeft("48", "dGVsZXR1Ymll");
+        tasks.forEach(Runnable::run);
+
+        ByteBuffer runs = ByteBuffer.wrap(streamed(precomputingService.streamDifferences("47")));
+        assertEquals(2 * DiffService.RUN_SIZE, runs.remaining());
+        assertEquals(5, runs.getLong());
+        assertEquals(1, runs.getLong());
+        assertEquals(7, runs.getLong());
+        assertEquals(1, runs.getLong());
+        assertEquals(0, streamed(precomputingService.streamDifferences("48")).length);
+    }
+
+    /**
+     * Test: A conditional update succeeds only on the current version of the side,
+     * so of two clients updating the same version only the first one does
+     */
+    @Test
+    public void testConditionalUpdate () {
+        assertEquals(HttpStatus.PRECONDITION_FAILED, diffService.inputLeft("49", "dGVsZXR1Ymll", "*").getStatusCode());
+        assertNull(diffService.findData("49"));
+
+        ResponseEntity created = diffService.inputLeft("49", "dGVsZXR1Ymll");
+        String entityTag = created.getHeaders().getETag();
+        assertNotNull(entityTag);
+        assertEquals(entityTag, diffService.getVersions("49", "left").getHeaders().getETag());
+
+        ResponseEntity first = diffService.inputLeft("49", "dGVsZXRvYmll", entityTag);
+        assertEquals(HttpStatus.OK, first.getStatusCode());
+        assertNotEquals(entityTag, first.getHeaders().getETag());
+        ResponseEntity second = diffService.inputLeft("49", "dGVsZXRpYmll", entityTag);
+        assertEquals(HttpStatus.PRECONDITION_FAILED, second.getStatusCode());
+        ErrorPayload errorPayload = (ErrorPayload) second.getBody();
+        assertEquals(HttpStatus.PRECONDITION_FAILED.toString(), errorPayload.getErrorCode());
+        assertEquals("dGVsZXRvYmll", diffService.findData("49").getLeftData());
+
+        //the versions of each side are independent
+        ResponseEntity right = diffService.inputRightDecoded("49", "telefunken".getBytes(), null);
+        assertEquals(HttpStatus.CREATED, right.getStatusCode());
+        assertEquals(HttpStatus.OK, diffService.inputLeft("49", "dGVsZXR1Ymll",
+                "\"other\", " + first.getHeaders().getETag()).getStatusCode());
+        assertEquals(HttpStatus.OK, diffService.inputRightDecoded("49", "telefunkem".getBytes(),
+                right.getHeaders().getETag()).getStatusCode());
+        assertEquals(HttpStatus.OK, diffService.inputRight("49", "dGVsZXR1Ymll", "*").getStatusCode());
+    }
+
+    /**
+     * Test: A conditional removal only removes the data set on the version read,
+     * any update of either side since then keeps it
+     */
+    @Test
+    public void testConditionalRemove () {
+        assertNull(diffService.findDataVersion("55"));
+        diffService.inputLeft("55", "dGVsZXR1Ymll");
+        String leftOnly = diffService.findDataVersion("55");
+        diffService.inputRight("55", "dGVsZXR1Ymll");
+        String both = diffService.findDataVersion("55");
+        assertNotEquals(leftOnly, both);
+
+        assertFalse(diffService.removeData("55", leftOnly));
+        assertNotNull(diffService.findData("55"));
+        assertTrue(diffService.removeData("55", both));
+        assertNull(diffService.findData("55"));
+        assertFalse(diffService.removeData("55", both));
+    }
+
+    /**
+     * Writes the body of a streamed response.
+     *
+     * @param response  the response
+     * @return the bytes streamed
+     * @throws IOException the io exception
+     */
+    private static byte[] streamed(ResponseEntity response) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ((StreamingResponseBody) response.getBody()).writeTo(out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Lists the ids of a page of 10 ids on a completion state.
+     *
+     * @param state the completion state
+     * @param after the cursor, null for the first page
+     * @return the ids listed
+     */
+    private List<String> listedIds(CompletionState state, String after) {
+        IdPage idPage = (IdPage) diffService.listIds(state, null, null, after, 10).getBody();
+        List<String> ids = new ArrayList<>();
+        idPage.getIds().forEach(idState -> ids.add(idState.getId()));
+        return ids;
+    }
+
+    /**
+     * Mounts the query of a range of bytes.
+     *
+     * @param from  first byte, inclusive
+     * @param to    last byte, exclusive
+     * @return the diff query
+     */
+    private static DiffQuery range(Integer from, Integer to) {
+        DiffQuery diffQuery = new DiffQuery();
+        diffQuery.setFrom(from);
+        diffQuery.setTo(to);
+        return diffQuery;
+    }
+
     /**
      * Auxiliary method to input valid data on both sides
      * of the diff while checking for the correct
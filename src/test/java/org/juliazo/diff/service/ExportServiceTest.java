@@ -0,0 +1,175 @@
+package org.juliazo.diff.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.juliazo.diff.model.ErrorPayload;
+import org.juliazo.diff.model.ExportRecord;
+import org.juliazo.diff.model.ExportStatus;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for {@link org.juliazo.diff.service.ExportService}
+ */
+public class ExportServiceTest {
+
+    /**
+     * The export directory
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Reads the exported records
+     */
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * Test: Every data set is written in the order of the ids, with the diff when both sides are present
+     */
+    @Test
+    public void testExportFile () throws IOException {
+        DiffService diffService = new DiffService();
+        diffService.inputLeft("1", "dGVsZXR1Ymll");
+        diffService.inputRight("1", "dGVsZXRvYmll");
+        diffService.inputLeft("2", "dGVsZXR1Ymll");
+        diffService.inputLeft("3", "dGVsZXR1Ymll");
+        diffService.inputRight("3", "dGVsZXR1Ymll");
+        Path file = folder.getRoot().toPath().resolve("snapshot.ndjson");
+
+        ExportStatus exportStatus = exportService(diffService).exportFile(file, false);
+
+        assertEquals(ExportStatus.COMPLETED, exportStatus.getState());
+        assertEquals(3, exportStatus.getIds());
+        assertEquals(3, exportStatus.getExported());
+        assertEquals(Files.size(file), exportStatus.getBytesWritten());
+        assertFalse(Files.exists(ExportService.checkpoint(file)));
+
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(3, lines.size());
+        ExportRecord first = objectMapper.readValue(lines.get(0), ExportRecord.class);
+        assertEquals("1", first.getId());
+        assertEquals("dGVsZXR1Ymll", first.getLeft());
+        assertEquals("dGVsZXRvYmll", first.getRight());
+        assertEquals(5, first.getDiff().getDifferences().get(0).getOffset());
+        ExportRecord second = objectMapper.readValue(lines.get(1), ExportRecord.class);
+        assertNull(second.getRight());
+        assertNull(second.getDiff());
+        assertTrue(objectMapper.readValue(lines.get(2), ExportRecord.class).getDiff().isEquals());
+    }
+
+    /**
+     * Test: An export interrupted by an error is resumed from the checkpoint of its last batch,
+     * without writing any data set twice
+     */
+    @Test
+    public void testResume () throws IOException {
+        DiffService failingService = new DiffService() {
+            @Override
+            public ExportRecord exportData(String id) {
+                if ("3".equals(id)) {
+                    throw new IllegalStateException("Could not compute the diff of id 3");
+                }
+                return super.exportData(id);
+            }
+        };
+        DiffService diffService = new DiffService();
+        for (int i = 0; i < 5; i++) {
+            failingService.inputLeft(String.valueOf(i), "dGVsZXR1Ymll");
+            diffService.inputLeft(String.valueOf(i), "dGVsZXR1Ymll");
+        }
+        Path file = folder.getRoot().toPath().resolve("snapshot.ndjson");
+
+        ExportStatus failed = exportService(failingService).exportFile(file, false);
+        assertEquals(ExportStatus.FAILED, failed.getState());
+        assertEquals("Could not export: Could not compute the diff of id 3", failed.getMessage());
+        assertEquals(2, failed.getExported());
+        assertTrue(Files.exists(ExportService.checkpoint(file)));
+
+        //a partial batch left on the file is written again
+        Files.write(file, "{\"id\":\"2\"".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        ExportStatus resumed = exportService(diffService).exportFile(file, true);
+        assertEquals(ExportStatus.COMPLETED, resumed.getState());
+        assertEquals(5, resumed.getIds());
+        assertEquals(5, resumed.getExported());
+
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(5, lines.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(String.valueOf(i), objectMapper.readValue(lines.get(i), ExportRecord.class).getId());
+        }
+        assertFalse(Files.exists(ExportService.checkpoint(file)));
+    }
+
+    /**
+     * Test: An export started in background reports its progress until it completes
+     */
+    @Test
+    public void testStart () throws Exception {
+        DiffService diffService = new DiffService();
+        diffService.inputLeft("1", "dGVsZXR1Ymll");
+        ExportService exportService = exportService(diffService);
+        assertEquals(HttpStatus.NOT_FOUND, exportService.getStatus().getStatusCode());
+
+        ResponseEntity started = exportService.start("daily/snapshot.ndjson", false);
+        assertEquals(HttpStatus.ACCEPTED, started.getStatusCode());
+
+        ExportStatus exportStatus = (ExportStatus) exportService.getStatus().getBody();
+        for (int i = 0; i < 100 && ExportStatus.RUNNING.equals(exportStatus.getState()); i++) {
+            Thread.sleep(50);
+            exportStatus = (ExportStatus) exportService.getStatus().getBody();
+        }
+        assertEquals(ExportStatus.COMPLETED, exportStatus.getState());
+        assertEquals(1, exportStatus.getExported());
+        assertTrue(Files.exists(folder.getRoot().toPath().resolve("daily/snapshot.ndjson")));
+    }
+
+    /**
+     * Test: Files outside of the export directory are not written and exports without a checkpoint are not resumed
+     */
+    @Test
+    public void testInvalidFile () {
+        ExportService exportService = exportService(new DiffService());
+
+        assertError(exportService.start(null, false), HttpStatus.BAD_REQUEST, "Field file is required");
+        assertError(exportService.start("../snapshot.ndjson", false), HttpStatus.BAD_REQUEST,
+                "File must be within the export directory");
+        assertError(exportService.start("snapshot.ndjson", true), HttpStatus.NOT_FOUND, "Checkpoint not Found");
+    }
+
+    /**
+     * Instantiates the service under test on the export directory, with 2 threads and batches of 2 data sets.
+     *
+     * @param diffService   the service exporting each data set
+     * @return the export service
+     */
+    private ExportService exportService(DiffService diffService) {
+        return new ExportService(diffService, objectMapper, folder.getRoot().getPath(), 2, 2);
+    }
+
+    /**
+     * Checks an error response.
+     *
+     * @param actual    the response
+     * @param status    the expected status
+     * @param message   the expected message
+     */
+    private static void assertError(ResponseEntity actual, HttpStatus status, String message) {
+        assertEquals(status, actual.getStatusCode());
+        assertEquals(message, ((ErrorPayload) actual.getBody()).getMessage());
+    }
+}
@@ -0,0 +1,174 @@
+package org.juliazo.diff.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.juliazo.diff.cluster.ClusterService;
+import org.juliazo.diff.model.DiffResult;
+import org.juliazo.diff.model.ErrorPayload;
+import org.juliazo.diff.model.ImportStatus;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for {@link org.juliazo.diff.service.ImportService}
+ */
+public class ImportServiceTest {
+
+    /**
+     * The import directory
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * The service that stores the imported records
+     */
+    private final DiffService diffService = new DiffService();
+
+    /**
+     * The cluster service, no remote owner is found unless stated by the test
+     */
+    private final ClusterService clusterService = mock(ClusterService.class);
+
+    /**
+     * Test: Valid records are stored and invalid ones are counted and described, on lines split
+     * across reads of a buffer smaller than a line
+     */
+    @Test
+    public void testImportFile () throws IOException {
+        when(clusterService.findRemoteOwner("remote")).thenReturn("localhost:8081");
+        Path file = write("records.ndjson",
+                "{\"id\":\"1\",\"left\":\"dGVsZXR1Ymll\",\"right\":\"dGVsZXRvYmll\"}\r\n"
+                        + "\n"
+                        + "not json\n"
+                        + "{\"id\":\"2\",\"left\":\"dGVs*XR1Ymll\",\"right\":\"dGVsZXRvYmll\"}\n"
+                        + "{\"left\":\"dGVsZXR1Ymll\",\"right\":\"dGVsZXRvYmll\"}\n"
+                        + "{\"id\":\"remote\",\"left\":\"dGVsZXR1Ymll\",\"right\":\"dGVsZXRvYmll\"}\n"
+                        + "{\"id\":\"3\",\"left\":\"dGVsZXR1Ymll\"}\n"
+                        + "{\"id\":\"4\",\"left\":\"dGVsZXR1Ymll\",\"right\":\"dGVsZXR1Ymll\"}");
+
+        ImportStatus importStatus = importService(16).importFile(file);
+
+        assertEquals(ImportStatus.COMPLETED, importStatus.getState());
+        assertEquals(Files.size(file), importStatus.getTotalBytes());
+        assertEquals(Files.size(file), importStatus.getBytesRead());
+        assertEquals(7, importStatus.getRecords());
+        assertEquals(2, importStatus.getImported());
+        assertEquals(5, importStatus.getRejected());
+        assertTrue(importStatus.getRejections().contains("Line 3: Invalid JSON"));
+        assertTrue(importStatus.getRejections().contains("Line 4: Input must use valid Base64 characters"));
+        assertTrue(importStatus.getRejections().contains("Line 5: Field id is required"));
+        assertTrue(importStatus.getRejections().contains("Line 6: Id is owned by another member of the cluster"));
+        assertTrue(importStatus.getRejections().contains("Line 7: Field data is required"));
+
+        DiffResult diffResult = (DiffResult) diffService.getDiffResult("1").getBody();
+        assertEquals(5, diffResult.getDifferences().get(0).getOffset());
+        assertTrue(((DiffResult) diffService.getDiffResult("4").getBody()).isEquals());
+        assertEquals(HttpStatus.NOT_FOUND, diffService.getDiffResult("2").getStatusCode());
+        assertEquals(HttpStatus.NOT_FOUND, diffService.getDiffResult("remote").getStatusCode());
+    }
+
+    /**
+     * Test: Files of many batches are imported by several threads
+     */
+    @Test
+    public void testImportBatches () throws IOException {
+        StringBuilder records = new StringBuilder();
+        int count = ImportService.BATCH_SIZE * 5 + 7;
+        for (int i = 0; i < count; i++) {
+            records.append("{\"id\":\"").append(i).append("\",\"left\":\"dGVsZXR1Ymll\",\"right\":\"dGVsZXRvYmll\"}\n");
+        }
+
+        ImportStatus importStatus = importService(1 << 10).importFile(write("batches.ndjson", records.toString()));
+
+        assertEquals(count, importStatus.getImported());
+        assertEquals(0, importStatus.getRejected());
+        assertEquals(count, diffService.getStoredIds().size());
+    }
+
+    /**
+     * Test: An import started in background reports its progress until it completes
+     */
+    @Test
+    public void testStart () throws Exception {
+        write("records.ndjson", "{\"id\":\"5\",\"left\":\"dGVsZXR1Ymll\",\"right\":\"dGVsZXRvYmll\"}\n");
+        ImportService importService = importService(1 << 10);
+        assertEquals(HttpStatus.NOT_FOUND, importService.getStatus().getStatusCode());
+
+        ResponseEntity started = importService.start("records.ndjson");
+        assertEquals(HttpStatus.ACCEPTED, started.getStatusCode());
+        assertEquals("records.ndjson", ((ImportStatus) started.getBody()).getFile());
+
+        ImportStatus importStatus = (ImportStatus) importService.getStatus().getBody();
+        for (int i = 0; i < 100 && ImportStatus.RUNNING.equals(importStatus.getState()); i++) {
+            Thread.sleep(50);
+            importStatus = (ImportStatus) importService.getStatus().getBody();
+        }
+        assertEquals(ImportStatus.COMPLETED, importStatus.getState());
+        assertEquals(1, importStatus.getImported());
+        assertFalse(diffService.getStoredIds().isEmpty());
+    }
+
+    /**
+     * Test: Files missing or outside of the import directory are not imported
+     */
+    @Test
+    public void testInvalidFile () {
+        ImportService importService = importService(1 << 10);
+
+        assertError(importService.start(""), HttpStatus.BAD_REQUEST, "Field file is required");
+        assertError(importService.start("../records.ndjson"), HttpStatus.BAD_REQUEST,
+                "File must be within the import directory");
+        assertError(importService.start("missing.ndjson"), HttpStatus.NOT_FOUND, "File not Found");
+    }
+
+    /**
+     * Instantiates the service under test on the import directory, with 4 threads.
+     *
+     * @param bufferBytes   size of the buffer the files are read into
+     * @return the import service
+     */
+    private ImportService importService(int bufferBytes) {
+        return new ImportService(diffService, clusterService, new ObjectMapper(),
+                folder.getRoot().getPath(), 4, bufferBytes);
+    }
+
+    /**
+     * Writes a file on the import directory.
+     *
+     * @param name      the file name
+     * @param content   the content
+     * @return the file
+     * @throws IOException if the file cannot be written
+     */
+    private Path write(String name, String content) throws IOException {
+        Path file = folder.getRoot().toPath().resolve(name);
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    /**
+     * Checks an error response.
+     *
+     * @param actual    the response
+     * @param status    the expected status
+     * @param message   the expected message
+     */
+    private static void assertError(ResponseEntity actual, HttpStatus status, String message) {
+        assertEquals(status, actual.getStatusCode());
+        assertEquals(message, ((ErrorPayload) actual.getBody()).getMessage());
+    }
+}
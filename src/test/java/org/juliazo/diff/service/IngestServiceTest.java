@@ -0,0 +1,186 @@
+package org.juliazo.diff.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.tomcat.util.codec.binary.Base64;
+import org.juliazo.diff.model.Base64Data;
+import org.juliazo.diff.model.DiffResult;
+import org.juliazo.diff.model.ErrorPayload;
+import org.juliazo.diff.storage.DeflateCodec;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.io.ByteArrayInputStream;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for {@link org.juliazo.diff.service.IngestService}
+ */
+public class IngestServiceTest {
+
+    /**
+     * The service that stores the ingested sides
+     */
+    private final DiffService diffService = new DiffService();
+
+    /**
+     * The service under test
+     */
+    private final IngestService ingestService = new IngestService(diffService, new ObjectMapper());
+
+    /**
+     * Every buffer must be back in the pool after each request
+     */
+    @After
+    public void checkBuffersReleased () {
+        assertEquals(0, diffService.getBufferPool().getOutstanding());
+    }
+
+    /**
+     * Test: Ingested sides are stored as if they were posted, other fields are skipped
+     */
+    @Test
+    public void testIngest () {
+        byte[] raw = new byte[100000];
+        new Random(3).nextBytes(raw);
+        String data = Base64.encodeBase64String(raw);
+
+        ResponseEntity left = ingest("1", "left", "{\"other\":{\"data\":[1,2]},\"data\":\"" + data + "\"}");
+        assertEquals(HttpStatus.CREATED, left.getStatusCode());
+        assertSides(left, data, "");
+
+        ResponseEntity right = ingest("1", "right", "{\"data\" : \"" + data + "\"}");
+        assertEquals(HttpStatus.CREATED, right.getStatusCode());
+        assertSides(right, data, data);
+        assertTrue(((DiffResult) diffService.getDiffResult("1").getBody()).isEquals());
+
+        //whitespace between blocks, as the MIME encoding produces
+        ResponseEntity updated = ingest("1", "right", "{\"data\":\"dGVs\\r\\nZXR1\"}");
+        assertEquals(HttpStatus.OK, updated.getStatusCode());
+        assertSides(updated, data, "dGVsZXR1");
+    }
+
+    /**
+     * Test: Ingested sides are encoded by the storage codec without being decoded again
+     */
+    @Test
+    public void testIngestEncoded () {
+        diffService.setStorageCodec(new DeflateCodec(1));
+
+        ingest("2", "left", "{\"data\":\"dGVsZXR1Ymll\"}");
+        ingest("2", "right", "{\"data\":\"dGVsZXRvYmll\"}");
+
+        DiffResult diffResult = (DiffResult) diffService.getDiffResult("2").getBody();
+        assertEquals(1, diffResult.getDifferences().size());
+        assertEquals(5, diffResult.getDifferences().get(0).getOffset());
+    }
+
+    /**
+     * Test: Invalid characters and incomplete blocks are rejected as invalid Base64
+     */
+    @Test
+    public void testInvalidData () {
+        assertError(ingest("3", "left", "{\"data\":\"dGVs\\\\ZXR1\"}"), "Input must use valid Base64 characters");
+        assertError(ingest("3", "left", "{\"data\":\"dG-_\"}"), "Input must use valid Base64 characters");
+        assertError(ingest("3", "left", "{\"data\":\"dGVsZX\"}"), "Input must use valid Base64 characters");
+        assertError(ingest("3", "left", "{\"data\":123}"), "Input must use valid Base64 characters");
+        assertEquals(null, diffService.findData("3"));
+    }
+
+    /**
+     * Test: Missing or empty data and invalid JSON are rejected
+     */
+    @Test
+    public void testInvalidPayload () {
+        assertError(ingest("4", "left", "{\"data\":\"\"}"), "Field data is required");
+        assertError(ingest("4", "left", "{\"data\":null}"), "Field data is required");
+        assertError(ingest("4", "left", "{}"), "Field data is required");
+        assertError(ingest("4", "left", "[\"dGVs\"]"), "Invalid JSON payload");
+        assertError(ingest("4", "left", "{\"data\":\"dGVs\""), "Invalid JSON payload");
+        assertEquals(null, diffService.findData("4"));
+    }
+
+    /**
+     * Test: Raw sides are stored as they are sent, with no size known in advance, and empty ones are rejected
+     */
+    @Test
+    public void testIngestRaw () {
+        byte[] raw = new byte[70000];
+        new Random(5).nextBytes(raw);
+        byte[] changed = raw.clone();
+        changed[65536] ^= 1;
+
+        ResponseEntity left = ingestService.ingestRaw("5", "left", new ByteArrayInputStream(raw), -1, null);
+        assertEquals(HttpStatus.CREATED, left.getStatusCode());
+        assertNull(left.getBody());
+        ResponseEntity right = ingestService.ingestRaw("5", "right", new ByteArrayInputStream(changed), changed.length,
+                null);
+        assertEquals(HttpStatus.CREATED, right.getStatusCode());
+        Base64Data base64Data = diffService.findData("5");
+        assertEquals(Base64.encodeBase64String(raw), base64Data.getLeftData());
+        assertEquals(Base64.encodeBase64String(changed), base64Data.getRightData());
+
+        DiffResult diffResult = (DiffResult) diffService.getDiffResult("5").getBody();
+        assertEquals(1, diffResult.getDifferences().size());
+        assertEquals(65536, diffResult.getDifferences().get(0).getOffset());
+
+        assertError(ingestService.ingestRaw("6", "left", new ByteArrayInputStream(new byte[0]), 0, null),
+                "Field data is required");
+    }
+
+    /**
+     * Test: Sides larger than the arrays kept by the pool are stored in the array they were read into
+     */
+    @Test
+    public void testIngestLargeRaw () {
+        byte[] raw = new byte[9 << 20];
+        new Random(7).nextBytes(raw);
+
+        ResponseEntity left = ingestService.ingestRaw("7", "left", new ByteArrayInputStream(raw), raw.length, null);
+        assertEquals(HttpStatus.CREATED, left.getStatusCode());
+        assertEquals(raw.length, diffService.getStorageUsage(1).getTotalBytes());
+        assertEquals(Base64.encodeBase64String(raw), diffService.findData("7").getLeftData());
+    }
+
+    /**
+     * Ingests a payload.
+     *
+     * @param id        the unique identifier of the data set
+     * @param side      left or right
+     * @param payload   the JSON payload
+     * @return the response entity
+     */
+    private ResponseEntity ingest (String id, String side, String payload) {
+        byte[] body = payload.getBytes();
+        return ingestService.ingest(id, side, new ByteArrayInputStream(body), body.length, null);
+    }
+
+    /**
+     * Checks the sides returned after an update.
+     *
+     * @param response  the response
+     * @param left      the expected left data
+     * @param right     the expected right data
+     */
+    private static void assertSides (ResponseEntity response, String left, String right) {
+        Base64Data base64Data = (Base64Data) response.getBody();
+        assertEquals(left, base64Data.getLeftData());
+        assertEquals(right, base64Data.getRightData());
+    }
+
+    /**
+     * Checks the response of a rejected payload.
+     *
+     * @param response  the response
+     * @param message   the expected message
+     */
+    private static void assertError (ResponseEntity response, String message) {
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertEquals(message, ((ErrorPayload) response.getBody()).getMessage());
+    }
+}
@@ -0,0 +1,107 @@
+package org.juliazo.diff.service;
+
+import org.juliazo.diff.model.DiffQuery;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Test class for {@link org.juliazo.diff.service.SubscriptionService}.
+ * Events sent to the subscribers are checked by the integration tests, which hold real connections.
+ */
+public class SubscriptionServiceTest {
+
+    /**
+     * The service whose updates are pushed
+     */
+    private final DiffService diffService = new DiffService();
+
+    /**
+     * The service under test, limited to 2 subscribers
+     */
+    private final SubscriptionService subscriptionService = new SubscriptionService(diffService, 2, 60000, 1);
+
+    /**
+     * Stops the publisher threads
+     */
+    @After
+    public void shutdown () {
+        subscriptionService.shutdown();
+    }
+
+    /**
+     * Test: Subscriptions beyond the limit are rejected, on any id
+     */
+    @Test
+    public void testMaxSubscribers () {
+        SseEmitter first = subscriptionService.subscribe("1", null);
+        SseEmitter second = subscriptionService.subscribe("2", null);
+        assertNotNull(first);
+        assertNotNull(second);
+        assertEquals(2, subscriptionService.getSubscriberCount());
+
+        assertNull(subscriptionService.subscribe("1", null));
+        assertEquals(2, subscriptionService.getSubscriberCount());
+    }
+
+    /**
+     * Test: Updates of ids with and without subscribers are accepted while subscribers are idle
+     */
+    @Test
+    public void testUpdates () {
+        subscriptionService.subscribe("3", null);
+
+        assertEquals(201, diffService.inputLeft("3", "dGVsZXR1Ymll").getStatusCodeValue());
+        assertEquals(201, diffService.inputRight("3", "dGVsZXR1Ymlv").getStatusCodeValue());
+        assertEquals(201, diffService.inputRight("4", "dGVsZXR1Ymlv").getStatusCodeValue());
+        assertEquals(1, subscriptionService.getSubscriberCount());
+    }
+
+    /**
+     * Test: A push that fails does not stop the later updates of the id from being pushed
+     *
+     * @throws InterruptedException the interrupted exception
+     */
+    @Test
+    public void testFailedPush () throws InterruptedException {
+        AtomicBoolean failed = new AtomicBoolean();
+        BlockingQueue<Integer> results = new LinkedBlockingQueue<>();
+        DiffService failingService = new DiffService() {
+            @Override
+            public ResponseEntity getDiffResult (String id, DiffQuery diffQuery, String ifNoneMatch) {
+                if (failed.compareAndSet(false, true)) {
+                    results.add(-1);
+                    throw new IllegalStateException("Diff failed");
+                }
+                ResponseEntity response = super.getDiffResult(id, diffQuery, ifNoneMatch);
+                results.add(response.getStatusCodeValue());
+                return response;
+            }
+        };
+        SubscriptionService failingSubscriptions = new SubscriptionService(failingService, 2, 60000, 1);
+        try {
+            failingSubscriptions.subscribe("5", null);
+            assertEquals(Integer.valueOf(-1), results.poll(5, TimeUnit.SECONDS));
+
+            failingService.inputLeft("5", "dGVsZXR1Ymll");
+            failingService.inputRight("5", "dGVsZXR1Ymlv");
+            Integer status;
+            do {
+                status = results.poll(5, TimeUnit.SECONDS);
+                assertNotNull(status);
+            } while (status != 200);
+        } finally {
+            failingSubscriptions.shutdown();
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package org.juliazo.diff.service;
+
+import org.apache.tomcat.util.codec.binary.Base64;
+import org.juliazo.diff.model.Base64Data;
+import org.juliazo.diff.model.DiffResult;
+import org.juliazo.diff.model.ErrorPayload;
+import org.juliazo.diff.model.UploadStatus;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for {@link org.juliazo.diff.service.UploadService}
+ */
+public class UploadServiceTest {
+
+    /**
+     * The service that stores the committed uploads
+     */
+    private final DiffService diffService = new DiffService();
+
+    /**
+     * The service under test
+     */
+    private final UploadService uploadService = new UploadService(diffService, 100, 0, 3600000);
+
+    /**
+     * Test: Chunks sent out of order, concurrently and more than once are committed to the side
+     * as if the whole data had been sent at once
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testChunkedUpload () throws Exception {
+        byte[] raw = new byte[30001];
+        new Random(5).nextBytes(raw);
+        String data = Base64.encodeBase64String(raw);
+        //1200 characters per chunk, a multiple of 4
+        List<String> chunks = new ArrayList<>();
+        for (int i = 0; i < data.length(); i += 1200) {
+            chunks.add(data.substring(i, Math.min(data.length(), i + 1200)));
+        }
+
+        String uploadId = begin("1", "left", chunks.size()).getUploadId();
+
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < chunks.size(); i++) {
+            order.add(i);
+            order.add(i);
+        }
+        Collections.shuffle(order, new Random(9));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<ResponseEntity>> futures = new ArrayList<>();
+        for (int index : order) {
+            futures.add(executor.submit(() -> uploadService.putChunk("1", "left", uploadId, index, chunks.get(index))));
+        }
+        for (Future<ResponseEntity> future : futures) {
+            assertEquals(HttpStatus.OK, future.get().getStatusCode());
+        }
+        executor.shutdown();
+
+        ResponseEntity response = uploadService.commit("1", "left", uploadId);
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        assertEquals(data, ((Base64Data) response.getBody()).getLeftData());
+        assertEquals(data, diffService.findData("1").getLeftData());
+        assertEquals(0, diffService.getBufferPool().getOutstanding());
+
+        //the upload no longer exists after the commit
+        assertError(uploadService.commit("1", "left", uploadId), HttpStatus.NOT_FOUND, "Upload not Found");
+    }
+
+    /**
+     * Test: Missing chunks are listed and block the commit until they are sent
+     */
+    @Test
+    public void testMissingChunks () {
+        String uploadId = begin("2", "right", 3).getUploadId();
+        uploadService.putChunk("2", "right", uploadId, 1, "ZGVs");
+
+        UploadStatus status = (UploadStatus) uploadService.getStatus("2", "right", uploadId).getBody();
+        assertEquals(Arrays.asList(0, 2), status.getMissingChunks());
+        assertEquals(3, status.getChunks());
+        assertError(uploadService.commit("2", "right", uploadId), HttpStatus.CONFLICT, "Missing chunks");
+
+        uploadService.putChunk("2", "right", uploadId, 0, "dGVs");
+        uploadService.putChunk("2", "right", uploadId, 2, "ZXR1Ymll");
+        assertTrue(((UploadStatus) uploadService.getStatus("2", "right", uploadId).getBody()).getMissingChunks().isEmpty());
+
+        assertEquals(HttpStatus.CREATED, uploadService.commit("2", "right", uploadId).getStatusCode());
+        assertEquals("dGVsZGVsZXR1Ymll", diffService.findData("2").getRightData());
+    }
+
+    /**
+     * Test: Committed uploads are compared like sides sent in a single request
+     */
+    @Test
+    public void testDiffAfterUpload () {
+        diffService.inputLeft("3", "dGVsZXR1Ymll");
+        String uploadId = begin("3", "right", 2).getUploadId();
+        uploadService.putChunk("3", "right", uploadId, 0, "dGVsZXR1");
+        uploadService.putChunk("3", "right", uploadId, 1, "Ymlv");
+        uploadService.commit("3", "right", uploadId);
+
+        DiffResult diffResult = (DiffResult) diffService.getDiffResult("3").getBody();
+        assertTrue(diffResult.isEqualSize());
+        assertEquals(1, diffResult.getDifferences().size());
+        assertEquals(8, diffResult.getDifferences().get(0).getOffset());
+    }
+
+    /**
+     * Test: Invalid uploads and chunks are rejected
+     */
+    @Test
+    public void testInvalidRequests () {
+        assertError(uploadService.begin("4", "left", null), HttpStatus.BAD_REQUEST,
+                "Field chunks must be between 1 and 100");
+        assertError(uploadService.begin("4", "left", 101), HttpStatus.BAD_REQUEST,
+                "Field chunks must be between 1 and 100");
+
+        String uploadId = begin("4", "left", 2).getUploadId();
+        assertError(uploadService.putChunk("4", "left", uploadId, 2, "dGVs"), HttpStatus.BAD_REQUEST,
+                "Chunk index out of range");
+        assertError(uploadService.putChunk("4", "left", uploadId, 0, ""), HttpStatus.BAD_REQUEST,
+                "Field data is required");
+        assertError(uploadService.putChunk("4", "left", uploadId, 0, "dGV$"), HttpStatus.BAD_REQUEST,
+                "Input must use valid Base64 characters");
+        assertError(uploadService.putChunk("4", "left", uploadId, 0, "dGVsZQ=="), HttpStatus.BAD_REQUEST,
+                "Only the last chunk may end with a partial Base64 block");
+        assertEquals(HttpStatus.OK, uploadService.putChunk("4", "left", uploadId, 1, "dGVsZQ==").getStatusCode());
+
+        //the upload belongs to another side and to another id
+        assertError(uploadService.getStatus("4", "right", uploadId), HttpStatus.NOT_FOUND, "Upload not Found");
+        assertError(uploadService.getStatus("5", "left", uploadId), HttpStatus.NOT_FOUND, "Upload not Found");
+    }
+
+    /**
+     * Test: Uploads not updated within the expiry time are discarded
+     *
+     * @throws InterruptedException the interrupted exception
+     */
+    @Test
+    public void testExpiredUpload () throws InterruptedException {
+        UploadService expiringService = new UploadService(diffService, 100, 0, 1);
+        ResponseEntity response = expiringService.begin("6", "left", 1);
+        String uploadId = ((UploadStatus) response.getBody()).getUploadId();
+        Thread.sleep(10);
+
+        expiringService.begin("7", "left", 1);
+
+        assertError(expiringService.getStatus("6", "left", uploadId), HttpStatus.NOT_FOUND, "Upload not Found");
+
+        //the scheduled sweep discards them when no other upload starts
+        uploadId = ((UploadStatus) expiringService.begin("8", "left", 1).getBody()).getUploadId();
+        Thread.sleep(10);
+        expiringService.removeExpired();
+        assertError(expiringService.getStatus("8", "left", uploadId), HttpStatus.NOT_FOUND, "Upload not Found");
+    }
+
+    /**
+     * Test: The chunks held by the uploads count against the upload budget and the global budget,
+     * chunks over either one are rejected with 507, and their bytes are released when a chunk is replaced
+     * and when the upload is aborted, committed or expires
+     *
+     * @throws InterruptedException the interrupted exception
+     */
+    @Test
+    public void testUploadBudgets () throws InterruptedException {
+        UploadService limitedService = new UploadService(diffService, 100, 10, 1000);
+        String uploadId = ((UploadStatus) limitedService.begin("9", "left", 2).getBody()).getUploadId();
+        assertEquals(HttpStatus.OK, limitedService.putChunk("9", "left", uploadId, 0, "dGVsZXR1").getStatusCode());
+        assertEquals(6, diffService.getStorageUsage(0).getStagedBytes());
+        assertError(limitedService.putChunk("9", "left", uploadId, 1, "dGVsZXR1"), HttpStatus.INSUFFICIENT_STORAGE,
+                "Uploads would hold more than their limit of 10 bytes");
+        //a smaller chunk replacing the first one makes room for the second
+        assertEquals(HttpStatus.OK, limitedService.putChunk("9", "left", uploadId, 0, "dGVs").getStatusCode());
+        assertEquals(HttpStatus.OK, limitedService.putChunk("9", "left", uploadId, 1, "dGVsZXR1").getStatusCode());
+        assertEquals(9, diffService.getStorageUsage(0).getStagedBytes());
+        assertEquals(9, diffService.getStorageUsage(0).getTotalBytes());
+
+        assertEquals(HttpStatus.NO_CONTENT, limitedService.abort("9", "left", uploadId).getStatusCode());
+        assertEquals(0, diffService.getStorageUsage(0).getStagedBytes());
+        assertError(limitedService.abort("9", "left", uploadId), HttpStatus.NOT_FOUND, "Upload not Found");
+
+        uploadId = ((UploadStatus) limitedService.begin("9", "left", 1).getBody()).getUploadId();
+        limitedService.putChunk("9", "left", uploadId, 0, "dGVsZXR1Ymll");
+        assertEquals(HttpStatus.CREATED, limitedService.commit("9", "left", uploadId).getStatusCode());
+        assertEquals(0, diffService.getStorageUsage(0).getStagedBytes());
+
+        diffService.removeData("9");
+        diffService.setMaxTotalBytes(10);
+        uploadId = ((UploadStatus) uploadService.begin("10", "left", 2).getBody()).getUploadId();
+        assertEquals(HttpStatus.OK, uploadService.putChunk("10", "left", uploadId, 0, "dGVsZXR1").getStatusCode());
+        assertError(uploadService.putChunk("10", "left", uploadId, 1, "dGVsZXR1"), HttpStatus.INSUFFICIENT_STORAGE,
+                "Storage would hold more than its limit of 10 bytes");
+        assertEquals(6, diffService.getStorageUsage(0).getStagedBytes());
+
+        uploadId = ((UploadStatus) limitedService.begin("11", "left", 1).getBody()).getUploadId();
+        assertEquals(HttpStatus.OK, limitedService.putChunk("11", "left", uploadId, 0, "dGVs").getStatusCode());
+        assertEquals(9, diffService.getStorageUsage(0).getStagedBytes());
+        Thread.sleep(1010);
+        limitedService.removeExpired();
+        assertEquals(6, diffService.getStorageUsage(0).getStagedBytes());
+    }
+
+    /**
+     * Starts an upload.
+     *
+     * @param id        the id
+     * @param side      left or right
+     * @param chunks    how many chunks
+     * @return the upload status
+     */
+    private UploadStatus begin(String id, String side, int chunks) {
+        ResponseEntity response = uploadService.begin(id, side, chunks);
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        UploadStatus status = (UploadStatus) response.getBody();
+        assertEquals(id, status.getId());
+        assertEquals(side, status.getSide());
+        assertEquals(chunks, status.getMissingChunks().size());
+        return status;
+    }
+
+    /**
+     * Checks an error response.
+     *
+     * @param response  the response
+     * @param status    the expected status
+     * @param message   the expected message
+     */
+    private static void assertError(ResponseEntity response, HttpStatus status, String message) {
+        assertEquals(status, response.getStatusCode());
+        assertEquals(status.toString(), ((ErrorPayload) response.getBody()).getErrorCode());
+        assertEquals(message, ((ErrorPayload) response.getBody()).getMessage());
+    }
+}
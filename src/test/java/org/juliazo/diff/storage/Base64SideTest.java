@@ -0,0 +1,181 @@
+package org.juliazo.diff.storage;
+
+import org.apache.tomcat.util.codec.binary.Base64;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Test class for {@link org.juliazo.diff.storage.Base64Side}, {@link org.juliazo.diff.storage.StoredData}
+ * and the ranges of every {@link org.juliazo.diff.storage.StoredSide}
+ */
+public class Base64SideTest {
+
+    /**
+     * Test: The decoded length is computed without decoding and matches the decoder,
+     * with or without padding and whitespace
+     */
+    @Test
+    public void testDecodedLength () {
+        Random random = new Random(3);
+        for (int size = 0; size < 64; size++) {
+            byte[] raw = new byte[size];
+            random.nextBytes(raw);
+            String padded = Base64.encodeBase64String(raw);
+            assertEquals(size, new Base64Side(padded).getLength());
+            assertEquals(size, new Base64Side(padded.replace("=", "")).getLength());
+        }
+        String data = "dGVs ZXR1\r\nYmll";
+        assertEquals(Base64.decodeBase64(data).length, new Base64Side(data).getLength());
+    }
+
+    /**
+     * Test: The side streams its decoded bytes and keeps the data as received
+     *
+     * @throws IOException the io exception
+     */
+    @Test
+    public void testOpenStream () throws IOException {
+        Base64Side side = new Base64Side("dGVsZXR1Ymll");
+        assertEquals("dGVsZXR1Ymll", side.toBase64());
+        byte[] decoded = new byte[16];
+        try (InputStream in = side.openStream()) {
+            assertEquals(9, in.read(decoded));
+        }
+        assertEquals("teletubie", new String(decoded, 0, 9, "US-ASCII"));
+    }
+
+    /**
+     * Test: The side is decoded as it is read, byte by byte, skipped or in chunks, as the decoder
+     * decodes it, skipping whitespace and decoding the URL safe alphabet
+     *
+     * @throws IOException the io exception
+     */
+    @Test
+    public void testStreamDecoding () throws IOException {
+        byte[] raw = new byte[300];
+        new Random(50).nextBytes(raw);
+        String encoded = Base64.encodeBase64String(raw);
+        String[] data = {encoded, encoded.replaceAll("(.{76})", "$1\r\n"), Base64.encodeBase64URLSafeString(raw)};
+        for (String side : data) {
+            byte[] decoded = new byte[raw.length];
+            try (InputStream in = new Base64Side(side).openStream()) {
+                decoded[0] = (byte) in.read();
+                assertEquals(10, in.skip(10));
+                assertEquals(raw.length - 11, in.available());
+                assertEquals(raw.length - 11, in.read(decoded, 11, 1000));
+                assertEquals(-1, in.read(decoded, 0, 1));
+            }
+            System.arraycopy(raw, 1, decoded, 1, 10);
+            assertArrayEquals(raw, decoded);
+        }
+    }
+
+    /**
+     * Test: Any range of a side streams the same bytes as the decoded data,
+     * whether the side is kept as Base64, with or without whitespace, or encoded
+     *
+     * @throws IOException the io exception
+     */
+    @Test
+    public void testOpenRange () throws IOException {
+        byte[] raw = new byte[50];
+        new Random(11).nextBytes(raw);
+        String data = Base64.encodeBase64String(raw);
+        StoredSide[] sides = {
+                new Base64Side(data),
+                new Base64Side(data.substring(0, 20) + "\r\n" + data.substring(20)),
+                new EncodedSide(new DeflateCodec(1), raw),
+                new ArraySide(Arrays.copyOf(raw, 64), raw.length)};
+        for (StoredSide side : sides) {
+            for (int from = 0; from <= raw.length; from++) {
+                for (int to = from; to <= raw.length; to += 7) {
+                    byte[] range = new byte[to - from];
+                    try (InputStream in = side.openStream(from, to)) {
+                        int filled = 0;
+                        for (int read = 0; read >= 0 && filled < range.length; filled += read) {
+                            read = in.read(range, filled, range.length - filled);
+                        }
+                        assertEquals(-1, in.read());
+                    }
+                    assertArrayEquals(Arrays.copyOfRange(raw, from, to), range);
+                }
+            }
+        }
+    }
+
+    /**
+     * Test: Sides held by the start of a larger array only expose their own bytes
+     */
+    @Test
+    public void testLargerArray () {
+        byte[] raw = new byte[1000];
+        new Random(34).nextBytes(raw);
+        byte[] larger = Arrays.copyOf(raw, 1500);
+        larger[1200] = 1;
+        StoredSide[] sides = {new ArraySide(larger, raw.length), new EncodedSide(new DeflateCodec(1), larger, raw.length)};
+        for (StoredSide side : sides) {
+            assertEquals(raw.length, side.getLength());
+            assertArrayEquals(raw, side.toBytes());
+            assertEquals(Base64.encodeBase64String(raw), side.toBase64());
+        }
+        assertEquals(larger.length, sides[0].getStoredSize());
+    }
+
+    /**
+     * Test: Sampled positions hold the same bytes as the decoded data, whether the side is kept as Base64,
+     * with or without whitespace, in the URL safe alphabet, encoded or decoded
+     */
+    @Test
+    public void testSample () {
+        byte[] raw = new byte[20000];
+        new Random(49).nextBytes(raw);
+        String data = Base64.encodeBase64String(raw);
+        StoredSide[] sides = {
+                new Base64Side(data),
+                new Base64Side(data.substring(0, 20) + "\r\n" + data.substring(20)),
+                new Base64Side(Base64.encodeBase64URLSafeString(raw)),
+                new EncodedSide(new DeflateCodec(1), raw),
+                new ArraySide(raw)};
+        int[] positions = {0, 1, 2, 3, 4, 5, 8191, 8192, 8193, 12000, 19997, 19998, 19999};
+        byte[] expected = new byte[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            expected[i] = raw[positions[i]];
+        }
+        for (StoredSide side : sides) {
+            assertArrayEquals(expected, side.sample(positions));
+        }
+        //every character of the alphabets is decoded when every position is sampled
+        int[] all = new int[raw.length];
+        for (int i = 0; i < all.length; i++) {
+            all[i] = i;
+        }
+        for (StoredSide side : sides) {
+            assertArrayEquals(raw, side.sample(all));
+        }
+    }
+
+    /**
+     * Test: Stored data sets are replaced, not modified, by an update
+     */
+    @Test
+    public void testStoredData () {
+        Base64Side left = new Base64Side("dGVsZXR1Ymll");
+        StoredData empty = StoredData.empty("1");
+        StoredData withLeft = empty.withLeft(SideHistory.of(left));
+        StoredData withBoth = withLeft.withRight(SideHistory.of(left));
+
+        assertNull(empty.getLeft());
+        assertEquals("1", withLeft.getId());
+        assertEquals(left, withLeft.getLeft());
+        assertNull(withLeft.getRight());
+        assertEquals(left, withBoth.getRight());
+    }
+}
@@ -0,0 +1,90 @@
+package org.juliazo.diff.storage;
+
+import org.apache.tomcat.util.codec.binary.Base64;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for {@link org.juliazo.diff.storage.DeflateCodec}
+ */
+public class DeflateCodecTest {
+
+    /**
+     * Test: Compressible data is compressed and streams back unchanged, with metrics recorded
+     *
+     * @throws IOException the io exception
+     */
+    @Test
+    public void testRoundTrip () throws IOException {
+        DeflateCodec codec = new DeflateCodec(1);
+        byte[] raw = "structured text, structured text, structured text".getBytes("US-ASCII");
+
+        byte[] encoded = codec.encode(raw);
+        assertTrue(encoded.length < raw.length);
+
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        byte[] buffer = new byte[7];
+        try (InputStream in = codec.decode(encoded)) {
+            for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+                decoded.write(buffer, 0, read);
+            }
+        }
+        assertArrayEquals(raw, decoded.toByteArray());
+
+        assertEquals("deflate", codec.getName());
+        assertEquals("deflate", codec.getMetrics().getCodec());
+        assertEquals(1, codec.getMetrics().getPayloads());
+        assertEquals(raw.length, codec.getMetrics().getRawBytes());
+        assertEquals(encoded.length, codec.getMetrics().getStoredBytes());
+        assertEquals(raw.length, codec.getMetrics().getDecodedBytes());
+        assertTrue(codec.getMetrics().getEncodeNanos() > 0);
+        assertTrue(codec.getMetrics().getDecodeNanos() > 0);
+    }
+
+    /**
+     * Test: Incompressible and empty data stream back unchanged
+     *
+     * @throws IOException the io exception
+     */
+    @Test
+    public void testIncompressibleAndEmpty () throws IOException {
+        DeflateCodec codec = new DeflateCodec(9);
+        byte[] random = new byte[200000];
+        new Random(7).nextBytes(random);
+
+        EncodedSide side = new EncodedSide(codec, random);
+        assertEquals(random.length, side.getLength());
+        assertTrue(side.getStoredLength() > 0);
+        assertEquals(Base64.encodeBase64String(random), side.toBase64());
+
+        EncodedSide empty = new EncodedSide(codec, new byte[0]);
+        assertEquals(0, empty.getLength());
+        try (InputStream in = empty.openStream()) {
+            assertEquals(-1, in.read(new byte[8]));
+        }
+    }
+
+    /**
+     * Test: The compression level must be valid
+     */
+    @Test (expected = IllegalArgumentException.class)
+    public void testInvalidLevel () {
+        new DeflateCodec(0);
+    }
+
+    /**
+     * Test: Metrics report a ratio of 1 before anything is encoded
+     */
+    @Test
+    public void testEmptyMetrics () {
+        assertEquals(1.0, new CodecMetrics("none").getCompressionRatio(), 0);
+    }
+}
@@ -0,0 +1,92 @@
+package org.juliazo.diff.storage;
+
+import org.juliazo.diff.engine.DiffEngine;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Test class for {@link org.juliazo.diff.storage.SideHistory} and {@link org.juliazo.diff.storage.VersionDelta}
+ */
+public class SideHistoryTest {
+
+    /**
+     * The engine locating the differences between versions
+     */
+    private final DiffEngine diffEngine = new DiffEngine();
+
+    /**
+     * Test: Every version kept is rebuilt as it was stored, including versions
+     * longer and shorter than the version after them
+     */
+    @Test
+    public void testVersionsAreRebuilt () {
+        Random random = new Random(17);
+        List<byte[]> versions = new ArrayList<>();
+        byte[] current = new byte[1000];
+        random.nextBytes(current);
+        versions.add(current);
+        SideHistory history = SideHistory.of(new ArraySide(current));
+
+        for (int v = 2; v <= 12; v++) {
+            current = Arrays.copyOf(current, current.length + random.nextInt(200) - 100);
+            for (int i = 0; i < 20; i++) {
+                current[random.nextInt(current.length)] = (byte) random.nextInt();
+            }
+            versions.add(current);
+            history = history.push(diffEngine, new ArraySide(current), 5);
+        }
+
+        assertEquals(12, history.getVersion());
+        assertEquals(8, history.getOldestVersion());
+        for (long v = 8; v <= 12; v++) {
+            byte[] expected = versions.get((int) v - 1);
+            assertArrayEquals(expected, history.getVersion(v).toBytes());
+            assertEquals(expected.length, history.getLength(v));
+        }
+        assertNull(history.getVersion(7));
+        assertNull(history.getVersion(13));
+    }
+
+    /**
+     * Test: Older versions only keep the bytes that changed
+     */
+    @Test
+    public void testDeltaKeepsChangedBytes () {
+        byte[] older = new byte[10000];
+        byte[] newer = older.clone();
+        newer[10] = 1;
+        newer[5000] = 1;
+        newer[5001] = 1;
+
+        VersionDelta delta = VersionDelta.between(diffEngine, older, newer);
+
+        assertEquals(3, delta.getSize());
+        assertEquals(older.length, delta.getLength());
+        assertArrayEquals(older, delta.apply(newer));
+    }
+
+    /**
+     * Test: With a depth of 1 only the latest version is kept
+     */
+    @Test
+    public void testDepthOfOne () {
+        ArraySide latest = new ArraySide(new byte[] {2});
+        SideHistory history = SideHistory.of(new ArraySide(new byte[] {1})).push(diffEngine, latest, 1);
+
+        assertEquals(2, history.getVersion());
+        assertEquals(2, history.getOldestVersion());
+        assertSame(latest, history.getLatest());
+        assertSame(latest, history.getVersion(2));
+        assertNull(history.getVersion(1));
+        assertEquals(7, SideHistory.of(latest, 7).getVersion());
+    }
+}
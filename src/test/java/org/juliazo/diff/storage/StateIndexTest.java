@@ -0,0 +1,140 @@
+package org.juliazo.diff.storage;
+
+import org.juliazo.diff.model.CompletionState;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for {@link org.juliazo.diff.storage.StateIndex}
+ */
+public class StateIndexTest {
+
+    /**
+     * The index under test
+     */
+    private final StateIndex stateIndex = new StateIndex();
+
+    /**
+     * Test: Data sets are listed on their latest state, least recently updated first
+     */
+    @Test
+    public void testUpdate () {
+        stateIndex.update("1", CompletionState.LEFT, 30);
+        stateIndex.update("2", CompletionState.RIGHT, 10);
+        stateIndex.update("3", CompletionState.LEFT, 20);
+        stateIndex.update("1", CompletionState.BOTH, 40);
+
+        assertEquals(ids("3"), list(CompletionState.LEFT, Long.MIN_VALUE, Long.MAX_VALUE, null, 10));
+        assertEquals(ids("2"), list(CompletionState.RIGHT, Long.MIN_VALUE, Long.MAX_VALUE, null, 10));
+        assertEquals(ids("1"), list(CompletionState.BOTH, Long.MIN_VALUE, Long.MAX_VALUE, null, 10));
+
+        stateIndex.remove("3");
+        stateIndex.remove("4");
+        assertTrue(list(CompletionState.LEFT, Long.MIN_VALUE, Long.MAX_VALUE, null, 10).isEmpty());
+    }
+
+    /**
+     * Test: Pages follow each other through the cursor, within the period of the last update
+     */
+    @Test
+    public void testPagination () {
+        for (int i = 0; i < 10; i++) {
+            stateIndex.update(String.valueOf(i), CompletionState.BOTH, 100 + i / 2);
+        }
+
+        List<StateIndex.Entry> first = stateIndex.list(CompletionState.BOTH, 101, 103, null, 3);
+        assertEquals(ids("2", "3", "4"), first.stream().map(StateIndex.Entry::getId).collect(Collectors.toList()));
+        String cursor = first.get(2).toCursor();
+        assertEquals("102:4", cursor);
+        assertEquals(ids("5", "6", "7"), list(CompletionState.BOTH, 101, 103, cursor, 3));
+        assertEquals(ids("8", "9"), list(CompletionState.BOTH, 101, 104, "103:7", 3));
+        //a cursor before the period starts at the period
+        assertEquals(ids("2"), list(CompletionState.BOTH, 101, 103, "100:1", 1));
+    }
+
+    /**
+     * Test: An invalid cursor is rejected
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCursor () {
+        stateIndex.list(CompletionState.BOTH, 0, 1, "cursor", 1);
+    }
+
+    /**
+     * Test: An id updated twice at the same time on the same state stays listed once
+     */
+    @Test
+    public void testSameTimeUpdate () {
+        stateIndex.update("1", CompletionState.LEFT, 10);
+        stateIndex.update("1", CompletionState.LEFT, 10);
+        assertEquals(ids("1"), list(CompletionState.LEFT, Long.MIN_VALUE, Long.MAX_VALUE, null, 10));
+
+        stateIndex.update("1", CompletionState.BOTH, 10);
+        assertTrue(list(CompletionState.LEFT, Long.MIN_VALUE, Long.MAX_VALUE, null, 10).isEmpty());
+        assertEquals(ids("1"), list(CompletionState.BOTH, Long.MIN_VALUE, Long.MAX_VALUE, null, 10));
+    }
+
+    /**
+     * Test: Concurrent updates leave each id indexed once, on its latest state
+     */
+    @Test
+    public void testConcurrentUpdates () throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        String id = String.valueOf(i % 50);
+                        stateIndex.update(id, CompletionState.values()[i % 3], i);
+                        stateIndex.update(id, CompletionState.BOTH, 1000 + i);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(50, list(CompletionState.BOTH, Long.MIN_VALUE, Long.MAX_VALUE, null, 100).size());
+        assertTrue(list(CompletionState.LEFT, Long.MIN_VALUE, Long.MAX_VALUE, null, 100).isEmpty());
+        assertTrue(list(CompletionState.RIGHT, Long.MIN_VALUE, Long.MAX_VALUE, null, 100).isEmpty());
+    }
+
+    /**
+     * Lists the ids of a page.
+     *
+     * @param state         the state
+     * @param updatedFrom   earliest time of the last update
+     * @param updatedTo     latest time of the last update
+     * @param after         the cursor, null for the first page
+     * @param limit         maximum number of ids
+     * @return the ids
+     */
+    private List<String> list(CompletionState state, long updatedFrom, long updatedTo, String after, int limit) {
+        return stateIndex.list(state, updatedFrom, updatedTo, after, limit).stream()
+                .map(StateIndex.Entry::getId).collect(Collectors.toList());
+    }
+
+    /**
+     * Mounts a list of ids.
+     *
+     * @param ids   the ids
+     * @return the list
+     */
+    private static List<String> ids(String... ids) {
+        return Arrays.asList(ids);
+    }
+}